@@ -0,0 +1,100 @@
+package com.labyrinthconquest.game.benchmarks;
+
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.FloatArray;
+import com.badlogic.gdx.utils.IntArray;
+import com.labyrinthconquest.game.pathfinding.Graph;
+import com.labyrinthconquest.game.pathfinding.INode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks of the pathfinding graph over the map corpus. Each benchmark is measured as throughput and as sampled
+ * latency, which reports the percentiles. "gradlew benchmarks:jmh" runs them with the GC profiler for the allocation rate
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class GraphBenchmarks {
+    /**
+     * Build the graphs of every character of the map: the shared compact graph and a graph over each character's view
+     */
+    @Benchmark
+    public Graph[] buildGraphs(MapCorpus corpus) {
+        return MapCorpus.createGraphs(corpus.tiledMap);
+    }
+
+    /**
+     * Build the navigation mesh of the graph: merge its open cells into rectangles and connect them through portals
+     */
+    @Benchmark
+    public int buildNavMesh(MapCorpus corpus) {
+        corpus.navMesh.invalidate();
+        corpus.navMesh.build();
+        return corpus.navMesh.getRectangleCount();
+    }
+
+    /**
+     * Find the node closest to a position
+     */
+    @Benchmark
+    public INode queryPosition(MapCorpus corpus) {
+        return corpus.graph.queryPosition(corpus.positions[corpus.nextQuery() * 2]);
+    }
+
+    /**
+     * Find and smooth a path with the graph's path finder. The path cache is cleared first, so every query is searched
+     */
+    @Benchmark
+    public List<INode> findPath(MapCorpus corpus) {
+        int query = corpus.nextQuery();
+        corpus.graph.getPathCache().clear();
+        return corpus.graph.findPath(corpus.positions[query * 2], corpus.positions[query * 2 + 1]);
+    }
+
+    /**
+     * Find a path on the navigation mesh, searched over its rectangles and pulled tight through their portals
+     */
+    @Benchmark
+    public FloatArray findNavMeshPath(MapCorpus corpus) {
+        int query = corpus.nextQuery();
+        Vector2 from = corpus.positions[query * 2];
+        Vector2 to = corpus.positions[query * 2 + 1];
+        corpus.navMesh.findPath(from.x, from.y, to.x, to.y, corpus.navMeshWaypoints);
+        return corpus.navMeshWaypoints;
+    }
+
+    /**
+     * Find a path with Lazy Theta*, which needs no smoothing. Compare to findPath, which searches and smooths
+     */
+    @Benchmark
+    public IntArray findAnyAnglePath(MapCorpus corpus) {
+        int query = corpus.nextQuery();
+        int from = corpus.graph.findClosestNode(corpus.positions[query * 2]);
+        int to = corpus.graph.findClosestNode(corpus.positions[query * 2 + 1]);
+        corpus.anyAnglePathFinder.searchPath(from, to, corpus.anyAnglePath);
+        return corpus.anyAnglePath;
+    }
+
+    /**
+     * Smooth a path that was found beforehand and store it in the path cache, as is done with the paths found on the
+     * pathfinding service's threads
+     */
+    @Benchmark
+    public List<INode> smoothPath(MapCorpus corpus) {
+        int query = corpus.nextQuery();
+        Vector2 from = corpus.positions[query * 2];
+        Vector2 to = corpus.positions[query * 2 + 1];
+        return corpus.graph.createPath(from, to, corpus.nodePaths[query]);
+    }
+}
@@ -0,0 +1,172 @@
+package com.labyrinthconquest.game.benchmarks;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.maps.tiled.TiledMap;
+import com.badlogic.gdx.maps.tiled.TiledMapTileLayer;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.FloatArray;
+import com.badlogic.gdx.utils.IntArray;
+import com.labyrinthconquest.game.data.Constants;
+import com.labyrinthconquest.game.desktop.benchmarks.BenchmarkMaps;
+import com.labyrinthconquest.game.levels.LabyrinthGenerator;
+import com.labyrinthconquest.game.pathfinding.CompactGraph;
+import com.labyrinthconquest.game.pathfinding.DStarLitePathFinder;
+import com.labyrinthconquest.game.pathfinding.Graph;
+import com.labyrinthconquest.game.pathfinding.HierarchicalGridPathFinder;
+import com.labyrinthconquest.game.pathfinding.JumpPointSearch;
+import com.labyrinthconquest.game.pathfinding.LandmarkHeuristic;
+import com.labyrinthconquest.game.pathfinding.LazyThetaStarPathFinder;
+import com.labyrinthconquest.game.pathfinding.NavMesh;
+import com.labyrinthconquest.game.pathfinding.OccupancyGrid;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+
+/**
+ * The maps the benchmarks run over: the shipped levels ("level1" to "level6"), generated mazes ("maze64" to
+ * "maze2048") and generated labyrinth levels ("labyrinth256" and "labyrinth2048"), the number is the width and height
+ * in tiles. Holds the graph of the strong character, set up the way
+ * a level sets it up, and a fixed set of queries on it that the benchmarks go through one after the other
+ */
+@State(Scope.Benchmark)
+public class MapCorpus {
+    /**
+     * Queries per map, a power of two so the next one is picked with a mask
+     */
+    private static final int QUERIES = 1024;
+    private static final long SEED = 42;
+
+    @Param({"level1", "level2", "level3", "level4", "level5", "level6",
+            "maze64", "maze128", "maze256", "maze512", "maze1024", "maze2048", "labyrinth256", "labyrinth2048"})
+    public String map;
+
+    TiledMap tiledMap;
+    Graph graph;
+    /**
+     * Navigation mesh over the same graph, and the buffer its paths are written to
+     */
+    NavMesh navMesh;
+    FloatArray navMeshWaypoints;
+    /**
+     * Any-angle path finder over the same graph, and the buffer its paths are written to
+     */
+    LazyThetaStarPathFinder anyAnglePathFinder;
+    IntArray anyAnglePath;
+    /**
+     * Start and end position of every query, one after the other. The ends of a query can always reach each other
+     */
+    Vector2[] positions;
+    /**
+     * Node path of every query, as the graph's path finder found it
+     */
+    IntArray[] nodePaths;
+    private int nextQuery;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        tiledMap = loadMap(map);
+        graph = createGraph(tiledMap);
+        createQueries();
+        navMesh = new NavMesh(graph.getCompactGraph(), Constants.NAVMESH_AGENT_RADIUS);
+        navMesh.build();
+        navMeshWaypoints = new FloatArray();
+        anyAnglePathFinder = new LazyThetaStarPathFinder(graph.getCompactGraph());
+        anyAnglePathFinder.setOccupancyGrid(graph.getOccupancyGrid());
+        anyAnglePath = new IntArray();
+    }
+
+    /**
+     * @return Index of the next query, starting over after the last one
+     */
+    int nextQuery() {
+        nextQuery = (nextQuery + 1) & (QUERIES - 1);
+        return nextQuery;
+    }
+
+    /**
+     * @param name Level ("level" and its number), maze ("maze" and its size) or labyrinth ("labyrinth" and its size)
+     * @return Map with the pathfind layers
+     */
+    static TiledMap loadMap(String name) {
+        if (name.startsWith("maze")) {
+            int size = Integer.parseInt(name.substring("maze".length()));
+            return BenchmarkMaps.createMaze(size, SEED);
+        }
+        if (name.startsWith("labyrinth")) {
+            int size = Integer.parseInt(name.substring("labyrinth".length()));
+            return new LabyrinthGenerator(SEED).generate(size, size);
+        }
+        return BenchmarkMaps.loadLevel(new FileHandle("levels/" + name.substring("level".length()) + ".tmx"));
+    }
+
+    /**
+     * Build the pathfinding graphs of a map the way a level does: one compact graph shared by all pathfind layers and
+     * a graph over a view of it for every character
+     * @param tiledMap Map
+     * @return Graph of every pathfind layer, in the order of the layers
+     */
+    static Graph[] createGraphs(TiledMap tiledMap) {
+        TiledMapTileLayer[] layers = new TiledMapTileLayer[Constants.MAP_PATHFINDER_LAYERS.length];
+        for (int i = 0; i < layers.length; i++) {
+            layers[i] = (TiledMapTileLayer)tiledMap.getLayers().get(Constants.MAP_PATHFINDER_LAYERS[i]);
+        }
+        CompactGraph sharedGraph = new CompactGraph(layers, Constants.MAP_PATHFINDER_CAPABILITIES);
+        Graph[] graphs = new Graph[layers.length];
+        for (int i = 0; i < layers.length; i++) {
+            graphs[i] = new Graph(sharedGraph.createView(Constants.MAP_PATHFINDER_CAPABILITIES[i]), null);
+        }
+        return graphs;
+    }
+
+    /**
+     * Create the strong character's graph with the landmarks, path finder and occupancy grid a level gives it.
+     * Paths are smoothed on a grid of the cells without nodes, as the mazes have no wall objects
+     */
+    private static Graph createGraph(TiledMap tiledMap) {
+        Graph graph = createGraphs(tiledMap)[Constants.MAP_PATHFINDER_LAYERS.length - 1];
+        CompactGraph compactGraph = graph.getCompactGraph();
+        OccupancyGrid occupancyGrid = new OccupancyGrid(compactGraph.getWidth(), compactGraph.getHeight());
+        for (int x = 0; x < compactGraph.getWidth(); x++) {
+            for (int y = 0; y < compactGraph.getHeight(); y++) {
+                occupancyGrid.setBlocked(x, y, compactGraph.getNode(x, y) == CompactGraph.NO_NODE);
+            }
+        }
+        graph.setOccupancyGrid(occupancyGrid);
+        graph.setHeuristic(new LandmarkHeuristic(compactGraph, Constants.ALT_LANDMARKS));
+        if (compactGraph.getWidth() * compactGraph.getHeight() > Constants.HIERARCHICAL_PATHFINDING_MIN_TILES) {
+            graph.setPathFinder(new HierarchicalGridPathFinder(compactGraph, Constants.HIERARCHICAL_PATHFINDING_CLUSTER_SIZE));
+        } else {
+            graph.setPathFinder(new JumpPointSearch(compactGraph));
+            if (Constants.DSTAR_LITE_REPLANNING) {
+                graph.setReplanPathFinder(new DStarLitePathFinder(compactGraph));
+            }
+        }
+        return graph;
+    }
+
+    /**
+     * Pick random positions in walkable cells, each query's ends in the same connected component, and find their paths
+     */
+    private void createQueries() {
+        CompactGraph compactGraph = graph.getCompactGraph();
+        Random random = new Random(SEED);
+        positions = new Vector2[QUERIES * 2];
+        nodePaths = new IntArray[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            int from;
+            int to;
+            do {
+                from = random.nextInt(compactGraph.getNodeCount());
+                to = random.nextInt(compactGraph.getNodeCount());
+            } while (!graph.isReachable(from, to));
+            positions[i * 2] = new Vector2(compactGraph.getX(from) + random.nextFloat() - 0.5f, compactGraph.getY(from) + random.nextFloat() - 0.5f);
+            positions[i * 2 + 1] = new Vector2(compactGraph.getX(to) + random.nextFloat() - 0.5f, compactGraph.getY(to) + random.nextFloat() - 0.5f);
+            nodePaths[i] = new IntArray();
+            graph.getPathFinder().searchPath(from, to, nodePaths[i]);
+        }
+    }
+}
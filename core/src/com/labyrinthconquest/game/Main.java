@@ -109,6 +109,7 @@ public class Main extends Game {
 	 */
 	public void dispose() {
 		super.dispose();
+		mainGame.dispose();
 		batch.dispose();
 	}
 }
@@ -83,7 +83,7 @@ public class ContactManager implements ContactListener {
                 onGoalReachedEvent();
             }
         } else if (name.contains(Constants.MAP_BUTTON)) {
-            game.getGame().getSounds().playButton();
+            level.onButtonPressed();
             removeTilesAndDoors(level.getDoorBodies(Utilities.getColorName(body1.getUserData().toString())), Constants.MAP_WALLS_TEXTURES);
             removeTileAndBody(contact, body1, Constants.MAP_WALLS_TEXTURES);
             player.stopMove();
@@ -100,8 +100,7 @@ public class ContactManager implements ContactListener {
     private void removeTileAndBody(Contact contact, Body body, String layer) {
         TiledMapTileLayer tiledLayer = (TiledMapTileLayer)level.getTiledMap().getLayers().get(layer);
         Vector2 collPos = contact.getFixtureA().getBody().getPosition();
-        TiledMapTileLayer.Cell cell = tiledLayer.getCell((int)collPos.x, (int)collPos.y);
-        cell.setTile(null);
+        level.removeTile(tiledLayer, (int)collPos.x, (int)collPos.y);
         level.addBodyToDeleteList(body);
     }
 
@@ -114,8 +113,7 @@ public class ContactManager implements ContactListener {
         TiledMapTileLayer tiledLayer = (TiledMapTileLayer)level.getTiledMap().getLayers().get(layer);
         for(Body body : bodies) {
             Vector2 pos = body.getPosition();
-            TiledMapTileLayer.Cell cell = tiledLayer.getCell((int)pos.x, (int)pos.y);
-            cell.setTile(null);
+            level.removeTile(tiledLayer, (int)pos.x, (int)pos.y);
             level.addBodyToDeleteList(body);
         }
     }
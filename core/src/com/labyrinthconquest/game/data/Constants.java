@@ -17,6 +17,10 @@ public class Constants {
     public static final float PLAYER_HEIGHT = 0.8f;
     public static final float PLAYER_COLLISION_RADIUS = 0.46f;
     public static final int LEVELS_COUNT = 6;
+    /**
+     * Number of parsed level maps kept loaded by the level loader, e.g the level played, the next one and the last one
+     */
+    public static final int MAP_CACHE_SIZE = 3;
     /**
      * Time that player has to travel for without node path node change until path is stopped. Prevents e.g traveling towards a wall forever
      */
@@ -46,6 +50,72 @@ public class Constants {
      */
     public static final float TIME_SINCE_LAST_PATH_CUTOFF = 0.44f;
     public static final float PATH_SMOOTH_SIDE_OFFSET = 0.61f;
+    /**
+     * Maps with more tiles than this are searched with hierarchical pathfinding, using clusters of the given size
+     */
+    public static final int HIERARCHICAL_PATHFINDING_MIN_TILES = 128 * 128;
+    public static final int HIERARCHICAL_PATHFINDING_CLUSTER_SIZE = 16;
+    /**
+     * Whether the paths of moving players are replanned with D* Lite, which repairs its previous search, instead of a
+     * new jump point search. Off: on the levels and mazes measured, a fresh path and a few replans cost more with
+     * D* Lite. Only worth it on maps where a live path is replanned many times to the same goal
+     */
+    public static final boolean DSTAR_LITE_REPLANNING = false;
+    /**
+     * Compiled levels with more tiles than this are played in chunks of the given size (in tiles), streamed in around
+     * the camera and the players. At most the given number of chunks are loaded at once, enough for the chunks in view
+     * and around every player
+     */
+    public static final int CHUNKED_LEVEL_MIN_TILES = 256 * 256;
+    public static final int CHUNK_SIZE = 32;
+    public static final int CHUNK_RESIDENT_BUDGET = 48;
+    /**
+     * Distance navigation mesh paths keep from the walls. Half a cell walks one cell wide corridors through the middle
+     */
+    public static final float NAVMESH_AGENT_RADIUS = 0.5f;
+    /**
+     * Number of smoothed paths cached per pathfinding graph
+     */
+    public static final int PATH_CACHE_SIZE = 32;
+    /**
+     * Landmarks of the ALT heuristic the pathfinding graphs are searched with, each costs a float per node
+     */
+    public static final int ALT_LANDMARKS = 8;
+    /**
+     * Number of flow fields (paths from the whole map to one target) cached per pathfinding graph
+     */
+    public static final int FLOW_FIELD_CACHE_SIZE = 4;
+    /**
+     * Most worker threads the pathfinding service uses, it leaves one core for the render thread
+     */
+    public static final int PATHFINDING_MAX_THREADS = 2;
+    /**
+     * Time in seconds the deferred jobs of a level may take per frame, the rest is carried over to the next frame
+     */
+    public static final float JOB_SCHEDULER_FRAME_BUDGET = 0.004f;
+    /**
+     * Width in tiles of the corridors of generated labyrinths, and their size in regions of corridor junctions that
+     * are carved separately. Labyrinths with more tiles than the minimum are carved in parallel
+     */
+    public static final int GENERATOR_CORRIDOR_WIDTH = 2;
+    public static final int GENERATOR_REGION_SIZE = 32;
+    public static final int GENERATOR_PARALLEL_MIN_TILES = 256 * 256;
+    /**
+     * Chance that a wall between two corridor junctions is opened when it is not needed to connect them, and that such
+     * an opening gets a door, a strong, climb or water wall
+     */
+    public static final float GENERATOR_LOOP_CHANCE = 0.1f;
+    public static final float GENERATOR_FEATURE_CHANCE = 0.5f;
+    /**
+     * Tiles of the level tile set (levels/tileset.tsx) that generated labyrinths are textured with
+     */
+    public static final int TILE_FLOOR = 29;
+    public static final int TILE_WATER = 42;
+    public static final int TILE_WALL_STATIC = 81;
+    public static final int TILE_WALL_STRONG = 49;
+    public static final int TILE_WALL_CLIMB = 47;
+    public static final int TILE_DOOR = 19;
+    public static final int TILE_BUTTON = 61;
 
     /**
      * Tilemap tags
@@ -55,6 +125,7 @@ public class Constants {
     public static final String MAP_WALLS_CLIMB = "walls_climb";
     public static final String MAP_WALLS_WATER = "walls_water";
     public static final String MAP_WALLS_TEXTURES = "walls_doors_buttons_textures";
+    public static final String MAP_BACKGROUND_TEXTURES = "background-textures";
     public static final String MAP_GOAL = "goal";
     public static final String MAP_SPAWNS = "spawns";
 
@@ -109,6 +180,19 @@ public class Constants {
     public static final short MASK_PLAYER_CLIMB = CAT_MAP_WALLS_STATIC | CAT_MAP_WALLS_STRONG | CAT_MAP_WALLS_WATER | CAT_MAP_WALLS_BUTTONS | CAT_MAP_WALLS_DOORS | CAT_MAP_GOAL;
     public static final short MASK_PLAYER_WATER = CAT_MAP_WALLS_STATIC | CAT_MAP_WALLS_STRONG | CAT_MAP_WALLS_CLIMB | CAT_MAP_WALLS_BUTTONS | CAT_MAP_WALLS_DOORS | CAT_MAP_GOAL;
 
+    /**
+     * Pathfind layers and the capability their cells give, the category of the player walking them
+     */
+    public static final String[] MAP_PATHFINDER_LAYERS = {MAP_PATHFINDER_NODES_WATER, MAP_PATHFINDER_NODES_CLIMB, MAP_PATHFINDER_NODES_STRONG};
+    public static final short[] MAP_PATHFINDER_CAPABILITIES = {CAT_PLAYER_WATER, CAT_PLAYER_CLIMB, CAT_PLAYER_STRONG};
+
+    /**
+     * Pathfinding capability masks (defines which pathfind layers' cells they can walk)
+     */
+    public static final short PATHFIND_MASK_PLAYER_STRONG = CAT_PLAYER_STRONG;
+    public static final short PATHFIND_MASK_PLAYER_CLIMB = CAT_PLAYER_CLIMB;
+    public static final short PATHFIND_MASK_PLAYER_WATER = CAT_PLAYER_WATER;
+
     /**
      * Settings preference and localisation locations
      */
@@ -1,5 +1,6 @@
 package com.labyrinthconquest.game.gameobjects;
 
+import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.physics.box2d.World;
 import com.labyrinthconquest.game.levels.Level;
 
@@ -22,4 +23,20 @@ public class DynamicGameObject extends GameObject {
     public DynamicGameObject(String texturePath, World world, Level level, float x, float y, float width, float height, short category, short mask) {
         super(texturePath, world, level, x, y, width, height, category, mask);
     }
+
+    /**
+     * Create a new dynamic game object with a shared texture, which is not disposed with the object
+     * @param texture Texture
+     * @param world Box2D world
+     * @param level Level of the object
+     * @param x X position
+     * @param y Y position
+     * @param width Width of the object
+     * @param height Height of the object
+     * @param category Collision category
+     * @param mask Collision mask
+     */
+    public DynamicGameObject(Texture texture, World world, Level level, float x, float y, float width, float height, short category, short mask) {
+        super(texture, world, level, x, y, width, height, category, mask);
+    }
 }
\ No newline at end of file
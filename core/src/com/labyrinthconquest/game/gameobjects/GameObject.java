@@ -14,6 +14,10 @@ import com.labyrinthconquest.game.levels.Level;
  */
 public abstract class GameObject {
     protected Texture texture;
+    /**
+     * Whether the object disposes its texture, else the texture is shared (e.g loaded by an asset manager)
+     */
+    protected boolean ownsTexture;
     protected Level level;
     protected World world;
     protected Body body;
@@ -49,7 +53,24 @@ public abstract class GameObject {
      * @param mask Collision mask
      */
     protected GameObject(String texturePath, World world, Level level, float x, float y, float width, float height, short category, short mask) {
-        this.texture = new Texture(Gdx.files.internal(texturePath));
+        this(new Texture(Gdx.files.internal(texturePath)), world, level, x, y, width, height, category, mask);
+        ownsTexture = true;
+    }
+
+    /**
+     * Create a new game object with a shared texture, which is not disposed with the object
+     * @param texture Texture
+     * @param world Box2D world
+     * @param level Level of the object
+     * @param x X position
+     * @param y Y position
+     * @param width Width of the object
+     * @param height Height of the object
+     * @param category Collision category
+     * @param mask Collision mask
+     */
+    protected GameObject(Texture texture, World world, Level level, float x, float y, float width, float height, short category, short mask) {
+        this.texture = texture;
         createBody(world, level, category, mask);
         setPosition(x, y);
         this.width = width;
@@ -94,6 +115,8 @@ public abstract class GameObject {
      * Dispose object
      */
     public void dispose() {
-        texture.dispose();
+        if (ownsTexture) {
+            texture.dispose();
+        }
     }
 }
\ No newline at end of file
@@ -16,6 +16,9 @@ import com.badlogic.gdx.physics.box2d.FixtureDef;
 import com.badlogic.gdx.physics.box2d.World;
 import com.labyrinthconquest.game.data.Constants;
 import com.labyrinthconquest.game.levels.Level;
+import com.labyrinthconquest.game.pathfinding.CompactGraph;
+import com.labyrinthconquest.game.pathfinding.FlowField;
+import com.labyrinthconquest.game.pathfinding.Graph;
 import com.labyrinthconquest.game.pathfinding.INode;
 import com.labyrinthconquest.game.utils.Utilities;
 
@@ -34,6 +37,21 @@ public class Player extends DynamicGameObject {
      */
     private int currentNodeIndex;
 
+    /**
+     * Graph whose flow field the player follows instead of a path, null when following a path
+     */
+    private Graph flowGraph;
+    private int flowTargetNode;
+    private Vector2 flowTarget;
+    /**
+     * Node the player was at when the flow field was last followed
+     */
+    private int flowNode;
+    /**
+     * Velocity set on the body, reused every frame
+     */
+    private Vector2 moveVelocity;
+
     /**
      * Whether we're moving
      */
@@ -95,13 +113,31 @@ public class Player extends DynamicGameObject {
      * @param mask Collision mask
      */
     public Player(String texturePath, World world, Level level, float x, float y, float width, float height, String id, short category, short mask) {
-        super(texturePath, world, level, x, y, width, height, category, mask);
+        this(new Texture(Gdx.files.internal(texturePath)), world, level, x, y, width, height, id, category, mask);
+        ownsTexture = true;
+    }
+
+    /**
+     * Create a new player with an animation sheet shared by the players of every level, which is not disposed with the player
+     * @param moveSheet Animation sheet
+     * @param world Box2D world
+     * @param level Level of the object
+     * @param x X position
+     * @param y Y position
+     * @param width Width of the object
+     * @param height Height of the object
+     * @param id Identification (name) of the player
+     * @param category Collision category
+     * @param mask Collision mask
+     */
+    public Player(Texture moveSheet, World world, Level level, float x, float y, float width, float height, String id, short category, short mask) {
+        super(moveSheet, world, level, x, y, width, height, category, mask);
         this.id = id;
         currentNodeIndex = 0;
         moving = false;
+        flowTarget = new Vector2();
+        moveVelocity = new Vector2();
 
-        texture.dispose(); // Dispose inherited texture, it is not needed, as the textures are inside the animation object
-        Texture moveSheet = new Texture(Gdx.files.internal(texturePath));
         TextureRegion[][] regions = TextureRegion.split(moveSheet, moveSheet.getWidth() / Constants.PLAYER_ANIMATION_SHEET_COLUMNS,
                 moveSheet.getHeight() / Constants.PLAYER_ANIMATION_SHEET_ROWS);
         TextureRegion[] frames = Utilities.transform2DRegionsTo1D(regions, Constants.PLAYER_ANIMATION_SHEET_COLUMNS, Constants.PLAYER_ANIMATION_SHEET_ROWS);
@@ -118,6 +154,37 @@ public class Player extends DynamicGameObject {
         moving = true;
         currentPath = path;
         currentNodeIndex = 0;
+        flowGraph = null;
+    }
+
+    /**
+     * Move to a target by following the graph's flow field towards it, stepping to the next node of the field
+     * from wherever the player is instead of following a path of its own
+     * @param graph Pathfinding graph of the player
+     * @param targetNode Node of the graph the flow field leads to
+     * @param target Position the player stops at, inside the target node
+     */
+    public void setMoveFlowField(Graph graph, int targetNode, Vector2 target) {
+        moving = true;
+        currentPath = null;
+        currentNodeIndex = 0;
+        flowGraph = graph;
+        flowTargetNode = targetNode;
+        flowTarget.set(target);
+        flowNode = CompactGraph.NO_NODE;
+    }
+
+    public boolean isMoving() {
+        return moving;
+    }
+
+    /**
+     * Get the last node of the current path
+     * @return Node the player is moving to, null if not moving or following a flow field
+     */
+    public INode getPathTarget() {
+        if (!moving || flowGraph != null) return null;
+        return currentPath.get(currentPath.size() - 1);
     }
 
     /**
@@ -139,7 +206,11 @@ public class Player extends DynamicGameObject {
                 return;
             }
             updateAnimationFrame();
-            updateMove();
+            if (flowGraph != null) {
+                updateFlowMove();
+            } else {
+                updateMove();
+            }
         }
     }
 
@@ -177,9 +248,61 @@ public class Player extends DynamicGameObject {
                 return;
             }
         }
-        Vector2 dir = new Vector2((currentNode.getX() - getPosition().x), (currentNode.getY() - getPosition().y)).nor();
-        dir.set(dir.x * Constants.PLAYER_SPEED_MULTIPLIER, dir.y * Constants.PLAYER_SPEED_MULTIPLIER);
-        getBody().setLinearVelocity(dir);
+        moveVelocity.set(currentNode.getX() - getPosition().x, currentNode.getY() - getPosition().y).nor().scl(Constants.PLAYER_SPEED_MULTIPLIER);
+        getBody().setLinearVelocity(moveVelocity);
+    }
+
+    /**
+     * Move towards the next node of the flow field from the node the player is at, and to the target position
+     * once at the target node. While the field is not computed yet, or out of date and without a way to the target,
+     * a path of the player's own is searched and followed instead. Stops if the target cannot be reached
+     */
+    private void updateFlowMove() {
+        Vector2 position = getPosition();
+        int node = flowGraph.findClosestNode(position);
+        if (node != flowNode) {
+            flowNode = node;
+            timeSinceLastMove = 0;
+        }
+        FlowField flowField = flowGraph.getFlowField(flowTargetNode);
+        if (flowField == null || !flowField.isReachable(node)) {
+            if (flowGraph.isFlowFieldPending(flowTargetNode)) {
+                updateSearchedMove(position);
+            } else {
+                resetPath();
+            }
+            return;
+        }
+        currentPath = null;
+        int nextNode = flowField.getNextNode(node);
+        float x = flowTarget.x;
+        float y = flowTarget.y;
+        if (nextNode != CompactGraph.NO_NODE) {
+            x = flowGraph.getCompactGraph().getX(nextNode);
+            y = flowGraph.getCompactGraph().getY(nextNode);
+        } else if (Vector2.dst(position.x, position.y, x, y) < 0.2f) {
+            resetPath();
+            return;
+        }
+        moveVelocity.set(x - position.x, y - position.y).nor().scl(Constants.PLAYER_SPEED_MULTIPLIER);
+        getBody().setLinearVelocity(moveVelocity);
+    }
+
+    /**
+     * Follow a path searched from the player's position to the flow field's target, searched once when the player
+     * starts waiting for the field
+     */
+    private void updateSearchedMove(Vector2 position) {
+        if (currentPath == null) {
+            List<INode> path = flowGraph.findPath(position, flowTarget);
+            if (path.isEmpty()) {
+                resetPath();
+                return;
+            }
+            currentPath = path;
+            currentNodeIndex = 0;
+        }
+        updateMove();
     }
 
     /**
@@ -216,6 +339,7 @@ public class Player extends DynamicGameObject {
         moving = false;
         currentPath = null;
         currentNodeIndex = 0;
+        flowGraph = null;
         timeSinceLastMove = 0;
         getBody().setAwake(false);
     }
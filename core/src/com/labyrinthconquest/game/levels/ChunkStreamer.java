@@ -0,0 +1,559 @@
+package com.labyrinthconquest.game.levels;
+
+import com.badlogic.gdx.graphics.OrthographicCamera;
+import com.badlogic.gdx.maps.MapLayer;
+import com.badlogic.gdx.maps.objects.RectangleMapObject;
+import com.badlogic.gdx.maps.tiled.TiledMap;
+import com.badlogic.gdx.maps.tiled.TiledMapTileLayer;
+import com.badlogic.gdx.maps.tiled.TiledMapTileSets;
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.physics.box2d.Body;
+import com.badlogic.gdx.physics.box2d.BodyDef;
+import com.badlogic.gdx.physics.box2d.Filter;
+import com.badlogic.gdx.physics.box2d.Fixture;
+import com.badlogic.gdx.physics.box2d.PolygonShape;
+import com.badlogic.gdx.physics.box2d.World;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.IntMap;
+import com.badlogic.gdx.utils.IntSet;
+import com.badlogic.gdx.utils.ObjectIntMap;
+import com.labyrinthconquest.game.data.Constants;
+import com.labyrinthconquest.game.gameobjects.Player;
+import com.labyrinthconquest.game.scheduling.Job;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Streams the chunks of a chunked level in and out around the camera and the players. A chunk has the cells of its
+ * tiles and the static bodies of its walls. The cells and the merged wall rectangles of a chunk are made on the
+ * streamer's thread, only the bodies are created and destroyed on the render thread, by the streamer's job within the
+ * frame budget, a fixture at a time. At most a budget of chunks are kept, the least recently used chunks out of view
+ * are dropped for new ones. Strong walls broken while the level is played are not created again
+ */
+class ChunkStreamer implements Job, Disposable {
+    private static final String[] MERGED_LAYERS = {Constants.MAP_WALLS_STATIC, Constants.MAP_WALLS_WATER, Constants.MAP_WALLS_CLIMB};
+    private static final short[] MERGED_CATEGORIES = {Constants.CAT_MAP_WALLS_STATIC, Constants.CAT_MAP_WALLS_WATER, Constants.CAT_MAP_WALLS_CLIMB};
+
+    /**
+     * Cells and merged walls of a chunk, made off the render thread
+     */
+    private static class ChunkData {
+        private TiledMapTileLayer.Cell[][] layerCells;
+        private Array<Array<Rectangle>> mergedWalls;
+    }
+
+    private static class Chunk {
+        private Future<ChunkData> data;
+        /**
+         * Made data of the chunk while it is being installed
+         */
+        private ChunkData installing;
+        /**
+         * Next install step: the cells, then the body of every merged layer, then the bodies of the strong walls
+         */
+        private int installStep;
+        /**
+         * Next wall of the merged layer being installed, its body is created with the first wall's fixture
+         */
+        private int installWall;
+        private boolean resident;
+        private Array<Body> bodies = new Array<>();
+        private long lastUsed;
+    }
+
+    private World world;
+    private TiledMapTileSets tileSets;
+    private Array<StreamedTileLayer> layers;
+    private int chunkSize;
+    private int chunksX;
+    private int chunksY;
+    private int budget;
+    /**
+     * Wall rectangles (in tiles) of every merged layer cut along the chunk borders, by chunk
+     */
+    private IntMap<Array<Array<Rectangle>>> chunkWalls;
+    /**
+     * Strong walls (in tiles) and the strong walls of every chunk, by the chunk their centre is in
+     */
+    private Array<Rectangle> strongWalls;
+    private IntMap<IntArray> chunkStrongWalls;
+    private IntSet brokenWalls;
+    private ObjectIntMap<Body> strongBodies;
+    /**
+     * Bodies of dropped chunks, destroyed by the job. Their fixtures are destroyed first, a few at a time, as a merged
+     * body can have hundreds
+     */
+    private Array<Body> releasedBodies;
+
+    private IntMap<Chunk> chunks;
+    private IntSet desiredChunks;
+    private long frame;
+    private ExecutorService executor;
+    private PolygonShape box;
+    private Vector2 center;
+    private Filter filter;
+
+    /**
+     * Create the streamer of a level's chunked tile layers. No chunk is loaded yet
+     * @param world Physics world of the level
+     * @param tiledMap Map of the level, with its chunked layers played by {@link StreamedTileLayer}s
+     * @param budget Most chunks kept loaded
+     */
+    ChunkStreamer(World world, TiledMap tiledMap, int budget) {
+        this.world = world;
+        this.budget = budget;
+        tileSets = tiledMap.getTileSets();
+        layers = new Array<>();
+        for (MapLayer layer : tiledMap.getLayers()) {
+            if (layer instanceof StreamedTileLayer) {
+                layers.add((StreamedTileLayer)layer);
+            }
+        }
+        if (layers.size == 0) {
+            throw new GdxRuntimeException("The map has no chunked layers");
+        }
+        ChunkedTileLayer source = layers.first().getSource();
+        chunkSize = source.getChunkSize();
+        chunksX = source.getChunksX();
+        chunksY = source.getChunksY();
+        chunkWalls = new IntMap<>();
+        for (int i = 0; i < MERGED_LAYERS.length; i++) {
+            for (Rectangle wall : getRectangles(tiledMap, MERGED_LAYERS[i])) {
+                splitWall(wall, i);
+            }
+        }
+        strongWalls = getRectangles(tiledMap, Constants.MAP_WALLS_STRONG);
+        chunkStrongWalls = new IntMap<>();
+        for (int i = 0; i < strongWalls.size; i++) {
+            Rectangle wall = strongWalls.get(i);
+            int chunk = getChunk(wall.x + wall.width / 2, wall.y + wall.height / 2);
+            if (chunk < 0) continue;
+            IntArray walls = chunkStrongWalls.get(chunk);
+            if (walls == null) {
+                walls = new IntArray();
+                chunkStrongWalls.put(chunk, walls);
+            }
+            walls.add(i);
+        }
+        brokenWalls = new IntSet();
+        strongBodies = new ObjectIntMap<>();
+        releasedBodies = new Array<>();
+        chunks = new IntMap<>();
+        desiredChunks = new IntSet();
+        box = new PolygonShape();
+        center = new Vector2();
+        filter = new Filter();
+        executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "chunk-streamer");
+                thread.setDaemon(true);
+                // Chunks are made ahead of the camera, the render thread must not wait for them
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Load the chunks around a point right away, e.g. where the players spawn, so they are there on the first frame
+     * @param x X in tiles
+     * @param y Y in tiles
+     */
+    void loadAround(float x, float y) {
+        int chunkX = MathUtils.floor(x / chunkSize);
+        int chunkY = MathUtils.floor(y / chunkSize);
+        for (int cy = chunkY - 1; cy <= chunkY + 1; cy++) {
+            for (int cx = chunkX - 1; cx <= chunkX + 1; cx++) {
+                if (cx < 0 || cx >= chunksX || cy < 0 || cy >= chunksY) continue;
+                int index = cy * chunksX + cx;
+                Chunk chunk = chunks.get(index);
+                if (chunk != null && chunk.resident) continue;
+                if (chunk == null) {
+                    chunk = new Chunk();
+                    chunks.put(index, chunk);
+                }
+                if (chunk.installing == null) {
+                    if (chunk.data != null) {
+                        chunk.data.cancel(false);
+                    }
+                    chunk.installing = createChunkData(index);
+                }
+                install(index, chunk, Long.MAX_VALUE);
+            }
+        }
+    }
+
+    /**
+     * Request the chunks around the camera and the players, and drop the least recently used chunks over the budget.
+     * Chunks under the players come first, then the visible ones, then the ones around them
+     * @param camera Camera of the level
+     * @param players Players of the level
+     * @return Whether chunks are being loaded or dropped, the streamer's job then has bodies to create or destroy
+     */
+    boolean update(OrthographicCamera camera, List<Player> players) {
+        frame++;
+        desiredChunks.clear();
+        for (Player player : players) {
+            Vector2 position = player.getPosition();
+            addDesired(MathUtils.floor(position.x / chunkSize), MathUtils.floor(position.y / chunkSize));
+        }
+        float halfWidth = camera.viewportWidth * camera.zoom / 2;
+        float halfHeight = camera.viewportHeight * camera.zoom / 2;
+        int minX = MathUtils.floor((camera.position.x - halfWidth) / chunkSize);
+        int minY = MathUtils.floor((camera.position.y - halfHeight) / chunkSize);
+        int maxX = MathUtils.floor((camera.position.x + halfWidth) / chunkSize);
+        int maxY = MathUtils.floor((camera.position.y + halfHeight) / chunkSize);
+        addDesired(minX, minY, maxX, maxY);
+        for (Player player : players) {
+            Vector2 position = player.getPosition();
+            int chunkX = MathUtils.floor(position.x / chunkSize);
+            int chunkY = MathUtils.floor(position.y / chunkSize);
+            addDesired(chunkX - 1, chunkY - 1, chunkX + 1, chunkY + 1);
+        }
+        addDesired(minX - 1, minY - 1, maxX + 1, maxY + 1);
+        evict();
+        boolean loading = releasedBodies.size > 0;
+        for (IntMap.Entry<Chunk> entry : chunks.entries()) {
+            if (!entry.value.resident) {
+                loading = true;
+                break;
+            }
+        }
+        return loading;
+    }
+
+    /**
+     * Destroy the bodies of the dropped chunks, then create the bodies of the chunks that have been made, until the
+     * deadline. The deadline is checked after every fixture and body, a body or chunk left half done is carried on with
+     * next frame
+     */
+    @Override
+    public boolean run(long deadline) {
+        while (releasedBodies.size > 0) {
+            Body body = releasedBodies.peek();
+            Array<Fixture> fixtures = body.getFixtureList();
+            if (fixtures.size > 0) {
+                // The newest fixture is the head of Box2D's fixture list, so it is found right away
+                body.destroyFixture(fixtures.peek());
+            } else {
+                releasedBodies.pop();
+                strongBodies.remove(body, -1);
+                world.destroyBody(body);
+            }
+            if (System.nanoTime() >= deadline) return false;
+        }
+        boolean loading = false;
+        for (IntMap.Entry<Chunk> entry : chunks.entries()) {
+            Chunk chunk = entry.value;
+            if (chunk.resident) continue;
+            if (System.nanoTime() >= deadline) {
+                loading = true;
+                continue;
+            }
+            if (chunk.installing == null) {
+                if (!chunk.data.isDone()) {
+                    loading = true;
+                    continue;
+                }
+                chunk.installing = getData(chunk.data);
+            }
+            if (!install(entry.key, chunk, deadline)) {
+                loading = true;
+            }
+        }
+        return !loading;
+    }
+
+    /**
+     * Called when a body of the level is deleted. A strong wall's body is no longer the chunk's and the wall is not
+     * created again when the chunk is loaded later
+     * @param body Body
+     */
+    void removeBody(Body body) {
+        int wall = strongBodies.remove(body, -1);
+        if (wall < 0) return;
+        releasedBodies.removeValue(body, true);
+        brokenWalls.add(wall);
+        Rectangle rect = strongWalls.get(wall);
+        Chunk chunk = chunks.get(getChunk(rect.x + rect.width / 2, rect.y + rect.height / 2));
+        if (chunk != null) {
+            chunk.bodies.removeValue(body, true);
+        }
+    }
+
+    /**
+     * @return Number of chunks loaded or being loaded
+     */
+    int getChunkCount() {
+        return chunks.size;
+    }
+
+    /**
+     * @return Number of chunks with their cells and bodies in the level
+     */
+    int getResidentChunkCount() {
+        int count = 0;
+        for (IntMap.Entry<Chunk> entry : chunks.entries()) {
+            if (entry.value.resident) count++;
+        }
+        return count;
+    }
+
+    @Override
+    public void dispose() {
+        executor.shutdownNow();
+        box.dispose();
+    }
+
+    private void addDesired(int minX, int minY, int maxX, int maxY) {
+        for (int y = minY; y <= maxY; y++) {
+            for (int x = minX; x <= maxX; x++) {
+                addDesired(x, y);
+            }
+        }
+    }
+
+    /**
+     * Mark a chunk as wanted and request it if it is not loaded. Chunks past the budget are left out
+     */
+    private void addDesired(int chunkX, int chunkY) {
+        if (chunkX < 0 || chunkX >= chunksX || chunkY < 0 || chunkY >= chunksY || desiredChunks.size >= budget) return;
+        final int index = chunkY * chunksX + chunkX;
+        if (!desiredChunks.add(index)) return;
+        Chunk chunk = chunks.get(index);
+        if (chunk == null) {
+            chunk = new Chunk();
+            chunk.data = executor.submit(new Callable<ChunkData>() {
+                @Override
+                public ChunkData call() {
+                    return createChunkData(index);
+                }
+            });
+            chunks.put(index, chunk);
+        }
+        chunk.lastUsed = frame;
+    }
+
+    /**
+     * Drop the least recently used chunks that are not wanted until the chunks are within the budget
+     */
+    private void evict() {
+        while (chunks.size > budget) {
+            int oldest = -1;
+            long oldestUse = Long.MAX_VALUE;
+            for (IntMap.Entry<Chunk> entry : chunks.entries()) {
+                if (entry.value.lastUsed < oldestUse && !desiredChunks.contains(entry.key)) {
+                    oldest = entry.key;
+                    oldestUse = entry.value.lastUsed;
+                }
+            }
+            if (oldest < 0) return;
+            unload(oldest);
+        }
+    }
+
+    private void unload(int index) {
+        Chunk chunk = chunks.remove(index);
+        if (chunk.installing == null && !chunk.resident) {
+            chunk.data.cancel(false);
+            return;
+        }
+        // Destroying the bodies of a chunk can take longer than a frame's budget, they are left to the job
+        releasedBodies.addAll(chunk.bodies);
+        chunk.bodies.clear();
+        for (StreamedTileLayer layer : layers) {
+            layer.unloadChunk(index);
+        }
+    }
+
+    /**
+     * Give the cells of a made chunk to the layers and create the bodies of its walls, one step at a time until the
+     * deadline
+     * @return Whether the chunk is installed
+     */
+    private boolean install(int index, Chunk chunk, long deadline) {
+        while (!installStep(index, chunk)) {
+            if (System.nanoTime() >= deadline) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Take the next install step of a chunk: give its cells to the layers, add a fixture to the body of a merged layer,
+     * or create the body of a strong wall
+     * @return Whether the chunk is installed
+     */
+    private boolean installStep(int index, Chunk chunk) {
+        ChunkData data = chunk.installing;
+        IntArray strongWalls = chunkStrongWalls.get(index);
+        int step = chunk.installStep;
+        if (step == 0) {
+            for (int i = 0; i < layers.size; i++) {
+                layers.get(i).loadChunk(index, data.layerCells[i]);
+            }
+            chunk.installStep++;
+        } else if (step <= MERGED_LAYERS.length) {
+            if (addMergedFixture(chunk, step - 1, data.mergedWalls.get(step - 1))) {
+                chunk.installStep++;
+            }
+        } else {
+            createStrongBody(chunk, strongWalls.get(step - 1 - MERGED_LAYERS.length));
+            chunk.installStep++;
+        }
+        if (chunk.installStep < 1 + MERGED_LAYERS.length + (strongWalls != null ? strongWalls.size : 0)) return false;
+        chunk.resident = true;
+        chunk.data = null;
+        chunk.installing = null;
+        return true;
+    }
+
+    /**
+     * Add the fixture of the next merged wall of a layer to the chunk's body of the layer, creating the body with the
+     * first wall
+     * @param layer Index of the layer in the merged layers
+     * @param walls Merged walls in tiles, null if the chunk has none
+     * @return Whether every wall of the layer has its fixture
+     */
+    private boolean addMergedFixture(Chunk chunk, int layer, Array<Rectangle> walls) {
+        if (walls == null || walls.size == 0) return true;
+        Body body;
+        if (chunk.installWall == 0) {
+            BodyDef bodyDef = new BodyDef();
+            bodyDef.type = BodyDef.BodyType.StaticBody;
+            body = world.createBody(bodyDef);
+            body.setUserData(MERGED_LAYERS[layer]);
+            chunk.bodies.add(body);
+        } else {
+            body = chunk.bodies.peek();
+        }
+        Rectangle rect = walls.get(chunk.installWall++);
+        filter.categoryBits = MERGED_CATEGORIES[layer];
+        box.setAsBox(rect.width / 2, rect.height / 2, rect.getCenter(center), 0);
+        body.createFixture(box, 0).setFilterData(filter);
+        if (chunk.installWall < walls.size) return false;
+        chunk.installWall = 0;
+        return true;
+    }
+
+    /**
+     * Create the body of a strong wall of a chunk unless it has been broken
+     * @param wall Index of the wall in the strong walls
+     */
+    private void createStrongBody(Chunk chunk, int wall) {
+        if (brokenWalls.contains(wall)) return;
+        Rectangle rect = strongWalls.get(wall);
+        BodyDef bodyDef = new BodyDef();
+        bodyDef.type = BodyDef.BodyType.StaticBody;
+        bodyDef.position.set(rect.x + rect.width / 2, rect.y + rect.height / 2);
+        Body body = world.createBody(bodyDef);
+        body.setUserData(Constants.MAP_WALLS_STRONG);
+        filter.categoryBits = Constants.CAT_MAP_WALLS_STRONG;
+        box.setAsBox(rect.width / 2, rect.height / 2);
+        Fixture fixture = body.createFixture(box, 0);
+        fixture.setFilterData(filter);
+        chunk.bodies.add(body);
+        strongBodies.put(body, wall);
+    }
+
+    /**
+     * Make the cells of a chunk's tiles and merge its walls. Runs on the streamer's thread, reads only what is never
+     * changed once the level is created
+     */
+    private ChunkData createChunkData(int index) {
+        ChunkData data = new ChunkData();
+        data.layerCells = new TiledMapTileLayer.Cell[layers.size][];
+        for (int i = 0; i < layers.size; i++) {
+            int[] gids = layers.get(i).getSource().getChunkGids(index);
+            if (gids == null) continue;
+            TiledMapTileLayer.Cell[] cells = new TiledMapTileLayer.Cell[gids.length];
+            for (int j = 0; j < gids.length; j++) {
+                cells[j] = CompiledLevelLoader.createCell(gids[j], tileSets);
+            }
+            data.layerCells[i] = cells;
+        }
+        data.mergedWalls = new Array<>(MERGED_LAYERS.length);
+        Array<Array<Rectangle>> walls = chunkWalls.get(index);
+        for (int i = 0; i < MERGED_LAYERS.length; i++) {
+            data.mergedWalls.add(walls != null && walls.get(i) != null ? WallMerger.merge(walls.get(i)) : null);
+        }
+        return data;
+    }
+
+    /**
+     * Cut a wall along the chunk borders and add its parts to the chunks they are in
+     * @param wall Wall in tiles
+     * @param layer Index of the wall's layer in the merged layers
+     */
+    private void splitWall(Rectangle wall, int layer) {
+        int minX = Math.max(0, MathUtils.floor(wall.x / chunkSize));
+        int minY = Math.max(0, MathUtils.floor(wall.y / chunkSize));
+        int maxX = Math.min(chunksX - 1, MathUtils.ceil((wall.x + wall.width) / chunkSize) - 1);
+        int maxY = Math.min(chunksY - 1, MathUtils.ceil((wall.y + wall.height) / chunkSize) - 1);
+        for (int cy = minY; cy <= maxY; cy++) {
+            for (int cx = minX; cx <= maxX; cx++) {
+                float x0 = Math.max(wall.x, cx * chunkSize);
+                float y0 = Math.max(wall.y, cy * chunkSize);
+                float x1 = Math.min(wall.x + wall.width, (cx + 1) * chunkSize);
+                float y1 = Math.min(wall.y + wall.height, (cy + 1) * chunkSize);
+                if (x1 <= x0 || y1 <= y0) continue;
+                int index = cy * chunksX + cx;
+                Array<Array<Rectangle>> walls = chunkWalls.get(index);
+                if (walls == null) {
+                    walls = new Array<>(MERGED_LAYERS.length);
+                    walls.setSize(MERGED_LAYERS.length);
+                    chunkWalls.put(index, walls);
+                }
+                if (walls.get(layer) == null) {
+                    walls.set(layer, new Array<Rectangle>());
+                }
+                walls.get(layer).add(new Rectangle(x0, y0, x1 - x0, y1 - y0));
+            }
+        }
+    }
+
+    /**
+     * @return Chunk index of a point in tiles, -1 if it is off the map
+     */
+    private int getChunk(float x, float y) {
+        int chunkX = MathUtils.floor(x / chunkSize);
+        int chunkY = MathUtils.floor(y / chunkSize);
+        if (chunkX < 0 || chunkX >= chunksX || chunkY < 0 || chunkY >= chunksY) return -1;
+        return chunkY * chunksX + chunkX;
+    }
+
+    /**
+     * @return Rectangles of an object layer in tiles
+     */
+    private static Array<Rectangle> getRectangles(TiledMap tiledMap, String layer) {
+        Array<Rectangle> rectangles = new Array<>();
+        for (RectangleMapObject object : tiledMap.getLayers().get(layer).getObjects().getByType(RectangleMapObject.class)) {
+            Rectangle rect = object.getRectangle();
+            float scale = Constants.TILE_MAP_UNIT_SCALE;
+            rectangles.add(new Rectangle(rect.x * scale, rect.y * scale, rect.width * scale, rect.height * scale));
+        }
+        return rectangles;
+    }
+
+    private static ChunkData getData(Future<ChunkData> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new GdxRuntimeException("Interrupted while loading a chunk", ex);
+        } catch (ExecutionException ex) {
+            throw new GdxRuntimeException("Loading a chunk failed", ex.getCause());
+        }
+    }
+}
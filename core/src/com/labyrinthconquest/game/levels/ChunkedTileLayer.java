@@ -0,0 +1,89 @@
+package com.labyrinthconquest.game.levels;
+
+import com.badlogic.gdx.maps.MapLayer;
+
+/**
+ * Tile layer of a huge compiled level, kept as the tile ids of square chunks instead of cells. A chunk without tiles
+ * has no ids. The layer is never changed, levels play it through a {@link StreamedTileLayer} holding the cells of the
+ * chunks they have loaded. Renderers draw nothing for it
+ */
+public class ChunkedTileLayer extends MapLayer {
+    private int width;
+    private int height;
+    private int tileWidth;
+    private int tileHeight;
+    private int chunkSize;
+    private int chunksX;
+    private int chunksY;
+    /**
+     * Tile ids (with Tiled's flip flags) of every chunk row by row, chunks on the map's edges are padded with 0
+     */
+    private int[][] chunkGids;
+
+    /**
+     * Split the tile ids of a layer into chunks
+     * @param width Width in tiles
+     * @param height Height in tiles
+     * @param tileWidth Tile width in pixels
+     * @param tileHeight Tile height in pixels
+     * @param chunkSize Side of a chunk in tiles
+     * @param gids Tile id of every cell, row by row from the bottom
+     */
+    ChunkedTileLayer(int width, int height, int tileWidth, int tileHeight, int chunkSize, int[] gids) {
+        this.width = width;
+        this.height = height;
+        this.tileWidth = tileWidth;
+        this.tileHeight = tileHeight;
+        this.chunkSize = chunkSize;
+        chunksX = (width + chunkSize - 1) / chunkSize;
+        chunksY = (height + chunkSize - 1) / chunkSize;
+        chunkGids = new int[chunksX * chunksY][];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int gid = gids[y * width + x];
+                if (gid == 0) continue;
+                int chunk = (y / chunkSize) * chunksX + x / chunkSize;
+                if (chunkGids[chunk] == null) {
+                    chunkGids[chunk] = new int[chunkSize * chunkSize];
+                }
+                chunkGids[chunk][(y % chunkSize) * chunkSize + x % chunkSize] = gid;
+            }
+        }
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getTileWidth() {
+        return tileWidth;
+    }
+
+    public int getTileHeight() {
+        return tileHeight;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public int getChunksX() {
+        return chunksX;
+    }
+
+    public int getChunksY() {
+        return chunksY;
+    }
+
+    /**
+     * @param chunk Chunk index (chunk y * chunks x + chunk x)
+     * @return Tile ids of the chunk row by row, null if the chunk has no tiles. Must not be changed
+     */
+    public int[] getChunkGids(int chunk) {
+        return chunkGids[chunk];
+    }
+}
@@ -0,0 +1,123 @@
+package com.labyrinthconquest.game.levels;
+
+import com.badlogic.gdx.maps.tiled.TiledMap;
+import com.labyrinthconquest.game.pathfinding.CompactGraph;
+import com.labyrinthconquest.game.pathfinding.GridHeuristic;
+import com.labyrinthconquest.game.pathfinding.LandmarkHeuristic;
+import com.labyrinthconquest.game.pathfinding.OctileHeuristic;
+
+/**
+ * Level precompiled from its .tmx file by the level compiler (LevelCompiler of the desktop project, "gradlew
+ * desktop:compileLevels"), loaded by a {@link CompiledLevelLoader}. Holds the map with its tile and object layers, and
+ * the navigation data a level would otherwise build at load: the compact graph shared by the characters, and the
+ * closest nodes of the cells and the landmarks of every character's view of it. Levels must be compiled again when
+ * their .tmx file is changed. Huge levels are loaded chunked, with {@link ChunkedTileLayer}s and without landmarks.
+ * The file is big endian, strings are stored as by DataOutput.writeUTF and arrays without their length:
+ * <pre>
+ * int magic, int version
+ * int width, int height, int tileWidth, int tileHeight       map size in tiles, tile size in pixels
+ * int tilesetCount, for every tileset:
+ *     String name, String image (relative to the level file), int firstGid, int tileWidth, int tileHeight,
+ *     int spacing, int margin
+ * int layerCount, for every layer in drawing order:
+ *     byte kind, String name, boolean visible, float opacity
+ *     LAYER_TILES:   int[width * height] gid of every cell (with Tiled's flip flags), row by row from the bottom
+ *     LAYER_OBJECTS: int objectCount, for every object:
+ *         boolean named, [String name], float x, float y, float width, float height    rectangle in map pixels
+ * int nodeCount, int edgeCount, int[nodeCount] nodeCell, short[nodeCount] nodeCapabilities,
+ *     int[nodeCount + 1] edgeOffsets, int[edgeCount] edgeTargets, float[edgeCount] edgeCosts
+ * int viewCount, for every character's view: short capabilityMask, int[width * height] nearestNode,
+ *     int landmarkCount, int[landmarkCount] landmarks, float[nodeCount * landmarkCount] landmarkCosts
+ * </pre>
+ */
+public class CompiledLevel {
+    public static final String FILE_EXTENSION = ".lvl";
+    /**
+     * "LCLV"
+     */
+    public static final int MAGIC = 0x4C434C56;
+    public static final int VERSION = 1;
+    public static final byte LAYER_TILES = 0;
+    public static final byte LAYER_OBJECTS = 1;
+    /**
+     * Flags Tiled stores in the high bits of a cell's tile id
+     */
+    public static final int FLIPPED_HORIZONTALLY = 0x80000000;
+    public static final int FLIPPED_VERTICALLY = 0x40000000;
+    public static final int FLIPPED_DIAGONALLY = 0x20000000;
+    public static final int FLIPPED_MASK = FLIPPED_HORIZONTALLY | FLIPPED_VERTICALLY | FLIPPED_DIAGONALLY;
+
+    private TiledMap tiledMap;
+    private CompactGraph graph;
+    /**
+     * Capability mask of every character's view, with the closest node of every cell, the landmarks and their costs
+     */
+    private short[] viewCapabilities;
+    private int[][] nearestNodes;
+    private int[][] landmarks;
+    private float[][] landmarkCosts;
+    private boolean chunked;
+
+    CompiledLevel(TiledMap tiledMap, CompactGraph graph, short[] viewCapabilities, int[][] nearestNodes, int[][] landmarks,
+                  float[][] landmarkCosts, boolean chunked) {
+        this.tiledMap = tiledMap;
+        this.graph = graph;
+        this.viewCapabilities = viewCapabilities;
+        this.nearestNodes = nearestNodes;
+        this.landmarks = landmarks;
+        this.landmarkCosts = landmarkCosts;
+        this.chunked = chunked;
+    }
+
+    /**
+     * @return Map with the tile and object layers. Its tile set textures belong to the asset manager
+     */
+    public TiledMap getTiledMap() {
+        return tiledMap;
+    }
+
+    /**
+     * @return Whether the tile layers are chunked, to be streamed in by the level around the camera and the players
+     */
+    public boolean isChunked() {
+        return chunked;
+    }
+
+    /**
+     * @return Compact graph of all pathfind layers, as the level would build it from the map
+     */
+    public CompactGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * Create a character's view of the graph, with the closest nodes of its cells baked if the level has the view
+     * @param capabilityMask Capabilities of the character
+     * @return View
+     */
+    public CompactGraph createView(short capabilityMask) {
+        int view = findView(capabilityMask);
+        return view >= 0 ? graph.createView(capabilityMask, nearestNodes[view]) : graph.createView(capabilityMask);
+    }
+
+    /**
+     * Create the landmark heuristic of a view of the graph from the baked landmarks. Chunked levels have no landmarks
+     * loaded, their views are searched with the octile distance
+     * @param view View of the graph for a character
+     * @return Heuristic, null if the level has no landmarks for the view's capabilities
+     */
+    public GridHeuristic createHeuristic(CompactGraph view) {
+        if (chunked) {
+            return new OctileHeuristic(view);
+        }
+        int index = findView(view.getCapabilityMask());
+        return index >= 0 ? new LandmarkHeuristic(view, landmarks[index], landmarkCosts[index]) : null;
+    }
+
+    private int findView(short capabilityMask) {
+        for (int i = 0; i < viewCapabilities.length; i++) {
+            if (viewCapabilities[i] == capabilityMask) return i;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,299 @@
+package com.labyrinthconquest.game.levels;
+
+import com.badlogic.gdx.assets.AssetDescriptor;
+import com.badlogic.gdx.assets.AssetLoaderParameters;
+import com.badlogic.gdx.assets.AssetManager;
+import com.badlogic.gdx.assets.loaders.AsynchronousAssetLoader;
+import com.badlogic.gdx.assets.loaders.FileHandleResolver;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.maps.MapLayer;
+import com.badlogic.gdx.maps.MapObjects;
+import com.badlogic.gdx.maps.objects.RectangleMapObject;
+import com.badlogic.gdx.maps.tiled.TiledMap;
+import com.badlogic.gdx.maps.tiled.TiledMapTile;
+import com.badlogic.gdx.maps.tiled.TiledMapTileLayer;
+import com.badlogic.gdx.maps.tiled.TiledMapTileSet;
+import com.badlogic.gdx.maps.tiled.TiledMapTileSets;
+import com.badlogic.gdx.maps.tiled.tiles.StaticTiledMapTile;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.labyrinthconquest.game.data.Constants;
+import com.labyrinthconquest.game.pathfinding.CompactGraph;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Asset loader of compiled levels (.lvl). The file is read in one go and its arrays are copied out in bulk, the tile set
+ * images are loaded as dependencies, so they are shared by all the levels using them. Everything but the textures is
+ * created off the render thread, tiles are made the same way TmxMapLoader makes them.
+ * Huge levels are loaded chunked: their tile layers are kept as the tile ids of chunks, the cells are made by the
+ * levels for the chunks they stream in, and the landmarks are left out
+ */
+public class CompiledLevelLoader extends AsynchronousAssetLoader<CompiledLevel, CompiledLevelLoader.Parameters> {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    public static class Parameters extends AssetLoaderParameters<CompiledLevel> {
+        /**
+         * Levels with more tiles than this are loaded chunked
+         */
+        public int chunkedMinTiles = Constants.CHUNKED_LEVEL_MIN_TILES;
+        public int chunkSize = Constants.CHUNK_SIZE;
+    }
+
+    /**
+     * File being loaded, read up to the layers by getDependencies
+     */
+    private ByteBuffer buffer;
+    private int width;
+    private int height;
+    private int tileWidth;
+    private int tileHeight;
+    private int chunkSize;
+    private Array<TilesetHeader> tilesets;
+    private CompiledLevel level;
+
+    /**
+     * Tile set of the file, its image is a dependency
+     */
+    private static class TilesetHeader {
+        String name;
+        FileHandle image;
+        int firstGid;
+        int tileWidth;
+        int tileHeight;
+        int spacing;
+        int margin;
+    }
+
+    public CompiledLevelLoader(FileHandleResolver resolver) {
+        super(resolver);
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public Array<AssetDescriptor> getDependencies(String fileName, FileHandle file, Parameters parameter) {
+        buffer = ByteBuffer.wrap(file.readBytes());
+        if (buffer.getInt() != CompiledLevel.MAGIC) {
+            throw new GdxRuntimeException("Not a compiled level: " + fileName);
+        }
+        int version = buffer.getInt();
+        if (version != CompiledLevel.VERSION) {
+            throw new GdxRuntimeException("Compiled level " + fileName + " has version " + version + ", expected "
+                    + CompiledLevel.VERSION + ". Compile the levels again");
+        }
+        width = buffer.getInt();
+        height = buffer.getInt();
+        tileWidth = buffer.getInt();
+        tileHeight = buffer.getInt();
+        int chunkedMinTiles = parameter != null ? parameter.chunkedMinTiles : Constants.CHUNKED_LEVEL_MIN_TILES;
+        chunkSize = width * height > chunkedMinTiles ? (parameter != null ? parameter.chunkSize : Constants.CHUNK_SIZE) : 0;
+        int tilesetCount = buffer.getInt();
+        tilesets = new Array<>(tilesetCount);
+        Array<AssetDescriptor> dependencies = new Array<>();
+        for (int i = 0; i < tilesetCount; i++) {
+            TilesetHeader tileset = new TilesetHeader();
+            tileset.name = readString(buffer);
+            tileset.image = getRelativeFileHandle(file, readString(buffer));
+            tileset.firstGid = buffer.getInt();
+            tileset.tileWidth = buffer.getInt();
+            tileset.tileHeight = buffer.getInt();
+            tileset.spacing = buffer.getInt();
+            tileset.margin = buffer.getInt();
+            tilesets.add(tileset);
+            dependencies.add(new AssetDescriptor<>(tileset.image, Texture.class));
+        }
+        return dependencies;
+    }
+
+    @Override
+    public void loadAsync(AssetManager manager, String fileName, FileHandle file, Parameters parameter) {
+        TiledMap tiledMap = new TiledMap();
+        for (TilesetHeader tileset : tilesets) {
+            tiledMap.getTileSets().addTileSet(createTileSet(tileset, manager.get(tileset.image.path(), Texture.class)));
+        }
+        int layerCount = buffer.getInt();
+        for (int i = 0; i < layerCount; i++) {
+            byte kind = buffer.get();
+            String name = readString(buffer);
+            boolean visible = buffer.get() != 0;
+            float opacity = buffer.getFloat();
+            MapLayer layer;
+            if (kind == CompiledLevel.LAYER_TILES && chunkSize > 0) {
+                layer = new ChunkedTileLayer(width, height, tileWidth, tileHeight, chunkSize, readInts(buffer, width * height));
+            } else if (kind == CompiledLevel.LAYER_TILES) {
+                layer = new TiledMapTileLayer(width, height, tileWidth, tileHeight);
+                fillTileLayer((TiledMapTileLayer)layer, tiledMap.getTileSets());
+            } else {
+                layer = new MapLayer();
+                readObjects(layer.getObjects());
+            }
+            layer.setName(name);
+            layer.setVisible(visible);
+            layer.setOpacity(opacity);
+            tiledMap.getLayers().add(layer);
+        }
+        CompactGraph graph = readGraph();
+        int viewCount = buffer.getInt();
+        short[] viewCapabilities = new short[viewCount];
+        int[][] nearestNodes = new int[viewCount][];
+        int[][] landmarks = new int[viewCount][];
+        float[][] landmarkCosts = new float[viewCount][];
+        for (int i = 0; i < viewCount; i++) {
+            viewCapabilities[i] = buffer.getShort();
+            nearestNodes[i] = readInts(buffer, width * height);
+            landmarks[i] = readInts(buffer, buffer.getInt());
+            int costCount = graph.getNodeCount() * landmarks[i].length;
+            if (chunkSize > 0) {
+                // A float per node and landmark is too much for huge levels, they are searched without landmarks
+                buffer.position(buffer.position() + costCount * 4);
+            } else {
+                landmarkCosts[i] = readFloats(buffer, costCount);
+            }
+        }
+        level = new CompiledLevel(tiledMap, graph, viewCapabilities, nearestNodes, landmarks, landmarkCosts, chunkSize > 0);
+    }
+
+    @Override
+    public CompiledLevel loadSync(AssetManager manager, String fileName, FileHandle file, Parameters parameter) {
+        CompiledLevel loaded = level;
+        level = null;
+        buffer = null;
+        tilesets = null;
+        return loaded;
+    }
+
+    /**
+     * Cut a tile set's image into tiles, numbered from the tile set's first id row by row from the top
+     */
+    private static TiledMapTileSet createTileSet(TilesetHeader header, Texture texture) {
+        TiledMapTileSet tileSet = new TiledMapTileSet();
+        tileSet.setName(header.name);
+        tileSet.getProperties().put("firstgid", header.firstGid);
+        int id = header.firstGid;
+        for (int y = header.margin; y <= texture.getHeight() - header.tileHeight; y += header.tileHeight + header.spacing) {
+            for (int x = header.margin; x <= texture.getWidth() - header.tileWidth; x += header.tileWidth + header.spacing) {
+                StaticTiledMapTile tile = new StaticTiledMapTile(new TextureRegion(texture, x, y, header.tileWidth, header.tileHeight));
+                tile.setId(id);
+                tileSet.putTile(id++, tile);
+            }
+        }
+        return tileSet;
+    }
+
+    /**
+     * Create a cell for every tile id of the layer that has a tile. Every cell is a new one, as tiles of a level are
+     * removed by clearing their cells
+     */
+    private void fillTileLayer(TiledMapTileLayer layer, TiledMapTileSets tileSets) {
+        int[] gids = readInts(buffer, width * height);
+        for (int i = 0; i < gids.length; i++) {
+            TiledMapTileLayer.Cell cell = createCell(gids[i], tileSets);
+            if (cell != null) {
+                layer.setCell(i % width, i / width, cell);
+            }
+        }
+    }
+
+    /**
+     * Create the cell of a tile id, flipped and rotated as TmxMapLoader does for the same flags
+     * @param gid Tile id with Tiled's flip flags
+     * @param tileSets Tile sets of the map
+     * @return New cell, null if the id has no tile
+     */
+    static TiledMapTileLayer.Cell createCell(int gid, TiledMapTileSets tileSets) {
+        if (gid == 0) return null;
+        TiledMapTile tile = tileSets.getTile(gid & ~CompiledLevel.FLIPPED_MASK);
+        if (tile == null) return null;
+        boolean flipHorizontally = (gid & CompiledLevel.FLIPPED_HORIZONTALLY) != 0;
+        boolean flipVertically = (gid & CompiledLevel.FLIPPED_VERTICALLY) != 0;
+        boolean flipDiagonally = (gid & CompiledLevel.FLIPPED_DIAGONALLY) != 0;
+        TiledMapTileLayer.Cell cell = new TiledMapTileLayer.Cell();
+        cell.setTile(tile);
+        if (flipDiagonally) {
+            if (flipHorizontally && flipVertically) {
+                cell.setFlipHorizontally(true);
+                cell.setRotation(TiledMapTileLayer.Cell.ROTATE_270);
+            } else if (flipHorizontally) {
+                cell.setRotation(TiledMapTileLayer.Cell.ROTATE_270);
+            } else if (flipVertically) {
+                cell.setRotation(TiledMapTileLayer.Cell.ROTATE_90);
+            } else {
+                cell.setFlipVertically(true);
+                cell.setRotation(TiledMapTileLayer.Cell.ROTATE_270);
+            }
+        } else {
+            cell.setFlipHorizontally(flipHorizontally);
+            cell.setFlipVertically(flipVertically);
+        }
+        return cell;
+    }
+
+    private void readObjects(MapObjects objects) {
+        int objectCount = buffer.getInt();
+        for (int i = 0; i < objectCount; i++) {
+            String name = buffer.get() != 0 ? readString(buffer) : null;
+            RectangleMapObject object = new RectangleMapObject(buffer.getFloat(), buffer.getFloat(), buffer.getFloat(), buffer.getFloat());
+            object.setName(name);
+            objects.add(object);
+        }
+    }
+
+    private CompactGraph readGraph() {
+        int nodeCount = buffer.getInt();
+        int edgeCount = buffer.getInt();
+        int[] nodeCell = readInts(buffer, nodeCount);
+        short[] nodeCapabilities = readShorts(buffer, nodeCount);
+        int[] edgeOffsets = readInts(buffer, nodeCount + 1);
+        int[] edgeTargets = readInts(buffer, edgeCount);
+        float[] edgeCosts = readFloats(buffer, edgeCount);
+        return new CompactGraph(width, height, nodeCell, nodeCapabilities, edgeOffsets, edgeTargets, edgeCosts);
+    }
+
+    private static int[] readInts(ByteBuffer buffer, int count) {
+        int[] values = new int[count];
+        buffer.asIntBuffer().get(values);
+        buffer.position(buffer.position() + count * 4);
+        return values;
+    }
+
+    private static short[] readShorts(ByteBuffer buffer, int count) {
+        short[] values = new short[count];
+        buffer.asShortBuffer().get(values);
+        buffer.position(buffer.position() + count * 2);
+        return values;
+    }
+
+    private static float[] readFloats(ByteBuffer buffer, int count) {
+        float[] values = new float[count];
+        buffer.asFloatBuffer().get(values);
+        buffer.position(buffer.position() + count * 4);
+        return values;
+    }
+
+    /**
+     * Read a string written by DataOutput.writeUTF, the levels only have strings that are the same in UTF-8
+     */
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort() & 0xffff];
+        buffer.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    /**
+     * Resolve a path relative to the directory of a file, e.g "../tileset/tileset.png"
+     */
+    private static FileHandle getRelativeFileHandle(FileHandle file, String path) {
+        FileHandle result = file.parent();
+        for (String token : path.split("/")) {
+            if (token.equals("..")) {
+                result = result.parent();
+            } else if (!token.isEmpty() && !token.equals(".")) {
+                result = result.child(token);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,92 @@
+package com.labyrinthconquest.game.levels;
+
+import com.badlogic.gdx.maps.MapLayer;
+import com.badlogic.gdx.maps.tiled.TiledMap;
+import com.badlogic.gdx.maps.tiled.TiledMapTileLayer;
+import com.badlogic.gdx.maps.tiled.TiledMapTileSet;
+import com.badlogic.gdx.utils.IntMap;
+
+/**
+ * Tile layer of a level sharing the cells of a layer of a cached map. Cells set on the layer (tiles removed while the
+ * level is played) are kept by the layer, the shared layer and its cells are never changed. So a map loaded once can
+ * be played again, or by several levels at once, without being parsed again
+ */
+class CopyOnWriteTileLayer extends TiledMapTileLayer {
+    /**
+     * Marks a cell that was not set on the layer
+     */
+    private static final Cell NOT_WRITTEN = new Cell();
+
+    private TiledMapTileLayer source;
+    /**
+     * Cells set on the layer by cell index (y * width + x), null where the tile was removed
+     */
+    private IntMap<Cell> writtenCells;
+
+    /**
+     * Create a layer reading the cells of a shared layer until they are set
+     * @param source Shared layer
+     */
+    CopyOnWriteTileLayer(TiledMapTileLayer source) {
+        // The cells of the super class are not used, the layer is sized by the shared layer
+        super(0, 0, source.getTileWidth(), source.getTileHeight());
+        this.source = source;
+        writtenCells = new IntMap<>();
+        setName(source.getName());
+        setVisible(source.isVisible());
+        setOpacity(source.getOpacity());
+        setOffsetX(source.getOffsetX());
+        setOffsetY(source.getOffsetY());
+        getProperties().putAll(source.getProperties());
+    }
+
+    /**
+     * Create a map sharing the tile sets and layers of a cached map, its tile layers are copied on write and its
+     * chunked layers are streamed. The map owns no resources, disposing it leaves the cached map as it is
+     * @param map Cached map
+     * @return Map of a level
+     */
+    static TiledMap createMapView(TiledMap map) {
+        TiledMap view = new TiledMap();
+        view.getProperties().putAll(map.getProperties());
+        for (TiledMapTileSet tileSet : map.getTileSets()) {
+            view.getTileSets().addTileSet(tileSet);
+        }
+        for (MapLayer layer : map.getLayers()) {
+            if (layer instanceof TiledMapTileLayer) {
+                view.getLayers().add(new CopyOnWriteTileLayer((TiledMapTileLayer)layer));
+            } else if (layer instanceof ChunkedTileLayer) {
+                view.getLayers().add(new StreamedTileLayer((ChunkedTileLayer)layer));
+            } else {
+                // Object layers are only read by levels, they are shared as they are
+                view.getLayers().add(layer);
+            }
+        }
+        return view;
+    }
+
+    @Override
+    public int getWidth() {
+        return source.getWidth();
+    }
+
+    @Override
+    public int getHeight() {
+        return source.getHeight();
+    }
+
+    @Override
+    public Cell getCell(int x, int y) {
+        if (writtenCells.size > 0 && x >= 0 && x < getWidth() && y >= 0 && y < getHeight()) {
+            Cell cell = writtenCells.get(y * getWidth() + x, NOT_WRITTEN);
+            if (cell != NOT_WRITTEN) return cell;
+        }
+        return source.getCell(x, y);
+    }
+
+    @Override
+    public void setCell(int x, int y, Cell cell) {
+        if (x < 0 || x >= getWidth() || y < 0 || y >= getHeight()) return;
+        writtenCells.put(y * getWidth() + x, cell);
+    }
+}
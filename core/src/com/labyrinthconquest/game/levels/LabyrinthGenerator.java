@@ -0,0 +1,584 @@
+package com.labyrinthconquest.game.levels;
+
+import com.badlogic.gdx.maps.MapLayer;
+import com.badlogic.gdx.maps.MapObjects;
+import com.badlogic.gdx.maps.objects.RectangleMapObject;
+import com.badlogic.gdx.maps.tiled.TiledMap;
+import com.badlogic.gdx.maps.tiled.TiledMapTileLayer;
+import com.badlogic.gdx.maps.tiled.TiledMapTileSet;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.IntArray;
+import com.labyrinthconquest.game.data.Constants;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Generates labyrinth levels in memory, with every layer a level loads: wall, door, button, spawn and goal objects,
+ * the pathfind layers and the texture layers. The same seed and size always give the same labyrinth.
+ * Corridors are carved as a random spanning tree of junctions, with extra openings so there is more than one route.
+ * Only the extra openings get doors (opened by a button in a dead end) and strong, climb and water walls, so every
+ * character can reach the goal with all of them closed. The junctions are split into square regions that are carved
+ * separately and then joined, on several threads for large labyrinths. Not thread safe, generate one labyrinth at a time
+ */
+public class LabyrinthGenerator {
+    private static final byte WALL = 0;
+    private static final byte FLOOR = 1;
+    private static final byte DOOR = 2;
+    private static final byte BUTTON = 3;
+    private static final byte WALL_STRONG = 4;
+    private static final byte WALL_CLIMB = 5;
+    private static final byte WALL_WATER = 6;
+    /**
+     * Directions of the opening from a junction to its neighbour, an opening is identified by junction * 2 + direction
+     */
+    private static final int RIGHT = 0;
+    private static final int UP = 1;
+    private static final int CORRIDOR = Constants.GENERATOR_CORRIDOR_WIDTH;
+    /**
+     * Tiles from one junction to the next, the corridor and a wall
+     */
+    private static final int PITCH = CORRIDOR + 1;
+
+    private long seed;
+    private TiledMapTileSet tileSet;
+    private int threads;
+
+    private int width;
+    private int height;
+    private int junctionsX;
+    private int junctionsY;
+    private int regionsX;
+    private int regionsY;
+    /**
+     * Type of every tile, by x + y * width
+     */
+    private byte[] tiles;
+    /**
+     * Openings not needed to connect the junctions, each region's and the ones joining regions
+     */
+    private IntArray[] loops;
+    /**
+     * Opening of every door and the junction of its button, one after the other
+     */
+    private IntArray doorButtons;
+    private int goalJunction;
+    private ExecutorService executor;
+
+    /**
+     * @param seed Random seed
+     */
+    public LabyrinthGenerator(long seed) {
+        this.seed = seed;
+        threads = Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Set the tile set the texture layers are drawn with, e.g the one of a loaded level. Without one the texture
+     * layers are left empty. The tile set stays owned by the caller
+     */
+    public void setTileSet(TiledMapTileSet tileSet) {
+        this.tileSet = tileSet;
+    }
+
+    /**
+     * Set the number of threads large labyrinths are generated on, the labyrinth does not depend on it
+     */
+    public void setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Generate a labyrinth. The spawns are in the bottom left corner and the goal in the top right corner
+     * @param width Width in tiles, at least 3 junctions (10 tiles)
+     * @param height Height in tiles, at least 3 junctions (10 tiles)
+     * @return Map that can be loaded by a level
+     */
+    public TiledMap generate(int width, int height) {
+        if ((width - 1) / PITCH < 3 || (height - 1) / PITCH < 3) {
+            throw new IllegalArgumentException("Labyrinth too small: " + width + "x" + height);
+        }
+        this.width = width;
+        this.height = height;
+        junctionsX = (width - 1) / PITCH;
+        junctionsY = (height - 1) / PITCH;
+        regionsX = (junctionsX + Constants.GENERATOR_REGION_SIZE - 1) / Constants.GENERATOR_REGION_SIZE;
+        regionsY = (junctionsY + Constants.GENERATOR_REGION_SIZE - 1) / Constants.GENERATOR_REGION_SIZE;
+        tiles = new byte[width * height];
+        loops = new IntArray[regionsX * regionsY + 1];
+        doorButtons = new IntArray();
+        if (threads > 1 && regionsX * regionsY > 1 && width * height >= Constants.GENERATOR_PARALLEL_MIN_TILES) {
+            executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+                private AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "labyrinth-generator-" + count.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        try {
+            carveRegions();
+            Random random = new Random(seed);
+            joinRegions(random);
+            carveGoal();
+            placeFeatures(random);
+            TiledMap map = new TiledMap();
+            if (tileSet != null) {
+                map.getTileSets().addTileSet(tileSet);
+            }
+            createTileLayers(map);
+            createObjectLayers(map);
+            return map;
+        } finally {
+            if (executor != null) {
+                executor.shutdown();
+                executor = null;
+            }
+            tiles = null;
+            loops = null;
+            doorButtons = null;
+        }
+    }
+
+    /**
+     * Carve the corridors of every region, each with its own random numbers so the regions can be carved in any order
+     */
+    private void carveRegions() {
+        List<Callable<Void>> tasks = new ArrayList<>(regionsX * regionsY);
+        for (int i = 0; i < regionsX * regionsY; i++) {
+            final int region = i;
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    carveRegion(region, new Random(seed ^ (0x9E3779B97F4A7C15L * (region + 1))));
+                    return null;
+                }
+            });
+        }
+        run(tasks);
+    }
+
+    /**
+     * Carve a random spanning tree of a region's junctions with an iterative depth first search, then open some of the
+     * walls left between its junctions. Only tiles of the region are written
+     */
+    private void carveRegion(int region, Random random) {
+        int x0 = (region % regionsX) * Constants.GENERATOR_REGION_SIZE;
+        int y0 = (region / regionsX) * Constants.GENERATOR_REGION_SIZE;
+        int x1 = Math.min(x0 + Constants.GENERATOR_REGION_SIZE, junctionsX);
+        int y1 = Math.min(y0 + Constants.GENERATOR_REGION_SIZE, junctionsY);
+        for (int x = x0; x < x1; x++) {
+            for (int y = y0; y < y1; y++) {
+                fill(x * PITCH + 1, y * PITCH + 1, CORRIDOR, CORRIDOR, FLOOR);
+            }
+        }
+        int regionWidth = x1 - x0;
+        boolean[] visited = new boolean[regionWidth * (y1 - y0)];
+        int[] neighbours = new int[4];
+        IntArray stack = new IntArray();
+        stack.add(x0 + y0 * junctionsX);
+        visited[0] = true;
+        while (stack.size > 0) {
+            int junction = stack.peek();
+            int x = junction % junctionsX;
+            int y = junction / junctionsX;
+            int count = 0;
+            if (x > x0 && !visited[x - 1 - x0 + (y - y0) * regionWidth]) neighbours[count++] = junction - 1;
+            if (x < x1 - 1 && !visited[x + 1 - x0 + (y - y0) * regionWidth]) neighbours[count++] = junction + 1;
+            if (y > y0 && !visited[x - x0 + (y - 1 - y0) * regionWidth]) neighbours[count++] = junction - junctionsX;
+            if (y < y1 - 1 && !visited[x - x0 + (y + 1 - y0) * regionWidth]) neighbours[count++] = junction + junctionsX;
+            if (count == 0) {
+                stack.pop();
+                continue;
+            }
+            int next = neighbours[random.nextInt(count)];
+            visited[next % junctionsX - x0 + (next / junctionsX - y0) * regionWidth] = true;
+            setOpening(getOpening(junction, next), FLOOR);
+            stack.add(next);
+        }
+        IntArray regionLoops = new IntArray();
+        for (int x = x0; x < x1; x++) {
+            for (int y = y0; y < y1; y++) {
+                int junction = x + y * junctionsX;
+                if (x < x1 - 1) addLoop(junction * 2 + RIGHT, random, regionLoops);
+                if (y < y1 - 1) addLoop(junction * 2 + UP, random, regionLoops);
+            }
+        }
+        loops[region] = regionLoops;
+    }
+
+    /**
+     * Open a wall between two junctions by chance, if it is not open yet
+     */
+    private void addLoop(int opening, Random random, IntArray regionLoops) {
+        if (!isOpen(opening) && random.nextFloat() < Constants.GENERATOR_LOOP_CHANCE) {
+            setOpening(opening, FLOOR);
+            regionLoops.add(opening);
+        }
+    }
+
+    /**
+     * Join the regions with a random spanning tree of openings across their borders. Regions not joined by the tree are
+     * joined by chance as well
+     */
+    private void joinRegions(Random random) {
+        IntArray regionLoops = new IntArray();
+        loops[regionsX * regionsY] = regionLoops;
+        boolean[] joined = new boolean[regionsX * regionsY * 2];
+        boolean[] visited = new boolean[regionsX * regionsY];
+        int[] neighbours = new int[4];
+        IntArray stack = new IntArray();
+        stack.add(0);
+        visited[0] = true;
+        while (stack.size > 0) {
+            int region = stack.peek();
+            int x = region % regionsX;
+            int y = region / regionsX;
+            int count = 0;
+            if (x > 0 && !visited[region - 1]) neighbours[count++] = region - 1;
+            if (x < regionsX - 1 && !visited[region + 1]) neighbours[count++] = region + 1;
+            if (y > 0 && !visited[region - regionsX]) neighbours[count++] = region - regionsX;
+            if (y < regionsY - 1 && !visited[region + regionsX]) neighbours[count++] = region + regionsX;
+            if (count == 0) {
+                stack.pop();
+                continue;
+            }
+            int next = neighbours[random.nextInt(count)];
+            visited[next] = true;
+            int border = Math.min(region, next) * 2 + (Math.abs(next - region) == 1 ? RIGHT : UP);
+            joined[border] = true;
+            setOpening(getBorderOpening(border, random), FLOOR);
+            stack.add(next);
+        }
+        for (int region = 0; region < regionsX * regionsY; region++) {
+            if (region % regionsX < regionsX - 1) joinByChance(region * 2 + RIGHT, joined, random, regionLoops);
+            if (region / regionsX < regionsY - 1) joinByChance(region * 2 + UP, joined, random, regionLoops);
+        }
+    }
+
+    private void joinByChance(int border, boolean[] joined, Random random, IntArray regionLoops) {
+        if (!joined[border] && random.nextFloat() < Constants.GENERATOR_FEATURE_CHANCE) {
+            int opening = getBorderOpening(border, random);
+            setOpening(opening, FLOOR);
+            regionLoops.add(opening);
+        }
+    }
+
+    /**
+     * Pick a random opening across a region's right or top border
+     * @param border Region * 2 + direction of the border
+     * @param random Random numbers
+     * @return Opening
+     */
+    private int getBorderOpening(int border, Random random) {
+        int region = border / 2;
+        int x0 = (region % regionsX) * Constants.GENERATOR_REGION_SIZE;
+        int y0 = (region / regionsX) * Constants.GENERATOR_REGION_SIZE;
+        if (border % 2 == RIGHT) {
+            int x = x0 + Constants.GENERATOR_REGION_SIZE - 1;
+            int y = y0 + random.nextInt(Math.min(y0 + Constants.GENERATOR_REGION_SIZE, junctionsY) - y0);
+            return (x + y * junctionsX) * 2 + RIGHT;
+        }
+        int x = x0 + random.nextInt(Math.min(x0 + Constants.GENERATOR_REGION_SIZE, junctionsX) - x0);
+        int y = y0 + Constants.GENERATOR_REGION_SIZE - 1;
+        return (x + y * junctionsX) * 2 + UP;
+    }
+
+    /**
+     * Open the goal room in the top right corner, made of the last two by two junctions
+     */
+    private void carveGoal() {
+        goalJunction = junctionsX - 2 + (junctionsY - 2) * junctionsX;
+        fill((junctionsX - 2) * PITCH + 1, (junctionsY - 2) * PITCH + 1, PITCH + CORRIDOR, PITCH + CORRIDOR, FLOOR);
+    }
+
+    /**
+     * Give some of the openings not needed to connect the junctions a door, a strong, climb or water wall. Each door
+     * gets a button of its own in a dead end, where it does not block any corridor. Openings of the spawn and goal
+     * junctions are kept open
+     */
+    private void placeFeatures(Random random) {
+        IntArray deadEnds = new IntArray();
+        for (int junction = 0; junction < junctionsX * junctionsY; junction++) {
+            if (!isReserved(junction) && getOpenings(junction) == 1) {
+                deadEnds.add(junction);
+            }
+        }
+        for (int i = deadEnds.size - 1; i > 0; i--) {
+            deadEnds.swap(i, random.nextInt(i + 1));
+        }
+        int buttons = 0;
+        for (IntArray regionLoops : loops) {
+            for (int i = 0; i < regionLoops.size; i++) {
+                int opening = regionLoops.get(i);
+                int junction = opening / 2;
+                int neighbour = opening % 2 == RIGHT ? junction + 1 : junction + junctionsX;
+                if (isReserved(junction) || isReserved(neighbour) || random.nextFloat() >= Constants.GENERATOR_FEATURE_CHANCE) {
+                    continue;
+                }
+                switch (random.nextInt(4)) {
+                    case 0:
+                        if (buttons < deadEnds.size) {
+                            setOpening(opening, DOOR);
+                            int button = deadEnds.get(buttons++);
+                            tiles[getTileX(button) + getTileY(button) * width] = BUTTON;
+                            doorButtons.add(opening, button);
+                        }
+                        break;
+                    case 1:
+                        setOpening(opening, WALL_STRONG);
+                        break;
+                    case 2:
+                        setOpening(opening, WALL_CLIMB);
+                        break;
+                    default:
+                        setOpening(opening, WALL_WATER);
+                        break;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return Whether a junction is one of the spawns or part of the goal room
+     */
+    private boolean isReserved(int junction) {
+        if (junction == 0 || junction == 1 || junction == junctionsX) return true;
+        return junction == goalJunction || junction == goalJunction + 1 || junction == goalJunction + junctionsX
+                || junction == goalJunction + junctionsX + 1;
+    }
+
+    /**
+     * @return Number of open walls around a junction
+     */
+    private int getOpenings(int junction) {
+        int x = junction % junctionsX;
+        int y = junction / junctionsX;
+        int count = 0;
+        if (x > 0 && isOpen((junction - 1) * 2 + RIGHT)) count++;
+        if (x < junctionsX - 1 && isOpen(junction * 2 + RIGHT)) count++;
+        if (y > 0 && isOpen((junction - junctionsX) * 2 + UP)) count++;
+        if (y < junctionsY - 1 && isOpen(junction * 2 + UP)) count++;
+        return count;
+    }
+
+    /**
+     * @return Opening between two neighbouring junctions
+     */
+    private int getOpening(int junction, int neighbour) {
+        int first = Math.min(junction, neighbour);
+        return first * 2 + (Math.abs(neighbour - junction) == 1 ? RIGHT : UP);
+    }
+
+    private boolean isOpen(int opening) {
+        int junction = opening / 2;
+        if (opening % 2 == RIGHT) {
+            return tiles[getTileX(junction) + CORRIDOR + getTileY(junction) * width] != WALL;
+        }
+        return tiles[getTileX(junction) + (getTileY(junction) + CORRIDOR) * width] != WALL;
+    }
+
+    private void setOpening(int opening, byte type) {
+        int junction = opening / 2;
+        if (opening % 2 == RIGHT) {
+            fill(getTileX(junction) + CORRIDOR, getTileY(junction), 1, CORRIDOR, type);
+        } else {
+            fill(getTileX(junction), getTileY(junction) + CORRIDOR, CORRIDOR, 1, type);
+        }
+    }
+
+    /**
+     * @return Tile x of a junction's bottom left tile
+     */
+    private int getTileX(int junction) {
+        return (junction % junctionsX) * PITCH + 1;
+    }
+
+    /**
+     * @return Tile y of a junction's bottom left tile
+     */
+    private int getTileY(int junction) {
+        return (junction / junctionsX) * PITCH + 1;
+    }
+
+    private void fill(int x, int y, int fillWidth, int fillHeight, byte type) {
+        for (int tileY = y; tileY < y + fillHeight; tileY++) {
+            for (int tileX = x; tileX < x + fillWidth; tileX++) {
+                tiles[tileX + tileY * width] = type;
+            }
+        }
+    }
+
+    /**
+     * Create the texture and pathfind layers. Rows of regions are filled in parallel. Cells that are never changed are
+     * shared, the cells of doors, buttons and strong walls are removed one by one and have cells of their own
+     */
+    private void createTileLayers(TiledMap map) {
+        final TiledMapTileLayer background = createTileLayer(map, Constants.MAP_BACKGROUND_TEXTURES, true);
+        final TiledMapTileLayer walls = createTileLayer(map, Constants.MAP_WALLS_TEXTURES, true);
+        final TiledMapTileLayer water = createTileLayer(map, Constants.MAP_PATHFINDER_NODES_WATER, false);
+        final TiledMapTileLayer climb = createTileLayer(map, Constants.MAP_PATHFINDER_NODES_CLIMB, false);
+        final TiledMapTileLayer strong = createTileLayer(map, Constants.MAP_PATHFINDER_NODES_STRONG, false);
+        final TiledMapTileLayer.Cell node = new TiledMapTileLayer.Cell();
+        final TiledMapTileLayer.Cell floorTexture = createCell(Constants.TILE_FLOOR);
+        final TiledMapTileLayer.Cell waterTexture = createCell(Constants.TILE_WATER);
+        final TiledMapTileLayer.Cell wallTexture = createCell(Constants.TILE_WALL_STATIC);
+        final TiledMapTileLayer.Cell climbTexture = createCell(Constants.TILE_WALL_CLIMB);
+        int rows = Constants.GENERATOR_REGION_SIZE * PITCH;
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int y = 0; y < height; y += rows) {
+            final int y0 = y;
+            final int y1 = Math.min(y + rows, height);
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    for (int y = y0; y < y1; y++) {
+                        for (int x = 0; x < width; x++) {
+                            byte type = tiles[x + y * width];
+                            if (type != WALL && type != WALL_CLIMB) water.setCell(x, y, node);
+                            if (type != WALL && type != WALL_WATER) climb.setCell(x, y, node);
+                            if (type != WALL && type != WALL_CLIMB && type != WALL_WATER) strong.setCell(x, y, node);
+                            if (tileSet == null) continue;
+                            background.setCell(x, y, type == WALL_WATER ? waterTexture : floorTexture);
+                            if (type == WALL) walls.setCell(x, y, wallTexture);
+                            else if (type == WALL_CLIMB) walls.setCell(x, y, climbTexture);
+                            else if (type == WALL_STRONG) walls.setCell(x, y, createCell(Constants.TILE_WALL_STRONG));
+                            else if (type == DOOR) walls.setCell(x, y, createCell(Constants.TILE_DOOR));
+                            else if (type == BUTTON) walls.setCell(x, y, createCell(Constants.TILE_BUTTON));
+                        }
+                    }
+                    return null;
+                }
+            });
+        }
+        run(tasks);
+    }
+
+    private TiledMapTileLayer createTileLayer(TiledMap map, String name, boolean visible) {
+        TiledMapTileLayer layer = new TiledMapTileLayer(width, height, Constants.TILE_WIDTH, Constants.TILE_HEIGHT);
+        layer.setName(name);
+        layer.setVisible(visible);
+        map.getLayers().add(layer);
+        return layer;
+    }
+
+    private TiledMapTileLayer.Cell createCell(int tile) {
+        TiledMapTileLayer.Cell cell = new TiledMapTileLayer.Cell();
+        if (tileSet != null) {
+            cell.setTile(tileSet.getTile(tile));
+        }
+        return cell;
+    }
+
+    /**
+     * Create the object layers, in map pixels like a loaded map. Static walls are merged into one rectangle per row,
+     * the others have one rectangle per tile
+     */
+    private void createObjectLayers(TiledMap map) {
+        MapObjects staticWalls = createObjectLayer(map, Constants.MAP_WALLS_STATIC);
+        MapObjects strongWalls = createObjectLayer(map, Constants.MAP_WALLS_STRONG);
+        MapObjects climbWalls = createObjectLayer(map, Constants.MAP_WALLS_CLIMB);
+        MapObjects waterWalls = createObjectLayer(map, Constants.MAP_WALLS_WATER);
+        MapObjects doors = createObjectLayer(map, Constants.MAP_DOORS);
+        MapObjects buttons = createObjectLayer(map, Constants.MAP_BUTTONS);
+        for (int y = 0; y < height; y++) {
+            int runStart = -1;
+            for (int x = 0; x <= width; x++) {
+                byte type = x < width ? tiles[x + y * width] : FLOOR;
+                if (type == WALL) {
+                    if (runStart < 0) runStart = x;
+                    continue;
+                }
+                if (runStart >= 0) {
+                    staticWalls.add(createRectangle(null, runStart, y, x - runStart, 1));
+                    runStart = -1;
+                }
+                if (type == WALL_STRONG) strongWalls.add(createRectangle(null, x, y, 1, 1));
+                else if (type == WALL_CLIMB) climbWalls.add(createRectangle(null, x, y, 1, 1));
+                else if (type == WALL_WATER) waterWalls.add(createRectangle(null, x, y, 1, 1));
+            }
+        }
+        for (int i = 0; i < doorButtons.size; i += 2) {
+            int opening = doorButtons.get(i);
+            int junction = opening / 2;
+            String color = "door" + i / 2;
+            for (int j = 0; j < CORRIDOR; j++) {
+                if (opening % 2 == RIGHT) {
+                    doors.add(createRectangle(color + "_door", getTileX(junction) + CORRIDOR, getTileY(junction) + j, 1, 1));
+                } else {
+                    doors.add(createRectangle(color + "_door", getTileX(junction) + j, getTileY(junction) + CORRIDOR, 1, 1));
+                }
+            }
+            int button = doorButtons.get(i + 1);
+            buttons.add(createRectangle(color + "_button", getTileX(button), getTileY(button), 1, 1));
+        }
+        MapObjects spawns = createObjectLayer(map, Constants.MAP_SPAWNS);
+        spawns.add(createSpawn(Constants.MAP_SPAWNPOINT_STRONG, 0));
+        spawns.add(createSpawn(Constants.MAP_SPAWNPOINT_CLIMBER, 1));
+        spawns.add(createSpawn(Constants.MAP_SPAWNPOINT_WATER, junctionsX));
+        MapObjects goal = createObjectLayer(map, Constants.MAP_GOAL);
+        goal.add(createRectangle(null, getTileX(goalJunction), getTileY(goalJunction), PITCH + CORRIDOR, PITCH + CORRIDOR));
+    }
+
+    private MapObjects createObjectLayer(TiledMap map, String name) {
+        MapLayer layer = new MapLayer();
+        layer.setName(name);
+        map.getLayers().add(layer);
+        return layer.getObjects();
+    }
+
+    /**
+     * @return Rectangle covering tiles, in map pixels
+     */
+    private RectangleMapObject createRectangle(String name, int x, int y, int rectWidth, int rectHeight) {
+        RectangleMapObject object = new RectangleMapObject(x * Constants.TILE_WIDTH, y * Constants.TILE_HEIGHT,
+                rectWidth * Constants.TILE_WIDTH, rectHeight * Constants.TILE_HEIGHT);
+        object.setName(name);
+        return object;
+    }
+
+    /**
+     * @return Spawn point in the middle of a junction
+     */
+    private RectangleMapObject createSpawn(String name, int junction) {
+        RectangleMapObject object = new RectangleMapObject((getTileX(junction) + CORRIDOR / 2f) * Constants.TILE_WIDTH,
+                (getTileY(junction) + CORRIDOR / 2f) * Constants.TILE_HEIGHT, 0, 0);
+        object.setName(name);
+        return object;
+    }
+
+    /**
+     * Run tasks on the generator's threads, or one after the other on the calling thread for small labyrinths
+     */
+    private void run(List<Callable<Void>> tasks) {
+        try {
+            if (executor == null) {
+                for (Callable<Void> task : tasks) {
+                    task.call();
+                }
+                return;
+            }
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new GdxRuntimeException("Interrupted while generating a labyrinth", ex);
+        } catch (ExecutionException ex) {
+            throw new GdxRuntimeException("Generating a labyrinth failed", ex.getCause());
+        } catch (Exception ex) {
+            throw new GdxRuntimeException("Generating a labyrinth failed", ex);
+        }
+    }
+}
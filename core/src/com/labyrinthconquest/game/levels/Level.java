@@ -1,13 +1,16 @@
 package com.labyrinthconquest.game.levels;
 
 import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.assets.AssetManager;
 import com.badlogic.gdx.graphics.OrthographicCamera;
+import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.badlogic.gdx.maps.MapLayer;
 import com.badlogic.gdx.maps.MapObjects;
 import com.badlogic.gdx.maps.objects.RectangleMapObject;
 import com.badlogic.gdx.maps.tiled.TiledMap;
 import com.badlogic.gdx.maps.tiled.TiledMapRenderer;
+import com.badlogic.gdx.maps.tiled.TiledMapTileLayer;
 import com.badlogic.gdx.maps.tiled.TmxMapLoader;
 import com.badlogic.gdx.maps.tiled.renderers.OrthogonalTiledMapRenderer;
 import com.badlogic.gdx.math.Rectangle;
@@ -22,12 +25,27 @@ import com.badlogic.gdx.physics.box2d.PolygonShape;
 import com.badlogic.gdx.physics.box2d.QueryCallback;
 import com.badlogic.gdx.physics.box2d.World;
 import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.ObjectMap;
 import com.labyrinthconquest.game.collisions.ContactManager;
 import com.labyrinthconquest.game.data.Constants;
 import com.labyrinthconquest.game.gameobjects.GameObject;
 import com.labyrinthconquest.game.gameobjects.Player;
+import com.labyrinthconquest.game.pathfinding.CompactGraph;
+import com.labyrinthconquest.game.pathfinding.DStarLitePathFinder;
 import com.labyrinthconquest.game.pathfinding.Graph;
+import com.labyrinthconquest.game.pathfinding.GridHeuristic;
+import com.labyrinthconquest.game.pathfinding.GridPathFinder;
+import com.labyrinthconquest.game.pathfinding.HierarchicalGridPathFinder;
 import com.labyrinthconquest.game.pathfinding.INode;
+import com.labyrinthconquest.game.pathfinding.JumpPointSearch;
+import com.labyrinthconquest.game.pathfinding.LandmarkHeuristic;
+import com.labyrinthconquest.game.pathfinding.OccupancyGrid;
+import com.labyrinthconquest.game.pathfinding.PathRequest;
+import com.labyrinthconquest.game.pathfinding.PathfindingService;
+import com.labyrinthconquest.game.scheduling.Job;
+import com.labyrinthconquest.game.scheduling.JobScheduler;
+import com.labyrinthconquest.game.scheduling.TimeReserve;
 import com.labyrinthconquest.game.screens.MainGame;
 import com.labyrinthconquest.game.ui.Localisation;
 import com.labyrinthconquest.game.utils.Utilities;
@@ -52,6 +70,19 @@ public class Level {
      */
     private ContactManager contactManager;
     private TiledMap tiledMap;
+    /**
+     * Level the map was compiled with, which has the navigation data baked. Null for maps loaded from .tmx files
+     */
+    private CompiledLevel compiledLevel;
+    /**
+     * Whether the level disposes the map. Else the map is a view of a map cached by whoever loaded it (LevelLoader),
+     * with its tile layers copied on write
+     */
+    private boolean ownsTiledMap;
+    /**
+     * Streams the tiles and wall bodies of a chunked level in and out, null if the level is not chunked
+     */
+    private ChunkStreamer chunkStreamer;
     private TiledMapRenderer tiledMapRenderer;
     /**
      * All level game objects
@@ -74,6 +105,10 @@ public class Level {
     private int playersInGoal;
 
     private Vector3 touchPosition;
+    /**
+     * Touch position in 2D, reused for every path query
+     */
+    private Vector2 touchPositionV2;
 
     /**
      * Player currently being controlled
@@ -86,11 +121,9 @@ public class Level {
     private QueryCallback callback;
 
     /**
-     * Pathfinding graphs separate for each player character
+     * Pathfinding graph of each player character by player id, all views of one compact graph shared by every character
      */
-    private Graph graphWater;
-    private Graph graphClimb;
-    private Graph graphStrong;
+    private ObjectMap<String, Graph> graphs;
 
     /**
      * Time since last path update, used in stopping players moving indefinitely
@@ -98,6 +131,67 @@ public class Level {
     private float timeSinceLastPath = Constants.TIME_SINCE_LAST_PATH_CUTOFF;
     private boolean newPlayerChosen;
 
+    /**
+     * Whether cells of the pathfinding graphs opened since the paths were last updated
+     */
+    private boolean graphsChanged;
+    /**
+     * Target of a moving player's path, reused when replanning
+     */
+    private Vector2 replanTarget;
+
+    /**
+     * Searches the paths of touch input on worker threads
+     */
+    private PathfindingService pathfindingService;
+    private PathfindingService.ResultListener pathResultListener;
+
+    /**
+     * Runs the deferred work of the level within a time budget per frame
+     */
+    private JobScheduler jobScheduler;
+    /**
+     * Hands found paths back and smooths them, and searches paths in time slices when there are no worker threads
+     */
+    private Job pathfindingJob;
+    /**
+     * Time the pathfinding job keeps free for handing back a path, as smoothing it cannot stop halfway
+     */
+    private TimeReserve resultReserve;
+    /**
+     * Computes the graphs' flow fields in time slices, for new targets and after the graphs changed
+     */
+    private Job flowFieldJob;
+    /**
+     * Finds new paths for the moving players after the graphs changed, one player at a time
+     */
+    private Job replanJob;
+    private int replanIndex;
+    /**
+     * Time the replanning job keeps free for a player's search, which cannot stop halfway
+     */
+    private TimeReserve replanReserve;
+    /**
+     * Removes the tiles of broken walls and opened doors from the map and opens their cells in the graphs
+     */
+    private Job tileRemovalJob;
+    private Array<TiledMapTileLayer> removedLayers;
+    private IntArray removedTiles;
+    private int removedIndex;
+    /**
+     * Updates the character label and plays the sounds of what happened since it last ran
+     */
+    private Job feedbackJob;
+    private boolean playerChosen;
+    private boolean pathSet;
+    private boolean buttonPressed;
+
+    /**
+     * Goal areas of the level. Players sent to a goal follow the goal's flow field instead of a path of their own
+     */
+    private Array<Rectangle> goals;
+    private Vector2 goalCenter;
+
     /**
      * Maps buttons to doors
      */
@@ -130,12 +224,29 @@ public class Level {
         return tiledMap;
     }
 
+    /**
+     * @return Service searching the touch input paths, with its request and latency statistics
+     */
+    public PathfindingService getPathfindingService() {
+        return pathfindingService;
+    }
+
+    /**
+     * @return Scheduler of the level's deferred work, with its frame and budget statistics
+     */
+    public JobScheduler getJobScheduler() {
+        return jobScheduler;
+    }
+
     /**
      * Add a body to-do delete list. Body will be deleted after next update/draw
      * @param body Body to delete in the next update/draw cycle
      */
     public void addBodyToDeleteList(Body body) {
         toDeleteBodies.add(body);
+        if (chunkStreamer != null) {
+            chunkStreamer.removeBody(body);
+        }
     }
 
     /**
@@ -147,6 +258,40 @@ public class Level {
         return doorButtonMap.get(button);
     }
 
+    /**
+     * Remove a tile of the map (door opened, wall broken). The tile is removed and its cell opened in the pathfinding
+     * graphs by a deferred job, the paths of moving players are updated once the tile's body has been deleted. The
+     * tile's cell is cleared through the layer, so a cached map shared by the level is not changed
+     * @param layer Layer of the tile
+     * @param x Tile x
+     * @param y Tile y
+     */
+    public void removeTile(TiledMapTileLayer layer, int x, int y) {
+        removedLayers.add(layer);
+        removedTiles.add(x, y);
+        jobScheduler.add(tileRemovalJob, JobScheduler.PRIORITY_NORMAL);
+    }
+
+    /**
+     * Called when a player presses a button, the sound is played by the feedback job
+     */
+    public void onButtonPressed() {
+        buttonPressed = true;
+        jobScheduler.add(feedbackJob, JobScheduler.PRIORITY_NORMAL);
+    }
+
+    /**
+     * Called when a tile of the map has been removed. Opens the cell in the pathfinding graphs
+     * @param x Tile x
+     * @param y Tile y
+     */
+    private void onTileRemoved(int x, int y) {
+        for (Graph graph : graphs.values()) {
+            graph.setCellOpen(x, y, true);
+        }
+        graphsChanged = true;
+    }
+
     public String getId() {
         return id;
     }
@@ -166,22 +311,81 @@ public class Level {
      * @param loc Localisation file
      */
     public Level(SpriteBatch batch, OrthographicCamera camera, String tileMapName, String id, final int desiredPlayersInGoal, final MainGame game, Localisation loc) {
+        this(batch, camera, new TmxMapLoader().load(tileMapName), id, desiredPlayersInGoal, game, loc);
+    }
+
+    /**
+     * Create a new instance of a level from a map that is already loaded or was generated, e.g by a
+     * {@link LabyrinthGenerator}. The level owns the map and disposes it
+     * @param batch Batch to be used for drawing
+     * @param camera Camera used for rendering
+     * @param tiledMap Tilemap
+     * @param id Level identification
+     * @param desiredPlayersInGoal Players in this level
+     * @param game MainGame instance
+     * @param loc Localisation file
+     */
+    public Level(SpriteBatch batch, OrthographicCamera camera, TiledMap tiledMap, String id, final int desiredPlayersInGoal, final MainGame game, Localisation loc) {
+        this(tiledMap, null, id, desiredPlayersInGoal, game, loc);
+        ownsTiledMap = true;
+        createGraphics(batch, camera, null);
+    }
+
+    /**
+     * Build the parts of a level that need no graphics context: the physics world with the static bodies of the map and
+     * the pathfinding graphs. May run on another thread, the level is finished with createGraphics on the render thread.
+     * The map is not owned by the level, it may be cached and played by other levels: the level plays on a view of it
+     * with the tile layers copied on write
+     * @param tiledMap Tilemap
+     * @param id Level identification
+     * @param desiredPlayersInGoal Players in this level
+     * @param game MainGame instance
+     * @param loc Localisation file
+     */
+    Level(TiledMap tiledMap, String id, final int desiredPlayersInGoal, final MainGame game, Localisation loc) {
+        this(CopyOnWriteTileLayer.createMapView(tiledMap), null, id, desiredPlayersInGoal, game, loc);
+    }
+
+    /**
+     * Build the parts of a compiled level that need no graphics context, like for a map. The pathfinding graphs are
+     * created from the level's baked graph and landmarks instead of being computed. The compiled level is not owned by
+     * the level, which plays on a copy-on-write view of its map. The tiles and walls of a chunked level are streamed in
+     * around the camera and the players, the chunks around the spawn points are loaded here
+     * @param compiledLevel Compiled level
+     * @param id Level identification
+     * @param desiredPlayersInGoal Players in this level
+     * @param game MainGame instance
+     * @param loc Localisation file
+     */
+    Level(CompiledLevel compiledLevel, String id, final int desiredPlayersInGoal, final MainGame game, Localisation loc) {
+        this(CopyOnWriteTileLayer.createMapView(compiledLevel.getTiledMap()), compiledLevel, id, desiredPlayersInGoal, game, loc);
+    }
+
+    private Level(TiledMap tiledMap, CompiledLevel compiledLevel, String id, final int desiredPlayersInGoal, final MainGame game, Localisation loc) {
         this.game = game;
-        this.batch = batch;
-        this.camera = camera;
         this.local = loc;
         world = new World(new Vector2(0, 0), true);
         contactManager = new ContactManager(game, this, desiredPlayersInGoal);
         world.setContactListener(contactManager);
-        tiledMap = new TmxMapLoader().load(tileMapName);
-        tiledMapRenderer = new OrthogonalTiledMapRenderer(tiledMap, Constants.TILE_MAP_UNIT_SCALE);
+        this.tiledMap = tiledMap;
+        this.compiledLevel = compiledLevel;
+        if (compiledLevel != null && compiledLevel.isChunked()) {
+            createChunkStreamer();
+        }
         createWalls();
-        createPlayersAndGraphs();
+        createGoals();
+        createGraphs();
         createDoorsAndButtonsMap();
-        gameObjects = new ArrayList<>();
-        gameObjects.addAll(players);
         this.id = id;
         toDeleteBodies = new ArrayDeque<>();
+        touchPosition = new Vector3();
+        touchPositionV2 = new Vector2();
+        goalCenter = new Vector2();
+        replanTarget = new Vector2();
+        removedLayers = new Array<>();
+        removedTiles = new IntArray();
+        createPathfindingService();
+        createJobs();
         /**
          * Create an instance of a query callback, used when querying touch position if there is a player nearby
          */
@@ -192,8 +396,8 @@ public class Level {
                 if (fixture.testPoint(touchPosition.x, touchPosition.y) && hit.getUserData() instanceof Player) {
                     activatedPlayer = (Player)hit.getUserData();
                     newPlayerChosen = true;
-                    game.setCharacterUIText(local.getBundle().get("character") + ": " + local.getBundle().get(activatedPlayer.getId())  + " ");
-                    game.getGame().getSounds().playCaracter();
+                    playerChosen = true;
+                    jobScheduler.add(feedbackJob, JobScheduler.PRIORITY_NORMAL);
                     return false;
                 }
                 return true;
@@ -202,16 +406,59 @@ public class Level {
     }
 
     /**
-     * Create level walls
+     * Create the players and the map renderer, which draws with the game's batch. Needs the graphics context, so it
+     * runs on the render thread
+     * @param batch Batch to be used for drawing
+     * @param camera Camera used for rendering
+     * @param assetManager Asset manager the player animation sheets are loaded in, null to load a sheet per player
+     */
+    void createGraphics(SpriteBatch batch, OrthographicCamera camera, AssetManager assetManager) {
+        this.batch = batch;
+        this.camera = camera;
+        tiledMapRenderer = new OrthogonalTiledMapRenderer(tiledMap, Constants.TILE_MAP_UNIT_SCALE, batch);
+        createPlayers(assetManager);
+        gameObjects = new ArrayList<>();
+        gameObjects.addAll(players);
+    }
+
+    /**
+     * Create the streamer of a chunked level and load the chunks around the spawn points
+     */
+    private void createChunkStreamer() {
+        chunkStreamer = new ChunkStreamer(world, tiledMap, Constants.CHUNK_RESIDENT_BUDGET);
+        Vector2 center = new Vector2();
+        for (RectangleMapObject spawn : tiledMap.getLayers().get(Constants.MAP_SPAWNS).getObjects().getByType(RectangleMapObject.class)) {
+            scaleRect(spawn.getRectangle(), Constants.TILE_MAP_UNIT_SCALE).getCenter(center);
+            chunkStreamer.loadAround(center.x, center.y);
+        }
+    }
+
+    /**
+     * Create level walls. The static, water and climbing walls never change, each of these layers is merged into as few
+     * boxes as possible on one body. Strong walls keep a body each, as they are broken one by one. The walls of a
+     * chunked level are created by its chunk streamer with the chunks they are in
      */
     private void createWalls() {
-        transformLayerToBodies(Constants.MAP_WALLS_STATIC, Constants.MAP_WALLS_STATIC, false, Constants.CAT_MAP_WALLS_STATIC);
-        transformLayerToBodies(Constants.MAP_WALLS_WATER, Constants.MAP_WALLS_WATER, false, Constants.CAT_MAP_WALLS_WATER);
-        transformLayerToBodies(Constants.MAP_WALLS_CLIMB, Constants.MAP_WALLS_CLIMB, false, Constants.CAT_MAP_WALLS_CLIMB);
-        transformLayerToBodies(Constants.MAP_WALLS_STRONG, Constants.MAP_WALLS_STRONG, false, Constants.CAT_MAP_WALLS_STRONG);
+        if (chunkStreamer == null) {
+            mergeLayerToBody(Constants.MAP_WALLS_STATIC, Constants.CAT_MAP_WALLS_STATIC);
+            mergeLayerToBody(Constants.MAP_WALLS_WATER, Constants.CAT_MAP_WALLS_WATER);
+            mergeLayerToBody(Constants.MAP_WALLS_CLIMB, Constants.CAT_MAP_WALLS_CLIMB);
+            transformLayerToBodies(Constants.MAP_WALLS_STRONG, Constants.MAP_WALLS_STRONG, false, Constants.CAT_MAP_WALLS_STRONG);
+        }
         transformLayerToBodies(Constants.MAP_GOAL, Constants.MAP_GOAL, true, Constants.CAT_MAP_GOAL);
     }
 
+    /**
+     * Collect the goal areas of the level
+     */
+    private void createGoals() {
+        goals = new Array<>();
+        Array<RectangleMapObject> rectangleObjects = tiledMap.getLayers().get(Constants.MAP_GOAL).getObjects().getByType(RectangleMapObject.class);
+        for (RectangleMapObject rectangleObject : rectangleObjects) {
+            goals.add(scaleRect(rectangleObject.getRectangle(), Constants.TILE_MAP_UNIT_SCALE));
+        }
+    }
+
     /**
      * Transform layer objects to Box2D bodies
      * @param layer Layer to transform
@@ -228,6 +475,35 @@ public class Level {
         }
     }
 
+    /**
+     * Transform the objects of a wall layer to one static Box2D body, with a box fixture for every rectangle of the
+     * merged walls. The layer name is the body's user data
+     * @param layer Layer to transform
+     * @param category Collision category
+     */
+    private void mergeLayerToBody(String layer, short category) {
+        Array<RectangleMapObject> rectangleObjects = tiledMap.getLayers().get(layer).getObjects().getByType(RectangleMapObject.class);
+        if (rectangleObjects.size == 0) return;
+        Array<Rectangle> rectangles = new Array<>(rectangleObjects.size);
+        for (RectangleMapObject rectangleObject : rectangleObjects) {
+            rectangles.add(scaleRect(rectangleObject.getRectangle(), Constants.TILE_MAP_UNIT_SCALE));
+        }
+        BodyDef myBodyDef = new BodyDef();
+        myBodyDef.type = BodyDef.BodyType.StaticBody;
+        Body body = world.createBody(myBodyDef);
+        body.setUserData(layer);
+        Filter filter = new Filter();
+        filter.categoryBits = category;
+        PolygonShape box = new PolygonShape();
+        Vector2 center = new Vector2();
+        for (Rectangle rect : WallMerger.merge(rectangles)) {
+            box.setAsBox(rect.width / 2, rect.height / 2, rect.getCenter(center), 0);
+            Fixture fixture = body.createFixture(box, 0);
+            fixture.setFilterData(filter);
+        }
+        box.dispose();
+    }
+
     /**
      * Create a Box2D body from a map rectangle object
      * @param rect Rectangle to use
@@ -274,28 +550,271 @@ public class Level {
     }
 
     /**
-     * Create players and their pathfinding graphs
+     * Create the players at their spawn points
+     * @param assetManager Asset manager the animation sheets are loaded in, null to load a sheet per player
      */
-    private void createPlayersAndGraphs() {
+    private void createPlayers(AssetManager assetManager) {
         players = new ArrayList<>();
         MapLayer collisionObjectLayer = tiledMap.getLayers().get(Constants.MAP_SPAWNS);
         MapObjects mapObjects = collisionObjectLayer.getObjects();
         Array<RectangleMapObject> spawns = mapObjects.getByType(RectangleMapObject.class);
         Vector2 spawnPointStrong = Utilities.mapRectToGameCoordinates(getSpawn(Constants.MAP_SPAWNPOINT_STRONG, spawns));
-        Player strong = new Player(Constants.PLAYER_STRONG_ANIMATION_SHEET, world, this, spawnPointStrong.x, spawnPointStrong.y, Constants.PLAYER_WIDTH,
-                Constants.PLAYER_HEIGHT, Constants.PLAYER_STRONG, Constants.CAT_PLAYER_STRONG, Constants.MASK_PLAYER_STRONG);
+        Player strong = createPlayer(Constants.PLAYER_STRONG_ANIMATION_SHEET, assetManager, spawnPointStrong, Constants.PLAYER_STRONG,
+                Constants.CAT_PLAYER_STRONG, Constants.MASK_PLAYER_STRONG);
         Vector2 spawnPointClimber = Utilities.mapRectToGameCoordinates(getSpawn(Constants.MAP_SPAWNPOINT_CLIMBER, spawns));
-        Player climb = new Player(Constants.PLAYER_CLIMB_ANIMATION_SHEET, world, this, spawnPointClimber.x, spawnPointClimber.y, Constants.PLAYER_WIDTH,
-                Constants.PLAYER_HEIGHT, Constants.PLAYER_CLIMB, Constants.CAT_PLAYER_CLIMB, Constants.MASK_PLAYER_CLIMB);
+        Player climb = createPlayer(Constants.PLAYER_CLIMB_ANIMATION_SHEET, assetManager, spawnPointClimber, Constants.PLAYER_CLIMB,
+                Constants.CAT_PLAYER_CLIMB, Constants.MASK_PLAYER_CLIMB);
         Vector2 spawnPointWater = Utilities.mapRectToGameCoordinates(getSpawn(Constants.MAP_SPAWNPOINT_WATER, spawns));
-        Player water = new Player(Constants.PLAYER_WATER_ANIMATION_SHEET, world, this, spawnPointWater.x, spawnPointWater.y, Constants.PLAYER_WIDTH,
-                Constants.PLAYER_HEIGHT, Constants.PLAYER_WATER, Constants.CAT_PLAYER_WATER, Constants.MASK_PLAYER_WATER);
+        Player water = createPlayer(Constants.PLAYER_WATER_ANIMATION_SHEET, assetManager, spawnPointWater, Constants.PLAYER_WATER,
+                Constants.CAT_PLAYER_WATER, Constants.MASK_PLAYER_WATER);
         players.add(strong);
         players.add(climb);
         players.add(water);
-        graphWater = new Graph(tiledMap, Constants.MAP_PATHFINDER_NODES_WATER, world);
-        graphClimb = new Graph(tiledMap, Constants.MAP_PATHFINDER_NODES_CLIMB, world);
-        graphStrong = new Graph(tiledMap, Constants.MAP_PATHFINDER_NODES_STRONG, world);
+    }
+
+    /**
+     * Create a player, with its animation sheet from the asset manager if there is one
+     * @param sheet Animation sheet file path
+     * @param assetManager Asset manager the sheet is loaded in, null to load the sheet for this player
+     * @param spawnPoint Spawn position
+     * @param id Identification (name) of the player
+     * @param category Collision category
+     * @param mask Collision mask
+     * @return Player
+     */
+    private Player createPlayer(String sheet, AssetManager assetManager, Vector2 spawnPoint, String id, short category, short mask) {
+        if (assetManager == null) {
+            return new Player(sheet, world, this, spawnPoint.x, spawnPoint.y, Constants.PLAYER_WIDTH, Constants.PLAYER_HEIGHT,
+                    id, category, mask);
+        }
+        return new Player(assetManager.get(sheet, Texture.class), world, this, spawnPoint.x, spawnPoint.y, Constants.PLAYER_WIDTH,
+                Constants.PLAYER_HEIGHT, id, category, mask);
+    }
+
+    /**
+     * Create the pathfinding graph of every player character
+     */
+    private void createGraphs() {
+        CompactGraph sharedGraph = compiledLevel != null ? compiledLevel.getGraph() : createSharedGraph();
+        graphs = new ObjectMap<>();
+        graphs.put(Constants.PLAYER_WATER, createGraph(sharedGraph, Constants.PATHFIND_MASK_PLAYER_WATER, false, Constants.MASK_PLAYER_WATER));
+        graphs.put(Constants.PLAYER_CLIMB, createGraph(sharedGraph, Constants.PATHFIND_MASK_PLAYER_CLIMB, false, Constants.MASK_PLAYER_CLIMB));
+        graphs.put(Constants.PLAYER_STRONG, createGraph(sharedGraph, Constants.PATHFIND_MASK_PLAYER_STRONG, true, Constants.MASK_PLAYER_STRONG));
+    }
+
+    /**
+     * Create one compact graph for all pathfind layers. Each cell's node records the capabilities of the layers it is in,
+     * so the nodes and edges are built and stored once for every character
+     * @return Compact graph
+     */
+    private CompactGraph createSharedGraph() {
+        TiledMapTileLayer[] layers = new TiledMapTileLayer[Constants.MAP_PATHFINDER_LAYERS.length];
+        for (int i = 0; i < layers.length; i++) {
+            layers[i] = (TiledMapTileLayer)tiledMap.getLayers().get(Constants.MAP_PATHFINDER_LAYERS[i]);
+        }
+        return new CompactGraph(layers, Constants.MAP_PATHFINDER_CAPABILITIES);
+    }
+
+    /**
+     * Create a pathfinding graph for a character from its view of the shared compact graph. Doors, and strong walls for
+     * characters that can't break them, start closed and are opened when their tiles are removed. The layers are uniform
+     * cost 8-connected grids searched with jump point search, also when the paths of moving players are replanned unless
+     * D* Lite replanning is turned on. Very large maps are searched hierarchically. Searches are guided by landmarks
+     * computed here, at level load, or baked into the compiled level with the view, and by the octile distance on chunked
+     * levels. Paths are smoothed on a grid of the walls the character collides with
+     * @param sharedGraph Compact graph of all pathfind layers
+     * @param capabilityMask Pathfinding capability mask of the character
+     * @param canBreakWalls Whether the character can break strong walls
+     * @param collisionMask Collision mask of the character
+     * @return Graph
+     */
+    private Graph createGraph(CompactGraph sharedGraph, short capabilityMask, boolean canBreakWalls, short collisionMask) {
+        CompactGraph view = compiledLevel != null ? compiledLevel.createView(capabilityMask)
+                : sharedGraph.createView(capabilityMask);
+        Graph graph = new Graph(view, world);
+        graph.setOccupancyGrid(createOccupancyGrid(graph.getCompactGraph(), collisionMask));
+        GridHeuristic heuristic = compiledLevel != null ? compiledLevel.createHeuristic(graph.getCompactGraph()) : null;
+        graph.setHeuristic(heuristic != null ? heuristic : new LandmarkHeuristic(graph.getCompactGraph(), Constants.ALT_LANDMARKS));
+        closeCells(graph, Constants.MAP_DOORS);
+        if (!canBreakWalls) {
+            closeCells(graph, Constants.MAP_WALLS_STRONG);
+        }
+        CompactGraph compactGraph = graph.getCompactGraph();
+        if (compactGraph.getWidth() * compactGraph.getHeight() > Constants.HIERARCHICAL_PATHFINDING_MIN_TILES) {
+            graph.setPathFinder(new HierarchicalGridPathFinder(compactGraph, Constants.HIERARCHICAL_PATHFINDING_CLUSTER_SIZE));
+        } else {
+            graph.setPathFinder(new JumpPointSearch(compactGraph));
+            if (Constants.DSTAR_LITE_REPLANNING) {
+                graph.setReplanPathFinder(new DStarLitePathFinder(compactGraph));
+            }
+        }
+        return graph;
+    }
+
+    /**
+     * Create the service that searches touch input paths on worker threads. The workers search fresh paths with jump
+     * point search (or hierarchically on very large maps), the found paths are smoothed when they are handed back.
+     * Single core devices have no worker threads, their paths are searched in time slices by the pathfinding job.
+     * Their graphs' connections are created here at load, so no time slice creates them
+     */
+    private void createPathfindingService() {
+        int threads = Math.max(0, Math.min(Constants.PATHFINDING_MAX_THREADS, Runtime.getRuntime().availableProcessors() - 1));
+        pathfindingService = new PathfindingService(new PathfindingService.PathFinderFactory() {
+            @Override
+            public GridPathFinder create(CompactGraph graph) {
+                if (graph.getWidth() * graph.getHeight() > Constants.HIERARCHICAL_PATHFINDING_MIN_TILES) {
+                    return new HierarchicalGridPathFinder(graph, Constants.HIERARCHICAL_PATHFINDING_CLUSTER_SIZE);
+                }
+                return new JumpPointSearch(graph);
+            }
+        }, threads);
+        for (Graph graph : graphs.values()) {
+            pathfindingService.prepare(graph);
+        }
+        pathResultListener = new PathfindingService.ResultListener() {
+            @Override
+            public void onRequestSolved(PathRequest request) {
+                Graph graph = request.getGraph();
+                // Cells opened while the path was searched, search again with the current graph
+                if (request.getSnapshot() != graph.getSnapshot()) {
+                    pathfindingService.request(request.getRequester(), graph, request.getFrom(), request.getTo());
+                    return;
+                }
+                if (request.isFound()) {
+                    ((Player)request.getRequester()).setMovePath(graph.createPath(request.getFrom(), request.getTo(), request.getNodePath()));
+                    onPathSet();
+                }
+            }
+        };
+    }
+
+    /**
+     * Create the scheduler and the jobs the level defers work to
+     */
+    private void createJobs() {
+        jobScheduler = new JobScheduler((long)(Constants.JOB_SCHEDULER_FRAME_BUDGET * 1000000000L));
+        resultReserve = new TimeReserve(jobScheduler.getFrameBudgetNanos() / 2);
+        replanReserve = new TimeReserve(jobScheduler.getFrameBudgetNanos() / 2);
+        pathfindingJob = new Job() {
+            @Override
+            public boolean run(long deadline) {
+                pathfindingService.processResults(pathResultListener, deadline, resultReserve);
+                pathfindingService.search(deadline);
+                return false;
+            }
+        };
+        jobScheduler.add(pathfindingJob, JobScheduler.PRIORITY_HIGH);
+        flowFieldJob = new Job() {
+            @Override
+            public boolean run(long deadline) {
+                for (Graph graph : graphs.values()) {
+                    if (!graph.updateFlowFields(deadline)) break;
+                }
+                return false;
+            }
+        };
+        jobScheduler.add(flowFieldJob, JobScheduler.PRIORITY_HIGH);
+        replanJob = new Job() {
+            @Override
+            public boolean run(long deadline) {
+                while (replanIndex < players.size() && replanReserve.hasTime(deadline)) {
+                    long startTime = System.nanoTime();
+                    replanPath(players.get(replanIndex++));
+                    replanReserve.record(System.nanoTime() - startTime);
+                }
+                return replanIndex >= players.size();
+            }
+        };
+        tileRemovalJob = new Job() {
+            @Override
+            public boolean run(long deadline) {
+                while (removedIndex < removedLayers.size) {
+                    int x = removedTiles.get(removedIndex * 2);
+                    int y = removedTiles.get(removedIndex * 2 + 1);
+                    removedLayers.get(removedIndex).setCell(x, y, null);
+                    onTileRemoved(x, y);
+                    removedIndex++;
+                    if (System.nanoTime() >= deadline) return false;
+                }
+                removedLayers.clear();
+                removedTiles.clear();
+                removedIndex = 0;
+                return true;
+            }
+        };
+        feedbackJob = new Job() {
+            @Override
+            public boolean run(long deadline) {
+                if (playerChosen) {
+                    playerChosen = false;
+                    game.setCharacterUIText(local.getBundle().get("character") + ": " + local.getBundle().get(activatedPlayer.getId())  + " ");
+                    game.getGame().getSounds().playCaracter();
+                }
+                if (pathSet) {
+                    pathSet = false;
+                    game.getGame().getSounds().playRoger();
+                }
+                if (buttonPressed) {
+                    buttonPressed = false;
+                    game.getGame().getSounds().playButton();
+                }
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Called when a path was set for a player, the sound is played by the feedback job
+     */
+    private void onPathSet() {
+        pathSet = true;
+        jobScheduler.add(feedbackJob, JobScheduler.PRIORITY_NORMAL);
+    }
+
+    /**
+     * Create the grid of the cells covered by the wall layers a character collides with. Sensors (the goal) are left out
+     * @param compactGraph Graph the grid is for
+     * @param collisionMask Collision mask of the character
+     * @return Occupancy grid
+     */
+    private OccupancyGrid createOccupancyGrid(CompactGraph compactGraph, short collisionMask) {
+        OccupancyGrid grid = new OccupancyGrid(compactGraph.getWidth(), compactGraph.getHeight());
+        if ((collisionMask & Constants.CAT_MAP_WALLS_STATIC) != 0) blockCells(grid, Constants.MAP_WALLS_STATIC);
+        if ((collisionMask & Constants.CAT_MAP_WALLS_STRONG) != 0) blockCells(grid, Constants.MAP_WALLS_STRONG);
+        if ((collisionMask & Constants.CAT_MAP_WALLS_CLIMB) != 0) blockCells(grid, Constants.MAP_WALLS_CLIMB);
+        if ((collisionMask & Constants.CAT_MAP_WALLS_WATER) != 0) blockCells(grid, Constants.MAP_WALLS_WATER);
+        if ((collisionMask & Constants.CAT_MAP_WALLS_BUTTONS) != 0) blockCells(grid, Constants.MAP_BUTTONS);
+        if ((collisionMask & Constants.CAT_MAP_WALLS_DOORS) != 0) blockCells(grid, Constants.MAP_DOORS);
+        return grid;
+    }
+
+    /**
+     * Block the cells covered by the objects of a layer in an occupancy grid
+     * @param grid Occupancy grid
+     * @param layer Object layer
+     */
+    private void blockCells(OccupancyGrid grid, String layer) {
+        Array<RectangleMapObject> rectangleObjects = tiledMap.getLayers().get(layer).getObjects().getByType(RectangleMapObject.class);
+        for (RectangleMapObject rectangleObject : rectangleObjects) {
+            grid.addWall(scaleRect(rectangleObject.getRectangle(), Constants.TILE_MAP_UNIT_SCALE));
+        }
+    }
+
+    /**
+     * Close the cells covered by the objects of a layer in a graph
+     * @param graph Graph
+     * @param layer Object layer
+     */
+    private void closeCells(Graph graph, String layer) {
+        Array<RectangleMapObject> rectangleObjects = tiledMap.getLayers().get(layer).getObjects().getByType(RectangleMapObject.class);
+        for (RectangleMapObject rectangleObject : rectangleObjects) {
+            Rectangle rect = scaleRect(rectangleObject.getRectangle(), Constants.TILE_MAP_UNIT_SCALE);
+            for (int x = (int)rect.x; x < rect.x + rect.width; x++) {
+                for (int y = (int)rect.y; y < rect.y + rect.height; y++) {
+                    graph.setCellOpen(x, y, false);
+                }
+            }
+        }
     }
 
     /**
@@ -348,6 +867,10 @@ public class Level {
     public void update() {
         score += Gdx.graphics.getDeltaTime();
         playerTouchInput();
+        if (chunkStreamer != null && chunkStreamer.update(camera, players)) {
+            jobScheduler.add(chunkStreamer, JobScheduler.PRIORITY_NORMAL);
+        }
+        jobScheduler.run();
         for(GameObject object : gameObjects) {
             object.update(camera);
         }
@@ -361,7 +884,7 @@ public class Level {
             timeSinceLastPath += Gdx.graphics.getDeltaTime();
         }
         if(Gdx.input.isTouched() && timeSinceLastPath >= (Constants.TIME_SINCE_LAST_PATH_CUTOFF - 0.01f)) {
-            touchPosition = new Vector3(Gdx.input.getX(), Gdx.input.getY(), 0);
+            touchPosition.set(Gdx.input.getX(), Gdx.input.getY(), 0);
             camera.unproject(touchPosition);
             checkPlayerTouch();
             if (!newPlayerChosen && activatedPlayer != null) {
@@ -372,24 +895,78 @@ public class Level {
     }
 
     /**
-     * Get and set path for activated player
+     * Get and set path for activated player. Cached paths are set right away, others are searched by the pathfinding
+     * service and set when they are handed back. Touching a goal sends the player along the goal's flow field instead.
+     * A touch the player cannot reach is moved to the closest cell it can
      */
     private void setPath() {
-        List<INode> path;
-        Vector2 touchPosV2 = new Vector2(touchPosition.x, touchPosition.y);
-        if (activatedPlayer.getId().equals(Constants.PLAYER_WATER)) {
-            path = graphWater.findPath(activatedPlayer.getPosition(), touchPosV2);
-        } else if (activatedPlayer.getId().equals(Constants.PLAYER_CLIMB)) {
-            path = graphClimb.findPath(activatedPlayer.getPosition(), touchPosV2);
-        } else {
-            path = graphStrong.findPath(activatedPlayer.getPosition(), touchPosV2);
+        Vector2 touchPosV2 = touchPositionV2.set(touchPosition.x, touchPosition.y);
+        Graph graph = getGraph(activatedPlayer);
+        for (Rectangle goal : goals) {
+            if (goal.contains(touchPosV2)) {
+                setFlowFieldPath(graph, goal);
+                return;
+            }
+        }
+        int startNode = graph.findClosestNode(activatedPlayer.getPosition());
+        if (!graph.isReachable(startNode, graph.findClosestNode(touchPosV2))) {
+            int reachableNode = graph.findClosestReachableNode(startNode, touchPosV2);
+            if (reachableNode == CompactGraph.NO_NODE) return;
+            touchPosV2.set(graph.getCompactGraph().getX(reachableNode), graph.getCompactGraph().getY(reachableNode));
+        }
+        List<INode> path = graph.findCachedPath(activatedPlayer.getPosition(), touchPosV2);
+        if (path == null) {
+            pathfindingService.request(activatedPlayer, graph, activatedPlayer.getPosition(), touchPosV2);
+            return;
         }
+        pathfindingService.cancel(activatedPlayer);
+        activatedPlayer.setMovePath(path);
+        onPathSet();
+    }
+
+    /**
+     * Send the activated player to the centre of a goal along the flow field towards it. The field is shared by every
+     * player using the same graph, so the players do not search paths of their own. It is computed by the flow field job,
+     * now if it is new and again when the graph changes
+     * @param graph Pathfinding graph of the player
+     * @param goal Goal area
+     */
+    private void setFlowFieldPath(Graph graph, Rectangle goal) {
+        goal.getCenter(goalCenter);
+        int targetNode = graph.findClosestNode(goalCenter);
+        if (!graph.isReachable(graph.findClosestNode(activatedPlayer.getPosition()), targetNode)) {
+            return;
+        }
+        pathfindingService.cancel(activatedPlayer);
+        graph.getFlowField(targetNode);
+        activatedPlayer.setMoveFlowField(graph, targetNode, goalCenter);
+        onPathSet();
+    }
+
+    /**
+     * Find a new path for a moving player to its current target, after cells of the graphs have opened. Done by the
+     * replanning job instead of with the pathfinding service, as a D* Lite replanner only repairs the player's previous
+     * replan. Players following a flow field need no new path, the field is recomputed for the changed graph
+     * @param player Player
+     */
+    private void replanPath(Player player) {
+        INode target = player.getPathTarget();
+        if (target == null) return;
+        List<INode> path = getGraph(player).replanPath(player.getPosition(), replanTarget.set(target.getX(), target.getY()));
         if (!path.isEmpty()) {
-            activatedPlayer.setMovePath(path);
-            game.getGame().getSounds().playRoger();
+            player.setMovePath(path);
         }
     }
 
+    /**
+     * Get the pathfinding graph of a player character
+     * @param player Player
+     * @return Graph
+     */
+    private Graph getGraph(Player player) {
+        return graphs.get(player.getId());
+    }
+
     /**
      * Check if user touched a player character, in which case set it as the current activated player
      */
@@ -418,6 +995,11 @@ public class Level {
      */
     public void doPhysicsStep() {
         deleteToDeleteBodies();
+        if (graphsChanged) {
+            graphsChanged = false;
+            replanIndex = 0;
+            jobScheduler.add(replanJob, JobScheduler.PRIORITY_HIGH);
+        }
         float frameTime = Gdx.graphics.getDeltaTime();
         if(frameTime > Constants.MAX_ANIMATION_FRAME_TIME) {
             frameTime = Constants.MAX_ANIMATION_FRAME_TIME;
@@ -442,9 +1024,19 @@ public class Level {
      * Dispose current level
      */
     public void dispose() {
-        tiledMap.dispose();
-        for(GameObject obj : gameObjects) {
-            obj.dispose();
+        pathfindingService.dispose();
+        if (chunkStreamer != null) {
+            chunkStreamer.dispose();
+        }
+        if (ownsTiledMap) {
+            tiledMap.dispose();
+        }
+        // A prefetched level that was never played has no players
+        if (gameObjects != null) {
+            for(GameObject obj : gameObjects) {
+                obj.dispose();
+            }
         }
+        world.dispose();
     }
 }
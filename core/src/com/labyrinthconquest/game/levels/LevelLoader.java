@@ -0,0 +1,252 @@
+package com.labyrinthconquest.game.levels;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.assets.AssetManager;
+import com.badlogic.gdx.assets.loaders.resolvers.InternalFileHandleResolver;
+import com.badlogic.gdx.graphics.OrthographicCamera;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.maps.tiled.TiledMap;
+import com.badlogic.gdx.maps.tiled.TmxMapLoader;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.ObjectMap;
+import com.labyrinthconquest.game.data.Constants;
+import com.labyrinthconquest.game.screens.MainGame;
+import com.labyrinthconquest.game.ui.Localisation;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Loads the levels of the game, the next one in the background while the current one is played. The compiled level
+ * (or the .tmx map if the level is not compiled) and its tilesets are read by an asset manager, then the level's physics
+ * world and pathfinding graphs are built on a worker thread. Only the players and the map renderer are created on the
+ * render thread when the level is taken, so switching to a prefetched level does not stall a frame. The player
+ * animation sheets are loaded once and shared by the levels.
+ * The last loaded maps stay loaded, so restarting or replaying a level neither parses its file nor loads its textures
+ * again. Levels play on copy-on-write views of the cached maps and leave them as they were loaded
+ */
+public class LevelLoader implements Disposable {
+    private static final String[] PLAYER_SHEETS = {Constants.PLAYER_STRONG_ANIMATION_SHEET,
+            Constants.PLAYER_CLIMB_ANIMATION_SHEET, Constants.PLAYER_WATER_ANIMATION_SHEET};
+
+    private MainGame game;
+    private Localisation local;
+    private AssetManager assetManager;
+    private ExecutorService executor;
+
+    /**
+     * Level being prefetched, 0 if none
+     */
+    private int prefetchIndex;
+    private String prefetchFileName;
+    /**
+     * Level built from the prefetched map, null until the map is loaded
+     */
+    private Future<Level> prefetchLevel;
+    /**
+     * Map file of every level that was taken and is not unloaded yet
+     */
+    private ObjectMap<Level, String> loadedMaps;
+    /**
+     * Map files loaded in the asset manager, from the least to the most recently used
+     */
+    private Array<String> cachedMaps;
+
+    /**
+     * Create a level loader and the thread it builds levels on
+     * @param game MainGame instance
+     * @param local Localisation object
+     */
+    public LevelLoader(MainGame game, Localisation local) {
+        this.game = game;
+        this.local = local;
+        assetManager = new AssetManager();
+        assetManager.setLoader(TiledMap.class, new TmxMapLoader(new InternalFileHandleResolver()));
+        assetManager.setLoader(CompiledLevel.class, new CompiledLevelLoader(new InternalFileHandleResolver()));
+        for (String sheet : PLAYER_SHEETS) {
+            assetManager.load(sheet, Texture.class);
+        }
+        loadedMaps = new ObjectMap<>();
+        cachedMaps = new Array<>();
+        executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "level-loader");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Start loading a level in the background. A different level that was being prefetched is dropped
+     * @param index Level number
+     */
+    public void prefetch(int index) {
+        if (index == prefetchIndex) return;
+        cancelPrefetch();
+        prefetchIndex = index;
+        prefetchFileName = getFileName(index);
+        loadMap(prefetchFileName);
+    }
+
+    /**
+     * Advance the loading, called once per frame on the render thread. Loads the assets a step further, and once the
+     * prefetched map is loaded starts building its level on the worker thread
+     */
+    public void update() {
+        assetManager.update();
+        if (prefetchIndex != 0 && prefetchLevel == null && assetManager.isLoaded(prefetchFileName)) {
+            startBuilding();
+        }
+    }
+
+    /**
+     * Get a level ready to play. A prefetched level is finished (waiting for what is left of its loading), any other
+     * level is built from its cached map or loaded now, and the prefetch goes on. Every level taken has its own view of
+     * the map, so a level can be taken again (restarted) while it is played
+     * @param index Level number
+     * @param batch Batch to be used for drawing
+     * @param camera Camera used for rendering
+     * @return Level, unloaded with unload when it is no longer played
+     */
+    public Level take(int index, SpriteBatch batch, OrthographicCamera camera) {
+        String fileName = index == prefetchIndex ? prefetchFileName : getFileName(index);
+        Level level;
+        if (index == prefetchIndex) {
+            if (prefetchLevel == null) {
+                assetManager.finishLoadingAsset(fileName);
+                startBuilding();
+            }
+            level = getLevel(prefetchLevel);
+            prefetchIndex = 0;
+            prefetchLevel = null;
+        } else {
+            loadMap(fileName);
+            assetManager.finishLoadingAsset(fileName);
+            level = createLevel(fileName, Integer.toString(index));
+        }
+        for (String sheet : PLAYER_SHEETS) {
+            assetManager.finishLoadingAsset(sheet);
+        }
+        level.createGraphics(batch, camera, assetManager);
+        loadedMaps.put(level, fileName);
+        return level;
+    }
+
+    /**
+     * Dispose a level taken from the loader. Its map stays cached until maps used more recently push it out
+     * @param level Level
+     */
+    public void unload(Level level) {
+        level.dispose();
+        loadedMaps.remove(level);
+        evictMaps();
+    }
+
+    /**
+     * Start loading a map unless it is cached, and mark it as the most recently used
+     */
+    private void loadMap(String fileName) {
+        if (cachedMaps.removeValue(fileName, false)) {
+            cachedMaps.add(fileName);
+            return;
+        }
+        assetManager.load(fileName, getType(fileName));
+        cachedMaps.add(fileName);
+        evictMaps();
+    }
+
+    /**
+     * Unload the least recently used maps beyond the cache size. Maps of levels taken and not unloaded, and the
+     * prefetched map, are kept
+     */
+    private void evictMaps() {
+        for (int i = 0; i < cachedMaps.size && cachedMaps.size > Constants.MAP_CACHE_SIZE; ) {
+            String fileName = cachedMaps.get(i);
+            if (loadedMaps.containsValue(fileName, false) || (prefetchIndex != 0 && fileName.equals(prefetchFileName))) {
+                i++;
+                continue;
+            }
+            assetManager.unload(fileName);
+            cachedMaps.removeIndex(i);
+        }
+    }
+
+    /**
+     * Build the prefetched level from its loaded compiled level or map on the worker thread
+     */
+    private void startBuilding() {
+        final String fileName = prefetchFileName;
+        final String id = Integer.toString(prefetchIndex);
+        prefetchLevel = executor.submit(new Callable<Level>() {
+            @Override
+            public Level call() {
+                return createLevel(fileName, id);
+            }
+        });
+    }
+
+    /**
+     * Build a level from its loaded compiled level or map, without the graphics
+     */
+    private Level createLevel(String fileName, String id) {
+        if (fileName.endsWith(CompiledLevel.FILE_EXTENSION)) {
+            return new Level(assetManager.get(fileName, CompiledLevel.class), id, 3, game, local);
+        }
+        return new Level(assetManager.get(fileName, TiledMap.class), id, 3, game, local);
+    }
+
+    /**
+     * Drop the level being prefetched, once it is built if the worker is building it. Its map stays cached
+     */
+    private void cancelPrefetch() {
+        if (prefetchIndex == 0) return;
+        if (prefetchLevel != null) {
+            getLevel(prefetchLevel).dispose();
+            prefetchLevel = null;
+        }
+        prefetchIndex = 0;
+    }
+
+    private static Level getLevel(Future<Level> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new GdxRuntimeException("Interrupted while loading a level", ex);
+        } catch (ExecutionException ex) {
+            throw new GdxRuntimeException("Loading a level failed", ex.getCause());
+        }
+    }
+
+    /**
+     * @return File of the compiled level, or of its map if the level is not compiled
+     */
+    private static String getFileName(int index) {
+        String compiled = "levels/" + index + CompiledLevel.FILE_EXTENSION;
+        return Gdx.files.internal(compiled).exists() ? compiled : "levels/" + index + ".tmx";
+    }
+
+    private static Class<?> getType(String fileName) {
+        return fileName.endsWith(CompiledLevel.FILE_EXTENSION) ? CompiledLevel.class : TiledMap.class;
+    }
+
+    /**
+     * Drop the prefetched level and the cached maps, and stop the worker thread. Levels taken from the loader must be
+     * unloaded first
+     */
+    @Override
+    public void dispose() {
+        cancelPrefetch();
+        executor.shutdown();
+        assetManager.dispose();
+    }
+}
@@ -0,0 +1,108 @@
+package com.labyrinthconquest.game.levels;
+
+import com.badlogic.gdx.maps.tiled.TiledMapTileLayer;
+import com.badlogic.gdx.utils.IntMap;
+
+/**
+ * Tile layer of a level playing a chunked layer. Only the chunks the level has loaded have cells, the others read as
+ * empty. Cells set on the layer (tiles removed while the level is played) are kept by the layer and applied again to
+ * their chunk whenever it is loaded
+ */
+class StreamedTileLayer extends TiledMapTileLayer {
+    private ChunkedTileLayer source;
+    private int chunkSize;
+    private int chunksX;
+    /**
+     * Cells of every loaded chunk row by row, null for the chunks that are not loaded or have no cells
+     */
+    private Cell[][] chunkCells;
+    private boolean[] loadedChunks;
+    /**
+     * Cells set on the layer by cell index (y * width + x), null where the tile was removed
+     */
+    private IntMap<Cell> writtenCells;
+
+    StreamedTileLayer(ChunkedTileLayer source) {
+        // The cells of the super class are not used, the layer is sized by the chunked layer
+        super(0, 0, source.getTileWidth(), source.getTileHeight());
+        this.source = source;
+        chunkSize = source.getChunkSize();
+        chunksX = source.getChunksX();
+        chunkCells = new Cell[chunksX * source.getChunksY()][];
+        loadedChunks = new boolean[chunkCells.length];
+        writtenCells = new IntMap<>();
+        setName(source.getName());
+        setVisible(source.isVisible());
+        setOpacity(source.getOpacity());
+        setOffsetX(source.getOffsetX());
+        setOffsetY(source.getOffsetY());
+        getProperties().putAll(source.getProperties());
+    }
+
+    public ChunkedTileLayer getSource() {
+        return source;
+    }
+
+    @Override
+    public int getWidth() {
+        return source.getWidth();
+    }
+
+    @Override
+    public int getHeight() {
+        return source.getHeight();
+    }
+
+    @Override
+    public Cell getCell(int x, int y) {
+        if (x < 0 || x >= getWidth() || y < 0 || y >= getHeight()) return null;
+        Cell[] cells = chunkCells[(y / chunkSize) * chunksX + x / chunkSize];
+        return cells == null ? null : cells[(y % chunkSize) * chunkSize + x % chunkSize];
+    }
+
+    @Override
+    public void setCell(int x, int y, Cell cell) {
+        if (x < 0 || x >= getWidth() || y < 0 || y >= getHeight()) return;
+        writtenCells.put(y * getWidth() + x, cell);
+        int chunk = (y / chunkSize) * chunksX + x / chunkSize;
+        if (!loadedChunks[chunk]) return;
+        if (chunkCells[chunk] == null) {
+            if (cell == null) return;
+            chunkCells[chunk] = new Cell[chunkSize * chunkSize];
+        }
+        chunkCells[chunk][(y % chunkSize) * chunkSize + x % chunkSize] = cell;
+    }
+
+    /**
+     * Load the cells of a chunk, with the cells set on the layer in place of the chunk's own
+     * @param chunk Chunk index
+     * @param cells Cells of the chunk row by row, null if it has none
+     */
+    void loadChunk(int chunk, Cell[] cells) {
+        if (writtenCells.size > 0) {
+            int chunkX = (chunk % chunksX) * chunkSize;
+            int chunkY = (chunk / chunksX) * chunkSize;
+            for (IntMap.Entry<Cell> written : writtenCells.entries()) {
+                int x = written.key % getWidth() - chunkX;
+                int y = written.key / getWidth() - chunkY;
+                if (x < 0 || x >= chunkSize || y < 0 || y >= chunkSize) continue;
+                if (cells == null) {
+                    if (written.value == null) continue;
+                    cells = new Cell[chunkSize * chunkSize];
+                }
+                cells[y * chunkSize + x] = written.value;
+            }
+        }
+        chunkCells[chunk] = cells;
+        loadedChunks[chunk] = true;
+    }
+
+    /**
+     * Drop the cells of a chunk
+     * @param chunk Chunk index
+     */
+    void unloadChunk(int chunk) {
+        chunkCells[chunk] = null;
+        loadedChunks[chunk] = false;
+    }
+}
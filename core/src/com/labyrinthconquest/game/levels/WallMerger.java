@@ -0,0 +1,96 @@
+package com.labyrinthconquest.game.levels;
+
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.utils.Array;
+
+/**
+ * Merges the rectangles of a wall layer into fewer, larger ones, so a layer needs fewer Box2D fixtures. Rectangles on
+ * whole tiles are drawn on a grid of tiles, which is merged greedily like the navigation mesh merges open cells: each
+ * wall tile not yet covered starts a rectangle that is made as wide as its row allows, then as high as the rows above
+ * allow at that width. Overlapping rectangles are merged too. Rectangles not on whole tiles are kept as they are, and
+ * so are all the rectangles when merging does not make fewer of them (e.g. walls drawn by hand as overlapping rectangles)
+ */
+final class WallMerger {
+    private static final float EPSILON = 0.001f;
+
+    private WallMerger() {
+    }
+
+    /**
+     * Merge wall rectangles
+     * @param rectangles Rectangles in tiles
+     * @return Merged rectangles covering the same tiles, or the rectangles if there would not be fewer
+     */
+    static Array<Rectangle> merge(Array<Rectangle> rectangles) {
+        Array<Rectangle> merged = new Array<>();
+        int minX = Integer.MAX_VALUE;
+        int minY = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+        int maxY = Integer.MIN_VALUE;
+        for (Rectangle rect : rectangles) {
+            if (!isOnTiles(rect)) continue;
+            minX = Math.min(minX, MathUtils.round(rect.x));
+            minY = Math.min(minY, MathUtils.round(rect.y));
+            maxX = Math.max(maxX, MathUtils.round(rect.x + rect.width));
+            maxY = Math.max(maxY, MathUtils.round(rect.y + rect.height));
+        }
+        if (minX == Integer.MAX_VALUE) {
+            merged.addAll(rectangles);
+            return merged;
+        }
+        int width = maxX - minX;
+        int height = maxY - minY;
+        boolean[] walls = new boolean[width * height];
+        for (Rectangle rect : rectangles) {
+            if (!isOnTiles(rect)) {
+                merged.add(rect);
+                continue;
+            }
+            int x0 = MathUtils.round(rect.x) - minX;
+            int y0 = MathUtils.round(rect.y) - minY;
+            int x1 = MathUtils.round(rect.x + rect.width) - minX;
+            int y1 = MathUtils.round(rect.y + rect.height) - minY;
+            for (int y = y0; y < y1; y++) {
+                for (int x = x0; x < x1; x++) {
+                    walls[y * width + x] = true;
+                }
+            }
+        }
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                if (!walls[y * width + x]) continue;
+                int rectWidth = 1;
+                while (x + rectWidth < width && walls[y * width + x + rectWidth]) rectWidth++;
+                int rectHeight = 1;
+                while (y + rectHeight < height && isRowWall(walls, width, x, y + rectHeight, rectWidth)) rectHeight++;
+                for (int ry = y; ry < y + rectHeight; ry++) {
+                    for (int rx = x; rx < x + rectWidth; rx++) {
+                        walls[ry * width + rx] = false;
+                    }
+                }
+                merged.add(new Rectangle(minX + x, minY + y, rectWidth, rectHeight));
+            }
+        }
+        return merged.size < rectangles.size ? merged : rectangles;
+    }
+
+    /**
+     * @return Whether a rectangle starts and ends on tile borders and is not empty
+     */
+    private static boolean isOnTiles(Rectangle rect) {
+        return isWhole(rect.x) && isWhole(rect.y) && isWhole(rect.width) && isWhole(rect.height)
+                && rect.width > EPSILON && rect.height > EPSILON;
+    }
+
+    private static boolean isWhole(float value) {
+        return Math.abs(value - MathUtils.round(value)) < EPSILON;
+    }
+
+    private static boolean isRowWall(boolean[] walls, int width, int x, int y, int rowWidth) {
+        for (int i = x; i < x + rowWidth; i++) {
+            if (!walls[y * width + i]) return false;
+        }
+        return true;
+    }
+}
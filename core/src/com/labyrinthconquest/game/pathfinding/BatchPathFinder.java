@@ -0,0 +1,189 @@
+package com.labyrinthconquest.game.pathfinding;
+
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.ObjectMap;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Finds many paths at once on a pool of threads, e.g for several characters commanded with one gesture or for bots.
+ * Each query names the graph of its character type. The queries are searched on snapshots of the graphs with path
+ * finders and buffers of each thread, then smoothed on the graphs' occupancy grids, whose line tests only read the
+ * grid. Every thread takes the next unsearched query until none are left, so a few long searches do not hold up the
+ * others. findPaths must be called on the thread that changes and searches the graphs, e.g the render thread: it
+ * brings the snapshots up to date there and blocks until the batch is done, so the graphs are not changed while the
+ * threads read them
+ */
+public class BatchPathFinder implements Disposable {
+    /**
+     * A path to find: the graph of the character type to search, and where to search from and to
+     */
+    public static class Query {
+        private Graph graph;
+        private Vector2 from = new Vector2();
+        private Vector2 to = new Vector2();
+
+        public Query(Graph graph, Vector2 from, Vector2 to) {
+            set(graph, from, to);
+        }
+
+        /**
+         * Reuse the query for another path
+         */
+        public void set(Graph graph, Vector2 from, Vector2 to) {
+            this.graph = graph;
+            this.from.set(from);
+            this.to.set(to);
+        }
+
+        public Graph getGraph() {
+            return graph;
+        }
+    }
+
+    private PathfindingService.PathFinderFactory pathFinderFactory;
+    private ExecutorService executor;
+    private int threads;
+    /**
+     * Search contexts not in use by a running batch. A context is only used by one thread at a time
+     */
+    private ConcurrentLinkedQueue<SearchContext> searchContexts;
+
+    /**
+     * Create a batch path finder and start its threads
+     * @param pathFinderFactory Creates the path finders the threads search snapshots with
+     * @param threads Number of threads
+     */
+    public BatchPathFinder(PathfindingService.PathFinderFactory pathFinderFactory, int threads) {
+        this.pathFinderFactory = pathFinderFactory;
+        this.threads = Math.max(1, threads);
+        searchContexts = new ConcurrentLinkedQueue<>();
+        executor = Executors.newFixedThreadPool(this.threads, new ThreadFactory() {
+            private AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "batch-pathfinding-" + count.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Find the paths of a batch of queries in parallel, blocking until all of them are found
+     * @param queries Queries
+     * @return Path of every query at the same index, an empty list where there is no path. The paths are new lists
+     *         owned by the caller. The threads set different indices of the list, they never change its size
+     */
+    public List<List<INode>> findPaths(Query[] queries) {
+        final List<List<INode>> paths = new ArrayList<>(Collections.<List<INode>>nCopies(queries.length, null));
+        final int[] startNodes = new int[queries.length];
+        final int[] goalNodes = new int[queries.length];
+        final CompactGraph[] snapshots = new CompactGraph[queries.length];
+        for (int i = 0; i < queries.length; i++) {
+            prepareQuery(queries[i], i, startNodes, goalNodes, snapshots);
+        }
+        final Query[] batchQueries = queries;
+        final AtomicInteger nextQuery = new AtomicInteger();
+        List<Callable<Void>> tasks = new ArrayList<>(threads);
+        for (int i = 0; i < Math.min(threads, queries.length); i++) {
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    SearchContext context = searchContexts.poll();
+                    if (context == null) {
+                        context = new SearchContext();
+                    }
+                    int index;
+                    while ((index = nextQuery.getAndIncrement()) < batchQueries.length) {
+                        paths.set(index, context.findPath(batchQueries[index], startNodes[index], goalNodes[index], snapshots[index]));
+                    }
+                    searchContexts.add(context);
+                    return null;
+                }
+            });
+        }
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new GdxRuntimeException("Interrupted while finding a batch of paths", ex);
+        } catch (ExecutionException ex) {
+            throw new GdxRuntimeException("Finding a batch of paths failed", ex.getCause());
+        }
+        return paths;
+    }
+
+    /**
+     * Find the endpoints and the snapshot of a query on the calling thread, as the snapshot is made when first needed.
+     * Queries whose endpoints cannot reach each other get no snapshot and are not searched
+     */
+    private static void prepareQuery(Query query, int index, int[] startNodes, int[] goalNodes, CompactGraph[] snapshots) {
+        Graph graph = query.graph;
+        startNodes[index] = graph.findClosestNode(query.from);
+        goalNodes[index] = graph.findClosestNode(query.to);
+        snapshots[index] = graph.isReachable(startNodes[index], goalNodes[index]) ? graph.getSnapshot() : null;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Stop the threads. Batches still running are finished first
+     */
+    @Override
+    public void dispose() {
+        executor.shutdown();
+    }
+
+    /**
+     * Path finders and buffers of one thread. Keeps a path finder per graph, created again when the graph's snapshot
+     * or heuristic changes
+     */
+    private class SearchContext {
+        private ObjectMap<Graph, CompactGraph> snapshots = new ObjectMap<>();
+        private ObjectMap<Graph, GridPathFinder> pathFinders = new ObjectMap<>();
+        private ObjectMap<Graph, GridHeuristic> heuristics = new ObjectMap<>();
+        private IntArray nodePath = new IntArray();
+        private IntArray waypoints = new IntArray();
+
+        List<INode> findPath(Query query, int startNode, int goalNode, CompactGraph snapshot) {
+            if (snapshot == null) {
+                return Collections.emptyList();
+            }
+            if (!getPathFinder(query.graph, snapshot).searchPath(startNode, goalNode, nodePath)) {
+                return Collections.emptyList();
+            }
+            return query.graph.createDetachedPath(query.from, query.to, nodePath, waypoints);
+        }
+
+        private GridPathFinder getPathFinder(Graph graph, CompactGraph snapshot) {
+            GridHeuristic heuristic = graph.getHeuristic();
+            if (snapshots.get(graph) != snapshot || heuristics.get(graph) != heuristic) {
+                snapshots.put(graph, snapshot);
+                heuristics.put(graph, heuristic);
+                GridPathFinder pathFinder = pathFinderFactory.create(snapshot);
+                pathFinder.setHeuristic(heuristic);
+                pathFinders.put(graph, pathFinder);
+            }
+            return pathFinders.get(graph);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.labyrinthconquest.game.pathfinding;
+
+import com.badlogic.gdx.utils.IntArray;
+
+/**
+ * Bidirectional A* over a compact graph. One search runs forwards from the start and one backwards from the goal
+ * (the graph's edges go both ways), each step expanding the side with the smaller open list. Every time a search
+ * reaches a node the other one has reached, the path through that node is a candidate.
+ * Both searches use the same, balanced estimate (Ikeda et al.): half the heuristic to the goal minus half the
+ * heuristic to the start, negated for the backward search. With it both searches are a Dijkstra on the same reduced
+ * edge costs, so the best candidate is the shortest path as soon as the lowest keys of the two open lists add up to
+ * at least its cost. Estimating each direction towards its own end instead would need one of the open lists to reach
+ * that cost alone, by which time the searches have crossed and done the work of a plain A* twice.
+ * On long winding paths the two searches each cover a small area around their end instead of one search flooding
+ * most of the map
+ */
+public class BidirectionalAStarPathFinder implements GridPathFinder {
+    private static final int FORWARD = 0;
+    private static final int BACKWARD = 1;
+
+    private CompactGraph graph;
+    private GridHeuristic heuristic;
+    /**
+     * Search state of both directions, indexed by FORWARD and BACKWARD
+     */
+    private NodeHeap[] openLists;
+    private float[][] costSoFar;
+    private int[][] parent;
+    private int[][] visited;
+    private int[][] closed;
+    private int searchId;
+    private int expandedNodes;
+    /**
+     * Cost of the best path found so far and the node the two searches met at on it
+     */
+    private float bestCost;
+    private int meetingNode;
+    private int startNode;
+    private int goalNode;
+
+    public BidirectionalAStarPathFinder(CompactGraph graph) {
+        this.graph = graph;
+        heuristic = new EuclideanHeuristic(graph);
+        int nodeCount = graph.getNodeCount();
+        openLists = new NodeHeap[] {new NodeHeap(nodeCount), new NodeHeap(nodeCount)};
+        costSoFar = new float[2][nodeCount];
+        parent = new int[2][nodeCount];
+        visited = new int[2][nodeCount];
+        closed = new int[2][nodeCount];
+    }
+
+    @Override
+    public boolean searchPath(int startNode, int goalNode, IntArray outPath) {
+        outPath.clear();
+        expandedNodes = 0;
+        if (++searchId < 0) {
+            resetSearchIds();
+        }
+        openLists[FORWARD].clear();
+        openLists[BACKWARD].clear();
+        if (!graph.isOpen(startNode) || !graph.isOpen(goalNode)) {
+            return false;
+        }
+        bestCost = Float.POSITIVE_INFINITY;
+        meetingNode = CompactGraph.NO_NODE;
+        this.startNode = startNode;
+        this.goalNode = goalNode;
+        visit(FORWARD, startNode, CompactGraph.NO_NODE, 0);
+        visit(BACKWARD, goalNode, CompactGraph.NO_NODE, 0);
+        while (!openLists[FORWARD].isEmpty() && !openLists[BACKWARD].isEmpty()) {
+            if (openLists[FORWARD].peekKey() + openLists[BACKWARD].peekKey() >= bestCost) {
+                break;
+            }
+            expand(openLists[FORWARD].size() <= openLists[BACKWARD].size() ? FORWARD : BACKWARD);
+        }
+        if (meetingNode == CompactGraph.NO_NODE) {
+            return false;
+        }
+        generatePath(outPath);
+        return true;
+    }
+
+    /**
+     * Expand the best node of one direction's open list
+     * @param direction FORWARD or BACKWARD
+     */
+    private void expand(int direction) {
+        int current = openLists[direction].pop();
+        closed[direction][current] = searchId;
+        expandedNodes++;
+        float[] costs = costSoFar[direction];
+        for (int e = graph.getEdgeStart(current); e < graph.getEdgeEnd(current); e++) {
+            int next = graph.getEdgeTarget(e);
+            if (closed[direction][next] == searchId || !graph.isOpen(next)) continue;
+            float cost = costs[current] + graph.getEdgeCost(e);
+            if (visited[direction][next] != searchId || cost < costs[next]) {
+                visit(direction, next, current, cost);
+            }
+        }
+    }
+
+    /**
+     * Record a better path to node in one direction and (re)insert it to that direction's open list. If the other
+     * direction has reached the node, the path through it is kept if it is the best so far
+     */
+    private void visit(int direction, int node, int from, float cost) {
+        visited[direction][node] = searchId;
+        costSoFar[direction][node] = cost;
+        parent[direction][node] = from;
+        float estimate = (heuristic.estimate(node, goalNode) - heuristic.estimate(node, startNode)) / 2;
+        openLists[direction].add(node, cost + (direction == FORWARD ? estimate : -estimate));
+        int other = 1 - direction;
+        if (visited[other][node] == searchId && cost + costSoFar[other][node] < bestCost) {
+            bestCost = cost + costSoFar[other][node];
+            meetingNode = node;
+        }
+    }
+
+    /**
+     * Walk back from the meeting node to the start, then on from it to the goal
+     */
+    private void generatePath(IntArray outPath) {
+        for (int node = meetingNode; node != CompactGraph.NO_NODE; node = parent[FORWARD][node]) {
+            outPath.add(node);
+        }
+        outPath.reverse();
+        for (int node = parent[BACKWARD][meetingNode]; node != CompactGraph.NO_NODE; node = parent[BACKWARD][node]) {
+            outPath.add(node);
+        }
+    }
+
+    /**
+     * Search ids wrapped around, forget all old stamps
+     */
+    private void resetSearchIds() {
+        for (int direction = FORWARD; direction <= BACKWARD; direction++) {
+            for (int i = 0; i < visited[direction].length; i++) {
+                visited[direction][i] = 0;
+                closed[direction][i] = 0;
+            }
+        }
+        searchId = 1;
+    }
+
+    /**
+     * The balanced estimate is only a valid lower bound if the heuristic is consistent (never drops by more than the
+     * cost of an edge), as the heuristics of this package are
+     */
+    @Override
+    public void setHeuristic(GridHeuristic heuristic) {
+        this.heuristic = heuristic;
+    }
+
+    @Override
+    public int getExpandedNodes() {
+        return expandedNodes;
+    }
+
+    @Override
+    public void onNodeChanged(int node) {
+        // Searches read the open nodes straight from the graph
+    }
+}
@@ -0,0 +1,114 @@
+package com.labyrinthconquest.game.pathfinding;
+
+import com.badlogic.gdx.utils.IntArray;
+
+/**
+ * A* over a compact graph. Search state lives in arrays indexed by node that are stamped with a search id,
+ * so they never have to be cleared or reallocated between searches
+ */
+public class CompactAStarPathFinder implements GridPathFinder {
+    private CompactGraph graph;
+    private GridHeuristic heuristic;
+    private NodeHeap openList;
+    /**
+     * Cost of the best known path to every node
+     */
+    private float[] costSoFar;
+    private int[] parent;
+    /**
+     * Search id in which the node was last reached / closed
+     */
+    private int[] visited;
+    private int[] closed;
+    private int searchId;
+    private int expandedNodes;
+
+    public CompactAStarPathFinder(CompactGraph graph) {
+        this.graph = graph;
+        heuristic = new EuclideanHeuristic(graph);
+        int nodeCount = graph.getNodeCount();
+        openList = new NodeHeap(nodeCount);
+        costSoFar = new float[nodeCount];
+        parent = new int[nodeCount];
+        visited = new int[nodeCount];
+        closed = new int[nodeCount];
+    }
+
+    @Override
+    public boolean searchPath(int startNode, int goalNode, IntArray outPath) {
+        outPath.clear();
+        expandedNodes = 0;
+        if (++searchId < 0) {
+            resetSearchIds();
+        }
+        openList.clear();
+        if (!graph.isOpen(startNode) || !graph.isOpen(goalNode)) {
+            return false;
+        }
+        visit(startNode, CompactGraph.NO_NODE, 0, goalNode);
+        while (!openList.isEmpty()) {
+            int current = openList.pop();
+            if (current == goalNode) {
+                generatePath(goalNode, outPath);
+                return true;
+            }
+            closed[current] = searchId;
+            expandedNodes++;
+            for (int e = graph.getEdgeStart(current); e < graph.getEdgeEnd(current); e++) {
+                int next = graph.getEdgeTarget(e);
+                if (closed[next] == searchId || !graph.isOpen(next)) continue;
+                float cost = costSoFar[current] + graph.getEdgeCost(e);
+                if (visited[next] != searchId || cost < costSoFar[next]) {
+                    visit(next, current, cost, goalNode);
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Record a better path to node and (re)insert it to the open list
+     */
+    private void visit(int node, int from, float cost, int goalNode) {
+        visited[node] = searchId;
+        costSoFar[node] = cost;
+        parent[node] = from;
+        openList.add(node, cost + heuristic.estimate(node, goalNode));
+    }
+
+    /**
+     * Walk back from the goal along the parents
+     */
+    private void generatePath(int goalNode, IntArray outPath) {
+        for (int node = goalNode; node != CompactGraph.NO_NODE; node = parent[node]) {
+            outPath.add(node);
+        }
+        outPath.reverse();
+    }
+
+    /**
+     * Search ids wrapped around, forget all old stamps
+     */
+    private void resetSearchIds() {
+        for (int i = 0; i < visited.length; i++) {
+            visited[i] = 0;
+            closed[i] = 0;
+        }
+        searchId = 1;
+    }
+
+    @Override
+    public void setHeuristic(GridHeuristic heuristic) {
+        this.heuristic = heuristic;
+    }
+
+    @Override
+    public int getExpandedNodes() {
+        return expandedNodes;
+    }
+
+    @Override
+    public void onNodeChanged(int node) {
+        // Searches read the open nodes straight from the graph
+    }
+}
@@ -0,0 +1,511 @@
+package com.labyrinthconquest.game.pathfinding;
+
+import com.badlogic.gdx.maps.tiled.TiledMapTileLayer;
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Vector2;
+
+import java.util.Arrays;
+
+/**
+ * Compressed sparse row (CSR) representation of a tile graph. Nodes are plain indices, and their positions,
+ * adjacency and edge costs are stored in primitive arrays, so neighbour iteration only walks flat arrays.
+ * A graph can be shared by several kinds of characters: every node stores a capability bitmask of who can walk it,
+ * and a view of the graph for a capability mask shares all node and edge arrays, with the nodes outside its mask closed
+ */
+public class CompactGraph {
+    /**
+     * Marks a cell that has no node
+     */
+    public static final int NO_NODE = -1;
+    /**
+     * Capability mask walking every node
+     */
+    public static final short ALL_CAPABILITIES = -1;
+
+    private int width;
+    private int height;
+    private int nodeCount;
+
+    /**
+     * Node positions (cell centers)
+     */
+    private float[] nodeX;
+    private float[] nodeY;
+
+    /**
+     * Cell index (y * width + x) of every node
+     */
+    private int[] nodeCell;
+
+    /**
+     * Node of every cell, NO_NODE where the cell is not walkable
+     */
+    private int[] cellNode;
+
+    /**
+     * Capabilities that can walk every node, e.g one player category per pathfind layer the node's cell was in
+     */
+    private short[] nodeCapabilities;
+
+    /**
+     * Capabilities this graph is searched with. Nodes none of them can walk are always closed
+     */
+    private short capabilityMask;
+
+    /**
+     * Nodes that are closed for now (e.g a door). Closed nodes keep their edges, path finders skip them
+     */
+    private boolean[] closedNodes;
+
+    /**
+     * Closest walkable node of every cell (distance transform of cellNode)
+     */
+    private int[] nearestNode;
+
+    /**
+     * Edges leaving node n are stored in edgeTargets and edgeCosts between edgeOffsets[n] and edgeOffsets[n + 1]
+     */
+    private int[] edgeOffsets;
+    private int[] edgeTargets;
+    private float[] edgeCosts;
+
+    /**
+     * Build a compact graph from a tilemap layer. Every non-null cell becomes a node connected to its 8 neighbours
+     * @param layer Layer from which to get the node positions
+     */
+    public CompactGraph(TiledMapTileLayer layer) {
+        this(new TiledMapTileLayer[] {layer}, new short[] {ALL_CAPABILITIES});
+    }
+
+    /**
+     * Build one compact graph for several tilemap layers of the same size. A cell that is non-null in any of the layers
+     * becomes a node, walkable by the capabilities of the layers it is in. Searches use a view for their capability mask
+     * @param layers Layers from which to get the node positions
+     * @param capabilities Capability bits of every layer, e.g the player category walking it
+     */
+    public CompactGraph(TiledMapTileLayer[] layers, short[] capabilities) {
+        width = layers[0].getWidth();
+        height = layers[0].getHeight();
+        short[] cellCapabilities = new short[width * height];
+        for (int i = 0; i < layers.length; i++) {
+            for (int x = 0; x < width; x++) {
+                for (int y = 0; y < height; y++) {
+                    if (layers[i].getCell(x, y) != null) {
+                        cellCapabilities[y * width + x] |= capabilities[i];
+                    }
+                }
+            }
+        }
+        capabilityMask = ALL_CAPABILITIES;
+        createNodes(cellCapabilities);
+        createEdges();
+        createNearestNodes();
+    }
+
+    /**
+     * Rebuild a graph from the node and edge arrays of one that was built before, e.g baked into a compiled level.
+     * The arrays are used as they are, only the cell lookups are recreated
+     * @param width Width in cells
+     * @param height Height in cells
+     * @param nodeCell Cell index of every node
+     * @param nodeCapabilities Capabilities that can walk every node
+     * @param edgeOffsets Index of the first edge of every node, followed by the number of edges
+     * @param edgeTargets Target node of every edge
+     * @param edgeCosts Cost of every edge
+     */
+    public CompactGraph(int width, int height, int[] nodeCell, short[] nodeCapabilities, int[] edgeOffsets,
+                        int[] edgeTargets, float[] edgeCosts) {
+        this.width = width;
+        this.height = height;
+        this.nodeCell = nodeCell;
+        this.nodeCapabilities = nodeCapabilities;
+        this.edgeOffsets = edgeOffsets;
+        this.edgeTargets = edgeTargets;
+        this.edgeCosts = edgeCosts;
+        nodeCount = nodeCell.length;
+        nodeX = new float[nodeCount];
+        nodeY = new float[nodeCount];
+        closedNodes = new boolean[nodeCount];
+        cellNode = new int[width * height];
+        Arrays.fill(cellNode, NO_NODE);
+        for (int node = 0; node < nodeCount; node++) {
+            nodeX[node] = getCellX(nodeCell[node]) + 0.5f;
+            nodeY[node] = getCellY(nodeCell[node]) + 0.5f;
+            cellNode[nodeCell[node]] = node;
+        }
+        capabilityMask = ALL_CAPABILITIES;
+        createNearestNodes();
+    }
+
+    /**
+     * Copy a graph, sharing its node and edge arrays as they never change
+     * @param graph Graph to copy
+     */
+    private CompactGraph(CompactGraph graph) {
+        width = graph.width;
+        height = graph.height;
+        nodeCount = graph.nodeCount;
+        nodeX = graph.nodeX;
+        nodeY = graph.nodeY;
+        nodeCell = graph.nodeCell;
+        cellNode = graph.cellNode;
+        nodeCapabilities = graph.nodeCapabilities;
+        capabilityMask = graph.capabilityMask;
+        closedNodes = graph.closedNodes.clone();
+        nearestNode = graph.nearestNode;
+        edgeOffsets = graph.edgeOffsets;
+        edgeTargets = graph.edgeTargets;
+        edgeCosts = graph.edgeCosts;
+    }
+
+    /**
+     * Create a view of a graph for a capability mask. Only the open nodes and the nearest nodes are its own
+     * @param graph Graph to view
+     * @param capabilityMask Capabilities to search with
+     * @param nearestNode Closest walkable node of every cell for the capabilities, null to compute them
+     */
+    private CompactGraph(CompactGraph graph, short capabilityMask, int[] nearestNode) {
+        this(graph);
+        this.capabilityMask = capabilityMask;
+        for (int node = 0; node < nodeCount; node++) {
+            closedNodes[node] = !isWalkable(node);
+        }
+        if (nearestNode != null) {
+            this.nearestNode = nearestNode;
+        } else {
+            createNearestNodes();
+        }
+    }
+
+    /**
+     * Create a view of the graph for a kind of character, sharing the nodes and edges of this graph. Nodes the character
+     * cannot walk are closed in the view and cannot be opened. The other nodes start open, whatever their state here
+     * @param capabilityMask Capabilities of the character, a node is walkable if it has any of them
+     * @return View, opened and closed independently of this graph and its other views
+     */
+    public CompactGraph createView(short capabilityMask) {
+        return new CompactGraph(this, capabilityMask, null);
+    }
+
+    /**
+     * Create a view of the graph with the closest nodes of its cells computed before, e.g baked into a compiled level
+     * @param capabilityMask Capabilities of the character
+     * @param nearestNode Closest node of every cell a view for the capabilities has, see getNearestNode
+     * @return View
+     */
+    public CompactGraph createView(short capabilityMask, int[] nearestNode) {
+        return new CompactGraph(this, capabilityMask, nearestNode);
+    }
+
+    /**
+     * Take a snapshot of the graph with its currently open nodes. Only the open nodes are copied, so a snapshot is
+     * cheap, and other threads can search it while nodes of this graph are opened and closed. Snapshots must not be modified
+     * @return Snapshot
+     */
+    public CompactGraph snapshot() {
+        return new CompactGraph(this);
+    }
+
+    /**
+     * Create nodes for walkable cells. Nodes are numbered column by column, the same order the tilemap was read in
+     * @param cellCapabilities Capabilities that can walk every cell, 0 where nothing can
+     */
+    private void createNodes(short[] cellCapabilities) {
+        cellNode = new int[width * height];
+        for (int i = 0; i < cellCapabilities.length; i++) {
+            if (cellCapabilities[i] != 0) nodeCount++;
+        }
+        nodeX = new float[nodeCount];
+        nodeY = new float[nodeCount];
+        nodeCell = new int[nodeCount];
+        nodeCapabilities = new short[nodeCount];
+        closedNodes = new boolean[nodeCount];
+        int index = 0;
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                int cell = y * width + x;
+                if (cellCapabilities[cell] == 0) {
+                    cellNode[cell] = NO_NODE;
+                    continue;
+                }
+                nodeX[index] = x + 0.5f;
+                nodeY[index] = y + 0.5f;
+                nodeCell[index] = cell;
+                nodeCapabilities[index] = cellCapabilities[cell];
+                cellNode[cell] = index++;
+            }
+        }
+    }
+
+    /**
+     * Connect every node to all of its walkable neighbours. Counts the edges first so the arrays are sized exactly
+     */
+    private void createEdges() {
+        edgeOffsets = new int[nodeCount + 1];
+        for (int n = 0; n < nodeCount; n++) {
+            edgeOffsets[n + 1] = edgeOffsets[n] + connectNode(n, null, null, 0);
+        }
+        edgeTargets = new int[edgeOffsets[nodeCount]];
+        edgeCosts = new float[edgeOffsets[nodeCount]];
+        for (int n = 0; n < nodeCount; n++) {
+            connectNode(n, edgeTargets, edgeCosts, edgeOffsets[n]);
+        }
+    }
+
+    /**
+     * Connect node to all possible walkable neighbours, in the same order as the object graph
+     * @param node Node to connect
+     * @param targets Array to write neighbours into, null to only count them
+     * @param costs Array to write edge costs into, null to only count them
+     * @param offset Index of the first edge of the node
+     * @return Number of edges of the node
+     */
+    private int connectNode(int node, int[] targets, float[] costs, int offset) {
+        int x = getCellX(nodeCell[node]);
+        int y = getCellY(nodeCell[node]);
+        int count = 0;
+        count += connectNodes(node, x + 1, y, targets, costs, offset + count);
+        count += connectNodes(node, x - 1, y, targets, costs, offset + count);
+        count += connectNodes(node, x, y + 1, targets, costs, offset + count);
+        count += connectNodes(node, x, y - 1, targets, costs, offset + count);
+        count += connectNodes(node, x + 1, y + 1, targets, costs, offset + count);
+        count += connectNodes(node, x - 1, y + 1, targets, costs, offset + count);
+        count += connectNodes(node, x + 1, y - 1, targets, costs, offset + count);
+        count += connectNodes(node, x - 1, y - 1, targets, costs, offset + count);
+        return count;
+    }
+
+    /**
+     * Connect node to the node at cell (x, y), if there is one
+     * @return 1 if an edge was made, else 0
+     */
+    private int connectNodes(int node, int x, int y, int[] targets, float[] costs, int edge) {
+        int to = getNode(x, y);
+        if (to == NO_NODE) return 0;
+        if (targets != null) {
+            targets[edge] = to;
+            costs[edge] = Vector2.dst(nodeX[node], nodeY[node], nodeX[to], nodeY[to]);
+        }
+        return 1;
+    }
+
+    /**
+     * Precompute the closest walkable node for every cell. Uses a two pass sequential euclidean distance transform:
+     * each cell takes the closest node of its already visited neighbours, first scanning up and then down the map
+     */
+    private void createNearestNodes() {
+        nearestNode = new int[width * height];
+        for (int cell = 0; cell < cellNode.length; cell++) {
+            int node = cellNode[cell];
+            nearestNode[cell] = node == NO_NODE || !isWalkable(node) ? NO_NODE : node;
+        }
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                propagateNearest(x, y, x - 1, y);
+                propagateNearest(x, y, x - 1, y - 1);
+                propagateNearest(x, y, x, y - 1);
+                propagateNearest(x, y, x + 1, y - 1);
+            }
+            for (int x = width - 1; x >= 0; x--) {
+                propagateNearest(x, y, x + 1, y);
+            }
+        }
+        for (int y = height - 1; y >= 0; y--) {
+            for (int x = width - 1; x >= 0; x--) {
+                propagateNearest(x, y, x + 1, y);
+                propagateNearest(x, y, x + 1, y + 1);
+                propagateNearest(x, y, x, y + 1);
+                propagateNearest(x, y, x - 1, y + 1);
+            }
+            for (int x = 0; x < width; x++) {
+                propagateNearest(x, y, x - 1, y);
+            }
+        }
+    }
+
+    /**
+     * Take the closest node of a neighbouring cell if it is closer to this cell than the current one
+     * @param x X of the cell to update
+     * @param y Y of the cell to update
+     * @param nx X of the neighbouring cell
+     * @param ny Y of the neighbouring cell
+     */
+    private void propagateNearest(int x, int y, int nx, int ny) {
+        if (nx < 0 || ny < 0 || nx >= width || ny >= height) return;
+        int candidate = nearestNode[ny * width + nx];
+        if (candidate == NO_NODE) return;
+        int cell = y * width + x;
+        int current = nearestNode[cell];
+        float cx = x + 0.5f;
+        float cy = y + 0.5f;
+        if (current == NO_NODE || Vector2.dst2(cx, cy, nodeX[candidate], nodeY[candidate]) < Vector2.dst2(cx, cy, nodeX[current], nodeY[current])) {
+            nearestNode[cell] = candidate;
+        }
+    }
+
+    /**
+     * Find the closest node to a position. A walkable cell answers with its own node, any other cell (or a position
+     * outside the map) picks the closest of the precomputed nearest nodes of its own and neighbouring cells
+     * @param px X position
+     * @param py Y position
+     * @return Closest node, NO_NODE if the graph is empty
+     */
+    public int findClosestNode(float px, float py) {
+        int x = MathUtils.clamp(MathUtils.floor(px), 0, width - 1);
+        int y = MathUtils.clamp(MathUtils.floor(py), 0, height - 1);
+        int closest = getNode(x, y);
+        if (closest != NO_NODE) {
+            return closest;
+        }
+        float dst = Float.MAX_VALUE;
+        for (int nx = Math.max(x - 1, 0); nx <= Math.min(x + 1, width - 1); nx++) {
+            for (int ny = Math.max(y - 1, 0); ny <= Math.min(y + 1, height - 1); ny++) {
+                int node = nearestNode[ny * width + nx];
+                if (node == NO_NODE) continue;
+                float tempDst = Vector2.dst2(px, py, nodeX[node], nodeY[node]);
+                if (tempDst < dst) {
+                    dst = tempDst;
+                    closest = node;
+                }
+            }
+        }
+        return closest;
+    }
+
+    /**
+     * Get the cell containing a position, clamped to the map
+     * @param px X position
+     * @param py Y position
+     * @return Cell index
+     */
+    public int getCell(float px, float py) {
+        int x = MathUtils.clamp(MathUtils.floor(px), 0, width - 1);
+        int y = MathUtils.clamp(MathUtils.floor(py), 0, height - 1);
+        return y * width + x;
+    }
+
+    /**
+     * Get the node at cell (x, y)
+     * @param x Cell x
+     * @param y Cell y
+     * @return Node index, NO_NODE if the cell is outside the map or not walkable with the graph's capabilities
+     */
+    public int getNode(int x, int y) {
+        if (x < 0 || y < 0 || x >= width || y >= height) return NO_NODE;
+        int node = cellNode[y * width + x];
+        return node == NO_NODE || !isWalkable(node) ? NO_NODE : node;
+    }
+
+    /**
+     * Get the node at cell (x, y) if it is open
+     * @param x Cell x
+     * @param y Cell y
+     * @return Node index, NO_NODE if the cell is outside the map, not walkable or closed
+     */
+    public int getOpenNode(int x, int y) {
+        if (x < 0 || y < 0 || x >= width || y >= height) return NO_NODE;
+        // Nodes the graph's capabilities cannot walk are always closed
+        int node = cellNode[y * width + x];
+        return node == NO_NODE || closedNodes[node] ? NO_NODE : node;
+    }
+
+    public boolean isOpen(int node) {
+        return !closedNodes[node];
+    }
+
+    /**
+     * Whether the graph's capabilities can walk a node at all, open or closed
+     * @param node Node index
+     */
+    public boolean isWalkable(int node) {
+        return (nodeCapabilities[node] & capabilityMask) != 0;
+    }
+
+    /**
+     * Open or close a node. Path finders using the graph must be told about the change.
+     * A node the graph's capabilities cannot walk stays closed
+     * @param node Node index
+     * @param open Whether the node can be walked through
+     */
+    public void setOpen(int node, boolean open) {
+        closedNodes[node] = !open || !isWalkable(node);
+    }
+
+    /**
+     * @param node Node index
+     * @return Capabilities that can walk the node
+     */
+    public short getCapabilities(int node) {
+        return nodeCapabilities[node];
+    }
+
+    public short getCapabilityMask() {
+        return capabilityMask;
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    public int getEdgeCount() {
+        return edgeTargets.length;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public float getX(int node) {
+        return nodeX[node];
+    }
+
+    public float getY(int node) {
+        return nodeY[node];
+    }
+
+    public int getCellX(int cell) {
+        return cell % width;
+    }
+
+    public int getCellY(int cell) {
+        return cell / width;
+    }
+
+    public int getNodeCell(int node) {
+        return nodeCell[node];
+    }
+
+    /**
+     * @param cell Cell index
+     * @return Closest walkable node of the cell, NO_NODE if no node is walkable
+     */
+    public int getNearestNode(int cell) {
+        return nearestNode[cell];
+    }
+
+    /**
+     * Index of the first edge leaving node
+     */
+    public int getEdgeStart(int node) {
+        return edgeOffsets[node];
+    }
+
+    /**
+     * Index after the last edge leaving node
+     */
+    public int getEdgeEnd(int node) {
+        return edgeOffsets[node + 1];
+    }
+
+    public int getEdgeTarget(int edge) {
+        return edgeTargets[edge];
+    }
+
+    public float getEdgeCost(int edge) {
+        return edgeCosts[edge];
+    }
+}
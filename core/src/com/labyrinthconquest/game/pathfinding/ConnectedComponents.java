@@ -0,0 +1,166 @@
+package com.labyrinthconquest.game.pathfinding;
+
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.utils.IntArray;
+
+/**
+ * Connected components of the open nodes of a compact graph, so whether one node can reach another is answered
+ * without searching. Components are labelled with a flood fill and kept in a union-find structure: opening a node
+ * (a door opens, a wall breaks) merges the components around it in place, closing a node may split a component,
+ * so the nodes are labelled again on the next query
+ */
+public class ConnectedComponents {
+    public static final int NO_COMPONENT = -1;
+
+    private CompactGraph graph;
+    /**
+     * Component every open node was labelled with, NO_COMPONENT for closed nodes
+     */
+    private int[] nodeComponents;
+    /**
+     * Union-find parent of every component, a component is its own parent when it is the root of its set
+     */
+    private IntArray componentParents;
+    private boolean dirty;
+    private IntArray stack;
+
+    public ConnectedComponents(CompactGraph graph) {
+        this.graph = graph;
+        nodeComponents = new int[graph.getNodeCount()];
+        componentParents = new IntArray();
+        stack = new IntArray();
+        label();
+    }
+
+    /**
+     * Label the components of every open node with a flood fill
+     */
+    private void label() {
+        for (int i = 0; i < nodeComponents.length; i++) {
+            nodeComponents[i] = NO_COMPONENT;
+        }
+        componentParents.clear();
+        for (int node = 0; node < nodeComponents.length; node++) {
+            if (nodeComponents[node] != NO_COMPONENT || !graph.isOpen(node)) continue;
+            int component = componentParents.size;
+            componentParents.add(component);
+            nodeComponents[node] = component;
+            stack.add(node);
+            while (stack.size > 0) {
+                int current = stack.pop();
+                for (int e = graph.getEdgeStart(current); e < graph.getEdgeEnd(current); e++) {
+                    int next = graph.getEdgeTarget(e);
+                    if (nodeComponents[next] == NO_COMPONENT && graph.isOpen(next)) {
+                        nodeComponents[next] = component;
+                        stack.add(next);
+                    }
+                }
+            }
+        }
+        dirty = false;
+    }
+
+    /**
+     * Called after a node was opened. The node joins the components of its open neighbours, merging them
+     * @param node Index of the node
+     */
+    public void onNodeOpened(int node) {
+        if (dirty) return;
+        int component = componentParents.size;
+        componentParents.add(component);
+        nodeComponents[node] = component;
+        for (int e = graph.getEdgeStart(node); e < graph.getEdgeEnd(node); e++) {
+            int next = graph.getEdgeTarget(e);
+            if (graph.isOpen(next)) {
+                union(component, nodeComponents[next]);
+            }
+        }
+    }
+
+    /**
+     * Called after a node was closed. Its component may have split, so the components are labelled again when next needed
+     * @param node Index of the node
+     */
+    public void onNodeClosed(int node) {
+        dirty = true;
+    }
+
+    /**
+     * @param node Index of the node
+     * @return Component of the node, NO_COMPONENT if the node is closed
+     */
+    public int getComponent(int node) {
+        if (dirty) {
+            label();
+        }
+        int component = nodeComponents[node];
+        return component == NO_COMPONENT ? NO_COMPONENT : find(component);
+    }
+
+    /**
+     * @param from Index of the node to start from
+     * @param to Index of the node to reach
+     * @return Whether a path between the nodes exists
+     */
+    public boolean isConnected(int from, int to) {
+        int component = getComponent(from);
+        return component != NO_COMPONENT && component == getComponent(to);
+    }
+
+    /**
+     * Find the node of a component closest to a position, searching outwards from the position's cell ring by ring
+     * @param component Component
+     * @param px X position
+     * @param py Y position
+     * @return Node index, NO_NODE if the component has no nodes
+     */
+    public int findClosestNode(int component, float px, float py) {
+        if (component == NO_COMPONENT) return CompactGraph.NO_NODE;
+        int cx = MathUtils.clamp(MathUtils.floor(px), 0, graph.getWidth() - 1);
+        int cy = MathUtils.clamp(MathUtils.floor(py), 0, graph.getHeight() - 1);
+        int maxRadius = Math.max(graph.getWidth(), graph.getHeight());
+        int closest = CompactGraph.NO_NODE;
+        float closestDistance = Float.MAX_VALUE;
+        for (int radius = 0; radius <= maxRadius; radius++) {
+            // Every cell of this ring and beyond is at least radius - 1 away from the position
+            if (closest != CompactGraph.NO_NODE && (radius - 1) * (radius - 1) > closestDistance) break;
+            for (int x = cx - radius; x <= cx + radius; x++) {
+                // Only the top and bottom rows of the ring, plus both ends of the rows in between
+                int step = x == cx - radius || x == cx + radius ? 1 : Math.max(1, 2 * radius);
+                for (int y = cy - radius; y <= cy + radius; y += step) {
+                    int node = graph.getNode(x, y);
+                    if (node == CompactGraph.NO_NODE || getComponent(node) != component) continue;
+                    float distance = (graph.getX(node) - px) * (graph.getX(node) - px) + (graph.getY(node) - py) * (graph.getY(node) - py);
+                    if (distance < closestDistance) {
+                        closestDistance = distance;
+                        closest = node;
+                    }
+                }
+            }
+        }
+        return closest;
+    }
+
+    /**
+     * Merge the sets of two components
+     */
+    private void union(int a, int b) {
+        int rootA = find(a);
+        int rootB = find(b);
+        if (rootA != rootB) {
+            componentParents.set(rootA, rootB);
+        }
+    }
+
+    /**
+     * Root of the set of a component, halving the path to it on the way
+     */
+    private int find(int component) {
+        while (componentParents.get(component) != component) {
+            int parent = componentParents.get(componentParents.get(component));
+            componentParents.set(component, parent);
+            component = parent;
+        }
+        return component;
+    }
+}
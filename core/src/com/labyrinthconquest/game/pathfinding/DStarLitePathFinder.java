@@ -0,0 +1,227 @@
+package com.labyrinthconquest.game.pathfinding;
+
+import com.badlogic.gdx.utils.IntArray;
+
+/**
+ * Incremental search with D* Lite (Koenig and Likhachev). The search runs backwards from the goal and its tree is kept
+ * between queries to the same goal, so when the start moves along the path or nodes of the graph are opened or closed,
+ * only the part of the tree the change affects is repaired instead of searching again from scratch.
+ * A query to a new goal starts a new search
+ */
+public class DStarLitePathFinder implements GridPathFinder {
+    private static final float INFINITY = Float.POSITIVE_INFINITY;
+    /**
+     * Keys are single floats instead of the (k1, k2) pairs of the paper, so nodes whose key ties with the start's
+     * (common on a grid, where straight paths cost exactly the estimate) are expanded as well, within rounding error
+     */
+    private static final float KEY_EPSILON = 0.001f;
+
+    private CompactGraph graph;
+    private GridHeuristic heuristic;
+    private NodeHeap openList;
+    /**
+     * Cost from every node to the goal (g), and its one step lookahead (rhs). A node is consistent when they are equal
+     */
+    private float[] costToGoal;
+    private float[] lookahead;
+    /**
+     * Plan in which the node was last reached, older nodes count as unreached
+     */
+    private int[] reached;
+    private int planId;
+    private int goalNode = CompactGraph.NO_NODE;
+    private int startNode;
+    /**
+     * Added to every key as the start moves, so keys in the open list stay lower bounds without being recomputed
+     */
+    private float keyModifier;
+    /**
+     * Nodes opened or closed since the last query
+     */
+    private IntArray changedNodes;
+    private int expandedNodes;
+
+    public DStarLitePathFinder(CompactGraph graph) {
+        this.graph = graph;
+        heuristic = new EuclideanHeuristic(graph);
+        int nodeCount = graph.getNodeCount();
+        openList = new NodeHeap(nodeCount);
+        costToGoal = new float[nodeCount];
+        lookahead = new float[nodeCount];
+        reached = new int[nodeCount];
+        changedNodes = new IntArray();
+    }
+
+    @Override
+    public boolean searchPath(int startNode, int goalNode, IntArray outPath) {
+        outPath.clear();
+        expandedNodes = 0;
+        if (!graph.isOpen(startNode) || !graph.isOpen(goalNode)) {
+            return false;
+        }
+        if (goalNode != this.goalNode) {
+            startPlan(startNode, goalNode);
+        } else {
+            keyModifier += heuristic.estimate(startNode, this.startNode);
+            this.startNode = startNode;
+            for (int i = 0; i < changedNodes.size; i++) {
+                updateNodeAndNeighbours(changedNodes.get(i));
+            }
+        }
+        changedNodes.clear();
+        computeShortestPath();
+        if (costToGoal[startNode] == INFINITY) {
+            return false;
+        }
+        return generatePath(outPath);
+    }
+
+    /**
+     * Forget the old search tree and start a new one from the goal
+     */
+    private void startPlan(int startNode, int goalNode) {
+        if (++planId < 0) {
+            resetPlanIds();
+        }
+        openList.clear();
+        this.startNode = startNode;
+        this.goalNode = goalNode;
+        keyModifier = 0;
+        reach(goalNode);
+        lookahead[goalNode] = 0;
+        openList.add(goalNode, getKey(goalNode));
+    }
+
+    /**
+     * Expand inconsistent nodes until the start is consistent and no open node can still change its cost
+     */
+    private void computeShortestPath() {
+        reach(startNode);
+        while (!openList.isEmpty() && (openList.peekKey() <= getKey(startNode) + KEY_EPSILON || lookahead[startNode] != costToGoal[startNode])) {
+            int node = openList.peek();
+            float key = getKey(node);
+            if (openList.peekKey() < key) {
+                openList.add(node, key);
+                continue;
+            }
+            openList.pop();
+            expandedNodes++;
+            if (costToGoal[node] > lookahead[node]) {
+                costToGoal[node] = lookahead[node];
+                for (int e = graph.getEdgeStart(node); e < graph.getEdgeEnd(node); e++) {
+                    updateNode(graph.getEdgeTarget(e));
+                }
+            } else {
+                costToGoal[node] = INFINITY;
+                updateNodeAndNeighbours(node);
+            }
+        }
+    }
+
+    private void updateNodeAndNeighbours(int node) {
+        updateNode(node);
+        for (int e = graph.getEdgeStart(node); e < graph.getEdgeEnd(node); e++) {
+            updateNode(graph.getEdgeTarget(e));
+        }
+    }
+
+    /**
+     * Recompute the lookahead of a node from its neighbours and put it in the open list if it is inconsistent
+     */
+    private void updateNode(int node) {
+        reach(node);
+        if (node != goalNode) {
+            float best = INFINITY;
+            if (graph.isOpen(node)) {
+                for (int e = graph.getEdgeStart(node); e < graph.getEdgeEnd(node); e++) {
+                    int next = graph.getEdgeTarget(e);
+                    if (!graph.isOpen(next)) continue;
+                    reach(next);
+                    best = Math.min(best, graph.getEdgeCost(e) + costToGoal[next]);
+                }
+            }
+            lookahead[node] = best;
+        }
+        if (costToGoal[node] != lookahead[node]) {
+            openList.add(node, getKey(node));
+        } else {
+            openList.remove(node);
+        }
+    }
+
+    private float getKey(int node) {
+        return Math.min(costToGoal[node], lookahead[node]) + heuristic.estimate(node, startNode) + keyModifier;
+    }
+
+    /**
+     * Follow the cheapest neighbours from the start down to the goal
+     * @return False if the path could not be followed
+     */
+    private boolean generatePath(IntArray outPath) {
+        int node = startNode;
+        outPath.add(node);
+        while (node != goalNode) {
+            int best = CompactGraph.NO_NODE;
+            float bestCost = INFINITY;
+            for (int e = graph.getEdgeStart(node); e < graph.getEdgeEnd(node); e++) {
+                int next = graph.getEdgeTarget(e);
+                if (!graph.isOpen(next)) continue;
+                reach(next);
+                float cost = graph.getEdgeCost(e) + costToGoal[next];
+                if (cost < bestCost) {
+                    bestCost = cost;
+                    best = next;
+                }
+            }
+            if (best == CompactGraph.NO_NODE || outPath.size > graph.getNodeCount()) {
+                outPath.clear();
+                return false;
+            }
+            node = best;
+            outPath.add(node);
+        }
+        return true;
+    }
+
+    /**
+     * Make a node part of the current plan, unreached nodes have an infinite cost
+     */
+    private void reach(int node) {
+        if (reached[node] != planId) {
+            reached[node] = planId;
+            costToGoal[node] = INFINITY;
+            lookahead[node] = INFINITY;
+        }
+    }
+
+    /**
+     * Plan ids wrapped around, forget all old stamps
+     */
+    private void resetPlanIds() {
+        for (int i = 0; i < reached.length; i++) {
+            reached[i] = 0;
+        }
+        planId = 1;
+    }
+
+    /**
+     * The keys of the kept search depend on the heuristic, so the next query starts a new search
+     */
+    @Override
+    public void setHeuristic(GridHeuristic heuristic) {
+        this.heuristic = heuristic;
+        goalNode = CompactGraph.NO_NODE;
+    }
+
+    @Override
+    public int getExpandedNodes() {
+        return expandedNodes;
+    }
+
+    @Override
+    public void onNodeChanged(int node) {
+        if (goalNode != CompactGraph.NO_NODE) {
+            changedNodes.add(node);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.labyrinthconquest.game.pathfinding;
+
+import com.badlogic.gdx.math.Vector2;
+
+/**
+ * Straight line distance between the nodes. Never overestimates, but on an 8-connected grid a path is usually
+ * longer than the straight line, so many nodes look better than they are
+ */
+public class EuclideanHeuristic implements GridHeuristic {
+    private CompactGraph graph;
+
+    public EuclideanHeuristic(CompactGraph graph) {
+        this.graph = graph;
+    }
+
+    @Override
+    public float estimate(int node, int goalNode) {
+        return Vector2.dst(graph.getX(node), graph.getY(node), graph.getX(goalNode), graph.getY(goalNode));
+    }
+}
@@ -0,0 +1,142 @@
+package com.labyrinthconquest.game.pathfinding;
+
+import java.util.Arrays;
+
+/**
+ * Paths from every node of a graph to one target. A Dijkstra pass from the target gives the cost of every node to the
+ * target (the integration field) and the neighbour each node continues through (the direction field), so any number of
+ * agents heading to the target only look up their next node instead of searching.
+ * The pass can be split over several frames with start and update
+ */
+public class FlowField {
+    private static final float UNREACHABLE = Float.POSITIVE_INFINITY;
+    /**
+     * Nodes reset, and nodes expanded, between two looks at the clock
+     */
+    private static final int RESET_STEP = 4096;
+    private static final int EXPAND_STEP = 64;
+
+    private CompactGraph graph;
+    private NodeHeap openList;
+    private float[] costToTarget;
+    /**
+     * Next node towards the target, NO_NODE for the target and for unreachable nodes
+     */
+    private int[] nextNode;
+    private int targetNode = CompactGraph.NO_NODE;
+    private int reachableNodes;
+    /**
+     * Nodes whose cost and next node have been reset for the current pass
+     */
+    private int resetNodes;
+
+    /**
+     * Create an empty field for a graph, filled in by compute
+     * @param graph Graph
+     */
+    public FlowField(CompactGraph graph) {
+        this.graph = graph;
+        int nodeCount = graph.getNodeCount();
+        openList = new NodeHeap(nodeCount);
+        costToTarget = new float[nodeCount];
+        nextNode = new int[nodeCount];
+    }
+
+    /**
+     * Compute the field towards a target over the open nodes of the graph. The graph's edges go both ways,
+     * so searching outwards from the target gives the paths towards it
+     * @param targetNode Index of the target node
+     */
+    public void compute(int targetNode) {
+        start(targetNode);
+        update(Long.MAX_VALUE);
+    }
+
+    /**
+     * Start computing the field towards a target, continued by update. The field is not usable until update finishes
+     * @param targetNode Index of the target node
+     */
+    public void start(int targetNode) {
+        this.targetNode = targetNode;
+        reachableNodes = 0;
+        resetNodes = 0;
+        openList.clear();
+    }
+
+    /**
+     * Continue computing the field until it is finished or a deadline passes
+     * @param deadline Time from System.nanoTime to stop at
+     * @return True if the field is finished
+     */
+    public boolean update(long deadline) {
+        while (resetNodes < costToTarget.length) {
+            int end = Math.min(costToTarget.length, resetNodes + RESET_STEP);
+            Arrays.fill(costToTarget, resetNodes, end, UNREACHABLE);
+            Arrays.fill(nextNode, resetNodes, end, CompactGraph.NO_NODE);
+            resetNodes = end;
+            if (resetNodes == costToTarget.length && graph.isOpen(targetNode)) {
+                costToTarget[targetNode] = 0;
+                openList.add(targetNode, 0);
+            }
+            if (System.nanoTime() >= deadline) return false;
+        }
+        int expanded = 0;
+        while (!openList.isEmpty()) {
+            if (++expanded % EXPAND_STEP == 0 && System.nanoTime() >= deadline) return false;
+            int current = openList.pop();
+            reachableNodes++;
+            for (int e = graph.getEdgeStart(current); e < graph.getEdgeEnd(current); e++) {
+                int next = graph.getEdgeTarget(e);
+                if (!graph.isOpen(next)) continue;
+                float cost = costToTarget[current] + graph.getEdgeCost(e);
+                if (cost < costToTarget[next]) {
+                    costToTarget[next] = cost;
+                    nextNode[next] = current;
+                    openList.add(next, cost);
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Forget the target, e.g when the graph changed. The arrays are kept to compute the next target into
+     */
+    public void clear() {
+        targetNode = CompactGraph.NO_NODE;
+    }
+
+    /**
+     * @return Target node of the field, NO_NODE if it has not been computed or was cleared
+     */
+    public int getTargetNode() {
+        return targetNode;
+    }
+
+    /**
+     * @param node Node index
+     * @return Next node on the way to the target, NO_NODE if the node is the target or cannot reach it
+     */
+    public int getNextNode(int node) {
+        return nextNode[node];
+    }
+
+    /**
+     * @param node Node index
+     * @return Cost of the path from the node to the target, infinite if it cannot reach it
+     */
+    public float getCost(int node) {
+        return costToTarget[node];
+    }
+
+    public boolean isReachable(int node) {
+        return costToTarget[node] != UNREACHABLE;
+    }
+
+    /**
+     * @return Number of nodes that can reach the target, the target included
+     */
+    public int getReachableNodes() {
+        return reachableNodes;
+    }
+}
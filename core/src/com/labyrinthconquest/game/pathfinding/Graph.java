@@ -1,9 +1,6 @@
 package com.labyrinthconquest.game.pathfinding;
 
 import com.badlogic.gdx.ai.pfa.Connection;
-import com.badlogic.gdx.ai.pfa.DefaultGraphPath;
-import com.badlogic.gdx.ai.pfa.GraphPath;
-import com.badlogic.gdx.ai.pfa.indexed.IndexedAStarPathFinder;
 import com.badlogic.gdx.ai.pfa.indexed.IndexedGraph;
 import com.badlogic.gdx.maps.tiled.TiledMap;
 import com.badlogic.gdx.maps.tiled.TiledMapTileLayer;
@@ -12,32 +9,53 @@ import com.badlogic.gdx.physics.box2d.Fixture;
 import com.badlogic.gdx.physics.box2d.RayCastCallback;
 import com.badlogic.gdx.physics.box2d.World;
 import com.badlogic.gdx.utils.Array;
-import com.badlogic.gdx.utils.ObjectMap;
+import com.badlogic.gdx.utils.FloatArray;
+import com.badlogic.gdx.utils.IntArray;
 import com.labyrinthconquest.game.data.Constants;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
- * Manages the pathfinding graph for player characters
+ * Manages the pathfinding graph for player characters. The graph itself is stored as a compact graph,
+ * node objects are only created for the nodes paths use, and edges only when the object graph is searched
  */
 public class Graph implements IndexedGraph<INode> {
-    private Array<INode> nodes;
-    private Array<Edge> edges;
     /**
-     * Heuristic used for pathfinding. Here it is just euclidean distance
+     * Returned for nodes without connections, so that querying them does not allocate
      */
-    private GraphHeuristic heuristic;
+    private static final Array<Connection<INode>> NO_CONNECTIONS = new Array<>(0);
+
+    /**
+     * Nodes, adjacency and edge costs in primitive arrays
+     */
+    private CompactGraph compactGraph;
+    /**
+     * Node objects, created when a node first appears in a path
+     */
+    private INode[] nodes;
     /**
-     * Map all nodes to edges
+     * Connections of every node to its open neighbours, created all at once when the object graph is first searched
+     * (IndexedAStarGridPathFinder, time sliced searches). The edge objects of every compact edge, open or not,
+     * so changed cells refill the connections without allocating
      */
-    private ObjectMap<INode, Array<Connection<INode>>> map;
+    private Array<Connection<INode>>[] connections;
+    private Edge[] edges;
     private World world;
 
     /**
      * Callback used in raycast path smoothing algorithm
      */
     private RayCastCallback callback;
+    /**
+     * Cells the character cannot walk through. When set, paths are smoothed with line tests on it instead of raycasts
+     */
+    private OccupancyGrid occupancyGrid;
+    /**
+     * Whether found paths are smoothed, off for path finders whose paths are already straight (LazyThetaStarPathFinder)
+     */
+    private boolean smoothPaths;
 
     /**
      * Current stored path
@@ -45,9 +63,70 @@ public class Graph implements IndexedGraph<INode> {
     private List<INode> path;
 
     /**
-     * Store current node index. Used for optimization in the pathfinding algorithm
+     * Reusable search context. The path finder keeps its search state for the lifetime of the graph
+     * together with the buffers the search writes into
+     */
+    private GridPathFinder pathFinder;
+    /**
+     * Searches from both ends at once, for the queries that ask for it. Created on first use
+     */
+    private BidirectionalAStarPathFinder bidirectionalPathFinder;
+    /**
+     * Searches replans of a live path to the same goal when set, e.g D* Lite repairing its previous search
+     */
+    private GridPathFinder replanPathFinder;
+    /**
+     * Answers findPath instead of the path finder when set, its paths need no smoothing
+     */
+    private NavMesh navMesh;
+    /**
+     * Corners of the last navigation mesh path and the nodes they are handed out as, reused by every query
+     */
+    private FloatArray navMeshWaypoints;
+    private Array<Node> navMeshNodes;
+    /**
+     * Estimate of the path costs, used by the graph's path finder and the ones searching its snapshots
+     */
+    private GridHeuristic heuristic;
+    private IntArray nodePath;
+    /**
+     * Smoothed path between the endpoints as node indices, NO_NODE standing for the start position
+     */
+    private IntArray waypoints;
+
+    /**
+     * Recently found paths, keyed by start and end cell
+     */
+    private PathCache pathCache;
+
+    /**
+     * Connected components of the open nodes, so searches between nodes that cannot reach each other are skipped
+     */
+    private ConnectedComponents components;
+
+    /**
+     * Flow fields towards recent targets, most recently used first. After a node is opened or closed they stay usable,
+     * out of date, until their new version is computed
      */
-    private int lastNodeIndex = 0;
+    private Array<FlowField> flowFields;
+    /**
+     * Flow fields being computed in time slices by updateFlowFields, for new targets and for out of date fields,
+     * oldest request first. Fields no longer used are kept to compute the next ones into
+     */
+    private Array<FlowField> pendingFlowFields;
+    private Array<FlowField> freeFlowFields;
+
+    /**
+     * Snapshot of the compact graph for searching on other threads, null when nodes have changed since it was taken
+     */
+    private CompactGraph snapshot;
+
+    /**
+     * Reusable path endpoints (player position and touch position)
+     */
+    private Node fromNode;
+    private Node toNode;
+
     private boolean rayHit;
 
     /**
@@ -57,12 +136,29 @@ public class Graph implements IndexedGraph<INode> {
      * @param world Box2D world
      */
     public Graph(TiledMap tiledMap, String nodeLayer, World world) {
-        nodes = new Array<>();
-        edges = new Array<>();
-        map = new ObjectMap<>();
-        heuristic = new GraphHeuristic();
+        this(new CompactGraph((TiledMapTileLayer)tiledMap.getLayers().get(nodeLayer)), world);
+    }
+
+    /**
+     * Construct a new graph over a compact graph, e.g a character's view of a graph shared by all characters
+     * @param compactGraph Compact graph, owned by this graph from now on
+     * @param world Box2D world
+     */
+    public Graph(CompactGraph compactGraph, World world) {
+        this.compactGraph = compactGraph;
+        nodes = new INode[compactGraph.getNodeCount()];
         this.world = world;
         path = new ArrayList<>();
+        nodePath = new IntArray();
+        waypoints = new IntArray();
+        pathCache = new PathCache(compactGraph, Constants.PATH_CACHE_SIZE);
+        flowFields = new Array<>(Constants.FLOW_FIELD_CACHE_SIZE);
+        pendingFlowFields = new Array<>(Constants.FLOW_FIELD_CACHE_SIZE);
+        freeFlowFields = new Array<>(Constants.FLOW_FIELD_CACHE_SIZE);
+        components = new ConnectedComponents(compactGraph);
+        fromNode = new Node(0, 0);
+        toNode = new Node(0, 0);
+        smoothPaths = true;
         callback = new RayCastCallback() {
             @Override
             public float reportRayFixture(Fixture fixture, Vector2 point, Vector2 normal, float fraction) {
@@ -70,81 +166,297 @@ public class Graph implements IndexedGraph<INode> {
                 return -1;
             }
         };
-        createGraph(tiledMap, nodeLayer);
+        heuristic = new EuclideanHeuristic(compactGraph);
+        pathFinder = new CompactAStarPathFinder(compactGraph);
+    }
+
+    public CompactGraph getCompactGraph() {
+        return compactGraph;
     }
 
     /**
-     * Create the graph itself (nodes and edges)
-     * @param tiledMap Tilemap to make a new graph for
-     * @param nodeLayer Layer from which to get the node positions
+     * Set the algorithm used by findPath, it searches with the graph's heuristic
+     * @param pathFinder Path finder working on this graph's compact graph
+     */
+    public void setPathFinder(GridPathFinder pathFinder) {
+        this.pathFinder = pathFinder;
+        pathFinder.setHeuristic(heuristic);
+    }
+
+    public GridPathFinder getPathFinder() {
+        return pathFinder;
+    }
+
+    /**
+     * Set the algorithm used by replanPath, it searches with the graph's heuristic and is told about opened and closed cells
+     * @param replanPathFinder Path finder working on this graph's compact graph, null to replan with the graph's path finder
+     */
+    public void setReplanPathFinder(GridPathFinder replanPathFinder) {
+        this.replanPathFinder = replanPathFinder;
+        if (replanPathFinder != null) {
+            replanPathFinder.setHeuristic(heuristic);
+        }
+    }
+
+    public GridPathFinder getReplanPathFinder() {
+        return replanPathFinder;
+    }
+
+    /**
+     * Answer findPath with a navigation mesh of the graph's open cells instead of the path finder, e.g on maps with
+     * large open areas. Its paths are pulled tight through the mesh, so they are not smoothed or cached. Bidirectional
+     * queries still search the nodes
+     * @param navMesh Navigation mesh over this graph's compact graph, null to search the nodes again
+     */
+    public void setNavMesh(NavMesh navMesh) {
+        this.navMesh = navMesh;
+        if (navMesh != null && navMeshNodes == null) {
+            navMeshWaypoints = new FloatArray();
+            navMeshNodes = new Array<>();
+        }
+    }
+
+    public NavMesh getNavMesh() {
+        return navMesh;
+    }
+
+    /**
+     * Set the estimate of the path costs the graph's searches are guided by, e.g octile distance or landmarks.
+     * Straight line distance by default
+     * @param heuristic Heuristic for the nodes of the compact graph
+     */
+    public void setHeuristic(GridHeuristic heuristic) {
+        this.heuristic = heuristic;
+        pathFinder.setHeuristic(heuristic);
+        if (replanPathFinder != null) {
+            replanPathFinder.setHeuristic(heuristic);
+        }
+        if (bidirectionalPathFinder != null) {
+            bidirectionalPathFinder.setHeuristic(heuristic);
+        }
+    }
+
+    public GridHeuristic getHeuristic() {
+        return heuristic;
+    }
+
+    public PathCache getPathCache() {
+        return pathCache;
+    }
+
+    /**
+     * Smooth paths with line tests on a grid of the character's walls instead of Box2D raycasts
+     * @param occupancyGrid Grid of the cells the character cannot walk through, null to raycast
+     */
+    public void setOccupancyGrid(OccupancyGrid occupancyGrid) {
+        this.occupancyGrid = occupancyGrid;
+    }
+
+    public OccupancyGrid getOccupancyGrid() {
+        return occupancyGrid;
+    }
+
+    /**
+     * Turn path smoothing on or off. Paths of any-angle path finders only turn where they must, smoothing them again
+     * would only cost line tests. Unsmoothed paths keep every node of the found path
+     * @param smoothPaths Whether to smooth found paths, on by default
+     */
+    public void setPathSmoothing(boolean smoothPaths) {
+        this.smoothPaths = smoothPaths;
+    }
+
+    public boolean isPathSmoothing() {
+        return smoothPaths;
+    }
+
+    /**
+     * Get a snapshot of the compact graph with its current open nodes, which other threads can search
+     * @return Snapshot, the same one until a node is opened or closed
+     */
+    public CompactGraph getSnapshot() {
+        if (snapshot == null) {
+            snapshot = compactGraph.snapshot();
+        }
+        return snapshot;
+    }
+
+    /**
+     * Called when a cell of the map changes (e.g a door or wall is removed), drops cached paths near it
+     * @param x Cell x
+     * @param y Cell y
+     */
+    public void onCellChanged(int x, int y) {
+        pathCache.invalidate(x, y);
+    }
+
+    /**
+     * Open or close the node of a cell, e.g when a door opens. The path finder is told about the change,
+     * so an incremental one only repairs the part of its search the change affects. An opened cell is also freed
+     * in the occupancy grid, as the wall on it is gone
+     * @param x Cell x
+     * @param y Cell y
+     * @param open Whether the cell can be walked through
+     */
+    public void setCellOpen(int x, int y, boolean open) {
+        if (open && occupancyGrid != null) {
+            occupancyGrid.setBlocked(x, y, false);
+        }
+        int node = compactGraph.getNode(x, y);
+        if (node != CompactGraph.NO_NODE && compactGraph.isOpen(node) != open) {
+            compactGraph.setOpen(node, open);
+            if (open) {
+                components.onNodeOpened(node);
+            } else {
+                components.onNodeClosed(node);
+            }
+            snapshot = null;
+            if (navMesh != null) {
+                navMesh.invalidate();
+            }
+            updateConnections(node);
+            invalidateFlowFields();
+            pathFinder.onNodeChanged(node);
+            if (replanPathFinder != null) {
+                replanPathFinder.onNodeChanged(node);
+            }
+        }
+        onCellChanged(x, y);
+    }
+
+    /**
+     * Whether a path between two nodes exists, answered from the connected components without searching
+     * @param fromNode Index of the node to start from
+     * @param toNode Index of the node to reach
+     * @return True if both nodes are open and in the same component
+     */
+    public boolean isReachable(int fromNode, int toNode) {
+        return components.isConnected(fromNode, toNode);
+    }
+
+    /**
+     * Find the node closest to a position among the nodes reachable from a node, e.g to move a touch position that
+     * cannot be reached (behind a closed door, across water) to the closest cell that can
+     * @param fromNode Index of the node to start from
+     * @param position Position
+     * @return Node index, NO_NODE if the start node is closed
+     */
+    public int findClosestReachableNode(int fromNode, Vector2 position) {
+        return components.findClosestNode(components.getComponent(fromNode), position.x, position.y);
+    }
+
+    public ConnectedComponents getComponents() {
+        return components;
+    }
+
+    /**
+     * Get the flow field towards a target node, for moving many characters to the same target without searching a path
+     * for each. A field is computed in time slices by updateFlowFields, requested on first use and again when a node
+     * of the graph is opened or closed. Until the new version is finished the previous one is returned, out of date
+     * @param targetNode Index of the target node
+     * @return Flow field, owned by the graph and reused for another target once it is the least recently used.
+     * Null if the field towards the target is not computed yet
      */
-    private void createGraph(TiledMap tiledMap, String nodeLayer) {
-        TiledMapTileLayer tiledMapTileLayer = (TiledMapTileLayer)tiledMap.getLayers().get(nodeLayer);
-        INode[][] nodeMatrix = new INode[tiledMapTileLayer.getWidth()][tiledMapTileLayer.getHeight()];
-        int width = tiledMapTileLayer.getWidth();
-        int height = tiledMapTileLayer.getHeight();
-        // Create nodes
-        for (int x = 0; x < width; x++) {
-            for (int y = 0; y < height; y++) {
-                TiledMapTileLayer.Cell cell = tiledMapTileLayer.getCell(x, y);
-                if (cell == null) continue;
-                Vector2 position = new Vector2(x + 0.5f, y + 0.5f);
-                INode newNode = new Node(position.x, position.y);
-                addNode(newNode);
-                nodeMatrix[x][y] = newNode;
+    public FlowField getFlowField(int targetNode) {
+        for (int i = 0; i < flowFields.size; i++) {
+            FlowField field = flowFields.get(i);
+            if (field.getTargetNode() == targetNode) {
+                if (i > 0) {
+                    flowFields.removeIndex(i);
+                    flowFields.insert(0, field);
+                }
+                return field;
             }
         }
-        // Connect nodes
-        for (int x = 0; x < width; x++) {
-            for (int y = 0; y < height; y++) {
-                INode currentNode = nodeMatrix[x][y];
-                if (currentNode == null) continue;
-                connectNode(nodeMatrix, width, height, x, y, currentNode);
+        requestFlowField(targetNode);
+        return null;
+    }
+
+    /**
+     * @param targetNode Index of the target node
+     * @return Whether the flow field towards the target is being computed, because it is new or out of date
+     */
+    public boolean isFlowFieldPending(int targetNode) {
+        for (int i = 0; i < pendingFlowFields.size; i++) {
+            if (pendingFlowFields.get(i).getTargetNode() == targetNode) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Continue computing the requested flow fields until they are finished or a deadline passes. A finished field
+     * replaces the out of date one of its target. Called by a job of the level, once per frame
+     * @param deadline Time from System.nanoTime to stop at
+     * @return True if no field is left to compute
+     */
+    public boolean updateFlowFields(long deadline) {
+        while (pendingFlowFields.size > 0) {
+            FlowField field = pendingFlowFields.first();
+            if (!field.update(deadline)) return false;
+            pendingFlowFields.removeIndex(0);
+            for (int i = 0; i < flowFields.size; i++) {
+                if (flowFields.get(i).getTargetNode() == field.getTargetNode()) {
+                    freeFlowFields.add(flowFields.removeIndex(i));
+                    break;
+                }
             }
+            flowFields.insert(0, field);
+            if (flowFields.size > Constants.FLOW_FIELD_CACHE_SIZE) {
+                freeFlowFields.add(flowFields.pop());
+            }
+            if (System.nanoTime() >= deadline) break;
         }
+        return pendingFlowFields.size == 0;
+    }
+
+    /**
+     * Start computing the flow field towards a target, unless it is already being computed
+     */
+    private void requestFlowField(int targetNode) {
+        if (isFlowFieldPending(targetNode)) return;
+        FlowField field = freeFlowFields.size > 0 ? freeFlowFields.pop() : new FlowField(compactGraph);
+        field.start(targetNode);
+        pendingFlowFields.add(field);
     }
 
     /**
-     * Connect at nodeMatrix[X][Y] to all possible non-null neighbours
-     * @param nodeMatrix Node matrix with all current nodes
-     * @param width Width of the tilemap layer
-     * @param height Height of the tilemap layer
-     * @param x X position of node
-     * @param y Y position of node
-     * @param currentNode The current node itself
+     * Compute every flow field again after a node was opened or closed. The fields being computed start over,
+     * the finished ones are kept until their new version replaces them
      */
-    private void connectNode(INode[][] nodeMatrix, int width, int height, int x, int y, INode currentNode) {
-        if (x < width - 1 && nodeMatrix[x + 1][y] != null) connectNodes(currentNode, nodeMatrix[x + 1][y]);
-        if (x > 0 && nodeMatrix[x - 1][y] != null) connectNodes(currentNode, nodeMatrix[x - 1][y]);
-        if (y < height - 1 && nodeMatrix[x][y + 1] != null) connectNodes(currentNode, nodeMatrix[x][y + 1]);
-        if (y > 0 && nodeMatrix[x][y - 1] != null) connectNodes(currentNode, nodeMatrix[x][y - 1]);
-        if (x < width - 1 && y < height - 1 && nodeMatrix[x + 1][y + 1] != null) connectNodes(currentNode, nodeMatrix[x + 1][y + 1]);
-        if (x > 0 && y < height - 1 && nodeMatrix[x - 1][y + 1] != null) connectNodes(currentNode, nodeMatrix[x - 1][y + 1]);
-        if (x < width - 1 && y > 0 && nodeMatrix[x + 1][y - 1] != null) connectNodes(currentNode, nodeMatrix[x + 1][y - 1]);
-        if (x > 0 && y > 0 && nodeMatrix[x - 1][y - 1] != null) connectNodes(currentNode, nodeMatrix[x - 1][y - 1]);
+    private void invalidateFlowFields() {
+        for (int i = 0; i < pendingFlowFields.size; i++) {
+            FlowField field = pendingFlowFields.get(i);
+            field.start(field.getTargetNode());
+        }
+        for (int i = 0; i < flowFields.size; i++) {
+            requestFlowField(flowFields.get(i).getTargetNode());
+        }
     }
 
     /**
-     * Add a new node to the graph
-     * @param node Node to add
+     * Refill the connections of a node and its neighbours with their open neighbours
+     * @param node Node index
      */
-    private void addNode(INode node) {
-        node.setIndex(lastNodeIndex++);
-        nodes.add(node);
+    private void updateConnections(int node) {
+        if (connections == null) return;
+        fillConnections(node);
+        for (int e = compactGraph.getEdgeStart(node); e < compactGraph.getEdgeEnd(node); e++) {
+            fillConnections(compactGraph.getEdgeTarget(e));
+        }
     }
 
     /**
-     * Connect nodes from to (create an edge and store it)
-     * @param from From node
-     * @param to To node
+     * Get the node object of a node index, creating it on first use
+     * @param index Node index
+     * @return Node
      */
-    private void connectNodes(INode from, INode to){
-        Edge edge = new Edge(from, to);
-        if(!map.containsKey(from)){
-            map.put(from, new Array<Connection<INode>>());
+    public INode getNode(int index) {
+        INode node = nodes[index];
+        if (node == null) {
+            node = new Node(compactGraph.getX(index), compactGraph.getY(index));
+            node.setIndex(index);
+            nodes[index] = node;
         }
-        map.get(from).add(edge);
-        edges.add(edge);
+        return node;
     }
 
     /**
@@ -153,88 +465,257 @@ public class Graph implements IndexedGraph<INode> {
      * @return Node closest to position
      */
     public INode queryPosition(Vector2 pos) {
-        INode curr = nodes.get(0);
-        float dst = Vector2.dst(pos.x, pos.y, curr.getX(), curr.getY());
-        for(int i = 1; i < nodes.size; i++) {
-            INode node = nodes.get(i);
-            float tempDst = Vector2.dst(pos.x, pos.y, node.getX(), node.getY());
-            if (tempDst < dst) {
-                dst = tempDst;
-                curr = node;
-            }
-        }
-        return curr;
+        return getNode(compactGraph.findClosestNode(pos.x, pos.y));
     }
 
     /**
-     * Attempt to find a path from node to node, if one exists
+     * Attempt to find a path from node to node, if one exists. Paths between the same start and end cells are
+     * answered from the path cache, with the endpoints moved to the given positions. Nodes in different
+     * connected components are answered without searching.
+     * The returned list and its endpoint nodes are owned by the graph and are reused by the next call,
+     * so a steady-state query does not allocate
      * @param from From node
      * @param to To node
      * @return Path if one exists, else an empty list
      */
     public List<INode> findPath(Vector2 from, Vector2 to) {
-        List<INode> newPath = getPath(queryPosition(from), queryPosition(to), from, to);
-        if (newPath.isEmpty()) {
-            return new ArrayList<>();
+        return findPath(from, to, false);
+    }
+
+    /**
+     * Attempt to find a path from node to node, like findPath(from, to), choosing the search for this query
+     * @param from From node
+     * @param to To node
+     * @param bidirectional Whether to search from both ends with bidirectional A* instead of with the graph's path finder.
+     *                      It expands fewer nodes on long paths through winding corridors
+     * @return Path if one exists, else an empty list
+     */
+    public List<INode> findPath(Vector2 from, Vector2 to, boolean bidirectional) {
+        if (navMesh != null && !bidirectional) {
+            return findNavMeshPath(from, to);
+        }
+        List<INode> cachedPath = findCachedPath(from, to);
+        if (cachedPath != null) {
+            return cachedPath;
         }
-        return newPath;
+        return searchPath(from, to, bidirectional ? getBidirectionalPathFinder() : pathFinder);
     }
 
     /**
-     * Get path from node to node. Needs original player position and touch position for the smoothing algorithm
-     * @param fromN From node
-     * @param toN To node
-     * @param fromV From vector (position of player)
-     * @param toV To vector (position of where we clicked to find a path)
+     * Find a new path for a character already moving along a path to the same goal, e.g after cells opened or closed.
+     * Searched with the replan path finder if there is one, so D* Lite only repairs its search of the previous replan.
+     * Like findPath the path cache is looked up first
+     * @param from From vector (position of player)
+     * @param to To vector (goal of the live path)
      * @return Path if one exists, else an empty list
      */
-    private List<INode> getPath(INode fromN, INode toN, Vector2 fromV, Vector2 toV) {
-        GraphPath<INode> newPath = new DefaultGraphPath<>();
-        new IndexedAStarPathFinder<>(this).searchNodePath(fromN, toN, heuristic, newPath);
-        if (newPath.getCount() == 0) {
-            return new ArrayList<>();
+    public List<INode> replanPath(Vector2 from, Vector2 to) {
+        if (navMesh != null || replanPathFinder == null) {
+            return findPath(from, to);
         }
-        smoothPath(fromV, toV, newPath);
-        return path;
+        List<INode> cachedPath = findCachedPath(from, to);
+        if (cachedPath != null) {
+            return cachedPath;
+        }
+        return searchPath(from, to, replanPathFinder);
     }
 
     /**
-     * Path smoothing algorithm. Attempts to e.g reduce amount of turns in the path to a minimum so it is slightly more natural
-     * Uses raycast to check if a node can be excluded from the final path
-     * @param fromV From node
-     * @param toV To node
-     * @param newPath The path to smooth
+     * Search a path between the closest nodes of the positions and smooth it. Endpoints in different connected
+     * components are answered without searching
+     * @return Path if one exists, else an empty list
      */
-    private void smoothPath(Vector2 fromV, Vector2 toV, GraphPath<INode> newPath) {
-        List<INode> tempPath = new ArrayList<>();
-        INode fromNode = new Node(fromV.x, fromV.y);
-        tempPath.add(fromNode);
-        for(int i = 1; i < newPath.getCount(); i++) tempPath.add(newPath.get(i));
-        INode toNode = new Node(toV.x, toV.y);
-        tempPath.add(toNode);
+    private List<INode> searchPath(Vector2 from, Vector2 to, GridPathFinder queryPathFinder) {
+        int startNode = findClosestNode(from);
+        int goalNode = findClosestNode(to);
+        if (!isReachable(startNode, goalNode)) {
+            return Collections.emptyList();
+        }
+        if (!queryPathFinder.searchPath(startNode, goalNode, nodePath)) {
+            return Collections.emptyList();
+        }
+        return createPath(from, to, nodePath);
+    }
 
+    /**
+     * Find a path on the navigation mesh. Endpoints in different connected components are answered without searching
+     * @return Path if one exists, else an empty list
+     */
+    private List<INode> findNavMeshPath(Vector2 from, Vector2 to) {
+        if (!isReachable(findClosestNode(from), findClosestNode(to))
+                || !navMesh.findPath(from.x, from.y, to.x, to.y, navMeshWaypoints)) {
+            return Collections.emptyList();
+        }
+        fromNode.setPosition(from.x, from.y);
+        toNode.setPosition(to.x, to.y);
         path.clear();
         path.add(fromNode);
+        for (int i = 0; i < navMeshWaypoints.size / 2; i++) {
+            if (i == navMeshNodes.size) {
+                navMeshNodes.add(new Node(0, 0));
+            }
+            Node node = navMeshNodes.get(i);
+            node.setPosition(navMeshWaypoints.get(i * 2), navMeshWaypoints.get(i * 2 + 1));
+            node.setIndex(compactGraph.findClosestNode(node.getX(), node.getY()));
+            path.add(node);
+        }
+        path.add(toNode);
+        return path;
+    }
+
+    private GridPathFinder getBidirectionalPathFinder() {
+        if (bidirectionalPathFinder == null) {
+            bidirectionalPathFinder = new BidirectionalAStarPathFinder(compactGraph);
+            bidirectionalPathFinder.setHeuristic(heuristic);
+        }
+        return bidirectionalPathFinder;
+    }
+
+    /**
+     * Look up a path in the path cache. The cached path was smoothed from another position in the start cell,
+     * so if its first waypoint cannot be seen from this one the path is smoothed again from here
+     * @param from From vector (position of player)
+     * @param to To vector (position of where we clicked to find a path)
+     * @return Path with its endpoints at the given positions, null if it is not cached
+     */
+    public List<INode> findCachedPath(Vector2 from, Vector2 to) {
+        long startTime = System.nanoTime();
+        if (!pathCache.get(getCacheKey(from, to), waypoints, nodePath)) {
+            return null;
+        }
+        if (smoothPaths && !isFirstWaypointInSight(from)) {
+            smoothPath(from, nodePath, waypoints, true);
+        }
+        setPath(from, to);
+        pathCache.recordHit(System.nanoTime() - startTime);
+        return path;
+    }
+
+    /**
+     * Smooth a path found by a path finder (possibly on another thread), unless smoothing is off, and store it in the path cache
+     * @param from From vector (position of player)
+     * @param to To vector (position of where we clicked to find a path)
+     * @param nodePath Node indices of the path, start and goal included
+     * @return Path
+     */
+    public List<INode> createPath(Vector2 from, Vector2 to, IntArray nodePath) {
+        smoothPath(from, nodePath, waypoints, smoothPaths);
+        setPath(from, to);
+        pathCache.put(getCacheKey(from, to), waypoints, nodePath);
+        return path;
+    }
+
+    /**
+     * @param from From vector (position of player)
+     * @return Whether the first waypoint, or the goal node of a path without waypoints, is in sight of the position
+     */
+    private boolean isFirstWaypointInSight(Vector2 from) {
+        int first = waypoints.size == 0 ? nodePath.peek() : waypoints.first();
+        return first != CompactGraph.NO_NODE && isInSight(from.x, from.y, compactGraph.getX(first), compactGraph.getY(first));
+    }
+
+    /**
+     * Find the closest node to a position
+     * @param position Position
+     * @return Node index
+     */
+    public int findClosestNode(Vector2 position) {
+        return compactGraph.findClosestNode(position.x, position.y);
+    }
+
+    private long getCacheKey(Vector2 from, Vector2 to) {
+        return PathCache.key(compactGraph.getCell(from.x, from.y), compactGraph.getCell(to.x, to.y));
+    }
+
+    /**
+     * Smooth a path found on another thread into a new path list, without using the graph's path, cache or the Box2D world,
+     * so several threads may call it at once. Smoothed on the occupancy grid, graphs without one or with
+     * smoothing off keep every node of the path
+     * @param from From vector (position of player)
+     * @param to To vector (position of where we clicked to find a path)
+     * @param nodePath Node indices of the path, start and goal included
+     * @param outWaypoints Buffer of the calling thread for the smoothed path
+     * @return New path, its nodes are new objects and not the graph's own
+     */
+    public List<INode> createDetachedPath(Vector2 from, Vector2 to, IntArray nodePath, IntArray outWaypoints) {
+        smoothPath(from, nodePath, outWaypoints, smoothPaths && occupancyGrid != null);
+        List<INode> detachedPath = new ArrayList<>(outWaypoints.size + 2);
+        detachedPath.add(new Node(from.x, from.y));
+        for (int i = 0; i < outWaypoints.size; i++) {
+            int waypoint = outWaypoints.get(i);
+            if (waypoint == CompactGraph.NO_NODE) {
+                detachedPath.add(detachedPath.get(0));
+            } else {
+                INode node = new Node(compactGraph.getX(waypoint), compactGraph.getY(waypoint));
+                node.setIndex(waypoint);
+                detachedPath.add(node);
+            }
+        }
+        detachedPath.add(new Node(to.x, to.y));
+        return detachedPath;
+    }
+
+    /**
+     * Path smoothing algorithm. Attempts to e.g reduce amount of turns in the path to a minimum so it is slightly more natural
+     * Uses line of sight tests to check if a node can be excluded from the final path
+     * @param fromV From node
+     * @param newPath The path to smooth (node indices), its first node stands for the from position
+     * @param outWaypoints Receives the smoothed path as node indices, NO_NODE standing for the from position
+     * @param smooth Whether to test lines of sight, else every node of the path is kept
+     */
+    private void smoothPath(Vector2 fromV, IntArray newPath, IntArray outWaypoints, boolean smooth) {
+        outWaypoints.clear();
+        if (!smooth) {
+            for (int i = 1; i < newPath.size; i++) outWaypoints.add(newPath.get(i));
+            return;
+        }
         int i = 0;
-        while(i < tempPath.size() - 1) {
-            INode cur = tempPath.get(i);
-            INode next;
-            for(int j = i + 1; j < tempPath.size() - 1; j++) {
-                next = tempPath.get(j);
-                world.rayCast(callback, cur.getX(), cur.getY(), next.getX(), next.getY());
-                world.rayCast(callback, cur.getX() + Constants.PATH_SMOOTH_SIDE_OFFSET, cur.getY(),
-                        next.getX() + Constants.PATH_SMOOTH_SIDE_OFFSET, next.getY());
-                world.rayCast(callback, cur.getX() - Constants.PATH_SMOOTH_SIDE_OFFSET, cur.getY(),
-                        next.getX() - Constants.PATH_SMOOTH_SIDE_OFFSET, next.getY());
-                if (rayHit) {
+        while(i < newPath.size) {
+            float curX = i == 0 ? fromV.x : compactGraph.getX(newPath.get(i));
+            float curY = i == 0 ? fromV.y : compactGraph.getY(newPath.get(i));
+            for(int j = i + 1; j < newPath.size; j++) {
+                int next = newPath.get(j);
+                if (!isInSight(curX, curY, compactGraph.getX(next), compactGraph.getY(next))) {
                     i = j - 1;
-                    path.add(tempPath.get(i));
-                    rayHit = false;
+                    outWaypoints.add(i == 0 ? CompactGraph.NO_NODE : newPath.get(i));
                     break;
                 }
             }
             i++;
         }
+    }
+
+    /**
+     * Test whether a character can walk straight from point to point: a line between the points and lines offset to both
+     * sides of it must not hit walls. Tested on the occupancy grid if there is one, else by raycasting the world
+     * @return True if none of the lines hit a wall
+     */
+    private boolean isInSight(float fromX, float fromY, float toX, float toY) {
+        float offset = Constants.PATH_SMOOTH_SIDE_OFFSET;
+        if (occupancyGrid != null) {
+            return occupancyGrid.isLineClear(fromX, fromY, toX, toY, offset);
+        }
+        rayHit = false;
+        world.rayCast(callback, fromX, fromY, toX, toY);
+        world.rayCast(callback, fromX + offset, fromY, toX + offset, toY);
+        world.rayCast(callback, fromX - offset, fromY, toX - offset, toY);
+        return !rayHit;
+    }
+
+    /**
+     * Build the path list from the start position, the waypoints and the end position
+     * @param fromV From vector (position of player)
+     * @param toV To vector (position of where we clicked to find a path)
+     */
+    private void setPath(Vector2 fromV, Vector2 toV) {
+        fromNode.setPosition(fromV.x, fromV.y);
+        toNode.setPosition(toV.x, toV.y);
+        path.clear();
+        path.add(fromNode);
+        for (int i = 0; i < waypoints.size; i++) {
+            int waypoint = waypoints.get(i);
+            path.add(waypoint == CompactGraph.NO_NODE ? fromNode : getNode(waypoint));
+        }
         path.add(toNode);
     }
 
@@ -245,19 +726,64 @@ public class Graph implements IndexedGraph<INode> {
 
     @Override
     public int getNodeCount() {
-        return lastNodeIndex;
+        return compactGraph.getNodeCount();
     }
 
     /**
-     * Get all connections leaving node from
+     * Get all connections from node to its open neighbours. The connections of every node are created on the first query
      * @param from From node
      * @return Array of connections
      */
     @Override
     public Array<Connection<INode>> getConnections(INode from) {
-        if(map.containsKey(from)){
-            return map.get(from);
+        if (connections == null) {
+            createConnections();
         }
-        return new Array<>(0);
+        return connections[from.getIndex()];
+    }
+
+    /**
+     * Create the node objects and the connections of every node, so searching the object graph allocates nothing
+     * and takes no longer the first time. Done before a search is split into time slices, as creating them during a
+     * slice could overrun its deadline. Called on the first getConnections otherwise
+     */
+    public void createConnections() {
+        if (connections != null) return;
+        int nodeCount = compactGraph.getNodeCount();
+        connections = createConnectionArrays(nodeCount);
+        edges = new Edge[compactGraph.getEdgeCount()];
+        for (int node = 0; node < nodeCount; node++) {
+            int start = compactGraph.getEdgeStart(node);
+            int end = compactGraph.getEdgeEnd(node);
+            for (int e = start; e < end; e++) {
+                edges[e] = new Edge(getNode(node), getNode(compactGraph.getEdgeTarget(e)));
+            }
+            connections[node] = start == end ? NO_CONNECTIONS : new Array<Connection<INode>>(end - start);
+            fillConnections(node);
+        }
+    }
+
+    /**
+     * Fill a node's connections with the edges to its open neighbours
+     */
+    private void fillConnections(int node) {
+        Array<Connection<INode>> nodeConnections = connections[node];
+        if (nodeConnections == NO_CONNECTIONS) return;
+        nodeConnections.clear();
+        for (int e = compactGraph.getEdgeStart(node); e < compactGraph.getEdgeEnd(node); e++) {
+            if (compactGraph.isOpen(compactGraph.getEdgeTarget(e))) {
+                nodeConnections.add(edges[e]);
+            }
+        }
+    }
+
+    /**
+     * Create the per-node connection arrays, Java cannot create arrays of a generic type directly
+     * @param size Number of nodes
+     * @return Array of null connection arrays
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private static Array<Connection<INode>>[] createConnectionArrays(int size) {
+        return new Array[size];
     }
 }
@@ -3,11 +3,32 @@ package com.labyrinthconquest.game.pathfinding;
 import com.badlogic.gdx.math.Vector2;
 
 /**
- * Heuristic function for pathfinding
+ * Heuristic function for pathfinding on the node objects of a graph (gdx-ai's path finders). Estimates the straight
+ * line distance, or uses a heuristic on the node indices
  */
 public class GraphHeuristic implements com.badlogic.gdx.ai.pfa.Heuristic<INode> {
+    private GridHeuristic gridHeuristic;
+
+    public GraphHeuristic() {
+    }
+
+    /**
+     * Create a heuristic estimating with a heuristic on the node indices
+     * @param gridHeuristic Heuristic, null for the straight line distance
+     */
+    public GraphHeuristic(GridHeuristic gridHeuristic) {
+        this.gridHeuristic = gridHeuristic;
+    }
+
+    public GridHeuristic getGridHeuristic() {
+        return gridHeuristic;
+    }
+
     @Override
     public float estimate(INode current, INode goal) {
+        if (gridHeuristic != null) {
+            return gridHeuristic.estimate(current.getIndex(), goal.getIndex());
+        }
         return Vector2.dst(current.getX(), current.getY(), goal.getX(), goal.getY());
     }
 }
@@ -0,0 +1,16 @@
+package com.labyrinthconquest.game.pathfinding;
+
+/**
+ * Estimate of the cost of the path between two nodes of a compact graph, which the path finders use to search towards
+ * the goal first. Paths are only the shortest if the estimate never exceeds the real cost. Implementations are shared
+ * by the path finders of a graph, including the ones searching its snapshots on other threads, so they must not keep
+ * state between calls
+ */
+public interface GridHeuristic {
+    /**
+     * @param node Index of the node to estimate from
+     * @param goalNode Index of the goal node
+     * @return Estimated cost of the path from node to goal
+     */
+    float estimate(int node, int goalNode);
+}
@@ -0,0 +1,36 @@
+package com.labyrinthconquest.game.pathfinding;
+
+import com.badlogic.gdx.utils.IntArray;
+
+/**
+ * Pathfinding algorithm that works on the node indices of a compact graph. Implementations keep their search state
+ * between calls, so a graph owns one instance of its path finder
+ */
+public interface GridPathFinder {
+    /**
+     * Search for a path from node to node
+     * @param startNode Index of the start node
+     * @param goalNode Index of the goal node
+     * @param outPath Receives the node indices of the path, start and goal included. Cleared before the search
+     * @return True if a path was found
+     */
+    boolean searchPath(int startNode, int goalNode, IntArray outPath);
+
+    /**
+     * Number of nodes expanded by the last search, used for comparing path finders
+     */
+    int getExpandedNodes();
+
+    /**
+     * Set the estimate of the cost to the goal that guides the search. Path finders estimate the straight line distance
+     * until a heuristic is set
+     * @param heuristic Heuristic for the nodes of the graph
+     */
+    void setHeuristic(GridHeuristic heuristic);
+
+    /**
+     * Called after a node of the graph was opened or closed, so the path finder can update the state it derived from the graph
+     * @param node Index of the node
+     */
+    void onNodeChanged(int node);
+}
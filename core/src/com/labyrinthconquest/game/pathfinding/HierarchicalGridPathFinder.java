@@ -0,0 +1,520 @@
+package com.labyrinthconquest.game.pathfinding;
+
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.FloatArray;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.IntIntMap;
+
+/**
+ * Hierarchical path-finding A* (HPA*) for large maps. The grid is split into square clusters, and the cells where
+ * neighbouring clusters connect (entrances) form a small abstract graph whose intra-cluster edge costs are
+ * precomputed. A query first searches the abstract graph and then refines the path only inside the clusters it
+ * crosses, so the cost of a query grows with the number of clusters instead of the number of tiles.
+ * Paths are near optimal, not optimal. Opening or closing nodes rebuilds the abstract graph before the next query
+ */
+public class HierarchicalGridPathFinder implements GridPathFinder {
+    /**
+     * Border runs shorter than this get one entrance in the middle, longer ones an entrance at both ends
+     */
+    private static final int MIN_DOUBLE_ENTRANCE_RUN = 6;
+
+    private CompactGraph graph;
+    private GridHeuristic heuristic;
+    private int clusterSize;
+    private int clustersX;
+    private int clustersY;
+
+    /**
+     * Graph node of every abstract node
+     */
+    private IntArray entranceNodes;
+    /**
+     * Abstract node of every entrance graph node
+     */
+    private IntIntMap abstractNodes;
+    /**
+     * Abstract nodes inside every cluster
+     */
+    private Array<IntArray> clusterEntrances;
+    /**
+     * Edges of every abstract node
+     */
+    private Array<IntArray> abstractTargets;
+    private Array<FloatArray> abstractCosts;
+
+    /**
+     * Search state of the abstract graph. The last two abstract nodes are the start and goal of the current query
+     */
+    private NodeHeap abstractOpenList;
+    private float[] abstractCostSoFar;
+    private int[] abstractParent;
+    private int[] abstractVisited;
+    private int[] abstractClosed;
+    private float[] goalCost;
+    private int[] goalCostSet;
+    private int abstractSearchId;
+    private IntArray startEdges;
+    private FloatArray startCosts;
+
+    /**
+     * Search state of the cluster bounded searches, on graph nodes
+     */
+    private NodeHeap openList;
+    private float[] costSoFar;
+    private int[] parent;
+    private int[] visited;
+    private int[] closed;
+    private int searchId;
+    private int searchCluster;
+
+    private IntArray abstractPath;
+    private IntArray segment;
+    private int expandedNodes;
+    /**
+     * Whether nodes were opened or closed since the abstract graph was built
+     */
+    private boolean abstractGraphDirty;
+
+    /**
+     * Build the abstract graph of a compact graph
+     * @param graph Graph to search
+     * @param clusterSize Width and height of the clusters in tiles
+     */
+    public HierarchicalGridPathFinder(CompactGraph graph, int clusterSize) {
+        this.graph = graph;
+        heuristic = new EuclideanHeuristic(graph);
+        this.clusterSize = clusterSize;
+        clustersX = (graph.getWidth() + clusterSize - 1) / clusterSize;
+        clustersY = (graph.getHeight() + clusterSize - 1) / clusterSize;
+        int nodeCount = graph.getNodeCount();
+        openList = new NodeHeap(nodeCount);
+        costSoFar = new float[nodeCount];
+        parent = new int[nodeCount];
+        visited = new int[nodeCount];
+        closed = new int[nodeCount];
+        entranceNodes = new IntArray();
+        abstractNodes = new IntIntMap();
+        clusterEntrances = new Array<>(clustersX * clustersY);
+        for (int i = 0; i < clustersX * clustersY; i++) {
+            clusterEntrances.add(new IntArray());
+        }
+        abstractTargets = new Array<>();
+        abstractCosts = new Array<>();
+        startEdges = new IntArray();
+        startCosts = new FloatArray();
+        abstractPath = new IntArray();
+        segment = new IntArray();
+        createAbstractGraph();
+    }
+
+    /**
+     * (Re)build the abstract graph from the open nodes of the graph
+     */
+    private void createAbstractGraph() {
+        entranceNodes.clear();
+        abstractNodes.clear();
+        for (IntArray entrances : clusterEntrances) {
+            entrances.clear();
+        }
+        abstractTargets.clear();
+        abstractCosts.clear();
+        createEntrances();
+        for (int cluster = 0; cluster < clustersX * clustersY; cluster++) {
+            connectEntrances(cluster);
+        }
+        createAbstractSearch();
+        abstractGraphDirty = false;
+    }
+
+    /**
+     * Find the entrances on every cluster border and corner
+     */
+    private void createEntrances() {
+        for (int cy = 0; cy < clustersY; cy++) {
+            for (int cx = 0; cx < clustersX; cx++) {
+                int left = cx * clusterSize;
+                int bottom = cy * clusterSize;
+                int right = Math.min(left + clusterSize, graph.getWidth()) - 1;
+                int top = Math.min(bottom + clusterSize, graph.getHeight()) - 1;
+                if (cx < clustersX - 1) {
+                    scanBorder(right, bottom, right + 1, bottom, 0, 1, top - bottom + 1);
+                }
+                if (cy < clustersY - 1) {
+                    scanBorder(left, top, left, top + 1, 1, 0, right - left + 1);
+                }
+                if (cx < clustersX - 1 && cy < clustersY - 1) {
+                    addEntrance(graph.getOpenNode(right, top), graph.getOpenNode(right + 1, top + 1));
+                }
+                if (cx > 0 && cy < clustersY - 1) {
+                    addEntrance(graph.getOpenNode(left, top), graph.getOpenNode(left - 1, top + 1));
+                }
+            }
+        }
+    }
+
+    /**
+     * Scan a border between two clusters for runs of cells that can be crossed
+     * @param ax X of the first border cell on the first cluster's side
+     * @param ay Y of the first border cell on the first cluster's side
+     * @param bx X of the first border cell on the second cluster's side
+     * @param by Y of the first border cell on the second cluster's side
+     * @param stepX Step along the border
+     * @param stepY Step along the border
+     * @param length Length of the border
+     */
+    private void scanBorder(int ax, int ay, int bx, int by, int stepX, int stepY, int length) {
+        int runStart = -1;
+        for (int i = 0; i <= length; i++) {
+            boolean crossable = i < length && isCrossable(ax, ay, bx, by, stepX, stepY, i, i);
+            if (crossable && runStart < 0) {
+                runStart = i;
+            } else if (!crossable && runStart >= 0) {
+                addRunEntrances(ax, ay, bx, by, stepX, stepY, runStart, i - 1);
+                runStart = -1;
+            }
+            // A diagonal step is the only way across when neither of the straight crossings next to it exists
+            if (i + 1 < length && !crossable && !isCrossable(ax, ay, bx, by, stepX, stepY, i + 1, i + 1)) {
+                if (isCrossable(ax, ay, bx, by, stepX, stepY, i, i + 1)) {
+                    addEntrance(graph.getOpenNode(ax + stepX * i, ay + stepY * i), graph.getOpenNode(bx + stepX * (i + 1), by + stepY * (i + 1)));
+                }
+                if (isCrossable(ax, ay, bx, by, stepX, stepY, i + 1, i)) {
+                    addEntrance(graph.getOpenNode(ax + stepX * (i + 1), ay + stepY * (i + 1)), graph.getOpenNode(bx + stepX * i, by + stepY * i));
+                }
+            }
+        }
+    }
+
+    /**
+     * @return True if the cell at position i on the first side and the cell at position j on the second side are both walkable
+     */
+    private boolean isCrossable(int ax, int ay, int bx, int by, int stepX, int stepY, int i, int j) {
+        return graph.getOpenNode(ax + stepX * i, ay + stepY * i) != CompactGraph.NO_NODE
+                && graph.getOpenNode(bx + stepX * j, by + stepY * j) != CompactGraph.NO_NODE;
+    }
+
+    /**
+     * Add the entrances of a crossable run on a border
+     */
+    private void addRunEntrances(int ax, int ay, int bx, int by, int stepX, int stepY, int start, int end) {
+        if (end - start + 1 < MIN_DOUBLE_ENTRANCE_RUN) {
+            int i = (start + end) / 2;
+            addEntrance(graph.getOpenNode(ax + stepX * i, ay + stepY * i), graph.getOpenNode(bx + stepX * i, by + stepY * i));
+        } else {
+            addEntrance(graph.getOpenNode(ax + stepX * start, ay + stepY * start), graph.getOpenNode(bx + stepX * start, by + stepY * start));
+            addEntrance(graph.getOpenNode(ax + stepX * end, ay + stepY * end), graph.getOpenNode(bx + stepX * end, by + stepY * end));
+        }
+    }
+
+    /**
+     * Connect two neighbouring nodes of different clusters in the abstract graph
+     */
+    private void addEntrance(int from, int to) {
+        if (from == CompactGraph.NO_NODE || to == CompactGraph.NO_NODE) return;
+        int a = getOrCreateAbstractNode(from);
+        int b = getOrCreateAbstractNode(to);
+        float cost = distance(from, to);
+        addAbstractEdge(a, b, cost);
+        addAbstractEdge(b, a, cost);
+    }
+
+    private int getOrCreateAbstractNode(int node) {
+        int abstractNode = abstractNodes.get(node, -1);
+        if (abstractNode == -1) {
+            abstractNode = entranceNodes.size;
+            entranceNodes.add(node);
+            abstractNodes.put(node, abstractNode);
+            abstractTargets.add(new IntArray(8));
+            abstractCosts.add(new FloatArray(8));
+            clusterEntrances.get(getCluster(node)).add(abstractNode);
+        }
+        return abstractNode;
+    }
+
+    private void addAbstractEdge(int from, int to, float cost) {
+        IntArray targets = abstractTargets.get(from);
+        FloatArray costs = abstractCosts.get(from);
+        for (int i = 0; i < targets.size; i++) {
+            if (targets.get(i) == to) {
+                costs.set(i, Math.min(costs.get(i), cost));
+                return;
+            }
+        }
+        targets.add(to);
+        costs.add(cost);
+    }
+
+    /**
+     * Precompute the path costs between all entrances of a cluster
+     * @param cluster Cluster index
+     */
+    private void connectEntrances(int cluster) {
+        IntArray entrances = clusterEntrances.get(cluster);
+        for (int i = 0; i < entrances.size; i++) {
+            int from = entrances.get(i);
+            searchCluster(entranceNodes.get(from), CompactGraph.NO_NODE, cluster);
+            for (int j = i + 1; j < entrances.size; j++) {
+                int to = entrances.get(j);
+                int toNode = entranceNodes.get(to);
+                if (closed[toNode] != searchId) continue;
+                addAbstractEdge(from, to, costSoFar[toNode]);
+                addAbstractEdge(to, from, costSoFar[toNode]);
+            }
+        }
+    }
+
+    /**
+     * Size the abstract search state for the abstract graph, plus the start and goal of a query
+     */
+    private void createAbstractSearch() {
+        int count = entranceNodes.size + 2;
+        abstractOpenList = new NodeHeap(count);
+        abstractCostSoFar = new float[count];
+        abstractParent = new int[count];
+        abstractVisited = new int[count];
+        abstractClosed = new int[count];
+        goalCost = new float[count];
+        goalCostSet = new int[count];
+        abstractSearchId = 0;
+    }
+
+    @Override
+    public boolean searchPath(int startNode, int goalNode, IntArray outPath) {
+        outPath.clear();
+        expandedNodes = 0;
+        if (!graph.isOpen(startNode) || !graph.isOpen(goalNode)) {
+            return false;
+        }
+        if (abstractGraphDirty) {
+            createAbstractGraph();
+        }
+        int startCluster = getCluster(startNode);
+        int goalCluster = getCluster(goalNode);
+        if (startCluster == goalCluster && searchCluster(startNode, goalNode, startCluster)) {
+            appendClusterPath(startNode, goalNode, outPath);
+            return true;
+        }
+        if (!searchAbstract(startNode, goalNode, startCluster, goalCluster)) {
+            return false;
+        }
+        refinePath(outPath);
+        return true;
+    }
+
+    /**
+     * A* over the abstract graph, with the start and goal connected to the entrances of their clusters
+     * @return True if a path was found, the graph nodes of the abstract path are then in abstractPath
+     */
+    private boolean searchAbstract(int startNode, int goalNode, int startCluster, int goalCluster) {
+        int start = entranceNodes.size;
+        int goal = entranceNodes.size + 1;
+        if (++abstractSearchId < 0) {
+            resetAbstractSearchIds();
+        }
+        startEdges.clear();
+        startCosts.clear();
+        searchCluster(startNode, CompactGraph.NO_NODE, startCluster);
+        IntArray entrances = clusterEntrances.get(startCluster);
+        for (int i = 0; i < entrances.size; i++) {
+            int node = entranceNodes.get(entrances.get(i));
+            if (closed[node] != searchId) continue;
+            startEdges.add(entrances.get(i));
+            startCosts.add(costSoFar[node]);
+        }
+        searchCluster(goalNode, CompactGraph.NO_NODE, goalCluster);
+        entrances = clusterEntrances.get(goalCluster);
+        boolean goalConnected = false;
+        for (int i = 0; i < entrances.size; i++) {
+            int node = entranceNodes.get(entrances.get(i));
+            if (closed[node] != searchId) continue;
+            goalCost[entrances.get(i)] = costSoFar[node];
+            goalCostSet[entrances.get(i)] = abstractSearchId;
+            goalConnected = true;
+        }
+        if (startEdges.size == 0 || !goalConnected) {
+            return false;
+        }
+
+        abstractOpenList.clear();
+        visitAbstract(start, -1, 0, goalNode);
+        while (!abstractOpenList.isEmpty()) {
+            int current = abstractOpenList.pop();
+            if (current == goal) {
+                generateAbstractPath(goal, startNode, goalNode);
+                return true;
+            }
+            abstractClosed[current] = abstractSearchId;
+            expandedNodes++;
+            if (current == start) {
+                for (int i = 0; i < startEdges.size; i++) {
+                    relaxAbstract(current, startEdges.get(i), startCosts.get(i), goalNode);
+                }
+                continue;
+            }
+            IntArray targets = abstractTargets.get(current);
+            FloatArray costs = abstractCosts.get(current);
+            for (int i = 0; i < targets.size; i++) {
+                relaxAbstract(current, targets.get(i), costs.get(i), goalNode);
+            }
+            if (goalCostSet[current] == abstractSearchId) {
+                relaxAbstract(current, goal, goalCost[current], goalNode);
+            }
+        }
+        return false;
+    }
+
+    private void relaxAbstract(int from, int to, float edgeCost, int goalNode) {
+        if (abstractClosed[to] == abstractSearchId) return;
+        float cost = abstractCostSoFar[from] + edgeCost;
+        if (abstractVisited[to] != abstractSearchId || cost < abstractCostSoFar[to]) {
+            visitAbstract(to, from, cost, goalNode);
+        }
+    }
+
+    private void visitAbstract(int abstractNode, int from, float cost, int goalNode) {
+        abstractVisited[abstractNode] = abstractSearchId;
+        abstractCostSoFar[abstractNode] = cost;
+        abstractParent[abstractNode] = from;
+        float estimate = abstractNode < entranceNodes.size ? heuristic.estimate(entranceNodes.get(abstractNode), goalNode) : 0;
+        abstractOpenList.add(abstractNode, cost + estimate);
+    }
+
+    /**
+     * Store the graph nodes of the abstract path, start to goal
+     */
+    private void generateAbstractPath(int goal, int startNode, int goalNode) {
+        abstractPath.clear();
+        abstractPath.add(goalNode);
+        for (int node = abstractParent[goal]; node != entranceNodes.size; node = abstractParent[node]) {
+            abstractPath.add(entranceNodes.get(node));
+        }
+        abstractPath.add(startNode);
+        abstractPath.reverse();
+    }
+
+    /**
+     * Turn the abstract path into graph nodes. Consecutive nodes are either neighbours across a cluster border
+     * or in the same cluster, in which case only that cluster is searched
+     */
+    private void refinePath(IntArray outPath) {
+        outPath.add(abstractPath.first());
+        for (int i = 1; i < abstractPath.size; i++) {
+            int from = abstractPath.get(i - 1);
+            int to = abstractPath.get(i);
+            if (from == to) continue;
+            int cluster = getCluster(from);
+            if (cluster != getCluster(to) || !searchCluster(from, to, cluster)) {
+                outPath.add(to);
+                continue;
+            }
+            appendClusterPath(from, to, outPath);
+        }
+    }
+
+    /**
+     * Append the result of the last cluster search, without its first node
+     */
+    private void appendClusterPath(int from, int to, IntArray outPath) {
+        segment.clear();
+        for (int node = to; node != from; node = parent[node]) {
+            segment.add(node);
+        }
+        if (outPath.size == 0) {
+            outPath.add(from);
+        }
+        for (int i = segment.size - 1; i >= 0; i--) {
+            outPath.add(segment.get(i));
+        }
+    }
+
+    /**
+     * A* (or Dijkstra without a goal) that never leaves a cluster
+     * @param startNode Node to search from
+     * @param goalNode Node to search to, NO_NODE to flood the whole cluster
+     * @param cluster Cluster to stay in
+     * @return True if the goal was reached
+     */
+    private boolean searchCluster(int startNode, int goalNode, int cluster) {
+        if (++searchId < 0) {
+            resetSearchIds();
+        }
+        searchCluster = cluster;
+        openList.clear();
+        visit(startNode, CompactGraph.NO_NODE, 0, goalNode);
+        while (!openList.isEmpty()) {
+            int current = openList.pop();
+            closed[current] = searchId;
+            if (current == goalNode) {
+                return true;
+            }
+            expandedNodes++;
+            for (int e = graph.getEdgeStart(current); e < graph.getEdgeEnd(current); e++) {
+                int next = graph.getEdgeTarget(e);
+                if (closed[next] == searchId || getCluster(next) != searchCluster || !graph.isOpen(next)) continue;
+                float cost = costSoFar[current] + graph.getEdgeCost(e);
+                if (visited[next] != searchId || cost < costSoFar[next]) {
+                    visit(next, current, cost, goalNode);
+                }
+            }
+        }
+        return false;
+    }
+
+    private void visit(int node, int from, float cost, int goalNode) {
+        visited[node] = searchId;
+        costSoFar[node] = cost;
+        parent[node] = from;
+        openList.add(node, goalNode == CompactGraph.NO_NODE ? cost : cost + heuristic.estimate(node, goalNode));
+    }
+
+    /**
+     * @return Cluster index of a graph node
+     */
+    private int getCluster(int node) {
+        int cell = graph.getNodeCell(node);
+        return (graph.getCellY(cell) / clusterSize) * clustersX + graph.getCellX(cell) / clusterSize;
+    }
+
+    private float distance(int from, int to) {
+        return Vector2.dst(graph.getX(from), graph.getY(from), graph.getX(to), graph.getY(to));
+    }
+
+    private void resetSearchIds() {
+        for (int i = 0; i < visited.length; i++) {
+            visited[i] = 0;
+            closed[i] = 0;
+        }
+        searchId = 1;
+    }
+
+    private void resetAbstractSearchIds() {
+        for (int i = 0; i < abstractVisited.length; i++) {
+            abstractVisited[i] = 0;
+            abstractClosed[i] = 0;
+            goalCostSet[i] = 0;
+        }
+        abstractSearchId = 1;
+    }
+
+    /**
+     * Number of entrances in the abstract graph
+     */
+    public int getEntranceCount() {
+        return entranceNodes.size;
+    }
+
+    @Override
+    public void setHeuristic(GridHeuristic heuristic) {
+        this.heuristic = heuristic;
+    }
+
+    @Override
+    public int getExpandedNodes() {
+        return expandedNodes;
+    }
+
+    @Override
+    public void onNodeChanged(int node) {
+        abstractGraphDirty = true;
+    }
+}
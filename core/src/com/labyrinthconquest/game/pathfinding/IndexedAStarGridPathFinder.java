@@ -0,0 +1,63 @@
+package com.labyrinthconquest.game.pathfinding;
+
+import com.badlogic.gdx.ai.pfa.DefaultGraphPath;
+import com.badlogic.gdx.ai.pfa.Heuristic;
+import com.badlogic.gdx.ai.pfa.indexed.IndexedAStarPathFinder;
+import com.badlogic.gdx.utils.IntArray;
+
+/**
+ * Runs gdx-ai's IndexedAStarPathFinder over the object view of a graph. Kept as the reference implementation
+ * the compact path finders are compared against
+ */
+public class IndexedAStarGridPathFinder implements GridPathFinder {
+    private Graph graph;
+    private IndexedAStarPathFinder<INode> pathFinder;
+    private GraphHeuristic heuristic;
+    private DefaultGraphPath<INode> nodePath;
+    private int expandedNodes;
+
+    public IndexedAStarGridPathFinder(Graph graph) {
+        this.graph = graph;
+        pathFinder = new IndexedAStarPathFinder<INode>(graph) {
+            @Override
+            protected void visitChildren(INode endNode, Heuristic<INode> heuristic) {
+                expandedNodes++;
+                super.visitChildren(endNode, heuristic);
+            }
+        };
+        heuristic = new GraphHeuristic();
+        nodePath = new DefaultGraphPath<>();
+    }
+
+    @Override
+    public boolean searchPath(int startNode, int goalNode, IntArray outPath) {
+        outPath.clear();
+        nodePath.clear();
+        expandedNodes = 0;
+        if (!graph.getCompactGraph().isOpen(startNode) || !graph.getCompactGraph().isOpen(goalNode)) {
+            return false;
+        }
+        if (!pathFinder.searchNodePath(graph.getNode(startNode), graph.getNode(goalNode), heuristic, nodePath)) {
+            return false;
+        }
+        for (int i = 0; i < nodePath.getCount(); i++) {
+            outPath.add(nodePath.get(i).getIndex());
+        }
+        return true;
+    }
+
+    @Override
+    public void setHeuristic(GridHeuristic heuristic) {
+        this.heuristic = new GraphHeuristic(heuristic);
+    }
+
+    @Override
+    public int getExpandedNodes() {
+        return expandedNodes;
+    }
+
+    @Override
+    public void onNodeChanged(int node) {
+        // The graph rebuilds the connections of changed nodes
+    }
+}
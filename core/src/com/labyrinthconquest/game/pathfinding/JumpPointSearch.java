@@ -0,0 +1,223 @@
+package com.labyrinthconquest.game.pathfinding;
+
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.IntArray;
+
+/**
+ * Jump point search over a compact graph. Only valid for uniform cost, 8-connected grids where diagonal moves
+ * are allowed past corners, which is how CompactGraph connects the pathfind layers. Straight and diagonal runs
+ * without forced neighbours are skipped over, so far fewer nodes are expanded than with plain A*.
+ * The found jump points are expanded back into every cell on the way, so the path has the same shape as A* paths
+ */
+public class JumpPointSearch implements GridPathFinder {
+    private CompactGraph graph;
+    private GridHeuristic heuristic;
+    private NodeHeap openList;
+    private float[] costSoFar;
+    /**
+     * Previous jump point of every jump point
+     */
+    private int[] parent;
+    private int[] visited;
+    private int[] closed;
+    private int searchId;
+    private int expandedNodes;
+    private int goalNode;
+    /**
+     * Jump points of the found path, reused between searches
+     */
+    private IntArray jumpPoints;
+
+    public JumpPointSearch(CompactGraph graph) {
+        this.graph = graph;
+        heuristic = new EuclideanHeuristic(graph);
+        int nodeCount = graph.getNodeCount();
+        openList = new NodeHeap(nodeCount);
+        costSoFar = new float[nodeCount];
+        parent = new int[nodeCount];
+        visited = new int[nodeCount];
+        closed = new int[nodeCount];
+        jumpPoints = new IntArray();
+    }
+
+    @Override
+    public boolean searchPath(int startNode, int goalNode, IntArray outPath) {
+        outPath.clear();
+        expandedNodes = 0;
+        this.goalNode = goalNode;
+        if (++searchId < 0) {
+            resetSearchIds();
+        }
+        openList.clear();
+        if (!graph.isOpen(startNode) || !graph.isOpen(goalNode)) {
+            return false;
+        }
+        visit(startNode, CompactGraph.NO_NODE, 0);
+        while (!openList.isEmpty()) {
+            int current = openList.pop();
+            if (current == goalNode) {
+                generatePath(goalNode, outPath);
+                return true;
+            }
+            closed[current] = searchId;
+            expandedNodes++;
+            identifySuccessors(current);
+        }
+        return false;
+    }
+
+    /**
+     * Jump in every direction that is not pruned by the direction we arrived from
+     * @param node Node to expand
+     */
+    private void identifySuccessors(int node) {
+        int cell = graph.getNodeCell(node);
+        int x = graph.getCellX(cell);
+        int y = graph.getCellY(cell);
+        if (parent[node] == CompactGraph.NO_NODE) {
+            for (int dx = -1; dx <= 1; dx++) {
+                for (int dy = -1; dy <= 1; dy++) {
+                    if (dx != 0 || dy != 0) jumpFrom(node, x, y, dx, dy);
+                }
+            }
+            return;
+        }
+        int parentCell = graph.getNodeCell(parent[node]);
+        int dx = Integer.signum(x - graph.getCellX(parentCell));
+        int dy = Integer.signum(y - graph.getCellY(parentCell));
+        if (dx != 0 && dy != 0) {
+            jumpFrom(node, x, y, 0, dy);
+            jumpFrom(node, x, y, dx, 0);
+            jumpFrom(node, x, y, dx, dy);
+            if (!isWalkable(x - dx, y)) jumpFrom(node, x, y, -dx, dy);
+            if (!isWalkable(x, y - dy)) jumpFrom(node, x, y, dx, -dy);
+        } else if (dx != 0) {
+            jumpFrom(node, x, y, dx, 0);
+            if (!isWalkable(x, y + 1)) jumpFrom(node, x, y, dx, 1);
+            if (!isWalkable(x, y - 1)) jumpFrom(node, x, y, dx, -1);
+        } else {
+            jumpFrom(node, x, y, 0, dy);
+            if (!isWalkable(x + 1, y)) jumpFrom(node, x, y, 1, dy);
+            if (!isWalkable(x - 1, y)) jumpFrom(node, x, y, -1, dy);
+        }
+    }
+
+    /**
+     * Jump from node in a direction and add the jump point found, if any, to the open list
+     */
+    private void jumpFrom(int node, int x, int y, int dx, int dy) {
+        int jumpPoint = jump(x + dx, y + dy, dx, dy);
+        if (jumpPoint == CompactGraph.NO_NODE || closed[jumpPoint] == searchId) return;
+        float cost = costSoFar[node] + distance(node, jumpPoint);
+        if (visited[jumpPoint] != searchId || cost < costSoFar[jumpPoint]) {
+            visit(jumpPoint, node, cost);
+        }
+    }
+
+    /**
+     * Move in a direction until reaching the goal, a node with a forced neighbour or a wall
+     * @param x Cell x to start from
+     * @param y Cell y to start from
+     * @param dx Horizontal direction
+     * @param dy Vertical direction
+     * @return Jump point, NO_NODE if the run hit a wall
+     */
+    private int jump(int x, int y, int dx, int dy) {
+        while (true) {
+            int node = graph.getOpenNode(x, y);
+            if (node == CompactGraph.NO_NODE || node == goalNode) return node;
+            if (dx != 0 && dy != 0) {
+                if ((isWalkable(x - dx, y + dy) && !isWalkable(x - dx, y)) || (isWalkable(x + dx, y - dy) && !isWalkable(x, y - dy))) {
+                    return node;
+                }
+                if (jump(x + dx, y, dx, 0) != CompactGraph.NO_NODE || jump(x, y + dy, 0, dy) != CompactGraph.NO_NODE) {
+                    return node;
+                }
+            } else if (dx != 0) {
+                if ((isWalkable(x + dx, y + 1) && !isWalkable(x, y + 1)) || (isWalkable(x + dx, y - 1) && !isWalkable(x, y - 1))) {
+                    return node;
+                }
+            } else {
+                if ((isWalkable(x + 1, y + dy) && !isWalkable(x + 1, y)) || (isWalkable(x - 1, y + dy) && !isWalkable(x - 1, y))) {
+                    return node;
+                }
+            }
+            x += dx;
+            y += dy;
+        }
+    }
+
+    private boolean isWalkable(int x, int y) {
+        return graph.getOpenNode(x, y) != CompactGraph.NO_NODE;
+    }
+
+    /**
+     * Record a better path to node and (re)insert it to the open list
+     */
+    private void visit(int node, int from, float cost) {
+        visited[node] = searchId;
+        costSoFar[node] = cost;
+        parent[node] = from;
+        openList.add(node, cost + heuristic.estimate(node, goalNode));
+    }
+
+    /**
+     * Jump points are always on a straight or diagonal line, so the euclidean distance is also the path cost
+     */
+    private float distance(int from, int to) {
+        return Vector2.dst(graph.getX(from), graph.getY(from), graph.getX(to), graph.getY(to));
+    }
+
+    /**
+     * Walk back along the jump points and add every cell between them
+     */
+    private void generatePath(int goalNode, IntArray outPath) {
+        jumpPoints.clear();
+        for (int node = goalNode; node != CompactGraph.NO_NODE; node = parent[node]) {
+            jumpPoints.add(node);
+        }
+        jumpPoints.reverse();
+        outPath.add(jumpPoints.first());
+        for (int i = 1; i < jumpPoints.size; i++) {
+            int fromCell = graph.getNodeCell(jumpPoints.get(i - 1));
+            int toCell = graph.getNodeCell(jumpPoints.get(i));
+            int x = graph.getCellX(fromCell);
+            int y = graph.getCellY(fromCell);
+            int toX = graph.getCellX(toCell);
+            int toY = graph.getCellY(toCell);
+            int dx = Integer.signum(toX - x);
+            int dy = Integer.signum(toY - y);
+            while (x != toX || y != toY) {
+                x += dx;
+                y += dy;
+                outPath.add(graph.getNode(x, y));
+            }
+        }
+    }
+
+    /**
+     * Search ids wrapped around, forget all old stamps
+     */
+    private void resetSearchIds() {
+        for (int i = 0; i < visited.length; i++) {
+            visited[i] = 0;
+            closed[i] = 0;
+        }
+        searchId = 1;
+    }
+
+    @Override
+    public void setHeuristic(GridHeuristic heuristic) {
+        this.heuristic = heuristic;
+    }
+
+    @Override
+    public int getExpandedNodes() {
+        return expandedNodes;
+    }
+
+    @Override
+    public void onNodeChanged(int node) {
+        // Searches read the open nodes straight from the graph
+    }
+}
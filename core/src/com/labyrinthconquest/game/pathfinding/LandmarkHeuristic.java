@@ -0,0 +1,155 @@
+package com.labyrinthconquest.game.pathfinding;
+
+/**
+ * ALT heuristic (A*, landmarks and the triangle inequality). The cost from a few landmark nodes to every node is
+ * computed up front, and since d(landmark, goal) <= d(landmark, node) + d(node, goal), the difference of a node's and the
+ * goal's costs to a landmark never exceeds the cost between them. Behind walls the difference is far larger than
+ * any distance ignoring them, so the search wanders into far fewer dead ends.
+ * The costs are computed with every walkable node open. Opening or closing nodes later can only make paths longer than
+ * that, so the estimate stays valid for the lifetime of the graph without being recomputed
+ */
+public class LandmarkHeuristic implements GridHeuristic {
+    private static final float UNREACHABLE = Float.POSITIVE_INFINITY;
+
+    private OctileHeuristic octileHeuristic;
+    private int landmarkCount;
+    /**
+     * Cost from each landmark to each node, the landmarks of a node next to each other
+     */
+    private float[] landmarkCosts;
+    private int[] landmarks;
+
+    /**
+     * Pick the landmarks and compute their costs to every node. Each landmark is the node farthest from the landmarks
+     * picked before it, which spreads them to the edges of the map where they estimate best
+     * @param graph Graph
+     * @param landmarkCount Number of landmarks, each costs a float per node
+     */
+    public LandmarkHeuristic(CompactGraph graph, int landmarkCount) {
+        octileHeuristic = new OctileHeuristic(graph);
+        int nodeCount = graph.getNodeCount();
+        this.landmarkCount = Math.min(landmarkCount, nodeCount);
+        landmarkCosts = new float[nodeCount * this.landmarkCount];
+        landmarks = new int[this.landmarkCount];
+        int firstNode = findWalkableNode(graph);
+        if (firstNode == CompactGraph.NO_NODE) return;
+        NodeHeap openList = new NodeHeap(nodeCount);
+        float[] costs = new float[nodeCount];
+        // Cost to the closest landmark picked so far, the first landmark is the node farthest from the first walkable node
+        float[] closestLandmarkCosts = new float[nodeCount];
+        computeCosts(graph, firstNode, openList, closestLandmarkCosts);
+        for (int i = 0; i < this.landmarkCount; i++) {
+            int landmark = findFarthestNode(closestLandmarkCosts);
+            landmarks[i] = landmark;
+            computeCosts(graph, landmark, openList, costs);
+            for (int node = 0; node < nodeCount; node++) {
+                landmarkCosts[node * this.landmarkCount + i] = costs[node];
+                if (i == 0 || costs[node] < closestLandmarkCosts[node]) {
+                    closestLandmarkCosts[node] = costs[node];
+                }
+            }
+        }
+    }
+
+    /**
+     * Use landmarks computed before, e.g baked into a compiled level, for a graph with the same nodes and capabilities
+     * @param graph Graph
+     * @param landmarks Node of every landmark
+     * @param landmarkCosts Cost from each landmark to each node, the landmarks of a node next to each other
+     */
+    public LandmarkHeuristic(CompactGraph graph, int[] landmarks, float[] landmarkCosts) {
+        octileHeuristic = new OctileHeuristic(graph);
+        landmarkCount = landmarks.length;
+        this.landmarks = landmarks;
+        this.landmarkCosts = landmarkCosts;
+    }
+
+    /**
+     * @return First node the graph's capabilities can walk, NO_NODE if there is none
+     */
+    private static int findWalkableNode(CompactGraph graph) {
+        for (int node = 0; node < graph.getNodeCount(); node++) {
+            if (graph.isWalkable(node)) return node;
+        }
+        return CompactGraph.NO_NODE;
+    }
+
+    /**
+     * Dijkstra from a node over every walkable node of the graph, open or not
+     * @param outCosts Receives the cost from the node to every node, infinite for nodes it cannot reach
+     */
+    private static void computeCosts(CompactGraph graph, int from, NodeHeap openList, float[] outCosts) {
+        for (int i = 0; i < outCosts.length; i++) {
+            outCosts[i] = UNREACHABLE;
+        }
+        openList.clear();
+        outCosts[from] = 0;
+        openList.add(from, 0);
+        while (!openList.isEmpty()) {
+            int current = openList.pop();
+            for (int e = graph.getEdgeStart(current); e < graph.getEdgeEnd(current); e++) {
+                int next = graph.getEdgeTarget(e);
+                if (!graph.isWalkable(next)) continue;
+                float cost = outCosts[current] + graph.getEdgeCost(e);
+                if (cost < outCosts[next]) {
+                    outCosts[next] = cost;
+                    openList.add(next, cost);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return Node with the highest finite cost
+     */
+    private static int findFarthestNode(float[] costs) {
+        int farthest = 0;
+        for (int node = 1; node < costs.length; node++) {
+            if (costs[node] != UNREACHABLE && (costs[farthest] == UNREACHABLE || costs[node] > costs[farthest])) {
+                farthest = node;
+            }
+        }
+        return farthest;
+    }
+
+    /**
+     * @return The largest cost difference over the landmarks that reach both nodes, at least the octile distance
+     */
+    @Override
+    public float estimate(int node, int goalNode) {
+        float estimate = octileHeuristic.estimate(node, goalNode);
+        int nodeCosts = node * landmarkCount;
+        int goalCosts = goalNode * landmarkCount;
+        for (int i = 0; i < landmarkCount; i++) {
+            float nodeCost = landmarkCosts[nodeCosts + i];
+            float goalCost = landmarkCosts[goalCosts + i];
+            if (nodeCost == UNREACHABLE || goalCost == UNREACHABLE) continue;
+            float difference = Math.abs(nodeCost - goalCost);
+            if (difference > estimate) {
+                estimate = difference;
+            }
+        }
+        return estimate;
+    }
+
+    public int getLandmarkCount() {
+        return landmarkCount;
+    }
+
+    /**
+     * @param index Landmark index
+     * @return Node index of the landmark
+     */
+    public int getLandmark(int index) {
+        return landmarks[index];
+    }
+
+    /**
+     * @param index Landmark index
+     * @param node Node index
+     * @return Cost from the landmark to the node, infinite if it cannot reach the node
+     */
+    public float getCost(int index, int node) {
+        return landmarkCosts[node * landmarkCount + index];
+    }
+}
@@ -0,0 +1,180 @@
+package com.labyrinthconquest.game.pathfinding;
+
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.IntArray;
+import com.labyrinthconquest.game.data.Constants;
+
+/**
+ * Lazy Theta* over a compact graph. Like A*, but a node reached from a neighbour takes the neighbour's parent as its own
+ * parent, so paths run straight between any two nodes that can see each other instead of along the grid. The line of
+ * sight is only tested once a node is expanded (lazily), if it is blocked the node falls back to its best expanded
+ * neighbour. The found path holds only the nodes where it turns, so it needs no smoothing afterwards.
+ * Lines of sight are tested on an occupancy grid, the same way paths are smoothed. Searches are best guided by the
+ * straight line distance (the default): landmark heuristics estimate grid paths, which can be longer than any-angle ones
+ */
+public class LazyThetaStarPathFinder implements GridPathFinder {
+    private CompactGraph graph;
+    private GridHeuristic heuristic;
+    /**
+     * Grid lines of sight are tested on, either the cells without an open node or a grid that was set
+     */
+    private OccupancyGrid occupancyGrid;
+    private boolean ownsOccupancyGrid;
+    private NodeHeap openList;
+    /**
+     * Length of the best known path to every node
+     */
+    private float[] costSoFar;
+    /**
+     * Node the path to every node comes straight from, the start node is its own parent
+     */
+    private int[] parent;
+    /**
+     * Search id in which the node was last reached / closed
+     */
+    private int[] visited;
+    private int[] closed;
+    private int searchId;
+    private int expandedNodes;
+
+    /**
+     * Create a path finder that tests lines of sight on the graph itself: lines may only cross cells with an open node
+     * @param graph Compact graph
+     */
+    public LazyThetaStarPathFinder(CompactGraph graph) {
+        this.graph = graph;
+        heuristic = new EuclideanHeuristic(graph);
+        int nodeCount = graph.getNodeCount();
+        openList = new NodeHeap(nodeCount);
+        costSoFar = new float[nodeCount];
+        parent = new int[nodeCount];
+        visited = new int[nodeCount];
+        closed = new int[nodeCount];
+        occupancyGrid = new OccupancyGrid(graph.getWidth(), graph.getHeight());
+        ownsOccupancyGrid = true;
+        for (int x = 0; x < graph.getWidth(); x++) {
+            for (int y = 0; y < graph.getHeight(); y++) {
+                occupancyGrid.setBlocked(x, y, graph.getOpenNode(x, y) == CompactGraph.NO_NODE);
+            }
+        }
+    }
+
+    /**
+     * Test lines of sight on a grid of the character's walls instead, e.g the grid its graph smooths paths on, so
+     * the paths keep the same distance to walls as smoothed ones. The grid is not changed by the path finder
+     * @param occupancyGrid Grid of the cells the character cannot walk through
+     */
+    public void setOccupancyGrid(OccupancyGrid occupancyGrid) {
+        this.occupancyGrid = occupancyGrid;
+        ownsOccupancyGrid = false;
+    }
+
+    @Override
+    public boolean searchPath(int startNode, int goalNode, IntArray outPath) {
+        outPath.clear();
+        expandedNodes = 0;
+        if (++searchId < 0) {
+            resetSearchIds();
+        }
+        openList.clear();
+        if (!graph.isOpen(startNode) || !graph.isOpen(goalNode)) {
+            return false;
+        }
+        visited[startNode] = searchId;
+        costSoFar[startNode] = 0;
+        parent[startNode] = startNode;
+        openList.add(startNode, heuristic.estimate(startNode, goalNode));
+        while (!openList.isEmpty()) {
+            int current = openList.pop();
+            setParent(current);
+            if (current == goalNode) {
+                generatePath(startNode, goalNode, outPath);
+                return true;
+            }
+            closed[current] = searchId;
+            expandedNodes++;
+            int currentParent = parent[current];
+            for (int e = graph.getEdgeStart(current); e < graph.getEdgeEnd(current); e++) {
+                int next = graph.getEdgeTarget(e);
+                if (closed[next] == searchId || !graph.isOpen(next)) continue;
+                // Assume the parent can see the neighbour, tested when the neighbour is expanded
+                float cost = costSoFar[currentParent] + getDistance(currentParent, next);
+                if (visited[next] != searchId || cost < costSoFar[next]) {
+                    visited[next] = searchId;
+                    costSoFar[next] = cost;
+                    parent[next] = currentParent;
+                    openList.add(next, cost + heuristic.estimate(next, goalNode));
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Check the parent a node was given when it was reached. If the parent cannot see the node, the node is reached
+     * from the expanded neighbour with the shortest path to it instead, as on the grid
+     */
+    private void setParent(int node) {
+        int nodeParent = parent[node];
+        if (nodeParent == node || isInSight(nodeParent, node)) return;
+        costSoFar[node] = Float.POSITIVE_INFINITY;
+        for (int e = graph.getEdgeStart(node); e < graph.getEdgeEnd(node); e++) {
+            int neighbour = graph.getEdgeTarget(e);
+            if (closed[neighbour] != searchId) continue;
+            float cost = costSoFar[neighbour] + graph.getEdgeCost(e);
+            if (cost < costSoFar[node]) {
+                costSoFar[node] = cost;
+                parent[node] = neighbour;
+            }
+        }
+    }
+
+    private boolean isInSight(int from, int to) {
+        return occupancyGrid.isLineClear(graph.getX(from), graph.getY(from), graph.getX(to), graph.getY(to),
+                Constants.PATH_SMOOTH_SIDE_OFFSET);
+    }
+
+    private float getDistance(int from, int to) {
+        return Vector2.dst(graph.getX(from), graph.getY(from), graph.getX(to), graph.getY(to));
+    }
+
+    /**
+     * Walk back from the goal along the parents
+     */
+    private void generatePath(int startNode, int goalNode, IntArray outPath) {
+        for (int node = goalNode; node != startNode; node = parent[node]) {
+            outPath.add(node);
+        }
+        outPath.add(startNode);
+        outPath.reverse();
+    }
+
+    /**
+     * Search ids wrapped around, forget all old stamps
+     */
+    private void resetSearchIds() {
+        for (int i = 0; i < visited.length; i++) {
+            visited[i] = 0;
+            closed[i] = 0;
+        }
+        searchId = 1;
+    }
+
+    @Override
+    public void setHeuristic(GridHeuristic heuristic) {
+        this.heuristic = heuristic;
+    }
+
+    @Override
+    public int getExpandedNodes() {
+        return expandedNodes;
+    }
+
+    @Override
+    public void onNodeChanged(int node) {
+        if (ownsOccupancyGrid) {
+            int cell = graph.getNodeCell(node);
+            occupancyGrid.setBlocked(graph.getCellX(cell), graph.getCellY(cell), !graph.isOpen(node));
+        }
+    }
+}
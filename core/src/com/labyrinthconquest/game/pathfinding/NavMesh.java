@@ -0,0 +1,466 @@
+package com.labyrinthconquest.game.pathfinding;
+
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.FloatArray;
+import com.badlogic.gdx.utils.IntArray;
+
+import java.util.Arrays;
+
+/**
+ * Navigation mesh of the open cells of a compact graph. The cells are merged into rectangles, connected through
+ * portals (the edges two rectangles share). Paths are searched with A* over the rectangles and pulled tight through
+ * the portals with the funnel algorithm, so they only turn near wall corners and need no smoothing. An open room
+ * becomes a few rectangles instead of a node per cell.
+ * Paths keep the agent radius away from the walls: they are pulled through the rectangles shrunk by the radius, and
+ * each portal is crossed through the band joining the shrunk rectangles on both of its sides. With half a cell, one cell
+ * wide corridors are walked through the middle of their cells.
+ * Cells touching only at a corner are connected like in the compact graph, through the centres of both cells.
+ * The mesh is rebuilt on the next search after a cell was opened or closed
+ */
+public class NavMesh {
+    private CompactGraph graph;
+    /**
+     * Distance paths keep from the walls, at most half a cell
+     */
+    private float agentRadius;
+    private boolean dirty = true;
+
+    private int rectangleCount;
+    /**
+     * X, y, width and height in cells of every rectangle
+     */
+    private IntArray rectangles;
+    /**
+     * Rectangle of every cell, -1 where the cell is not open
+     */
+    private int[] cellRectangle;
+    /**
+     * Portals leaving rectangle r are stored between portalOffsets[r] and portalOffsets[r + 1]
+     */
+    private int[] portalOffsets;
+    private IntArray portalTargets;
+    /**
+     * Both faces of the band every portal is crossed through, the one in the rectangle left and the one in the
+     * rectangle entered. Each as its left and right end seen when walking through it (left x, left y, right x, right y)
+     */
+    private FloatArray portalPoints;
+
+    /**
+     * Search state of every rectangle, valid when the rectangle's search id is the current search
+     */
+    private NodeHeap openList;
+    private float[] costs;
+    private float[] entryX;
+    private float[] entryY;
+    private int[] parentPortals;
+    private int[] parentRectangles;
+    private int[] searchIds;
+    private boolean[] closed;
+    private int searchId;
+    private IntArray portalPath;
+    /**
+     * Left and right points of the portals the funnel pulls the path through, start and goal included
+     */
+    private FloatArray funnel;
+
+    /**
+     * Create a navigation mesh, built on the first search
+     * @param graph Graph whose open cells are walkable
+     * @param agentRadius Distance paths keep from the walls, at most half a cell
+     */
+    public NavMesh(CompactGraph graph, float agentRadius) {
+        this.graph = graph;
+        this.agentRadius = Math.min(agentRadius, 0.5f);
+        rectangles = new IntArray();
+        portalTargets = new IntArray();
+        portalPoints = new FloatArray();
+        portalPath = new IntArray();
+        funnel = new FloatArray();
+    }
+
+    /**
+     * Rebuild the mesh on the next search, e.g because a door opened
+     */
+    public void invalidate() {
+        dirty = true;
+    }
+
+    /**
+     * Build the mesh if a cell was opened or closed since it was last built
+     */
+    public void build() {
+        if (!dirty) return;
+        dirty = false;
+        createRectangles();
+        createPortals();
+        if (costs == null || costs.length < rectangleCount) {
+            openList = new NodeHeap(rectangleCount);
+            costs = new float[rectangleCount];
+            entryX = new float[rectangleCount];
+            entryY = new float[rectangleCount];
+            parentPortals = new int[rectangleCount];
+            parentRectangles = new int[rectangleCount];
+            searchIds = new int[rectangleCount];
+            closed = new boolean[rectangleCount];
+        } else {
+            Arrays.fill(searchIds, 0);
+        }
+        searchId = 0;
+    }
+
+    /**
+     * Merge the open cells into rectangles, greedily: each cell not yet covered starts a rectangle that is made as wide
+     * as the row allows, then as high as the rows above allow at that width
+     */
+    private void createRectangles() {
+        int width = graph.getWidth();
+        int height = graph.getHeight();
+        if (cellRectangle == null) {
+            cellRectangle = new int[width * height];
+        }
+        Arrays.fill(cellRectangle, -1);
+        rectangles.clear();
+        rectangleCount = 0;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                if (!isFree(x, y)) continue;
+                int rectWidth = 1;
+                while (x + rectWidth < width && isFree(x + rectWidth, y)) rectWidth++;
+                int rectHeight = 1;
+                while (y + rectHeight < height && isRowFree(x, y + rectHeight, rectWidth)) rectHeight++;
+                for (int ry = y; ry < y + rectHeight; ry++) {
+                    Arrays.fill(cellRectangle, ry * width + x, ry * width + x + rectWidth, rectangleCount);
+                }
+                rectangles.add(x, y, rectWidth, rectHeight);
+                rectangleCount++;
+            }
+        }
+    }
+
+    /**
+     * @return Whether a cell is open and not yet in a rectangle
+     */
+    private boolean isFree(int x, int y) {
+        return cellRectangle[y * graph.getWidth() + x] == -1 && graph.getOpenNode(x, y) != CompactGraph.NO_NODE;
+    }
+
+    private boolean isRowFree(int x, int y, int rowWidth) {
+        for (int i = x; i < x + rowWidth; i++) {
+            if (!isFree(i, y)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Find the portals of every rectangle by walking the cells along its four sides
+     */
+    private void createPortals() {
+        if (portalOffsets == null || portalOffsets.length < rectangleCount + 1) {
+            portalOffsets = new int[rectangleCount + 1];
+        }
+        portalTargets.clear();
+        portalPoints.clear();
+        for (int r = 0; r < rectangleCount; r++) {
+            portalOffsets[r] = portalTargets.size;
+            for (int side = 0; side < 4; side++) {
+                addPortals(r, side);
+            }
+            addCornerPortals(r);
+        }
+        portalOffsets[rectangleCount] = portalTargets.size;
+    }
+
+    /**
+     * Add a portal for every run of cells along a side of a rectangle that belong to the same neighbouring rectangle
+     * @param rectangle Rectangle
+     * @param side Right, left, top or bottom side (0 to 3)
+     */
+    private void addPortals(int rectangle, int side) {
+        int x = rectangles.get(rectangle * 4);
+        int y = rectangles.get(rectangle * 4 + 1);
+        int w = rectangles.get(rectangle * 4 + 2);
+        int h = rectangles.get(rectangle * 4 + 3);
+        boolean vertical = side < 2;
+        int length = vertical ? h : w;
+        int runStart = 0;
+        int runRectangle = getNeighbour(x, y, w, h, side, 0);
+        for (int i = 1; i <= length; i++) {
+            int neighbour = i < length ? getNeighbour(x, y, w, h, side, i) : -1;
+            if (neighbour == runRectangle) continue;
+            if (runRectangle != -1) {
+                // The ends of the run as seen walking out of the side, and the direction out of it
+                switch (side) {
+                    case 0:
+                        addPortal(runRectangle, x + w, y + i, x + w, y + runStart, 1, 0);
+                        break;
+                    case 1:
+                        addPortal(runRectangle, x, y + runStart, x, y + i, -1, 0);
+                        break;
+                    case 2:
+                        addPortal(runRectangle, x + runStart, y + h, x + i, y + h, 0, 1);
+                        break;
+                    default:
+                        addPortal(runRectangle, x + i, y, x + runStart, y, 0, -1);
+                        break;
+                }
+            }
+            runStart = i;
+            runRectangle = neighbour;
+        }
+    }
+
+    /**
+     * Add a portal through each corner of a rectangle whose corner cell touches an open cell only diagonally. Such cells
+     * are always the corners of their rectangles, as the cells beside them are walls
+     */
+    private void addCornerPortals(int rectangle) {
+        int x = rectangles.get(rectangle * 4);
+        int y = rectangles.get(rectangle * 4 + 1);
+        int w = rectangles.get(rectangle * 4 + 2);
+        int h = rectangles.get(rectangle * 4 + 3);
+        for (int corner = 0; corner < 4; corner++) {
+            int dx = corner % 2 == 0 ? 1 : -1;
+            int dy = corner < 2 ? 1 : -1;
+            int cornerX = dx > 0 ? x + w - 1 : x;
+            int cornerY = dy > 0 ? y + h - 1 : y;
+            int target = getRectangle(cornerX + dx, cornerY + dy);
+            if (target == -1 || getRectangle(cornerX + dx, cornerY) != -1 || getRectangle(cornerX, cornerY + dy) != -1) continue;
+            float fromX = cornerX + 0.5f;
+            float fromY = cornerY + 0.5f;
+            portalTargets.add(target);
+            portalPoints.add(fromX, fromY, fromX, fromY);
+            portalPoints.add(fromX + dx, fromY + dy, fromX + dx, fromY + dy);
+        }
+    }
+
+    /**
+     * @return Rectangle of the i-th cell next to a side of a rectangle, -1 if the cell is not open
+     */
+    private int getNeighbour(int x, int y, int w, int h, int side, int i) {
+        switch (side) {
+            case 0:
+                return getRectangle(x + w, y + i);
+            case 1:
+                return getRectangle(x - 1, y + i);
+            case 2:
+                return getRectangle(x + i, y + h);
+            default:
+                return getRectangle(x + i, y - 1);
+        }
+    }
+
+    /**
+     * Add a portal into a neighbouring rectangle. Its faces are the shared edge moved back and forth by the agent radius,
+     * with their ends moved in by the radius (to the middle if the edge is narrower)
+     * @param target Neighbouring rectangle
+     * @param leftX Left end x of the shared edge
+     * @param leftY Left end y of the shared edge
+     * @param rightX Right end x of the shared edge
+     * @param rightY Right end y of the shared edge
+     * @param outX X direction out of the rectangle
+     * @param outY Y direction out of the rectangle
+     */
+    private void addPortal(int target, float leftX, float leftY, float rightX, float rightY, int outX, int outY) {
+        float length = Vector2.dst(leftX, leftY, rightX, rightY);
+        float inset = length > agentRadius * 2 ? agentRadius / length : 0.5f;
+        float insetX = (rightX - leftX) * inset;
+        float insetY = (rightY - leftY) * inset;
+        leftX += insetX;
+        leftY += insetY;
+        rightX -= insetX;
+        rightY -= insetY;
+        float offsetX = outX * agentRadius;
+        float offsetY = outY * agentRadius;
+        portalTargets.add(target);
+        portalPoints.add(leftX - offsetX, leftY - offsetY, rightX - offsetX, rightY - offsetY);
+        portalPoints.add(leftX + offsetX, leftY + offsetY, rightX + offsetX, rightY + offsetY);
+    }
+
+    private int getRectangle(int x, int y) {
+        if (x < 0 || y < 0 || x >= graph.getWidth() || y >= graph.getHeight()) return -1;
+        return cellRectangle[y * graph.getWidth() + x];
+    }
+
+    /**
+     * Find a path between two positions
+     * @param fromX Start x
+     * @param fromY Start y
+     * @param toX Goal x
+     * @param toY Goal y
+     * @param outWaypoints Receives the corners the path turns at as x, y pairs, without the start and goal
+     * @return Whether a path exists. Positions outside the open cells start or end in the rectangle of the closest node
+     */
+    public boolean findPath(float fromX, float fromY, float toX, float toY, FloatArray outWaypoints) {
+        build();
+        outWaypoints.clear();
+        int start = findRectangle(fromX, fromY);
+        int goal = findRectangle(toX, toY);
+        if (start == -1 || goal == -1) return false;
+        if (start == goal) return true;
+        if (!searchRectangles(start, goal, fromX, fromY, toX, toY)) return false;
+        funnel.clear();
+        funnel.add(fromX, fromY, fromX, fromY);
+        for (int i = portalPath.size - 1; i >= 0; i--) {
+            funnel.addAll(portalPoints, portalPath.get(i) * 8, 8);
+        }
+        funnel.add(toX, toY, toX, toY);
+        pullString(outWaypoints);
+        return true;
+    }
+
+    /**
+     * @return Rectangle containing a position, or of the node closest to it. -1 if that node is closed
+     */
+    private int findRectangle(float x, float y) {
+        int rectangle = getRectangle((int)Math.floor(x), (int)Math.floor(y));
+        if (rectangle != -1) return rectangle;
+        int node = graph.findClosestNode(x, y);
+        if (node == CompactGraph.NO_NODE) return -1;
+        int cell = graph.getNodeCell(node);
+        return cellRectangle[cell];
+    }
+
+    /**
+     * A* over the rectangles. A rectangle is entered at the point of the portal it is reached through closest to where
+     * the rectangle it comes from was entered, costs are measured between those points. Leaves the portals of the path
+     * in portalPath, from the goal back to the start
+     * @return Whether the goal was reached
+     */
+    private boolean searchRectangles(int start, int goal, float fromX, float fromY, float toX, float toY) {
+        if (++searchId == Integer.MAX_VALUE) {
+            Arrays.fill(searchIds, 0);
+            searchId = 1;
+        }
+        openList.clear();
+        visit(start, 0, fromX, fromY, -1, -1);
+        openList.add(start, Vector2.dst(fromX, fromY, toX, toY));
+        boolean found = false;
+        while (!openList.isEmpty()) {
+            int rectangle = openList.pop();
+            if (rectangle == goal) {
+                found = true;
+                break;
+            }
+            closed[rectangle] = true;
+            for (int portal = portalOffsets[rectangle]; portal < portalOffsets[rectangle + 1]; portal++) {
+                int target = portalTargets.get(portal);
+                if (searchIds[target] == searchId && closed[target]) continue;
+                // Closest point of the face in the entered rectangle
+                float leftX = portalPoints.get(portal * 8 + 4);
+                float leftY = portalPoints.get(portal * 8 + 5);
+                float rightX = portalPoints.get(portal * 8 + 6);
+                float rightY = portalPoints.get(portal * 8 + 7);
+                float pointX = MathUtils.clamp(entryX[rectangle], Math.min(leftX, rightX), Math.max(leftX, rightX));
+                float pointY = MathUtils.clamp(entryY[rectangle], Math.min(leftY, rightY), Math.max(leftY, rightY));
+                float cost = costs[rectangle] + Vector2.dst(entryX[rectangle], entryY[rectangle], pointX, pointY);
+                if (searchIds[target] == searchId && cost >= costs[target]) continue;
+                visit(target, cost, pointX, pointY, portal, rectangle);
+                openList.add(target, cost + Vector2.dst(pointX, pointY, toX, toY));
+            }
+        }
+        openList.clear();
+        if (!found) return false;
+        portalPath.clear();
+        for (int rectangle = goal; rectangle != start; rectangle = parentRectangles[rectangle]) {
+            portalPath.add(parentPortals[rectangle]);
+        }
+        return true;
+    }
+
+    private void visit(int rectangle, float cost, float x, float y, int portal, int parent) {
+        searchIds[rectangle] = searchId;
+        closed[rectangle] = false;
+        costs[rectangle] = cost;
+        entryX[rectangle] = x;
+        entryY[rectangle] = y;
+        parentPortals[rectangle] = portal;
+        parentRectangles[rectangle] = parent;
+    }
+
+    /**
+     * Simple stupid funnel algorithm: walk the portals keeping the narrowest funnel from the last corner (the apex).
+     * When a side of the funnel would cross the other, the other side's end is a corner of the path and the new apex
+     */
+    private void pullString(FloatArray outWaypoints) {
+        int portals = funnel.size / 4;
+        float apexX = funnel.get(0);
+        float apexY = funnel.get(1);
+        float leftX = apexX;
+        float leftY = apexY;
+        float rightX = apexX;
+        float rightY = apexY;
+        int apexIndex = 0;
+        int leftIndex = 0;
+        int rightIndex = 0;
+        for (int i = 1; i < portals; i++) {
+            float newLeftX = funnel.get(i * 4);
+            float newLeftY = funnel.get(i * 4 + 1);
+            float newRightX = funnel.get(i * 4 + 2);
+            float newRightY = funnel.get(i * 4 + 3);
+            if (cross(apexX, apexY, rightX, rightY, newRightX, newRightY) >= 0) {
+                if ((apexX == rightX && apexY == rightY) || cross(apexX, apexY, leftX, leftY, newRightX, newRightY) < 0) {
+                    rightX = newRightX;
+                    rightY = newRightY;
+                    rightIndex = i;
+                } else {
+                    // The right side crosses the left one, the path turns at the left end
+                    if (leftIndex < portals - 1) addWaypoint(outWaypoints, leftX, leftY);
+                    apexX = leftX;
+                    apexY = leftY;
+                    apexIndex = leftIndex;
+                    rightX = apexX;
+                    rightY = apexY;
+                    rightIndex = apexIndex;
+                    i = apexIndex;
+                    continue;
+                }
+            }
+            if (cross(apexX, apexY, leftX, leftY, newLeftX, newLeftY) <= 0) {
+                if ((apexX == leftX && apexY == leftY) || cross(apexX, apexY, rightX, rightY, newLeftX, newLeftY) > 0) {
+                    leftX = newLeftX;
+                    leftY = newLeftY;
+                    leftIndex = i;
+                } else {
+                    if (rightIndex < portals - 1) addWaypoint(outWaypoints, rightX, rightY);
+                    apexX = rightX;
+                    apexY = rightY;
+                    apexIndex = rightIndex;
+                    leftX = apexX;
+                    leftY = apexY;
+                    leftIndex = apexIndex;
+                    i = apexIndex;
+                }
+            }
+        }
+    }
+
+    /**
+     * Add a corner of the path, unless it is the same as the last one (portals narrower than the agent are a point)
+     */
+    private static void addWaypoint(FloatArray outWaypoints, float x, float y) {
+        int size = outWaypoints.size;
+        if (size >= 2 && outWaypoints.get(size - 2) == x && outWaypoints.get(size - 1) == y) return;
+        outWaypoints.add(x, y);
+    }
+
+    /**
+     * @return Cross product of (b - a) and (c - a), positive when c is left of the line from a through b
+     */
+    private static float cross(float ax, float ay, float bx, float by, float cx, float cy) {
+        return (bx - ax) * (cy - ay) - (by - ay) * (cx - ax);
+    }
+
+    public int getRectangleCount() {
+        build();
+        return rectangleCount;
+    }
+
+    /**
+     * @return Number of portals, every shared edge is a portal in each direction
+     */
+    public int getPortalCount() {
+        build();
+        return portalTargets.size;
+    }
+}
@@ -16,6 +16,16 @@ public class Node implements INode {
         this.y = y;
     }
 
+    /**
+     * Move the node to a new position. Used for the reusable path endpoint nodes
+     * @param x New x position
+     * @param y New y position
+     */
+    public void setPosition(float x, float y) {
+        this.x = x;
+        this.y = y;
+    }
+
     @Override
     public float getX() {
         return x;
@@ -0,0 +1,148 @@
+package com.labyrinthconquest.game.pathfinding;
+
+/**
+ * Binary min-heap of node indices ordered by a float key. Tracks the heap position of every node so keys can be
+ * decreased in place, which lets the search algorithms run without allocating node records
+ */
+public class NodeHeap {
+    private int[] nodes;
+    private float[] keys;
+    /**
+     * Position of every node in the heap, -1 when the node is not in the heap
+     */
+    private int[] positions;
+    private int size;
+
+    /**
+     * Create a heap for nodes 0 to nodeCount - 1
+     * @param nodeCount Number of nodes in the graph
+     */
+    public NodeHeap(int nodeCount) {
+        nodes = new int[nodeCount];
+        keys = new float[nodeCount];
+        positions = new int[nodeCount];
+        for (int i = 0; i < nodeCount; i++) {
+            positions[i] = -1;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean contains(int node) {
+        return positions[node] != -1;
+    }
+
+    /**
+     * Key of the node at the top of the heap
+     */
+    public float peekKey() {
+        return keys[0];
+    }
+
+    public int peek() {
+        return nodes[0];
+    }
+
+    /**
+     * Add a node, or update its key if it is already in the heap
+     * @param node Node index
+     * @param key Key to order by
+     */
+    public void add(int node, float key) {
+        int pos = positions[node];
+        if (pos == -1) {
+            pos = size++;
+            nodes[pos] = node;
+            keys[pos] = key;
+            positions[node] = pos;
+            siftUp(pos);
+        } else if (key < keys[pos]) {
+            keys[pos] = key;
+            siftUp(pos);
+        } else {
+            keys[pos] = key;
+            siftDown(pos);
+        }
+    }
+
+    /**
+     * Remove and return the node with the smallest key
+     * @return Node index
+     */
+    public int pop() {
+        int top = nodes[0];
+        removeAt(0);
+        return top;
+    }
+
+    /**
+     * Remove a node if it is in the heap
+     * @param node Node index
+     */
+    public void remove(int node) {
+        int pos = positions[node];
+        if (pos != -1) removeAt(pos);
+    }
+
+    /**
+     * Remove all nodes. Only touches the nodes currently in the heap
+     */
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            positions[nodes[i]] = -1;
+        }
+        size = 0;
+    }
+
+    private void removeAt(int pos) {
+        positions[nodes[pos]] = -1;
+        size--;
+        if (pos == size) return;
+        nodes[pos] = nodes[size];
+        keys[pos] = keys[size];
+        int moved = nodes[pos];
+        positions[moved] = pos;
+        siftUp(pos);
+        if (positions[moved] == pos) siftDown(pos);
+    }
+
+    private void siftUp(int pos) {
+        int node = nodes[pos];
+        float key = keys[pos];
+        while (pos > 0) {
+            int parent = (pos - 1) >> 1;
+            if (keys[parent] <= key) break;
+            nodes[pos] = nodes[parent];
+            keys[pos] = keys[parent];
+            positions[nodes[pos]] = pos;
+            pos = parent;
+        }
+        nodes[pos] = node;
+        keys[pos] = key;
+        positions[node] = pos;
+    }
+
+    private void siftDown(int pos) {
+        int node = nodes[pos];
+        float key = keys[pos];
+        int half = size >> 1;
+        while (pos < half) {
+            int child = 2 * pos + 1;
+            if (child + 1 < size && keys[child + 1] < keys[child]) child++;
+            if (key <= keys[child]) break;
+            nodes[pos] = nodes[child];
+            keys[pos] = keys[child];
+            positions[nodes[pos]] = pos;
+            pos = child;
+        }
+        nodes[pos] = node;
+        keys[pos] = key;
+        positions[node] = pos;
+    }
+}
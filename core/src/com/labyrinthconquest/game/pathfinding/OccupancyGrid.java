@@ -0,0 +1,207 @@
+package com.labyrinthconquest.game.pathfinding;
+
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.utils.IntArray;
+
+/**
+ * Bit per cell grid of the cells a character cannot walk through, built from the wall layers the character collides
+ * with. Used for line of sight tests when smoothing paths, which walk the cells a line touches instead of raycasting
+ * the Box2D world. The grid also remembers which wall rectangle covers a cell, as a ray starting inside a wall
+ * does not hit that wall. The grid is only read by line tests, so several threads may test lines at once as long as
+ * no cell is changed meanwhile
+ */
+public class OccupancyGrid {
+    private static final int NO_WALL = -1;
+    private static final int SEVERAL_WALLS = -2;
+
+    private int width;
+    private int height;
+    /**
+     * Blocked bits of the cells, row by row
+     */
+    private long[] blocked;
+    /**
+     * Wall covering each blocked cell, NO_WALL for cells blocked on their own and SEVERAL_WALLS where walls overlap
+     */
+    private int[] cellWalls;
+    /**
+     * Cell bounds of the walls: min x, min y, max x and max y (exclusive) of each wall
+     */
+    private IntArray wallBounds;
+
+    /**
+     * Create a grid with every cell free
+     * @param width Width in cells
+     * @param height Height in cells
+     */
+    public OccupancyGrid(int width, int height) {
+        this.width = width;
+        this.height = height;
+        blocked = new long[(width * height + 63) / 64];
+        cellWalls = new int[width * height];
+        wallBounds = new IntArray();
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Block the cells covered by a wall, e.g a wall object of the map. The wall is snapped to the nearest cell borders,
+     * as map objects drawn by hand are sometimes slightly off the grid
+     * @param rect Wall in cells
+     */
+    public void addWall(Rectangle rect) {
+        int wall = wallBounds.size / 4;
+        int minX = MathUtils.round(rect.x);
+        int minY = MathUtils.round(rect.y);
+        int maxX = Math.max(minX + 1, MathUtils.round(rect.x + rect.width));
+        int maxY = Math.max(minY + 1, MathUtils.round(rect.y + rect.height));
+        wallBounds.add(minX, minY, maxX, maxY);
+        for (int x = minX; x < maxX; x++) {
+            for (int y = minY; y < maxY; y++) {
+                if (!isInside(x, y)) continue;
+                int cell = y * width + x;
+                boolean covered = isBlocked(x, y);
+                setBlocked(x, y, true);
+                cellWalls[cell] = covered ? SEVERAL_WALLS : wall;
+            }
+        }
+    }
+
+    /**
+     * Block or free a single cell, cells outside the grid are ignored
+     * @param x Cell x
+     * @param y Cell y
+     * @param isBlocked Whether the cell cannot be walked through
+     */
+    public void setBlocked(int x, int y, boolean isBlocked) {
+        if (!isInside(x, y)) return;
+        int cell = y * width + x;
+        cellWalls[cell] = NO_WALL;
+        if (isBlocked) {
+            blocked[cell >>> 6] |= 1L << cell;
+        } else {
+            blocked[cell >>> 6] &= ~(1L << cell);
+        }
+    }
+
+    /**
+     * @param x Cell x
+     * @param y Cell y
+     * @return Whether the cell is blocked, cells outside the grid are free
+     */
+    public boolean isBlocked(int x, int y) {
+        if (!isInside(x, y)) return false;
+        int cell = y * width + x;
+        return (blocked[cell >>> 6] & (1L << cell)) != 0;
+    }
+
+    private boolean isInside(int x, int y) {
+        return x >= 0 && y >= 0 && x < width && y < height;
+    }
+
+    /**
+     * Test whether a line crosses a blocked cell. Every cell the line touches is tested (a supercover line), including
+     * both cells beside a corner the line passes exactly through. Like a Box2D raycast, the cells of the wall the line
+     * starts in are not hit
+     * @param x0 Start x
+     * @param y0 Start y
+     * @param x1 End x
+     * @param y1 End y
+     * @return True if the line does not cross a blocked cell
+     */
+    public boolean isLineClear(float x0, float y0, float x1, float y1) {
+        int x = MathUtils.floor(x0);
+        int y = MathUtils.floor(y0);
+        int endX = MathUtils.floor(x1);
+        int endY = MathUtils.floor(y1);
+        int stepX = x1 > x0 ? 1 : -1;
+        int stepY = y1 > y0 ? 1 : -1;
+        float dx = Math.abs(x1 - x0);
+        float dy = Math.abs(y1 - y0);
+        // Distance along the line, as a fraction of its length, to the next vertical and horizontal cell border
+        float deltaX = dx == 0 ? Float.POSITIVE_INFINITY : 1 / dx;
+        float deltaY = dy == 0 ? Float.POSITIVE_INFINITY : 1 / dy;
+        float nextX = dx == 0 ? Float.POSITIVE_INFINITY : (stepX > 0 ? x + 1 - x0 : x0 - x) * deltaX;
+        float nextY = dy == 0 ? Float.POSITIVE_INFINITY : (stepY > 0 ? y + 1 - y0 : y0 - y) * deltaY;
+        int startX = x;
+        int startY = y;
+        for (int steps = Math.abs(endX - x) + Math.abs(endY - y); steps > 0; steps--) {
+            if (nextX < nextY) {
+                x += stepX;
+                nextX += deltaX;
+            } else if (nextY < nextX) {
+                y += stepY;
+                nextY += deltaY;
+            } else {
+                if (isHit(x + stepX, y, startX, startY) || isHit(x, y + stepY, startX, startY)) return false;
+                x += stepX;
+                y += stepY;
+                nextX += deltaX;
+                nextY += deltaY;
+                steps--;
+            }
+            if (isHit(x, y, startX, startY)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Test whether a character can walk straight from point to point: the line between the points and two lines offset
+     * to both sides of it must not cross a blocked cell
+     * @param x0 Start x
+     * @param y0 Start y
+     * @param x1 End x
+     * @param y1 End y
+     * @param sideOffset How far the side lines are offset along x, roughly the half width of the character
+     * @return True if none of the lines cross a blocked cell
+     */
+    public boolean isLineClear(float x0, float y0, float x1, float y1, float sideOffset) {
+        return isLineClear(x0, y0, x1, y1)
+                && isLineClear(x0 + sideOffset, y0, x1 + sideOffset, y1)
+                && isLineClear(x0 - sideOffset, y0, x1 - sideOffset, y1);
+    }
+
+    /**
+     * @return Whether a cell is blocked by something else than the walls, or single blocked cell, the line started in
+     */
+    private boolean isHit(int x, int y, int startX, int startY) {
+        if (!isBlocked(x, y)) return false;
+        int wall = cellWalls[y * width + x];
+        if (wall == NO_WALL) {
+            return x != startX || y != startY;
+        }
+        if (wall != SEVERAL_WALLS) {
+            return !isStartWall(wall, startX, startY);
+        }
+        // Rare: overlapping walls, every wall covering the cell must be one the line started in
+        for (int i = 0; i < wallBounds.size; i += 4) {
+            if (isInWall(i / 4, x, y) && !isStartWall(i / 4, startX, startY)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return Whether a wall covers the blocked cell a line starts in. Worked out from the start cell on every call,
+     *         so line tests keep no state of their own
+     */
+    private boolean isStartWall(int wall, int startX, int startY) {
+        if (!isBlocked(startX, startY)) return false;
+        int startWall = cellWalls[startY * width + startX];
+        if (startWall == SEVERAL_WALLS) {
+            return isInWall(wall, startX, startY);
+        }
+        return startWall == wall;
+    }
+
+    private boolean isInWall(int wall, int x, int y) {
+        int i = wall * 4;
+        return x >= wallBounds.get(i) && y >= wallBounds.get(i + 1) && x < wallBounds.get(i + 2) && y < wallBounds.get(i + 3);
+    }
+}
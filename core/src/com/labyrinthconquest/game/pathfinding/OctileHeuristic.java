@@ -0,0 +1,26 @@
+package com.labyrinthconquest.game.pathfinding;
+
+/**
+ * Length of the shortest path between the nodes on an empty 8-connected grid: diagonal steps while both coordinates
+ * differ, straight steps for the rest. Exact when nothing is in the way, so it is the tightest estimate that
+ * ignores the walls
+ */
+public class OctileHeuristic implements GridHeuristic {
+    /**
+     * Extra cost of a diagonal step over a straight one
+     */
+    private static final float DIAGONAL_EXTRA = (float)(Math.sqrt(2) - 1);
+
+    private CompactGraph graph;
+
+    public OctileHeuristic(CompactGraph graph) {
+        this.graph = graph;
+    }
+
+    @Override
+    public float estimate(int node, int goalNode) {
+        float dx = Math.abs(graph.getX(node) - graph.getX(goalNode));
+        float dy = Math.abs(graph.getY(node) - graph.getY(goalNode));
+        return Math.max(dx, dy) + DIAGONAL_EXTRA * Math.min(dx, dy);
+    }
+}
@@ -0,0 +1,247 @@
+package com.labyrinthconquest.game.pathfinding;
+
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.LongMap;
+
+/**
+ * Bounded least recently used cache of smoothed paths, keyed by start and end cell. Entries remember the area and cost
+ * of their path, so a map change only drops the paths it can affect. Entries keep the grid path too, so a hit can be
+ * smoothed again from the exact start position. Entries are pooled, so hits and misses do not allocate
+ */
+public class PathCache {
+    /**
+     * A cached path: the smoothed waypoints between the start and end positions, the grid path they were smoothed from,
+     * the cells the path covers, and the end nodes and cost of the path on the grid
+     */
+    private static class Entry {
+        private long key;
+        private IntArray waypoints = new IntArray();
+        private IntArray nodePath = new IntArray();
+        private int minX;
+        private int minY;
+        private int maxX;
+        private int maxY;
+        private float startX;
+        private float startY;
+        private float goalX;
+        private float goalY;
+        private float cost;
+        private Entry previous;
+        private Entry next;
+    }
+
+    private CompactGraph graph;
+    private int capacity;
+    private LongMap<Entry> entries;
+    /**
+     * Most and least recently used entries
+     */
+    private Entry head;
+    private Entry tail;
+    private Array<Entry> freeEntries;
+
+    private long hits;
+    private long misses;
+    private long invalidations;
+    private long hitNanos;
+
+    /**
+     * Create a new cache
+     * @param graph Graph the paths are on
+     * @param capacity Maximum number of cached paths
+     */
+    public PathCache(CompactGraph graph, int capacity) {
+        this.graph = graph;
+        this.capacity = capacity;
+        entries = new LongMap<>(capacity * 2);
+        freeEntries = new Array<>(capacity);
+        for (int i = 0; i < capacity; i++) {
+            freeEntries.add(new Entry());
+        }
+    }
+
+    /**
+     * Make a key from a start and end cell
+     */
+    public static long key(int startCell, int endCell) {
+        return ((long)startCell << 32) | (endCell & 0xffffffffL);
+    }
+
+    /**
+     * Look up a path and mark it as most recently used
+     * @param key Key of the path
+     * @param outWaypoints Receives the waypoints of the path if it is cached
+     * @param outNodePath Receives the grid path the waypoints were smoothed from, start and goal node included
+     * @return True if the path was cached
+     */
+    public boolean get(long key, IntArray outWaypoints, IntArray outNodePath) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses++;
+            return false;
+        }
+        unlink(entry);
+        linkFirst(entry);
+        outWaypoints.clear();
+        outWaypoints.addAll(entry.waypoints);
+        outNodePath.clear();
+        outNodePath.addAll(entry.nodePath);
+        return true;
+    }
+
+    /**
+     * Cache a path, evicting the least recently used one if the cache is full
+     * @param key Key of the path
+     * @param waypoints Smoothed waypoints between the start and end position
+     * @param nodePath Path on the grid the waypoints were smoothed from, start and goal node included
+     */
+    public void put(long key, IntArray waypoints, IntArray nodePath) {
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            unlink(entry);
+        } else {
+            if (freeEntries.size == 0) {
+                remove(tail);
+            }
+            entry = freeEntries.pop();
+            entry.key = key;
+            entries.put(key, entry);
+        }
+        entry.waypoints.clear();
+        entry.waypoints.addAll(waypoints);
+        entry.nodePath.clear();
+        entry.nodePath.addAll(nodePath);
+        setArea(entry, (int)(key >>> 32), (int)key, nodePath);
+        linkFirst(entry);
+    }
+
+    /**
+     * Store the cells a path covers (its grid path and the cells of the start and end position), its end nodes and cost
+     */
+    private void setArea(Entry entry, int startCell, int endCell, IntArray nodePath) {
+        entry.minX = Math.min(graph.getCellX(startCell), graph.getCellX(endCell));
+        entry.minY = Math.min(graph.getCellY(startCell), graph.getCellY(endCell));
+        entry.maxX = Math.max(graph.getCellX(startCell), graph.getCellX(endCell));
+        entry.maxY = Math.max(graph.getCellY(startCell), graph.getCellY(endCell));
+        entry.cost = 0;
+        for (int i = 0; i < nodePath.size; i++) {
+            int node = nodePath.get(i);
+            int cell = graph.getNodeCell(node);
+            entry.minX = Math.min(entry.minX, graph.getCellX(cell));
+            entry.minY = Math.min(entry.minY, graph.getCellY(cell));
+            entry.maxX = Math.max(entry.maxX, graph.getCellX(cell));
+            entry.maxY = Math.max(entry.maxY, graph.getCellY(cell));
+            if (i > 0) {
+                int previous = nodePath.get(i - 1);
+                entry.cost += Vector2.dst(graph.getX(previous), graph.getY(previous), graph.getX(node), graph.getY(node));
+            }
+        }
+        entry.startX = graph.getX(nodePath.first());
+        entry.startY = graph.getY(nodePath.first());
+        entry.goalX = graph.getX(nodePath.peek());
+        entry.goalY = graph.getY(nodePath.peek());
+    }
+
+    /**
+     * Drop every path a change of a cell can affect: paths whose area (with a margin of one cell) contains the cell,
+     * as the path or its smoothing may cross it, and paths that a route through the cell could make shorter,
+     * in case the cell was opened
+     * @param x Cell x
+     * @param y Cell y
+     */
+    public void invalidate(int x, int y) {
+        float cellX = x + 0.5f;
+        float cellY = y + 0.5f;
+        Entry entry = head;
+        while (entry != null) {
+            Entry next = entry.next;
+            if ((x >= entry.minX - 1 && x <= entry.maxX + 1 && y >= entry.minY - 1 && y <= entry.maxY + 1)
+                    || Vector2.dst(entry.startX, entry.startY, cellX, cellY) + Vector2.dst(cellX, cellY, entry.goalX, entry.goalY) < entry.cost) {
+                remove(entry);
+                invalidations++;
+            }
+            entry = next;
+        }
+    }
+
+    /**
+     * Drop every path
+     */
+    public void clear() {
+        while (head != null) {
+            remove(head);
+        }
+    }
+
+    /**
+     * Record how long answering a query from the cache took
+     * @param nanos Time of the query in nanoseconds
+     */
+    public void recordHit(long nanos) {
+        hits++;
+        hitNanos += nanos;
+    }
+
+    public int size() {
+        return entries.size;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return Paths dropped because a cell they may depend on changed
+     */
+    public long getInvalidations() {
+        return invalidations;
+    }
+
+    /**
+     * @return Share of lookups answered from the cache, 0 to 1
+     */
+    public float getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (float)hits / lookups;
+    }
+
+    /**
+     * @return Average time of a query answered from the cache in nanoseconds
+     */
+    public long getAverageHitNanos() {
+        return hits == 0 ? 0 : hitNanos / hits;
+    }
+
+    private void remove(Entry entry) {
+        unlink(entry);
+        entries.remove(entry.key);
+        freeEntries.add(entry);
+    }
+
+    private void linkFirst(Entry entry) {
+        entry.previous = null;
+        entry.next = head;
+        if (head != null) head.previous = entry;
+        head = entry;
+        if (tail == null) tail = entry;
+    }
+
+    private void unlink(Entry entry) {
+        if (entry.previous != null) entry.previous.next = entry.next;
+        else head = entry.next;
+        if (entry.next != null) entry.next.previous = entry.previous;
+        else tail = entry.previous;
+        entry.previous = null;
+        entry.next = null;
+    }
+}
@@ -0,0 +1,136 @@
+package com.labyrinthconquest.game.pathfinding;
+
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.Pool;
+
+/**
+ * A path query made to the pathfinding service. Filled in on the render thread, searched on a worker thread (or in
+ * time slices on the render thread) and handed back to the render thread. Requests are pooled by the service
+ */
+public class PathRequest implements Pool.Poolable {
+    private Object requester;
+    private Graph graph;
+    /**
+     * Snapshot of the graph the request is searched on
+     */
+    private CompactGraph snapshot;
+    private Vector2 from = new Vector2();
+    private Vector2 to = new Vector2();
+    private int startNode;
+    private int goalNode;
+    private IntArray nodePath = new IntArray();
+    private boolean found;
+    /**
+     * Set on the render thread when a newer request replaces this one, read by the workers
+     */
+    private volatile boolean cancelled;
+    private long submitTime;
+    private long solveNanos;
+
+    /**
+     * Set up the request on the render thread
+     */
+    void set(Object requester, Graph graph, Vector2 from, Vector2 to) {
+        this.requester = requester;
+        this.graph = graph;
+        this.snapshot = graph.getSnapshot();
+        this.from.set(from);
+        this.to.set(to);
+        startNode = graph.findClosestNode(from);
+        goalNode = graph.findClosestNode(to);
+        submitTime = System.nanoTime();
+    }
+
+    /**
+     * Search the request on a worker thread
+     * @param pathFinder Path finder for the request's snapshot
+     */
+    void solve(GridPathFinder pathFinder) {
+        long startTime = System.nanoTime();
+        found = pathFinder.searchPath(startNode, goalNode, nodePath);
+        solveNanos = System.nanoTime() - startTime;
+    }
+
+    /**
+     * Set the result of a time sliced search, the node path has been filled in already
+     * @param found Whether a path was found
+     * @param solveNanos Time the slices of the search took in total
+     */
+    void setResult(boolean found, long solveNanos) {
+        this.found = found;
+        this.solveNanos = solveNanos;
+    }
+
+    void cancel() {
+        cancelled = true;
+    }
+
+    public Object getRequester() {
+        return requester;
+    }
+
+    public Graph getGraph() {
+        return graph;
+    }
+
+    public CompactGraph getSnapshot() {
+        return snapshot;
+    }
+
+    public Vector2 getFrom() {
+        return from;
+    }
+
+    public Vector2 getTo() {
+        return to;
+    }
+
+    public int getStartNode() {
+        return startNode;
+    }
+
+    public int getGoalNode() {
+        return goalNode;
+    }
+
+    /**
+     * Node indices of the found path, start and goal included
+     */
+    public IntArray getNodePath() {
+        return nodePath;
+    }
+
+    public boolean isFound() {
+        return found;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @return Time the request was made at, from System.nanoTime
+     */
+    public long getSubmitTime() {
+        return submitTime;
+    }
+
+    /**
+     * @return Time the search took in nanoseconds
+     */
+    public long getSolveNanos() {
+        return solveNanos;
+    }
+
+    @Override
+    public void reset() {
+        requester = null;
+        graph = null;
+        snapshot = null;
+        nodePath.clear();
+        found = false;
+        cancelled = false;
+        solveNanos = 0;
+    }
+}
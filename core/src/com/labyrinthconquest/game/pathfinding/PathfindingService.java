@@ -0,0 +1,418 @@
+package com.labyrinthconquest.game.pathfinding;
+
+import com.badlogic.gdx.ai.msg.MessageDispatcher;
+import com.badlogic.gdx.ai.msg.Telegram;
+import com.badlogic.gdx.ai.msg.Telegraph;
+import com.badlogic.gdx.ai.pfa.DefaultGraphPath;
+import com.badlogic.gdx.ai.pfa.PathFinder;
+import com.badlogic.gdx.ai.pfa.PathFinderQueue;
+import com.badlogic.gdx.ai.pfa.PathFinderRequest;
+import com.badlogic.gdx.ai.pfa.indexed.IndexedAStarPathFinder;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.ObjectMap;
+import com.badlogic.gdx.utils.Pool;
+import com.labyrinthconquest.game.scheduling.TimeReserve;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Searches paths on worker threads, so a slow search does not stall the frame. Requests are made on the render thread
+ * and searched on an immutable snapshot of their graph. Results come back through a lock-free queue that the render
+ * thread drains, and are smoothed there, as the smoothing raycasts Box2D which is not thread safe.
+ * A new request from the same requester cancels the older one.
+ * Without worker threads (single core devices) the requests are searched on the render thread instead, in time slices
+ * with gdx-ai's path finder queues, so a long search is spread over several frames
+ */
+public class PathfindingService implements Disposable {
+    /**
+     * Creates the path finders the workers search graph snapshots with
+     */
+    public interface PathFinderFactory {
+        GridPathFinder create(CompactGraph graph);
+    }
+
+    /**
+     * Receives the finished requests on the render thread
+     */
+    public interface ResultListener {
+        /**
+         * @param request Finished request, returned to the pool after the call
+         */
+        void onRequestSolved(PathRequest request);
+    }
+
+    private PathFinderFactory pathFinderFactory;
+    private BlockingQueue<PathRequest> requests;
+    private ConcurrentLinkedQueue<PathRequest> results;
+    private Thread[] workers;
+    private volatile boolean running;
+
+    /**
+     * Newest request of every requester, only used on the render thread like the pool
+     */
+    private ObjectMap<Object, PathRequest> latestRequests;
+    private Pool<PathRequest> requestPool;
+
+    /**
+     * Path finder queue of every graph when searching in time slices, and the messaging that hands their results back
+     */
+    private ObjectMap<Graph, PathFinderQueue<INode>> slicedQueues;
+    private Pool<SlicedRequest> slicedRequestPool;
+    private MessageDispatcher slicedDispatcher;
+    private Telegraph slicedClient;
+    private Telegram slicedTelegram;
+    /**
+     * Heuristic of every graph for the time sliced searches, wrapping the graph's heuristic
+     */
+    private ObjectMap<Graph, GraphHeuristic> slicedHeuristics;
+
+    /**
+     * Requests made but not yet drained, and statistics of the drained ones
+     */
+    private int queueDepth;
+    private int maxQueueDepth;
+    private long solvedRequests;
+    private long cancelledRequests;
+    private long latencyNanos;
+    private long maxLatencyNanos;
+    private long solveNanos;
+
+    /**
+     * Create a service and start its worker threads
+     * @param pathFinderFactory Creates the path finders of the workers
+     * @param threads Number of worker threads, 0 to search in time slices on the render thread
+     */
+    public PathfindingService(PathFinderFactory pathFinderFactory, int threads) {
+        this.pathFinderFactory = pathFinderFactory;
+        requests = new LinkedBlockingQueue<>();
+        results = new ConcurrentLinkedQueue<>();
+        latestRequests = new ObjectMap<>();
+        requestPool = new Pool<PathRequest>() {
+            @Override
+            protected PathRequest newObject() {
+                return new PathRequest();
+            }
+        };
+        if (threads == 0) {
+            createSlicedSearch();
+        }
+        running = true;
+        workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Thread(new Worker(), "pathfinding-" + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+    }
+
+    /**
+     * Request a path, cancelling the requester's previous request. Called on the render thread
+     * @param requester Who the path is for, e.g a player
+     * @param graph Graph to search
+     * @param from From vector (position of player)
+     * @param to To vector (position of where we clicked to find a path)
+     */
+    public void request(Object requester, Graph graph, Vector2 from, Vector2 to) {
+        cancel(requester);
+        PathRequest request = requestPool.obtain();
+        request.set(requester, graph, from, to);
+        latestRequests.put(requester, request);
+        queueDepth++;
+        maxQueueDepth = Math.max(maxQueueDepth, queueDepth);
+        if (slicedQueues != null) {
+            addSlicedRequest(request);
+        } else {
+            requests.add(request);
+        }
+    }
+
+    /**
+     * Cancel the pending request of a requester, if it has one. Called on the render thread
+     * @param requester Who the path was for
+     */
+    public void cancel(Object requester) {
+        PathRequest previous = latestRequests.remove(requester);
+        if (previous != null) {
+            previous.cancel();
+        }
+    }
+
+    /**
+     * Hand the finished requests to a listener, skipping cancelled ones. Called on the render thread
+     * @param listener Listener
+     */
+    public void processResults(ResultListener listener) {
+        processResults(listener, Long.MAX_VALUE, null);
+    }
+
+    /**
+     * Hand finished requests to a listener until a deadline, the rest wait for the next call. A request is only handed
+     * back with at least the reserve left before the deadline, as the listener cannot stop halfway (it smooths the path).
+     * Called on the render thread
+     * @param listener Listener
+     * @param deadline Time from System.nanoTime to stop at
+     * @param reserve Time to keep free for handing back a request, it records how long each one takes. Null for none
+     */
+    public void processResults(ResultListener listener, long deadline, TimeReserve reserve) {
+        PathRequest request;
+        while ((reserve != null ? reserve.hasTime(deadline) : System.nanoTime() < deadline) && (request = results.poll()) != null) {
+            long startTime = System.nanoTime();
+            queueDepth--;
+            if (latestRequests.get(request.getRequester()) == request) {
+                latestRequests.remove(request.getRequester());
+            }
+            if (request.isCancelled()) {
+                cancelledRequests++;
+            } else {
+                long latency = System.nanoTime() - request.getSubmitTime();
+                solvedRequests++;
+                latencyNanos += latency;
+                maxLatencyNanos = Math.max(maxLatencyNanos, latency);
+                solveNanos += request.getSolveNanos();
+                listener.onRequestSolved(request);
+            }
+            requestPool.free(request);
+            if (reserve != null) {
+                reserve.record(System.nanoTime() - startTime);
+            }
+        }
+    }
+
+    /**
+     * Search the queued requests in time slices until a deadline, when the service has no worker threads.
+     * Called on the render thread, once per frame
+     * @param deadline Time from System.nanoTime to stop at
+     */
+    public void search(long deadline) {
+        if (slicedQueues == null) {
+            return;
+        }
+        for (PathFinderQueue<INode> queue : slicedQueues.values()) {
+            long timeToRun = deadline - System.nanoTime();
+            if (timeToRun <= 0) {
+                break;
+            }
+            queue.run(timeToRun);
+        }
+    }
+
+    /**
+     * Set up searching a graph in time slices before its first request, e.g when a level is loaded: the graph's node
+     * objects and connections are created now, so no time slice creates them. Does nothing with worker threads
+     * @param graph Graph that will be searched
+     */
+    public void prepare(Graph graph) {
+        if (slicedQueues == null) {
+            return;
+        }
+        graph.createConnections();
+        getSlicedQueue(graph);
+    }
+
+    /**
+     * @return Whether requests are searched in time slices on the render thread instead of on worker threads
+     */
+    public boolean isTimeSliced() {
+        return slicedQueues != null;
+    }
+
+    /**
+     * @return Requests made but not yet handed back
+     */
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    public int getMaxQueueDepth() {
+        return maxQueueDepth;
+    }
+
+    public long getSolvedRequests() {
+        return solvedRequests;
+    }
+
+    public long getCancelledRequests() {
+        return cancelledRequests;
+    }
+
+    /**
+     * @return Average time from making a request to handing it back in nanoseconds
+     */
+    public long getAverageLatencyNanos() {
+        return solvedRequests == 0 ? 0 : latencyNanos / solvedRequests;
+    }
+
+    public long getMaxLatencyNanos() {
+        return maxLatencyNanos;
+    }
+
+    /**
+     * @return Average time a search took on a worker thread in nanoseconds
+     */
+    public long getAverageSolveNanos() {
+        return solvedRequests == 0 ? 0 : solveNanos / solvedRequests;
+    }
+
+    /**
+     * Stop the worker threads. Requests still queued are dropped
+     */
+    @Override
+    public void dispose() {
+        running = false;
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+    }
+
+    /**
+     * Set up searching in time slices. Finished searches are messaged back to a client that puts them in the results
+     */
+    private void createSlicedSearch() {
+        slicedQueues = new ObjectMap<>();
+        slicedRequestPool = new Pool<SlicedRequest>() {
+            @Override
+            protected SlicedRequest newObject() {
+                return new SlicedRequest();
+            }
+        };
+        slicedDispatcher = new MessageDispatcher();
+        slicedTelegram = new Telegram();
+        slicedHeuristics = new ObjectMap<>();
+        slicedClient = new Telegraph() {
+            @Override
+            public boolean handleMessage(Telegram msg) {
+                SlicedRequest slicedRequest = (SlicedRequest)msg.extraInfo;
+                PathRequest request = slicedRequest.request;
+                if (slicedRequest.pathFound) {
+                    for (int i = 0; i < slicedRequest.resultPath.getCount(); i++) {
+                        request.getNodePath().add(slicedRequest.resultPath.get(i).getIndex());
+                    }
+                }
+                request.setResult(slicedRequest.pathFound, slicedRequest.solveNanos);
+                results.add(request);
+                slicedRequestPool.free(slicedRequest);
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Get the heuristic of a graph for gdx-ai's path finder, created again if the graph's heuristic changed
+     */
+    private GraphHeuristic getSlicedHeuristic(Graph graph) {
+        GraphHeuristic heuristic = slicedHeuristics.get(graph);
+        if (heuristic == null || heuristic.getGridHeuristic() != graph.getHeuristic()) {
+            heuristic = new GraphHeuristic(graph.getHeuristic());
+            slicedHeuristics.put(graph, heuristic);
+        }
+        return heuristic;
+    }
+
+    /**
+     * Get the path finder queue of a graph, creating it on the graph's first request unless the graph was prepared
+     */
+    private PathFinderQueue<INode> getSlicedQueue(Graph graph) {
+        PathFinderQueue<INode> queue = slicedQueues.get(graph);
+        if (queue == null) {
+            graph.createConnections();
+            queue = new PathFinderQueue<>(new IndexedAStarPathFinder<>(graph));
+            slicedQueues.put(graph, queue);
+        }
+        return queue;
+    }
+
+    /**
+     * Queue a request to the path finder queue of its graph
+     */
+    private void addSlicedRequest(PathRequest request) {
+        Graph graph = request.getGraph();
+        PathFinderQueue<INode> queue = getSlicedQueue(graph);
+        SlicedRequest slicedRequest = slicedRequestPool.obtain();
+        slicedRequest.request = request;
+        slicedRequest.startNode = graph.getNode(request.getStartNode());
+        slicedRequest.endNode = graph.getNode(request.getGoalNode());
+        slicedRequest.heuristic = getSlicedHeuristic(graph);
+        slicedRequest.dispatcher = slicedDispatcher;
+        slicedTelegram.sender = slicedClient;
+        slicedTelegram.extraInfo = slicedRequest;
+        queue.handleMessage(slicedTelegram);
+        slicedTelegram.reset();
+    }
+
+    /**
+     * Request searched by a gdx-ai path finder queue. Remembers the service's request it searches and the time its
+     * slices took, and skips the search once the request is cancelled or an end of it is closed
+     */
+    private static class SlicedRequest extends PathFinderRequest<INode> implements Pool.Poolable {
+        private PathRequest request;
+        private long solveNanos;
+
+        SlicedRequest() {
+            resultPath = new DefaultGraphPath<>();
+        }
+
+        @Override
+        public boolean search(PathFinder<INode> pathFinder, long timeToRun) {
+            CompactGraph graph = request.getGraph().getCompactGraph();
+            if (request.isCancelled() || !graph.isOpen(request.getStartNode()) || !graph.isOpen(request.getGoalNode())) {
+                pathFound = false;
+                return true;
+            }
+            long startTime = System.nanoTime();
+            boolean done = super.search(pathFinder, timeToRun);
+            solveNanos += System.nanoTime() - startTime;
+            return done;
+        }
+
+        @Override
+        public void reset() {
+            request = null;
+            startNode = null;
+            endNode = null;
+            resultPath.clear();
+            pathFound = false;
+            solveNanos = 0;
+        }
+    }
+
+    /**
+     * Takes requests from the queue and searches them. Keeps a path finder per graph, created again when the graph's
+     * snapshot or heuristic changes
+     */
+    private class Worker implements Runnable {
+        private ObjectMap<Graph, CompactGraph> snapshots = new ObjectMap<>();
+        private ObjectMap<Graph, GridPathFinder> pathFinders = new ObjectMap<>();
+        private ObjectMap<Graph, GridHeuristic> heuristics = new ObjectMap<>();
+
+        @Override
+        public void run() {
+            while (running) {
+                PathRequest request;
+                try {
+                    request = requests.take();
+                } catch (InterruptedException ex) {
+                    return;
+                }
+                if (!request.isCancelled()) {
+                    request.solve(getPathFinder(request.getGraph(), request.getSnapshot()));
+                }
+                results.add(request);
+            }
+        }
+
+        private GridPathFinder getPathFinder(Graph graph, CompactGraph snapshot) {
+            GridHeuristic heuristic = graph.getHeuristic();
+            if (snapshots.get(graph) != snapshot || heuristics.get(graph) != heuristic) {
+                snapshots.put(graph, snapshot);
+                heuristics.put(graph, heuristic);
+                GridPathFinder pathFinder = pathFinderFactory.create(snapshot);
+                pathFinder.setHeuristic(heuristic);
+                pathFinders.put(graph, pathFinder);
+            }
+            return pathFinders.get(graph);
+        }
+    }
+}
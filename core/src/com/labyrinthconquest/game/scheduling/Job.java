@@ -0,0 +1,14 @@
+package com.labyrinthconquest.game.scheduling;
+
+/**
+ * Deferred work run by the job scheduler. A job does its work in slices: it returns when it runs out of time and is
+ * run again in a later frame until it reports that it has finished
+ */
+public interface Job {
+    /**
+     * Do a slice of the work
+     * @param deadline Time from System.nanoTime the job should return by
+     * @return True if the job has finished, false to run it again later
+     */
+    boolean run(long deadline);
+}
@@ -0,0 +1,156 @@
+package com.labyrinthconquest.game.scheduling;
+
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Queue;
+
+/**
+ * Runs deferred jobs cooperatively within a time budget per frame. Jobs run in order of priority, and jobs of the same
+ * priority take turns. Work left when the budget runs out is carried over to the next frame. No job is started once
+ * the budget is spent, jobs with steps they cannot split keep time free for them with a TimeReserve
+ */
+public class JobScheduler {
+    public static final int PRIORITY_HIGH = 0;
+    public static final int PRIORITY_NORMAL = 1;
+    public static final int PRIORITY_LOW = 2;
+
+    /**
+     * Waiting jobs of every priority, highest first
+     */
+    private Array<Queue<Job>> queues;
+    private long frameBudgetNanos;
+
+    private long frames;
+    private long framesOverBudget;
+    private long carriedOverFrames;
+    private long finishedJobs;
+    private long runNanos;
+    private long maxRunNanos;
+
+    /**
+     * Create a new scheduler
+     * @param frameBudgetNanos Time the jobs may take per frame in nanoseconds
+     */
+    public JobScheduler(long frameBudgetNanos) {
+        this.frameBudgetNanos = frameBudgetNanos;
+        queues = new Array<>(PRIORITY_LOW + 1);
+        for (int i = 0; i <= PRIORITY_LOW; i++) {
+            queues.add(new Queue<Job>());
+        }
+    }
+
+    /**
+     * Add a job to run in this or a later frame. A job that is already waiting is not added again
+     * @param job Job
+     * @param priority One of the PRIORITY constants
+     */
+    public void add(Job job, int priority) {
+        Queue<Job> queue = queues.get(priority);
+        if (queue.indexOf(job, true) == -1) {
+            queue.addLast(job);
+        }
+    }
+
+    /**
+     * Remove a waiting job
+     * @param job Job
+     */
+    public void remove(Job job) {
+        for (Queue<Job> queue : queues) {
+            queue.removeValue(job, true);
+        }
+    }
+
+    /**
+     * Run the waiting jobs until they are finished or the frame's budget is used. Called once per frame
+     */
+    public void run() {
+        long startTime = System.nanoTime();
+        long deadline = startTime + frameBudgetNanos;
+        boolean outOfTime = false;
+        for (int p = 0; p < queues.size && !outOfTime; p++) {
+            Queue<Job> queue = queues.get(p);
+            // Jobs added while running wait for the next frame
+            int count = queue.size;
+            for (int i = 0; i < count; i++) {
+                if (System.nanoTime() >= deadline) {
+                    outOfTime = true;
+                    break;
+                }
+                Job job = queue.removeFirst();
+                if (job.run(deadline)) {
+                    finishedJobs++;
+                } else {
+                    queue.addLast(job);
+                }
+            }
+        }
+        long time = System.nanoTime() - startTime;
+        frames++;
+        runNanos += time;
+        maxRunNanos = Math.max(maxRunNanos, time);
+        if (time > frameBudgetNanos) {
+            framesOverBudget++;
+        }
+        if (outOfTime) {
+            carriedOverFrames++;
+        }
+    }
+
+    /**
+     * @return Number of waiting jobs
+     */
+    public int size() {
+        int size = 0;
+        for (Queue<Job> queue : queues) {
+            size += queue.size;
+        }
+        return size;
+    }
+
+    public void clear() {
+        for (Queue<Job> queue : queues) {
+            queue.clear();
+        }
+    }
+
+    public long getFrameBudgetNanos() {
+        return frameBudgetNanos;
+    }
+
+    public void setFrameBudgetNanos(long frameBudgetNanos) {
+        this.frameBudgetNanos = frameBudgetNanos;
+    }
+
+    public long getFrames() {
+        return frames;
+    }
+
+    /**
+     * @return Frames in which the jobs took longer than the budget, because a single slice overran it
+     */
+    public long getFramesOverBudget() {
+        return framesOverBudget;
+    }
+
+    /**
+     * @return Frames that ran out of budget and carried jobs over to the next frame
+     */
+    public long getCarriedOverFrames() {
+        return carriedOverFrames;
+    }
+
+    public long getFinishedJobs() {
+        return finishedJobs;
+    }
+
+    /**
+     * @return Average time the jobs took per frame in nanoseconds
+     */
+    public long getAverageRunNanos() {
+        return frames == 0 ? 0 : runNanos / frames;
+    }
+
+    public long getMaxRunNanos() {
+        return maxRunNanos;
+    }
+}
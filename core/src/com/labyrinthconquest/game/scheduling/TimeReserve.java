@@ -0,0 +1,39 @@
+package com.labyrinthconquest.game.scheduling;
+
+/**
+ * Time a job keeps free before its deadline for a step it cannot split, e.g handing back a found path. The reserve is
+ * the longest step seen so far, so a step is only started when it can finish by the deadline. It is capped, so a step
+ * longer than the cap still runs when the job has at least the cap left, e.g early in a frame
+ */
+public class TimeReserve {
+    private long maxReserveNanos;
+    private long reserveNanos;
+
+    /**
+     * Create a new reserve
+     * @param maxReserveNanos Longest time to keep free in nanoseconds, e.g half of a frame's budget
+     */
+    public TimeReserve(long maxReserveNanos) {
+        this.maxReserveNanos = maxReserveNanos;
+    }
+
+    /**
+     * @param deadline Time from System.nanoTime the job should return by
+     * @return Whether there is time for another step before the deadline
+     */
+    public boolean hasTime(long deadline) {
+        return deadline - System.nanoTime() > reserveNanos;
+    }
+
+    /**
+     * Record how long a step took
+     * @param nanos Time of the step in nanoseconds
+     */
+    public void record(long nanos) {
+        reserveNanos = Math.min(maxReserveNanos, Math.max(reserveNanos, nanos));
+    }
+
+    public long getReserveNanos() {
+        return reserveNanos;
+    }
+}
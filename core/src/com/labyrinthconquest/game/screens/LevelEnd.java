@@ -44,6 +44,7 @@ public class LevelEnd extends GameScreen {
     public void render(float delta) {
         Gdx.gl.glClearColor(0, 0, 0, 1);
         Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
+        game.getMainGame().getLevelLoader().update();
         ui.getStage().act(Gdx.graphics.getDeltaTime());
         ui.getStage().draw();
     }
@@ -15,6 +15,7 @@ import com.badlogic.gdx.utils.viewport.StretchViewport;
 import com.labyrinthconquest.game.Main;
 import com.labyrinthconquest.game.data.Constants;
 import com.labyrinthconquest.game.levels.Level;
+import com.labyrinthconquest.game.levels.LevelLoader;
 import com.labyrinthconquest.game.ui.Localisation;
 
 /**
@@ -24,6 +25,10 @@ public class MainGame extends GameScreen {
     private OrthographicCamera camera;
     private int levelIndex = 1;
     private Level currentLevel;
+    /**
+     * Loads the levels, the next one in the background while the current one is played
+     */
+    private LevelLoader levelLoader;
     public int lvl;
     private Stage stage;
     private Label levelUI;
@@ -34,9 +39,16 @@ public class MainGame extends GameScreen {
      * @param index index for level that is being set
      */
     public void setLevel(int index) {
+        if (currentLevel != null) {
+            levelLoader.unload(currentLevel);
+        }
         currentLevel = getLevelFromIndex(index);
     }
 
+    public LevelLoader getLevelLoader() {
+        return levelLoader;
+    }
+
     /**
      * Logic for changing what level you are playing to ui
      * @param text text that says what level you are in
@@ -54,13 +66,12 @@ public class MainGame extends GameScreen {
     }
 
     /**
-     * Logic for changing to next level
+     * Logic for changing to next level. The next level is set when this screen is shown again, it was prefetched
+     * while this level was played, so here it is only made sure it is on its way
      */
     public void updateLevel() {
         if (levelIndex >= Constants.LEVELS_COUNT) return;
-        currentLevel.dispose();
-        currentLevel = getLevelFromIndex(++levelIndex);
-        setLevelUIText(currentLevel.getId());
+        levelLoader.prefetch(levelIndex + 1);
     }
 
     /**
@@ -68,6 +79,9 @@ public class MainGame extends GameScreen {
      * @param score level complete time
      */
     public void endLevel(int score) {
+        if (levelIndex < Constants.LEVELS_COUNT) {
+            levelLoader.prefetch(levelIndex + 1);
+        }
         game.getLevelEnd().score = score;
         game.getLevelEnd().lvl = lvl;
         game.setScreen(game.getLevelEnd());
@@ -77,18 +91,20 @@ public class MainGame extends GameScreen {
      * Logic for restarting level
      */
     public void restartLevel() {
-        currentLevel.dispose();
-        currentLevel = getLevelFromIndex(levelIndex);
+        setLevel(levelIndex);
     }
 
     /**
-     * Getting level data from file
+     * Getting level data from file, a prefetched level is only finished. Starts prefetching the level after it
      * @param index level that you are trying to get
      */
     private Level getLevelFromIndex(int index) {
         levelIndex = index;
-        Level lvl = new Level(batch, camera, "levels/" + index + ".tmx", Integer.toString(index), 3, this, local);
+        Level lvl = levelLoader.take(index, batch, camera);
         setLevelUIText(local.getBundle().get("level")+ ": " + lvl.getId() + " ");
+        if (index < Constants.LEVELS_COUNT) {
+            levelLoader.prefetch(index + 1);
+        }
         return lvl;
     }
 
@@ -100,6 +116,7 @@ public class MainGame extends GameScreen {
      */
     public MainGame(SpriteBatch batch, Main game, Localisation local) {
         super(batch, game, local);
+        levelLoader = new LevelLoader(this, local);
     }
 
     @Override
@@ -111,7 +128,7 @@ public class MainGame extends GameScreen {
         camera.setToOrtho(false, Constants.WINDOW_WIDTH, Constants.WINDOW_HEIGHT);
         setUi();
         lvl++;
-        currentLevel = getLevelFromIndex(lvl);
+        setLevel(lvl);
     }
 
     @Override
@@ -123,6 +140,7 @@ public class MainGame extends GameScreen {
         Gdx.gl.glClearColor(0.3f, 0.6f, 0f, 0);
         Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
         currentLevel.update();
+        levelLoader.update();
         batch.setProjectionMatrix(camera.combined);
         currentLevel.setView(camera);
         camera.update();
@@ -230,6 +248,10 @@ public class MainGame extends GameScreen {
      * Code run when disposing screen
      */
     public void dispose() {
-        // Empty
+        if (currentLevel != null) {
+            levelLoader.unload(currentLevel);
+            currentLevel = null;
+        }
+        levelLoader.dispose();
     }
 }
\ No newline at end of file
@@ -0,0 +1,155 @@
+package com.labyrinthconquest.game.pathfinding;
+
+import com.badlogic.gdx.maps.tiled.TiledMapTileLayer;
+import com.badlogic.gdx.math.RandomXS128;
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.math.Vector2;
+import com.labyrinthconquest.game.data.Constants;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Paths found in parallel batches, and lines tested on a shared occupancy grid from several threads, must be the same
+ * as when found or tested one at a time
+ */
+public class BatchPathFinderTest {
+    private static final int SIZE = 96;
+    private static final int WALLS = 700;
+    private static final int QUERIES = 300;
+    private static final int ROUNDS = 5;
+    private static final int THREADS = 4;
+    private static final int LINES = 20000;
+    private static final int LINE_ROUNDS = 20;
+
+    private static final PathfindingService.PathFinderFactory JUMP_POINT_SEARCH = new PathfindingService.PathFinderFactory() {
+        @Override
+        public GridPathFinder create(CompactGraph graph) {
+            return new JumpPointSearch(graph);
+        }
+    };
+
+    private Graph graph;
+    private OccupancyGrid occupancyGrid;
+    private BatchPathFinder.Query[] queries;
+    private BatchPathFinder batchPathFinder;
+    private BatchPathFinder singlePathFinder;
+
+    @Before
+    public void createGraph() {
+        RandomXS128 random = new RandomXS128(1);
+        // Walls of a few cells that often overlap, so lines start inside one or several walls
+        occupancyGrid = new OccupancyGrid(SIZE, SIZE);
+        for (int i = 0; i < WALLS; i++) {
+            occupancyGrid.addWall(new Rectangle(random.nextInt(SIZE), random.nextInt(SIZE), 1 + random.nextInt(4), 1 + random.nextInt(2)));
+        }
+        TiledMapTileLayer layer = new TiledMapTileLayer(SIZE, SIZE, 32, 32);
+        for (int x = 0; x < SIZE; x++) {
+            for (int y = 0; y < SIZE; y++) {
+                if (!occupancyGrid.isBlocked(x, y)) {
+                    layer.setCell(x, y, new TiledMapTileLayer.Cell());
+                }
+            }
+        }
+        // Smoothed on the occupancy grid, so the graph needs no Box2D world
+        graph = new Graph(new CompactGraph(layer), null);
+        graph.setOccupancyGrid(occupancyGrid);
+        CompactGraph compactGraph = graph.getCompactGraph();
+        queries = new BatchPathFinder.Query[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            queries[i] = new BatchPathFinder.Query(graph, randomPosition(compactGraph, random), randomPosition(compactGraph, random));
+        }
+        batchPathFinder = new BatchPathFinder(JUMP_POINT_SEARCH, THREADS);
+        singlePathFinder = new BatchPathFinder(JUMP_POINT_SEARCH, 1);
+    }
+
+    @After
+    public void dispose() {
+        batchPathFinder.dispose();
+        singlePathFinder.dispose();
+    }
+
+    @Test
+    public void batchedPathsMatchPathsFoundOneAtATime() {
+        List<List<INode>> expected = new ArrayList<>(QUERIES);
+        int found = 0;
+        for (BatchPathFinder.Query query : queries) {
+            List<INode> path = singlePathFinder.findPaths(new BatchPathFinder.Query[] {query}).get(0);
+            expected.add(path);
+            if (!path.isEmpty()) found++;
+        }
+        assertTrue(found > 0);
+        for (int round = 0; round < ROUNDS; round++) {
+            List<List<INode>> paths = batchPathFinder.findPaths(queries);
+            assertEquals(QUERIES, paths.size());
+            for (int i = 0; i < QUERIES; i++) {
+                assertPathEquals("query " + i, expected.get(i), paths.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void concurrentLineTestsMatchLineTestsOneAtATime() throws Exception {
+        RandomXS128 random = new RandomXS128(2);
+        final float[] lines = new float[LINES * 4];
+        for (int i = 0; i < lines.length; i++) {
+            lines[i] = random.nextFloat() * SIZE;
+        }
+        final boolean[] expected = testLines(lines);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Callable<boolean[]>> tasks = new ArrayList<>(THREADS);
+            for (int i = 0; i < THREADS; i++) {
+                tasks.add(new Callable<boolean[]>() {
+                    @Override
+                    public boolean[] call() {
+                        boolean[] clear = null;
+                        for (int round = 0; round < LINE_ROUNDS; round++) {
+                            clear = testLines(lines);
+                        }
+                        return clear;
+                    }
+                });
+            }
+            for (Future<boolean[]> result : executor.invokeAll(tasks)) {
+                assertArrayEquals(expected, result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private boolean[] testLines(float[] lines) {
+        boolean[] clear = new boolean[lines.length / 4];
+        for (int i = 0; i < clear.length; i++) {
+            int j = i * 4;
+            clear[i] = occupancyGrid.isLineClear(lines[j], lines[j + 1], lines[j + 2], lines[j + 3],
+                    Constants.PATH_SMOOTH_SIDE_OFFSET);
+        }
+        return clear;
+    }
+
+    private static void assertPathEquals(String message, List<INode> expected, List<INode> actual) {
+        assertEquals(message, expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(message, expected.get(i).getX(), actual.get(i).getX(), 0);
+            assertEquals(message, expected.get(i).getY(), actual.get(i).getY(), 0);
+        }
+    }
+
+    private static Vector2 randomPosition(CompactGraph graph, RandomXS128 random) {
+        int node = random.nextInt(graph.getNodeCount());
+        return new Vector2(graph.getX(node) + random.nextFloat() * 0.8f - 0.4f, graph.getY(node) + random.nextFloat() * 0.8f - 0.4f);
+    }
+}
@@ -0,0 +1,102 @@
+package com.labyrinthconquest.game.pathfinding;
+
+import com.badlogic.gdx.maps.tiled.TiledMapTileLayer;
+import com.badlogic.gdx.math.RandomXS128;
+import com.badlogic.gdx.math.Vector2;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Steady-state Graph.findPath queries, both searched and answered from the path cache, must not allocate
+ */
+public class GraphAllocationTest {
+    private static final int SIZE = 64;
+    private static final int QUERIES = 200;
+    private static final int ROUNDS = 50;
+
+    private Graph graph;
+    private Vector2[] from;
+    private Vector2[] to;
+
+    @Before
+    public void createGraph() {
+        RandomXS128 random = new RandomXS128(1);
+        TiledMapTileLayer layer = new TiledMapTileLayer(SIZE, SIZE, 32, 32);
+        OccupancyGrid occupancyGrid = new OccupancyGrid(SIZE, SIZE);
+        for (int x = 0; x < SIZE; x++) {
+            for (int y = 0; y < SIZE; y++) {
+                if (random.nextFloat() < 0.25f) {
+                    occupancyGrid.setBlocked(x, y, true);
+                } else {
+                    layer.setCell(x, y, new TiledMapTileLayer.Cell());
+                }
+            }
+        }
+        // Smoothed on the occupancy grid, so the graph needs no Box2D world
+        graph = new Graph(new CompactGraph(layer), null);
+        graph.setOccupancyGrid(occupancyGrid);
+        CompactGraph compactGraph = graph.getCompactGraph();
+        from = new Vector2[QUERIES];
+        to = new Vector2[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            from[i] = randomPosition(compactGraph, random);
+            to[i] = randomPosition(compactGraph, random);
+        }
+    }
+
+    @Test
+    public void searchedPathsDoNotAllocate() {
+        // More queries than the cache holds, so every query is searched
+        assertTrue(QUERIES > graph.getPathCache().getCapacity());
+        assertNoAllocation(QUERIES);
+        assertEquals(0, graph.getPathCache().getHits());
+    }
+
+    @Test
+    public void cachedPathsDoNotAllocate() {
+        // Fewer queries than the cache holds, so every query after the warm-up is a hit
+        int queries = graph.getPathCache().getCapacity() / 2;
+        assertNoAllocation(queries);
+        assertTrue(graph.getPathCache().getHits() > 0);
+    }
+
+    private void assertNoAllocation(int queries) {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean)threads;
+        Assume.assumeTrue(allocations.isThreadAllocatedMemorySupported());
+        allocations.setThreadAllocatedMemoryEnabled(true);
+        long thread = Thread.currentThread().getId();
+        int found = 0;
+        // Warm up: node objects, the path list and the search buffers are created on first use
+        for (int round = 0; round < ROUNDS; round++) {
+            found += runQueries(queries);
+        }
+        assertTrue(found > 0);
+        long before = allocations.getThreadAllocatedBytes(thread);
+        for (int round = 0; round < ROUNDS; round++) {
+            runQueries(queries);
+        }
+        long allocated = allocations.getThreadAllocatedBytes(thread) - before;
+        assertEquals(0, allocated);
+    }
+
+    private int runQueries(int queries) {
+        int found = 0;
+        for (int i = 0; i < queries; i++) {
+            if (!graph.findPath(from[i], to[i]).isEmpty()) found++;
+        }
+        return found;
+    }
+
+    private static Vector2 randomPosition(CompactGraph graph, RandomXS128 random) {
+        int node = random.nextInt(graph.getNodeCount());
+        return new Vector2(graph.getX(node) + random.nextFloat() * 0.8f - 0.4f, graph.getY(node) + random.nextFloat() * 0.8f - 0.4f);
+    }
+}
@@ -0,0 +1,142 @@
+package com.labyrinthconquest.game.desktop.benchmarks;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.maps.MapLayer;
+import com.badlogic.gdx.maps.objects.RectangleMapObject;
+import com.badlogic.gdx.maps.tiled.TiledMap;
+import com.badlogic.gdx.maps.tiled.TiledMapTileLayer;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.XmlReader;
+import com.labyrinthconquest.game.data.Constants;
+
+import java.util.Random;
+
+/**
+ * Maps used by the benchmarks. Layers are read straight from the level files so no textures
+ * (and no OpenGL context) are needed
+ */
+public class BenchmarkMaps {
+    private BenchmarkMaps() {}
+
+    /**
+     * Layers the benchmarks build graphs for
+     */
+    public static final String[] PATHFIND_LAYERS = Constants.MAP_PATHFINDER_LAYERS;
+
+    /**
+     * Load the tile and object layers of a level. Cells are created for every non-empty tile, without the tile itself.
+     * Only the rectangles of object layers are loaded
+     * @param file Level file (.tmx)
+     * @return Map containing the level's layers
+     */
+    public static TiledMap loadLevel(FileHandle file) {
+        XmlReader.Element root = new XmlReader().parse(file);
+        TiledMap map = new TiledMap();
+        float mapHeight = root.getIntAttribute("height") * root.getIntAttribute("tileheight");
+        for (XmlReader.Element groupElement : root.getChildrenByName("objectgroup")) {
+            MapLayer layer = new MapLayer();
+            layer.setName(groupElement.getAttribute("name"));
+            for (XmlReader.Element objectElement : groupElement.getChildrenByName("object")) {
+                float width = objectElement.getFloatAttribute("width", 0);
+                float height = objectElement.getFloatAttribute("height", 0);
+                // Flipped to the game's y axis like TmxMapLoader does
+                RectangleMapObject object = new RectangleMapObject(objectElement.getFloatAttribute("x"),
+                        mapHeight - objectElement.getFloatAttribute("y") - height, width, height);
+                object.setName(objectElement.getAttribute("name", null));
+                layer.getObjects().add(object);
+            }
+            map.getLayers().add(layer);
+        }
+        for (XmlReader.Element layerElement : root.getChildrenByName("layer")) {
+            int width = layerElement.getIntAttribute("width");
+            int height = layerElement.getIntAttribute("height");
+            TiledMapTileLayer layer = new TiledMapTileLayer(width, height, Constants.TILE_WIDTH, Constants.TILE_HEIGHT);
+            layer.setName(layerElement.getAttribute("name"));
+            String[] tiles = layerElement.getChildByName("data").getText().trim().split("[,\\s]+");
+            for (int i = 0; i < tiles.length; i++) {
+                if (Long.parseLong(tiles[i]) == 0) continue;
+                // Tiled stores rows from the top, the game's y axis points up
+                layer.setCell(i % width, height - 1 - i / width, new TiledMapTileLayer.Cell());
+            }
+            map.getLayers().add(layer);
+        }
+        return map;
+    }
+
+    /**
+     * Generate a maze: a random spanning tree of 1 tile wide corridors, with some extra openings so there is more than
+     * one route, and open rooms. Every pathfind layer gets the same walkable cells
+     * @param size Width and height of the map in tiles
+     * @param seed Random seed
+     * @return Map containing the pathfind layers
+     */
+    public static TiledMap createMaze(int size, long seed) {
+        Random random = new Random(seed);
+        boolean[][] open = new boolean[size][size];
+        carveCorridors(open, size, random);
+        int extraOpenings = size * size / 40;
+        for (int i = 0; i < extraOpenings; i++) {
+            int x = 1 + random.nextInt(size - 2);
+            int y = 1 + random.nextInt(size - 2);
+            open[x][y] = true;
+        }
+        int rooms = size / 8;
+        for (int i = 0; i < rooms; i++) {
+            int roomWidth = 3 + random.nextInt(8);
+            int roomHeight = 3 + random.nextInt(8);
+            int x = 1 + random.nextInt(Math.max(1, size - roomWidth - 2));
+            int y = 1 + random.nextInt(Math.max(1, size - roomHeight - 2));
+            for (int rx = x; rx < x + roomWidth; rx++) {
+                for (int ry = y; ry < y + roomHeight; ry++) {
+                    open[rx][ry] = true;
+                }
+            }
+        }
+        TiledMap map = new TiledMap();
+        for (String name : PATHFIND_LAYERS) {
+            TiledMapTileLayer layer = new TiledMapTileLayer(size, size, Constants.TILE_WIDTH, Constants.TILE_HEIGHT);
+            layer.setName(name);
+            for (int x = 0; x < size; x++) {
+                for (int y = 0; y < size; y++) {
+                    if (open[x][y]) layer.setCell(x, y, new TiledMapTileLayer.Cell());
+                }
+            }
+            map.getLayers().add(layer);
+        }
+        return map;
+    }
+
+    /**
+     * Carve corridors with an iterative depth first search over the odd cells
+     */
+    private static void carveCorridors(boolean[][] open, int size, Random random) {
+        int cells = (size - 1) / 2;
+        boolean[][] visited = new boolean[cells][cells];
+        IntArray stack = new IntArray();
+        int[] directions = new int[4];
+        stack.add(0);
+        visited[0][0] = true;
+        open[1][1] = true;
+        while (stack.size > 0) {
+            int cell = stack.peek();
+            int cx = cell % cells;
+            int cy = cell / cells;
+            int count = 0;
+            if (cx > 0 && !visited[cx - 1][cy]) directions[count++] = cell - 1;
+            if (cx < cells - 1 && !visited[cx + 1][cy]) directions[count++] = cell + 1;
+            if (cy > 0 && !visited[cx][cy - 1]) directions[count++] = cell - cells;
+            if (cy < cells - 1 && !visited[cx][cy + 1]) directions[count++] = cell + cells;
+            if (count == 0) {
+                stack.pop();
+                continue;
+            }
+            int next = directions[random.nextInt(count)];
+            int nx = next % cells;
+            int ny = next / cells;
+            visited[nx][ny] = true;
+            open[2 * nx + 1][2 * ny + 1] = true;
+            open[cx + nx + 1][cy + ny + 1] = true;
+            stack.add(next);
+        }
+    }
+}
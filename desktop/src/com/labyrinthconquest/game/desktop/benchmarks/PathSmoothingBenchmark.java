@@ -0,0 +1,183 @@
+package com.labyrinthconquest.game.desktop.benchmarks;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.maps.objects.RectangleMapObject;
+import com.badlogic.gdx.maps.tiled.TiledMap;
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.physics.box2d.BodyDef;
+import com.badlogic.gdx.physics.box2d.Box2D;
+import com.badlogic.gdx.physics.box2d.PolygonShape;
+import com.badlogic.gdx.physics.box2d.World;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.GdxNativesLoader;
+import com.badlogic.gdx.utils.IntArray;
+import com.labyrinthconquest.game.data.Constants;
+import com.labyrinthconquest.game.pathfinding.CompactGraph;
+import com.labyrinthconquest.game.pathfinding.Graph;
+import com.labyrinthconquest.game.pathfinding.INode;
+import com.labyrinthconquest.game.pathfinding.JumpPointSearch;
+import com.labyrinthconquest.game.pathfinding.OccupancyGrid;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Compares smoothing paths with Box2D raycasts to smoothing them with line tests on an occupancy grid, on the shipped
+ * levels and on generated mazes. Both see the same walls, so they should give the same paths.
+ * Run with "gradlew desktop:benchmarkSmoothing" (working directory is the assets folder)
+ */
+public class PathSmoothingBenchmark {
+    private static final int QUERIES_PER_GRAPH = 200;
+    private static final int MEASURED_ROUNDS = 3;
+    private static final int[] MAZE_SIZES = {128, 256};
+    /**
+     * Start and end positions are moved this far from the node centres at most
+     */
+    private static final float POSITION_JITTER = 0.3f;
+
+    /**
+     * Wall layers of the characters, in the order of BenchmarkMaps.PATHFIND_LAYERS
+     */
+    private static final String[][] WALL_LAYERS = {
+            {Constants.MAP_WALLS_STATIC, Constants.MAP_WALLS_STRONG, Constants.MAP_WALLS_CLIMB, Constants.MAP_BUTTONS, Constants.MAP_DOORS},
+            {Constants.MAP_WALLS_STATIC, Constants.MAP_WALLS_STRONG, Constants.MAP_WALLS_WATER, Constants.MAP_BUTTONS, Constants.MAP_DOORS},
+            {Constants.MAP_WALLS_STATIC, Constants.MAP_WALLS_STRONG, Constants.MAP_WALLS_CLIMB, Constants.MAP_WALLS_WATER,
+                    Constants.MAP_BUTTONS, Constants.MAP_DOORS}};
+
+    /**
+     * Two graphs over the same map and walls, one smoothing with raycasts and one on the occupancy grid
+     */
+    private static class GraphPair {
+        private Graph raycast;
+        private Graph grid;
+        private World world;
+
+        GraphPair(TiledMap map, String nodeLayer, Array<Rectangle> walls) {
+            world = new World(new Vector2(0, 0), true);
+            raycast = new Graph(map, nodeLayer, world);
+            grid = new Graph(map, nodeLayer, world);
+            CompactGraph compactGraph = grid.getCompactGraph();
+            OccupancyGrid occupancyGrid = new OccupancyGrid(compactGraph.getWidth(), compactGraph.getHeight());
+            PolygonShape shape = new PolygonShape();
+            BodyDef bodyDef = new BodyDef();
+            for (Rectangle rect : walls) {
+                bodyDef.position.set(rect.x + rect.width / 2, rect.y + rect.height / 2);
+                shape.setAsBox(rect.width / 2, rect.height / 2);
+                world.createBody(bodyDef).createFixture(shape, 0);
+                occupancyGrid.addWall(rect);
+            }
+            shape.dispose();
+            grid.setOccupancyGrid(occupancyGrid);
+        }
+    }
+
+    public static void main(String[] args) {
+        GdxNativesLoader.load();
+        Box2D.init();
+
+        Array<GraphPair> levelGraphs = new Array<>();
+        for (int i = 1; i <= Constants.LEVELS_COUNT; i++) {
+            TiledMap map = BenchmarkMaps.loadLevel(new FileHandle("levels/" + i + ".tmx"));
+            for (int layer = 0; layer < BenchmarkMaps.PATHFIND_LAYERS.length; layer++) {
+                Array<Rectangle> walls = new Array<>();
+                for (String wallLayer : WALL_LAYERS[layer]) {
+                    for (RectangleMapObject object : map.getLayers().get(wallLayer).getObjects().getByType(RectangleMapObject.class)) {
+                        Rectangle rect = new Rectangle(object.getRectangle());
+                        walls.add(rect.set(rect.x * Constants.TILE_MAP_UNIT_SCALE, rect.y * Constants.TILE_MAP_UNIT_SCALE,
+                                rect.width * Constants.TILE_MAP_UNIT_SCALE, rect.height * Constants.TILE_MAP_UNIT_SCALE));
+                    }
+                }
+                levelGraphs.add(new GraphPair(map, BenchmarkMaps.PATHFIND_LAYERS[layer], walls));
+            }
+        }
+        run("levels 1-" + Constants.LEVELS_COUNT, levelGraphs);
+
+        for (int size : MAZE_SIZES) {
+            TiledMap map = BenchmarkMaps.createMaze(size, size);
+            Graph nodes = new Graph(map, Constants.MAP_PATHFINDER_NODES_STRONG, null);
+            // Every cell without a node is a wall
+            Array<Rectangle> walls = new Array<>();
+            for (int x = 0; x < size; x++) {
+                for (int y = 0; y < size; y++) {
+                    if (nodes.getCompactGraph().getNode(x, y) == CompactGraph.NO_NODE) walls.add(new Rectangle(x, y, 1, 1));
+                }
+            }
+            Array<GraphPair> mazeGraphs = new Array<>();
+            mazeGraphs.add(new GraphPair(map, Constants.MAP_PATHFINDER_NODES_STRONG, walls));
+            run("maze " + size + "x" + size, mazeGraphs);
+        }
+    }
+
+    /**
+     * Smooth the same paths with both graphs of every pair and print the averages
+     * @param title Name of the map set
+     * @param pairs Graphs to query
+     */
+    private static void run(String title, Array<GraphPair> pairs) {
+        long raycastNanos = 0;
+        long gridNanos = 0;
+        long paths = 0;
+        long pathNodes = 0;
+        long differentPaths = 0;
+        IntArray nodePath = new IntArray();
+        Random random = new Random(title.hashCode());
+        Vector2 from = new Vector2();
+        Vector2 to = new Vector2();
+        for (GraphPair pair : pairs) {
+            CompactGraph compactGraph = pair.grid.getCompactGraph();
+            JumpPointSearch pathFinder = new JumpPointSearch(compactGraph);
+            for (int i = 0; i < QUERIES_PER_GRAPH; i++) {
+                int start = random.nextInt(compactGraph.getNodeCount());
+                int goal = random.nextInt(compactGraph.getNodeCount());
+                if (!pathFinder.searchPath(start, goal, nodePath)) continue;
+                setJittered(from, compactGraph, start, random);
+                setJittered(to, compactGraph, goal, random);
+                long[] nanos = new long[2];
+                for (int round = 0; round <= MEASURED_ROUNDS; round++) {
+                    long raycastStart = System.nanoTime();
+                    List<INode> raycastPath = pair.raycast.createPath(from, to, nodePath);
+                    long gridStart = System.nanoTime();
+                    List<INode> gridPath = pair.grid.createPath(from, to, nodePath);
+                    long end = System.nanoTime();
+                    // The first round only warms up
+                    if (round == 0) {
+                        if (!isSamePath(raycastPath, gridPath)) differentPaths++;
+                        continue;
+                    }
+                    nanos[0] += gridStart - raycastStart;
+                    nanos[1] += end - gridStart;
+                }
+                raycastNanos += nanos[0];
+                gridNanos += nanos[1];
+                paths++;
+                pathNodes += nodePath.size;
+            }
+        }
+        for (GraphPair pair : pairs) {
+            pair.world.dispose();
+        }
+        if (paths == 0) return;
+        double raycastMicros = raycastNanos / 1000.0 / paths / MEASURED_ROUNDS;
+        double gridMicros = gridNanos / 1000.0 / paths / MEASURED_ROUNDS;
+        System.out.println(title + " (" + pairs.size + " graphs, " + paths + " paths, " + pathNodes / paths + " nodes on average)");
+        System.out.println(String.format(Locale.ROOT, "  %-28s %12s %10s", "smoothing", "us/path", "speedup"));
+        System.out.println(String.format(Locale.ROOT, "  %-28s %12.1f %9.2fx", "Box2D raycasts", raycastMicros, 1.0));
+        System.out.println(String.format(Locale.ROOT, "  %-28s %12.1f %9.2fx", "occupancy grid", gridMicros, raycastMicros / gridMicros));
+        System.out.println("  paths that differ: " + differentPaths);
+    }
+
+    private static void setJittered(Vector2 position, CompactGraph graph, int node, Random random) {
+        position.set(graph.getX(node) + (random.nextFloat() * 2 - 1) * POSITION_JITTER,
+                graph.getY(node) + (random.nextFloat() * 2 - 1) * POSITION_JITTER);
+    }
+
+    private static boolean isSamePath(List<INode> a, List<INode> b) {
+        if (a.size() != b.size()) return false;
+        for (int i = 0; i < a.size(); i++) {
+            if (a.get(i).getX() != b.get(i).getX() || a.get(i).getY() != b.get(i).getY()) return false;
+        }
+        return true;
+    }
+}
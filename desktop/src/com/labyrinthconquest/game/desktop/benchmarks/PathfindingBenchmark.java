@@ -0,0 +1,764 @@
+package com.labyrinthconquest.game.desktop.benchmarks;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.maps.tiled.TiledMap;
+import com.badlogic.gdx.maps.tiled.TiledMapTileLayer;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.physics.box2d.Box2D;
+import com.badlogic.gdx.physics.box2d.World;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.GdxNativesLoader;
+import com.badlogic.gdx.utils.IntArray;
+import com.labyrinthconquest.game.data.Constants;
+import com.labyrinthconquest.game.pathfinding.BatchPathFinder;
+import com.labyrinthconquest.game.pathfinding.BidirectionalAStarPathFinder;
+import com.labyrinthconquest.game.pathfinding.CompactAStarPathFinder;
+import com.labyrinthconquest.game.pathfinding.CompactGraph;
+import com.labyrinthconquest.game.pathfinding.DStarLitePathFinder;
+import com.labyrinthconquest.game.pathfinding.EuclideanHeuristic;
+import com.labyrinthconquest.game.pathfinding.FlowField;
+import com.labyrinthconquest.game.pathfinding.Graph;
+import com.labyrinthconquest.game.pathfinding.GridHeuristic;
+import com.labyrinthconquest.game.pathfinding.GridPathFinder;
+import com.labyrinthconquest.game.pathfinding.HierarchicalGridPathFinder;
+import com.labyrinthconquest.game.pathfinding.INode;
+import com.labyrinthconquest.game.pathfinding.IndexedAStarGridPathFinder;
+import com.labyrinthconquest.game.pathfinding.JumpPointSearch;
+import com.labyrinthconquest.game.pathfinding.LazyThetaStarPathFinder;
+import com.labyrinthconquest.game.pathfinding.LandmarkHeuristic;
+import com.labyrinthconquest.game.pathfinding.OccupancyGrid;
+import com.labyrinthconquest.game.pathfinding.OctileHeuristic;
+import com.labyrinthconquest.game.pathfinding.PathCache;
+import com.labyrinthconquest.game.pathfinding.PathfindingService;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Compares node expansions and latency of the path finders on the shipped levels and on generated mazes.
+ * Run with "gradlew desktop:benchmark" (working directory is the assets folder)
+ */
+public class PathfindingBenchmark {
+    private static final int QUERIES_PER_GRAPH = 200;
+    private static final int MEASURED_ROUNDS = 3;
+    private static final int[] MAZE_SIZES = {256, 512, 1024};
+    /**
+     * Replanning: the start moves this many steps along the path before a cell in the middle of it closes
+     */
+    private static final int REPLAN_STEPS = 2;
+    /**
+     * Numbers of agents heading for the same target, comparing a path search per agent to one shared flow field
+     */
+    private static final int[] FLOW_FIELD_AGENTS = {10, 100, 500};
+    /**
+     * Long path queries: the start and goal are at least this far apart horizontally plus vertically, as a fraction of
+     * the map's width plus height
+     */
+    private static final float LONG_PATH_MIN_DISTANCE = 0.5f;
+    /**
+     * Copies of the compact graphs kept alive at once to measure their memory
+     */
+    private static final int MEMORY_COPIES = 20;
+    /**
+     * Thread counts the batch path finder is timed with, and the queries in a batch
+     */
+    private static final int[] BATCH_THREADS = {1, 2, 4, 8};
+    private static final int BATCH_QUERIES = 200;
+    /**
+     * Ways of getting a straight path: grid A* and smoothing, Lazy Theta* alone and Lazy Theta* smoothed again
+     */
+    private static final String[] ANY_ANGLE_VARIANTS = {"A* + smoothing", "Lazy Theta*", "Lazy Theta* + smoothing"};
+    /**
+     * Path cache workload: agents walking between this many start and goal cells, from a random position in the cell
+     * each time, with a cell closing or opening again every few queries
+     */
+    private static final int CACHE_ROUTES = 16;
+    private static final int CACHE_QUERIES = 2000;
+    private static final int CACHE_CHANGE_INTERVAL = 50;
+
+    /**
+     * A path finder to benchmark
+     */
+    private abstract static class Candidate {
+        private String name;
+
+        Candidate(String name) {
+            this.name = name;
+        }
+
+        abstract GridPathFinder create(Graph graph);
+    }
+
+    /**
+     * A heuristic to benchmark
+     */
+    private abstract static class HeuristicCandidate {
+        private String name;
+
+        HeuristicCandidate(String name) {
+            this.name = name;
+        }
+
+        abstract GridHeuristic create(CompactGraph graph);
+    }
+
+    private static Array<HeuristicCandidate> createHeuristicCandidates() {
+        Array<HeuristicCandidate> candidates = new Array<>();
+        candidates.add(new HeuristicCandidate("euclidean") {
+            @Override
+            GridHeuristic create(CompactGraph graph) {
+                return new EuclideanHeuristic(graph);
+            }
+        });
+        candidates.add(new HeuristicCandidate("octile") {
+            @Override
+            GridHeuristic create(CompactGraph graph) {
+                return new OctileHeuristic(graph);
+            }
+        });
+        candidates.add(new HeuristicCandidate("ALT, " + Constants.ALT_LANDMARKS + " landmarks") {
+            @Override
+            GridHeuristic create(CompactGraph graph) {
+                return new LandmarkHeuristic(graph, Constants.ALT_LANDMARKS);
+            }
+        });
+        return candidates;
+    }
+
+    private static Array<Candidate> createCandidates() {
+        Array<Candidate> candidates = new Array<>();
+        candidates.add(new Candidate("IndexedAStarPathFinder") {
+            @Override
+            GridPathFinder create(Graph graph) {
+                return new IndexedAStarGridPathFinder(graph);
+            }
+        });
+        candidates.add(new Candidate("CompactAStarPathFinder") {
+            @Override
+            GridPathFinder create(Graph graph) {
+                return new CompactAStarPathFinder(graph.getCompactGraph());
+            }
+        });
+        candidates.add(new Candidate("JumpPointSearch") {
+            @Override
+            GridPathFinder create(Graph graph) {
+                return new JumpPointSearch(graph.getCompactGraph());
+            }
+        });
+        candidates.add(new Candidate("BidirectionalAStarPathFinder") {
+            @Override
+            GridPathFinder create(Graph graph) {
+                return new BidirectionalAStarPathFinder(graph.getCompactGraph());
+            }
+        });
+        candidates.add(new Candidate("DStarLitePathFinder") {
+            @Override
+            GridPathFinder create(Graph graph) {
+                return new DStarLitePathFinder(graph.getCompactGraph());
+            }
+        });
+        candidates.add(new Candidate("HierarchicalGridPathFinder") {
+            @Override
+            GridPathFinder create(Graph graph) {
+                return new HierarchicalGridPathFinder(graph.getCompactGraph(), Constants.HIERARCHICAL_PATHFINDING_CLUSTER_SIZE);
+            }
+        });
+        return candidates;
+    }
+
+    public static void main(String[] args) {
+        GdxNativesLoader.load();
+        Box2D.init();
+        World world = new World(new Vector2(0, 0), true);
+        Array<Candidate> candidates = createCandidates();
+        Array<HeuristicCandidate> heuristics = createHeuristicCandidates();
+
+        Array<Graph> levelGraphs = new Array<>();
+        Array<TiledMap> levelMaps = new Array<>();
+        for (int i = 1; i <= Constants.LEVELS_COUNT; i++) {
+            TiledMap map = BenchmarkMaps.loadLevel(new FileHandle("levels/" + i + ".tmx"));
+            for (String layer : BenchmarkMaps.PATHFIND_LAYERS) {
+                levelGraphs.add(new Graph(map, layer, world));
+            }
+            levelMaps.add(map);
+        }
+        runSharedGraph("levels 1-" + Constants.LEVELS_COUNT, levelMaps);
+        run("levels 1-" + Constants.LEVELS_COUNT, levelGraphs, candidates);
+        runReplanning("levels 1-" + Constants.LEVELS_COUNT, levelGraphs);
+        runHeuristics("levels 1-" + Constants.LEVELS_COUNT, levelGraphs, heuristics);
+        runLongPaths("levels 1-" + Constants.LEVELS_COUNT, levelGraphs, heuristics);
+        runFlowField("levels 1-" + Constants.LEVELS_COUNT, levelGraphs);
+        runBatch("levels 1-" + Constants.LEVELS_COUNT, levelGraphs);
+        runAnyAngle("levels 1-" + Constants.LEVELS_COUNT, levelGraphs);
+        runPathCache("levels 1-" + Constants.LEVELS_COUNT, levelGraphs);
+
+        for (int size : MAZE_SIZES) {
+            Array<Graph> mazeGraphs = new Array<>();
+            TiledMap maze = BenchmarkMaps.createMaze(size, size);
+            mazeGraphs.add(new Graph(maze, Constants.MAP_PATHFINDER_NODES_STRONG, world));
+            runSharedGraph("maze " + size + "x" + size, Array.with(maze));
+            run("maze " + size + "x" + size, mazeGraphs, candidates);
+            runReplanning("maze " + size + "x" + size, mazeGraphs);
+            runHeuristics("maze " + size + "x" + size, mazeGraphs, heuristics);
+            runLongPaths("maze " + size + "x" + size, mazeGraphs, heuristics);
+            runFlowField("maze " + size + "x" + size, mazeGraphs);
+            runBatch("maze " + size + "x" + size, mazeGraphs);
+            runAnyAngle("maze " + size + "x" + size, mazeGraphs);
+            runPathCache("maze " + size + "x" + size, mazeGraphs);
+        }
+        world.dispose();
+    }
+
+    /**
+     * Run every candidate over the same random queries on every graph and print the averages
+     * @param title Name of the map set
+     * @param graphs Graphs to query
+     * @param candidates Path finders to compare
+     */
+    private static void run(String title, Array<Graph> graphs, Array<Candidate> candidates) {
+        System.out.println(title + " (" + graphs.size + " graphs, " + QUERIES_PER_GRAPH + " queries each)");
+        System.out.println(String.format(Locale.ROOT, "  %-28s %14s %12s %10s", "path finder", "expanded/query", "us/query", "speedup"));
+        double baseline = 0;
+        IntArray path = new IntArray();
+        for (Candidate candidate : candidates) {
+            long expanded = 0;
+            long nanos = 0;
+            long queries = 0;
+            for (Graph graph : graphs) {
+                GridPathFinder pathFinder = candidate.create(graph);
+                int[] queryNodes = createQueries(graph, title.hashCode());
+                runQueries(pathFinder, queryNodes, path);
+                for (int round = 0; round < MEASURED_ROUNDS; round++) {
+                    long start = System.nanoTime();
+                    expanded += runQueries(pathFinder, queryNodes, path);
+                    nanos += System.nanoTime() - start;
+                    queries += QUERIES_PER_GRAPH;
+                }
+            }
+            double micros = nanos / 1000.0 / queries;
+            if (baseline == 0) baseline = micros;
+            System.out.println(String.format(Locale.ROOT, "  %-28s %14.1f %12.1f %9.2fx", candidate.name,
+                    (double)expanded / queries, micros, baseline / micros));
+        }
+    }
+
+    /**
+     * Compare repairing a path with D* Lite to searching again with jump point search, when the start moves along
+     * the path, when a cell in the middle of the path closes and when it opens again. Then the cost per query of the
+     * whole workload (a fresh query and its replans) with jump point search only, D* Lite only, and jump point search
+     * for the fresh query and D* Lite for the replans, as the levels do. There D* Lite builds its tree on the first replan
+     * @param title Name of the map set
+     * @param graphs Graphs to query
+     */
+    private static void runReplanning(String title, Array<Graph> graphs) {
+        String[] changes = {"start moved", "cell on path closed", "cell opened again"};
+        long[] incrementalExpanded = new long[changes.length];
+        long[] scratchExpanded = new long[changes.length];
+        long[] incrementalNanos = new long[changes.length];
+        long[] scratchNanos = new long[changes.length];
+        long freshIncrementalNanos = 0;
+        long freshScratchNanos = 0;
+        long mixedReplanNanos = 0;
+        long replans = 0;
+        IntArray path = new IntArray();
+        IntArray scratchPath = new IntArray();
+        for (Graph graph : graphs) {
+            CompactGraph compactGraph = graph.getCompactGraph();
+            DStarLitePathFinder incremental = new DStarLitePathFinder(compactGraph);
+            JumpPointSearch fromScratch = new JumpPointSearch(compactGraph);
+            DStarLitePathFinder replanner = new DStarLitePathFinder(compactGraph);
+            int[] queryNodes = createQueries(graph, title.hashCode());
+            for (int round = 0; round <= MEASURED_ROUNDS; round++) {
+                for (int i = 0; i < queryNodes.length; i += 2) {
+                    int goal = queryNodes[i + 1];
+                    long freshStart = System.nanoTime();
+                    if (!fromScratch.searchPath(queryNodes[i], goal, scratchPath)) continue;
+                    long freshIncrementalStart = System.nanoTime();
+                    if (!incremental.searchPath(queryNodes[i], goal, path) || path.size < REPLAN_STEPS * 4) continue;
+                    long freshEnd = System.nanoTime();
+                    int start = path.get(REPLAN_STEPS);
+                    int changed = path.get(path.size / 2);
+                    long replanNanos = 0;
+                    for (int change = 0; change < changes.length; change++) {
+                        if (change > 0) {
+                            compactGraph.setOpen(changed, change == 2);
+                            incremental.onNodeChanged(changed);
+                            replanner.onNodeChanged(changed);
+                        }
+                        long incrementalStart = System.nanoTime();
+                        incremental.searchPath(start, goal, path);
+                        long scratchStart = System.nanoTime();
+                        fromScratch.searchPath(start, goal, scratchPath);
+                        long replannerStart = System.nanoTime();
+                        replanner.searchPath(start, goal, path);
+                        long end = System.nanoTime();
+                        // The first round only warms up
+                        if (round == 0) continue;
+                        incrementalNanos[change] += scratchStart - incrementalStart;
+                        scratchNanos[change] += replannerStart - scratchStart;
+                        replanNanos += end - replannerStart;
+                        incrementalExpanded[change] += incremental.getExpandedNodes();
+                        scratchExpanded[change] += fromScratch.getExpandedNodes();
+                    }
+                    if (round > 0) {
+                        freshScratchNanos += freshIncrementalStart - freshStart;
+                        freshIncrementalNanos += freshEnd - freshIncrementalStart;
+                        mixedReplanNanos += replanNanos;
+                        replans++;
+                    }
+                }
+            }
+        }
+        if (replans == 0) return;
+        System.out.println("  replanning " + replans + " paths: expanded and us, D* Lite repair / new jump point search");
+        long scratchTotal = freshScratchNanos;
+        long incrementalTotal = freshIncrementalNanos;
+        for (int change = 0; change < changes.length; change++) {
+            System.out.println(String.format(Locale.ROOT, "  %-28s %9.1f / %-9.1f %9.1f / %-9.1f", changes[change],
+                    (double)incrementalExpanded[change] / replans, (double)scratchExpanded[change] / replans,
+                    incrementalNanos[change] / 1000.0 / replans, scratchNanos[change] / 1000.0 / replans));
+            scratchTotal += scratchNanos[change];
+            incrementalTotal += incrementalNanos[change];
+        }
+        System.out.println(String.format(Locale.ROOT, "  %-28s %14s %14s %14s", "query + " + changes.length + " replans, us",
+                "JPS", "D* Lite", "JPS + D* Lite"));
+        System.out.println(String.format(Locale.ROOT, "  %-28s %14.1f %14.1f %14.1f", "", scratchTotal / 1000.0 / replans,
+                incrementalTotal / 1000.0 / replans, (freshScratchNanos + mixedReplanNanos) / 1000.0 / replans));
+    }
+
+    /**
+     * Compare the nodes A* and jump point search expand with each heuristic, over the same queries as run.
+     * The time to set up the heuristic (computing the landmarks) is printed per graph
+     * @param title Name of the map set
+     * @param graphs Graphs to query
+     * @param heuristics Heuristics to compare, the first one is the baseline
+     */
+    private static void runHeuristics(String title, Array<Graph> graphs, Array<HeuristicCandidate> heuristics) {
+        System.out.println(String.format(Locale.ROOT, "  %-28s %14s %10s %14s %10s %10s", "heuristic", "A* expanded", "fewer",
+                "JPS expanded", "fewer", "setup ms"));
+        IntArray path = new IntArray();
+        double baselineAStar = 0;
+        double baselineJps = 0;
+        for (HeuristicCandidate candidate : heuristics) {
+            long aStarExpanded = 0;
+            long jpsExpanded = 0;
+            long setupNanos = 0;
+            long queries = 0;
+            for (Graph graph : graphs) {
+                CompactGraph compactGraph = graph.getCompactGraph();
+                long setupStart = System.nanoTime();
+                GridHeuristic heuristic = candidate.create(compactGraph);
+                setupNanos += System.nanoTime() - setupStart;
+                CompactAStarPathFinder aStar = new CompactAStarPathFinder(compactGraph);
+                aStar.setHeuristic(heuristic);
+                JumpPointSearch jumpPointSearch = new JumpPointSearch(compactGraph);
+                jumpPointSearch.setHeuristic(heuristic);
+                int[] queryNodes = createQueries(graph, title.hashCode());
+                aStarExpanded += runQueries(aStar, queryNodes, path);
+                jpsExpanded += runQueries(jumpPointSearch, queryNodes, path);
+                queries += QUERIES_PER_GRAPH;
+            }
+            double aStar = (double)aStarExpanded / queries;
+            double jps = (double)jpsExpanded / queries;
+            if (baselineAStar == 0) {
+                baselineAStar = aStar;
+                baselineJps = jps;
+            }
+            System.out.println(String.format(Locale.ROOT, "  %-28s %14.1f %9.1f%% %14.1f %9.1f%% %10.2f", candidate.name, aStar,
+                    100 * (1 - aStar / baselineAStar), jps, 100 * (1 - jps / baselineJps), setupNanos / 1000000.0 / graphs.size));
+        }
+    }
+
+    /**
+     * Compare A* to bidirectional A* on queries between far apart nodes, with each heuristic
+     * @param title Name of the map set
+     * @param graphs Graphs to query
+     * @param heuristics Heuristics to search with
+     */
+    private static void runLongPaths(String title, Array<Graph> graphs, Array<HeuristicCandidate> heuristics) {
+        System.out.println(String.format(Locale.ROOT, "  %-28s %14s %14s %10s %10s", "long paths, heuristic", "A* expanded",
+                "bidir expanded", "fewer", "speedup"));
+        IntArray path = new IntArray();
+        for (HeuristicCandidate candidate : heuristics) {
+            long aStarExpanded = 0;
+            long bidirectionalExpanded = 0;
+            long aStarNanos = 0;
+            long bidirectionalNanos = 0;
+            for (Graph graph : graphs) {
+                CompactGraph compactGraph = graph.getCompactGraph();
+                GridHeuristic heuristic = candidate.create(compactGraph);
+                CompactAStarPathFinder aStar = new CompactAStarPathFinder(compactGraph);
+                aStar.setHeuristic(heuristic);
+                BidirectionalAStarPathFinder bidirectional = new BidirectionalAStarPathFinder(compactGraph);
+                bidirectional.setHeuristic(heuristic);
+                int[] queryNodes = createLongQueries(compactGraph, title.hashCode());
+                runQueries(aStar, queryNodes, path);
+                runQueries(bidirectional, queryNodes, path);
+                for (int round = 0; round < MEASURED_ROUNDS; round++) {
+                    long aStarStart = System.nanoTime();
+                    aStarExpanded += runQueries(aStar, queryNodes, path);
+                    long bidirectionalStart = System.nanoTime();
+                    bidirectionalExpanded += runQueries(bidirectional, queryNodes, path);
+                    long end = System.nanoTime();
+                    aStarNanos += bidirectionalStart - aStarStart;
+                    bidirectionalNanos += end - bidirectionalStart;
+                }
+            }
+            long queries = (long)graphs.size * QUERIES_PER_GRAPH * MEASURED_ROUNDS;
+            double aStar = (double)aStarExpanded / queries;
+            double bidirectional = (double)bidirectionalExpanded / queries;
+            System.out.println(String.format(Locale.ROOT, "  %-28s %14.1f %14.1f %9.1f%% %9.2fx", candidate.name, aStar,
+                    bidirectional, 100 * (1 - bidirectional / aStar), (double)aStarNanos / bidirectionalNanos));
+        }
+    }
+
+    /**
+     * Pick random start and goal nodes that are far apart
+     * @return Start and goal node of each query, one after the other
+     */
+    private static int[] createLongQueries(CompactGraph graph, long seed) {
+        Random random = new Random(seed);
+        int[] queryNodes = new int[QUERIES_PER_GRAPH * 2];
+        float minDistance = LONG_PATH_MIN_DISTANCE * (graph.getWidth() + graph.getHeight());
+        for (int i = 0; i < queryNodes.length; i += 2) {
+            int start;
+            int goal;
+            do {
+                start = random.nextInt(graph.getNodeCount());
+                goal = random.nextInt(graph.getNodeCount());
+            } while (Math.abs(graph.getX(start) - graph.getX(goal)) + Math.abs(graph.getY(start) - graph.getY(goal)) < minDistance);
+            queryNodes[i] = start;
+            queryNodes[i + 1] = goal;
+        }
+        return queryNodes;
+    }
+
+    /**
+     * Compare sending many agents to one target by searching a path for each (jump point search) to computing one flow
+     * field and following it. Following the field is timed by walking every agent's whole route, one lookup per node
+     * @param title Name of the map set
+     * @param graphs Graphs to query
+     */
+    private static void runFlowField(String title, Array<Graph> graphs) {
+        System.out.println(String.format(Locale.ROOT, "  %-28s %14s %14s %10s", "agents to one target", "search ms", "flow field ms", "speedup"));
+        IntArray path = new IntArray();
+        for (int agents : FLOW_FIELD_AGENTS) {
+            long searchNanos = 0;
+            long flowFieldNanos = 0;
+            for (Graph graph : graphs) {
+                CompactGraph compactGraph = graph.getCompactGraph();
+                JumpPointSearch pathFinder = new JumpPointSearch(compactGraph);
+                FlowField flowField = new FlowField(compactGraph);
+                Random random = new Random(title.hashCode() + agents);
+                int target = random.nextInt(compactGraph.getNodeCount());
+                int[] starts = new int[agents];
+                for (int i = 0; i < agents; i++) {
+                    starts[i] = random.nextInt(compactGraph.getNodeCount());
+                }
+                for (int round = 0; round <= MEASURED_ROUNDS; round++) {
+                    long searchStart = System.nanoTime();
+                    for (int start : starts) {
+                        pathFinder.searchPath(start, target, path);
+                    }
+                    long flowFieldStart = System.nanoTime();
+                    flowField.compute(target);
+                    for (int start : starts) {
+                        for (int node = start; node != CompactGraph.NO_NODE; node = flowField.getNextNode(node)) {
+                            path.add(node);
+                        }
+                        path.clear();
+                    }
+                    long end = System.nanoTime();
+                    // The first round only warms up
+                    if (round == 0) continue;
+                    searchNanos += flowFieldStart - searchStart;
+                    flowFieldNanos += end - flowFieldStart;
+                }
+            }
+            double searchMillis = searchNanos / 1000000.0 / MEASURED_ROUNDS;
+            double flowFieldMillis = flowFieldNanos / 1000000.0 / MEASURED_ROUNDS;
+            System.out.println(String.format(Locale.ROOT, "  %-28s %14.2f %14.2f %9.2fx", agents + " agents", searchMillis,
+                    flowFieldMillis, searchMillis / flowFieldMillis));
+        }
+    }
+
+    /**
+     * Time finding a batch of paths over all graphs with the batch path finder, with more and more threads. The graphs
+     * are given occupancy grids of their unwalkable cells, so the paths are smoothed on the threads too
+     * @param title Name of the map set
+     * @param graphs Graphs to query
+     */
+    private static void runBatch(String title, Array<Graph> graphs) {
+        System.out.println(String.format(Locale.ROOT, "  %-28s %14s %12s %10s", "batch of " + BATCH_QUERIES + " paths",
+                "ms/batch", "paths/s", "speedup"));
+        Random random = new Random(title.hashCode());
+        BatchPathFinder.Query[] queries = new BatchPathFinder.Query[BATCH_QUERIES];
+        setOccupancyGrids(graphs);
+        for (int i = 0; i < queries.length; i++) {
+            Graph graph = graphs.get(random.nextInt(graphs.size));
+            CompactGraph compactGraph = graph.getCompactGraph();
+            int from = random.nextInt(compactGraph.getNodeCount());
+            int to = random.nextInt(compactGraph.getNodeCount());
+            queries[i] = new BatchPathFinder.Query(graph, new Vector2(compactGraph.getX(from), compactGraph.getY(from)),
+                    new Vector2(compactGraph.getX(to), compactGraph.getY(to)));
+        }
+        double baseline = 0;
+        for (int threads : BATCH_THREADS) {
+            BatchPathFinder batchPathFinder = new BatchPathFinder(new PathfindingService.PathFinderFactory() {
+                @Override
+                public GridPathFinder create(CompactGraph graph) {
+                    return new JumpPointSearch(graph);
+                }
+            }, threads);
+            long nanos = 0;
+            for (int round = 0; round <= MEASURED_ROUNDS; round++) {
+                long start = System.nanoTime();
+                batchPathFinder.findPaths(queries);
+                // The first round only warms up
+                if (round > 0) nanos += System.nanoTime() - start;
+            }
+            batchPathFinder.dispose();
+            double millis = nanos / 1000000.0 / MEASURED_ROUNDS;
+            if (baseline == 0) baseline = millis;
+            System.out.println(String.format(Locale.ROOT, "  %-28s %14.2f %12.0f %9.2fx", threads + " threads", millis,
+                    BATCH_QUERIES / millis * 1000, baseline / millis));
+        }
+    }
+
+    /**
+     * Compare finding a path with grid A* and smoothing it to finding it with Lazy Theta*, with and without smoothing
+     * its path again. Timed from the search to the finished path, the length is the length of the finished path
+     * @param title Name of the map set
+     * @param graphs Graphs to query
+     */
+    private static void runAnyAngle(String title, Array<Graph> graphs) {
+        System.out.println(String.format(Locale.ROOT, "  %-28s %14s %12s %10s", "straight paths", "us/path", "length", "speedup"));
+        setOccupancyGrids(graphs);
+        IntArray nodePath = new IntArray();
+        Vector2 from = new Vector2();
+        Vector2 to = new Vector2();
+        double baselineMicros = 0;
+        double baselineLength = 0;
+        for (int variant = 0; variant < ANY_ANGLE_VARIANTS.length; variant++) {
+            long nanos = 0;
+            long paths = 0;
+            double length = 0;
+            for (Graph graph : graphs) {
+                CompactGraph compactGraph = graph.getCompactGraph();
+                GridPathFinder pathFinder = variant == 0 ? new CompactAStarPathFinder(compactGraph)
+                        : new LazyThetaStarPathFinder(compactGraph);
+                graph.setPathSmoothing(variant != 1);
+                int[] queryNodes = createQueries(graph, title.hashCode());
+                for (int round = 0; round <= MEASURED_ROUNDS; round++) {
+                    for (int i = 0; i < queryNodes.length; i += 2) {
+                        from.set(compactGraph.getX(queryNodes[i]), compactGraph.getY(queryNodes[i]));
+                        to.set(compactGraph.getX(queryNodes[i + 1]), compactGraph.getY(queryNodes[i + 1]));
+                        long start = System.nanoTime();
+                        if (!pathFinder.searchPath(queryNodes[i], queryNodes[i + 1], nodePath)) continue;
+                        List<INode> path = graph.createPath(from, to, nodePath);
+                        long end = System.nanoTime();
+                        // The first round only warms up
+                        if (round == 0) continue;
+                        nanos += end - start;
+                        paths++;
+                        for (int node = 1; node < path.size(); node++) {
+                            length += Vector2.dst(path.get(node - 1).getX(), path.get(node - 1).getY(),
+                                    path.get(node).getX(), path.get(node).getY());
+                        }
+                    }
+                }
+                graph.setPathSmoothing(true);
+            }
+            if (paths == 0) return;
+            double micros = nanos / 1000.0 / paths;
+            if (baselineMicros == 0) {
+                baselineMicros = micros;
+                baselineLength = length / paths;
+            }
+            System.out.println(String.format(Locale.ROOT, "  %-28s %14.1f %11.2f%% %9.2fx", ANY_ANGLE_VARIANTS[variant],
+                    micros, 100 * length / paths / baselineLength, baselineMicros / micros));
+        }
+    }
+
+    /**
+     * Run a workload of repeated queries through Graph.findPath and print what the path cache did with it: its hits,
+     * misses and invalidations, and the time of a query answered from the cache and of one searched
+     * @param title Name of the map set
+     * @param graphs Graphs to query
+     */
+    private static void runPathCache(String title, Array<Graph> graphs) {
+        System.out.println(String.format(Locale.ROOT, "  %-28s %8s %8s %8s %8s %10s %10s", "path cache, " + CACHE_QUERIES + " queries",
+                "hits", "misses", "invalid", "hit rate", "us/hit", "us/miss"));
+        setOccupancyGrids(graphs);
+        Random random = new Random(title.hashCode());
+        Vector2 from = new Vector2();
+        Vector2 to = new Vector2();
+        long hitNanos = 0;
+        long missNanos = 0;
+        long hits = 0;
+        long misses = 0;
+        long invalidations = 0;
+        for (Graph graph : graphs) {
+            CompactGraph compactGraph = graph.getCompactGraph();
+            PathCache pathCache = graph.getPathCache();
+            pathCache.clear();
+            int[] routes = createQueries(graph, title.hashCode());
+            long startHits = pathCache.getHits();
+            long startMisses = pathCache.getMisses();
+            long startInvalidations = pathCache.getInvalidations();
+            int closedNode = CompactGraph.NO_NODE;
+            for (int query = 0; query < CACHE_QUERIES; query++) {
+                if (query > 0 && query % CACHE_CHANGE_INTERVAL == 0) {
+                    if (closedNode == CompactGraph.NO_NODE) {
+                        closedNode = random.nextInt(compactGraph.getNodeCount());
+                        setOpen(graph, closedNode, false);
+                    } else {
+                        setOpen(graph, closedNode, true);
+                        closedNode = CompactGraph.NO_NODE;
+                    }
+                }
+                int route = random.nextInt(CACHE_ROUTES) * 2;
+                setRandomPosition(compactGraph, routes[route], random, from);
+                setRandomPosition(compactGraph, routes[route + 1], random, to);
+                long queryHits = pathCache.getHits();
+                long start = System.nanoTime();
+                graph.findPath(from, to);
+                long nanos = System.nanoTime() - start;
+                if (pathCache.getHits() > queryHits) hitNanos += nanos;
+                else missNanos += nanos;
+            }
+            if (closedNode != CompactGraph.NO_NODE) setOpen(graph, closedNode, true);
+            hits += pathCache.getHits() - startHits;
+            misses += pathCache.getMisses() - startMisses;
+            invalidations += pathCache.getInvalidations() - startInvalidations;
+        }
+        System.out.println(String.format(Locale.ROOT, "  %-28s %8d %8d %8d %7.1f%% %10.1f %10.1f", CACHE_ROUTES + " routes",
+                hits, misses, invalidations, 100.0 * hits / Math.max(1, hits + misses),
+                hitNanos / 1000.0 / Math.max(1, hits), missNanos / 1000.0 / Math.max(1, misses)));
+    }
+
+    /**
+     * Open or close the cell of a node through the graph, so its path cache is told
+     */
+    private static void setOpen(Graph graph, int node, boolean open) {
+        CompactGraph compactGraph = graph.getCompactGraph();
+        int cell = compactGraph.getNodeCell(node);
+        graph.setCellOpen(compactGraph.getCellX(cell), compactGraph.getCellY(cell), open);
+    }
+
+    /**
+     * Set a position to a random point in the cell of a node
+     */
+    private static void setRandomPosition(CompactGraph graph, int node, Random random, Vector2 out) {
+        out.set(graph.getX(node) + random.nextFloat() * 0.8f - 0.4f, graph.getY(node) + random.nextFloat() * 0.8f - 0.4f);
+    }
+
+    /**
+     * Give the graphs without an occupancy grid one of their unwalkable cells, so their paths are smoothed on it
+     * @param graphs Graphs
+     */
+    private static void setOccupancyGrids(Array<Graph> graphs) {
+        for (Graph graph : graphs) {
+            CompactGraph compactGraph = graph.getCompactGraph();
+            if (graph.getOccupancyGrid() == null) {
+                OccupancyGrid occupancyGrid = new OccupancyGrid(compactGraph.getWidth(), compactGraph.getHeight());
+                for (int x = 0; x < compactGraph.getWidth(); x++) {
+                    for (int y = 0; y < compactGraph.getHeight(); y++) {
+                        occupancyGrid.setBlocked(x, y, compactGraph.getNode(x, y) == CompactGraph.NO_NODE);
+                    }
+                }
+                graph.setOccupancyGrid(occupancyGrid);
+            }
+        }
+    }
+
+    /**
+     * Compare building a compact graph for each pathfind layer to building one graph shared by all layers and a view of
+     * it for each. Memory is what the graphs of a map keep alive, measured over several copies
+     * @param title Name of the map set
+     * @param maps Maps with every pathfind layer
+     */
+    private static void runSharedGraph(String title, Array<TiledMap> maps) {
+        System.out.println(title + " (" + maps.size + " maps, " + BenchmarkMaps.PATHFIND_LAYERS.length + " layers each)");
+        System.out.println(String.format(Locale.ROOT, "  %-28s %14s %12s", "compact graphs", "build ms", "KiB"));
+        for (boolean shared : new boolean[] {false, true}) {
+            long nanos = 0;
+            for (int round = 0; round <= MEASURED_ROUNDS; round++) {
+                long start = System.nanoTime();
+                createCompactGraphs(maps, shared);
+                // The first round only warms up
+                if (round > 0) nanos += System.nanoTime() - start;
+            }
+            Object[] copies = new Object[MEMORY_COPIES];
+            long before = getUsedMemory();
+            for (int i = 0; i < copies.length; i++) {
+                copies[i] = createCompactGraphs(maps, shared);
+            }
+            long bytes = (getUsedMemory() - before) / copies.length;
+            System.out.println(String.format(Locale.ROOT, "  %-28s %14.2f %12.1f", shared ? "shared, a view per layer" : "one per layer",
+                    nanos / 1000000.0 / MEASURED_ROUNDS, bytes / 1024.0));
+        }
+    }
+
+    /**
+     * @param shared Whether to view one graph of all layers, else build a graph per layer
+     * @return Compact graph of every layer of every map
+     */
+    private static Array<CompactGraph> createCompactGraphs(Array<TiledMap> maps, boolean shared) {
+        Array<CompactGraph> graphs = new Array<>();
+        for (TiledMap map : maps) {
+            TiledMapTileLayer[] layers = new TiledMapTileLayer[BenchmarkMaps.PATHFIND_LAYERS.length];
+            for (int i = 0; i < layers.length; i++) {
+                layers[i] = (TiledMapTileLayer)map.getLayers().get(BenchmarkMaps.PATHFIND_LAYERS[i]);
+            }
+            if (shared) {
+                CompactGraph sharedGraph = new CompactGraph(layers, Constants.MAP_PATHFINDER_CAPABILITIES);
+                for (short capability : Constants.MAP_PATHFINDER_CAPABILITIES) {
+                    graphs.add(sharedGraph.createView(capability));
+                }
+            } else {
+                for (TiledMapTileLayer layer : layers) {
+                    graphs.add(new CompactGraph(layer));
+                }
+            }
+        }
+        return graphs;
+    }
+
+    /**
+     * @return Heap in use after collecting garbage
+     */
+    private static long getUsedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Pick random start and goal nodes
+     * @return Start and goal node of each query, one after the other
+     */
+    private static int[] createQueries(Graph graph, long seed) {
+        Random random = new Random(seed);
+        int[] queryNodes = new int[QUERIES_PER_GRAPH * 2];
+        for (int i = 0; i < queryNodes.length; i++) {
+            queryNodes[i] = random.nextInt(graph.getNodeCount());
+        }
+        return queryNodes;
+    }
+
+    /**
+     * @return Total expanded nodes
+     */
+    private static long runQueries(GridPathFinder pathFinder, int[] queryNodes, IntArray path) {
+        long expanded = 0;
+        for (int i = 0; i < queryNodes.length; i += 2) {
+            pathFinder.searchPath(queryNodes[i], queryNodes[i + 1], path);
+            expanded += pathFinder.getExpandedNodes();
+        }
+        return expanded;
+    }
+}
@@ -0,0 +1,284 @@
+package com.labyrinthconquest.game.desktop.tools;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.maps.tiled.TiledMapTileLayer;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Base64Coder;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.XmlReader;
+import com.labyrinthconquest.game.data.Constants;
+import com.labyrinthconquest.game.levels.CompiledLevel;
+import com.labyrinthconquest.game.pathfinding.CompactGraph;
+import com.labyrinthconquest.game.pathfinding.LandmarkHeuristic;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Compiles levels (.tmx) to the binary format of {@link CompiledLevel}, next to their .tmx files. The arguments are the
+ * level files, or folders of level files, to compile ("levels" if there are none), relative to the assets folder
+ * ("gradlew desktop:compileLevels" runs it there). The .tmx files are read with an XML parser, so no textures (and no
+ * OpenGL context) are needed. The navigation data is built with the same classes and constants as a level builds it
+ */
+public class LevelCompiler {
+    private LevelCompiler() {}
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            args = new String[] {"levels"};
+        }
+        for (String arg : args) {
+            FileHandle file = new FileHandle(arg);
+            FileHandle[] levels = file.isDirectory() ? file.list(".tmx") : new FileHandle[] {file};
+            for (FileHandle level : levels) {
+                FileHandle compiled = level.sibling(level.nameWithoutExtension() + CompiledLevel.FILE_EXTENSION);
+                compile(level, compiled);
+                System.out.println(level.path() + " -> " + compiled.path() + " (" + compiled.length() + " bytes)");
+            }
+        }
+    }
+
+    /**
+     * Compile a level
+     * @param tmxFile Level file (.tmx)
+     * @param outFile Compiled level file (.lvl)
+     * @throws IOException If the compiled level cannot be written
+     */
+    public static void compile(FileHandle tmxFile, FileHandle outFile) throws IOException {
+        XmlReader.Element root = new XmlReader().parse(tmxFile);
+        if (!"orthogonal".equals(root.getAttribute("orientation", null)) || root.getIntAttribute("infinite", 0) != 0) {
+            throw new GdxRuntimeException(tmxFile.path() + ": only finite orthogonal maps can be compiled");
+        }
+        int width = root.getIntAttribute("width");
+        int height = root.getIntAttribute("height");
+        int tileWidth = root.getIntAttribute("tilewidth");
+        int tileHeight = root.getIntAttribute("tileheight");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(outFile.write(false)));
+        try {
+            out.writeInt(CompiledLevel.MAGIC);
+            out.writeInt(CompiledLevel.VERSION);
+            out.writeInt(width);
+            out.writeInt(height);
+            out.writeInt(tileWidth);
+            out.writeInt(tileHeight);
+            writeTilesets(tmxFile, root, out);
+            TiledMapTileLayer[] pathfindLayers = writeLayers(tmxFile, root, width, height, out);
+            writeNavigation(pathfindLayers, out);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Write the tile sets with their images. The image of a tile set of its own file (.tsx) is made relative to the level
+     */
+    private static void writeTilesets(FileHandle tmxFile, XmlReader.Element root, DataOutputStream out) throws IOException {
+        Array<XmlReader.Element> tilesets = root.getChildrenByName("tileset");
+        out.writeInt(tilesets.size);
+        for (XmlReader.Element tileset : tilesets) {
+            int firstGid = tileset.getIntAttribute("firstgid");
+            String directory = "";
+            String source = tileset.getAttribute("source", null);
+            if (source != null) {
+                tileset = new XmlReader().parse(getRelativeFileHandle(tmxFile, source));
+                directory = source.lastIndexOf('/') >= 0 ? source.substring(0, source.lastIndexOf('/') + 1) : "";
+            }
+            XmlReader.Element image = tileset.getChildByName("image");
+            if (image == null) {
+                throw new GdxRuntimeException(tmxFile.path() + ": tile set " + tileset.getAttribute("name", "")
+                        + " has no image, collections of images cannot be compiled");
+            }
+            out.writeUTF(tileset.getAttribute("name", ""));
+            out.writeUTF(directory + image.getAttribute("source"));
+            out.writeInt(firstGid);
+            out.writeInt(tileset.getIntAttribute("tilewidth"));
+            out.writeInt(tileset.getIntAttribute("tileheight"));
+            out.writeInt(tileset.getIntAttribute("spacing", 0));
+            out.writeInt(tileset.getIntAttribute("margin", 0));
+        }
+    }
+
+    /**
+     * Write the tile and object layers in the order they are drawn
+     * @return Pathfind layers, with a cell where a layer has a tile
+     */
+    private static TiledMapTileLayer[] writeLayers(FileHandle tmxFile, XmlReader.Element root, int width, int height,
+                                                   DataOutputStream out) throws IOException {
+        TiledMapTileLayer[] pathfindLayers = new TiledMapTileLayer[Constants.MAP_PATHFINDER_LAYERS.length];
+        Array<XmlReader.Element> layers = new Array<>();
+        for (int i = 0; i < root.getChildCount(); i++) {
+            XmlReader.Element child = root.getChild(i);
+            if (child.getName().equals("layer") || child.getName().equals("objectgroup")) {
+                layers.add(child);
+            } else if (child.getName().equals("group") || child.getName().equals("imagelayer")) {
+                throw new GdxRuntimeException(tmxFile.path() + ": " + child.getName() + " layers cannot be compiled");
+            }
+        }
+        out.writeInt(layers.size);
+        for (XmlReader.Element layer : layers) {
+            boolean tiles = layer.getName().equals("layer");
+            String name = layer.getAttribute("name", "");
+            out.writeByte(tiles ? CompiledLevel.LAYER_TILES : CompiledLevel.LAYER_OBJECTS);
+            out.writeUTF(name);
+            out.writeBoolean(layer.getIntAttribute("visible", 1) == 1);
+            out.writeFloat(layer.getFloatAttribute("opacity", 1));
+            if (!tiles) {
+                writeObjects(layer, height * root.getIntAttribute("tileheight"), out);
+                continue;
+            }
+            int[] gids = readTiles(tmxFile, layer, width, height);
+            for (int gid : gids) {
+                out.writeInt(gid);
+            }
+            for (int i = 0; i < pathfindLayers.length; i++) {
+                if (name.equals(Constants.MAP_PATHFINDER_LAYERS[i])) {
+                    pathfindLayers[i] = createPathfindLayer(gids, width, height);
+                }
+            }
+        }
+        for (int i = 0; i < pathfindLayers.length; i++) {
+            if (pathfindLayers[i] == null) {
+                throw new GdxRuntimeException(tmxFile.path() + ": layer " + Constants.MAP_PATHFINDER_LAYERS[i] + " is missing");
+            }
+        }
+        return pathfindLayers;
+    }
+
+    /**
+     * Read the tile ids of a tile layer
+     * @return Tile id of every cell, row by row from the bottom like the game's y axis
+     */
+    private static int[] readTiles(FileHandle tmxFile, XmlReader.Element layer, int width, int height) throws IOException {
+        XmlReader.Element data = layer.getChildByName("data");
+        String encoding = data.getAttribute("encoding", null);
+        int[] rows = new int[width * height];
+        if ("csv".equals(encoding)) {
+            String[] tiles = data.getText().trim().split("[,\\s]+");
+            for (int i = 0; i < rows.length; i++) {
+                rows[i] = (int)Long.parseLong(tiles[i]);
+            }
+        } else if ("base64".equals(encoding)) {
+            InputStream bytes = new ByteArrayInputStream(Base64Coder.decode(data.getText().trim()));
+            String compression = data.getAttribute("compression", null);
+            if ("zlib".equals(compression)) {
+                bytes = new InflaterInputStream(bytes);
+            } else if ("gzip".equals(compression)) {
+                bytes = new GZIPInputStream(bytes);
+            } else if (compression != null) {
+                throw new GdxRuntimeException(tmxFile.path() + ": " + compression + " compressed layers cannot be compiled");
+            }
+            DataInputStream in = new DataInputStream(bytes);
+            for (int i = 0; i < rows.length; i++) {
+                // Little endian
+                rows[i] = Integer.reverseBytes(in.readInt());
+            }
+        } else {
+            throw new GdxRuntimeException(tmxFile.path() + ": layers must be stored as csv or base64");
+        }
+        // Tiled stores rows from the top, the game's y axis points up
+        int[] gids = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            System.arraycopy(rows, (height - 1 - y) * width, gids, y * width, width);
+        }
+        return gids;
+    }
+
+    /**
+     * Write the rectangles and points of an object layer, flipped to the game's y axis like TmxMapLoader does.
+     * Other shapes and tile objects are left out, levels only use rectangles
+     */
+    private static void writeObjects(XmlReader.Element layer, int mapHeight, DataOutputStream out) throws IOException {
+        Array<XmlReader.Element> objects = new Array<>();
+        for (XmlReader.Element object : layer.getChildrenByName("object")) {
+            if (object.hasAttribute("gid") || object.getChildByName("ellipse") != null
+                    || object.getChildByName("polygon") != null || object.getChildByName("polyline") != null
+                    || object.getChildByName("text") != null) continue;
+            objects.add(object);
+        }
+        out.writeInt(objects.size);
+        for (XmlReader.Element object : objects) {
+            String name = object.getAttribute("name", null);
+            out.writeBoolean(name != null);
+            if (name != null) {
+                out.writeUTF(name);
+            }
+            float objectWidth = object.getFloatAttribute("width", 0);
+            float objectHeight = object.getFloatAttribute("height", 0);
+            out.writeFloat(object.getFloatAttribute("x", 0));
+            out.writeFloat(mapHeight - object.getFloatAttribute("y", 0) - objectHeight);
+            out.writeFloat(objectWidth);
+            out.writeFloat(objectHeight);
+        }
+    }
+
+    /**
+     * Write the compact graph of the pathfind layers, and the closest nodes and landmarks of every character's view of it
+     */
+    private static void writeNavigation(TiledMapTileLayer[] pathfindLayers, DataOutputStream out) throws IOException {
+        CompactGraph graph = new CompactGraph(pathfindLayers, Constants.MAP_PATHFINDER_CAPABILITIES);
+        int nodeCount = graph.getNodeCount();
+        out.writeInt(nodeCount);
+        out.writeInt(graph.getEdgeCount());
+        for (int node = 0; node < nodeCount; node++) {
+            out.writeInt(graph.getNodeCell(node));
+        }
+        for (int node = 0; node < nodeCount; node++) {
+            out.writeShort(graph.getCapabilities(node));
+        }
+        for (int node = 0; node < nodeCount; node++) {
+            out.writeInt(graph.getEdgeStart(node));
+        }
+        out.writeInt(graph.getEdgeCount());
+        for (int edge = 0; edge < graph.getEdgeCount(); edge++) {
+            out.writeInt(graph.getEdgeTarget(edge));
+        }
+        for (int edge = 0; edge < graph.getEdgeCount(); edge++) {
+            out.writeFloat(graph.getEdgeCost(edge));
+        }
+        out.writeInt(Constants.MAP_PATHFINDER_CAPABILITIES.length);
+        for (short capabilities : Constants.MAP_PATHFINDER_CAPABILITIES) {
+            CompactGraph view = graph.createView(capabilities);
+            LandmarkHeuristic heuristic = new LandmarkHeuristic(view, Constants.ALT_LANDMARKS);
+            out.writeShort(capabilities);
+            for (int cell = 0; cell < view.getWidth() * view.getHeight(); cell++) {
+                out.writeInt(view.getNearestNode(cell));
+            }
+            out.writeInt(heuristic.getLandmarkCount());
+            for (int i = 0; i < heuristic.getLandmarkCount(); i++) {
+                out.writeInt(heuristic.getLandmark(i));
+            }
+            for (int node = 0; node < nodeCount; node++) {
+                for (int i = 0; i < heuristic.getLandmarkCount(); i++) {
+                    out.writeFloat(heuristic.getCost(i, node));
+                }
+            }
+        }
+    }
+
+    /**
+     * @return Layer with a cell wherever the layer has a tile, all a graph needs
+     */
+    private static TiledMapTileLayer createPathfindLayer(int[] gids, int width, int height) {
+        TiledMapTileLayer layer = new TiledMapTileLayer(width, height, Constants.TILE_WIDTH, Constants.TILE_HEIGHT);
+        for (int i = 0; i < gids.length; i++) {
+            if (gids[i] != 0) {
+                layer.setCell(i % width, i / width, new TiledMapTileLayer.Cell());
+            }
+        }
+        return layer;
+    }
+
+    /**
+     * Resolve a path relative to the directory of a file, e.g "../tileset/tileset.tsx"
+     */
+    private static FileHandle getRelativeFileHandle(FileHandle file, String path) {
+        return new FileHandle(new File(file.file().getParentFile(), path));
+    }
+}